@@ -1,5 +1,6 @@
 package de.trustable.ca3s.core.bpmn.task;
 
+import java.security.GeneralSecurityException;
 import java.util.Date;
 import java.util.Optional;
 
@@ -19,9 +20,11 @@ import de.trustable.ca3s.core.domain.enumeration.CsrStatus;
 import de.trustable.ca3s.core.repository.CAConnectorConfigRepository;
 import de.trustable.ca3s.core.repository.CSRRepository;
 import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.ca3s.core.service.util.CaCertificateIndex;
 import de.trustable.ca3s.core.service.util.CaConnectorAdapter;
 import de.trustable.ca3s.core.service.util.ConfigUtil;
 import de.trustable.ca3s.core.service.util.DateUtil;
+import de.trustable.ca3s.core.service.util.OcspResponder;
 import de.trustable.util.CryptoUtil;
 
 
@@ -45,6 +48,12 @@ public class CaBackendTask implements JavaDelegate {
 	@Autowired
 	private CaConnectorAdapter caConnAdapter;
 
+	@Autowired
+	private CaCertificateIndex caCertificateIndex;
+
+	@Autowired
+	private OcspResponder ocspResponder;
+
 	@Autowired
 	private CryptoUtil cryptoUtil;
 
@@ -61,10 +70,6 @@ public class CaBackendTask implements JavaDelegate {
 		String action = (String) execution.getVariable("action");
 		LOGGER.debug("execution.getVariable('action') : " + action);
 
-		if( caccRepo.count() == 0 ) {
-			LOGGER.debug("CAConnectorConfig is empty");
-		}
-
 		String caConfigIdStr = execution.getVariable("caConfigId").toString();
 		long caConfigId = Long.parseLong(caConfigIdStr);
 
@@ -144,6 +149,8 @@ public class CaBackendTask implements JavaDelegate {
 				revokeCert.setRevokedSince(DateUtil.asInstant(now));
 				revokeCert.setRevocationReason(crlReasonStr);
 				revokeCert.setRevocationExecutionId(execution.getProcessInstanceId());
+				caCertificateIndex.invalidate();
+				ocspResponder.invalidate(revokeCert);
 
 				execution.setVariable("status", "Revoked");
 
@@ -169,16 +176,7 @@ public class CaBackendTask implements JavaDelegate {
 					csr = csrOpt.get();
 				}
 
-				Certificate cert = caConnAdapter.signCertificateRequest(csr, caConfig);
-
-    			if(cert != null) {
-    				cert.setCreationExecutionId(execution.getProcessInstanceId());
-
-    				certificateRepository.save(cert);
-    				LOGGER.debug("certificateId " + cert.getId());
-    			}else {
-    				LOGGER.warn("ceated certificate for csr #" + csr.getId() + " == null!");
-    			}
+				Certificate cert = signCertificateRequest(csr, caConfig, execution.getProcessInstanceId());
 
 
 				execution.setVariable("certificateId", cert.getId());
@@ -193,4 +191,28 @@ public class CaBackendTask implements JavaDelegate {
 
 	}
 
+	/**
+	 * sign the csr at the CA and store the new certificate, the issuing part of the process
+	 *
+	 * @param csr the request to be signed
+	 * @param caConfig the CA to sign the request
+	 * @param executionId the id of the process instance issuing the certificate
+	 * @return the new certificate, null if the CA returned none
+	 * @throws GeneralSecurityException signing failed
+	 */
+	public Certificate signCertificateRequest(CSR csr, CAConnectorConfig caConfig, String executionId) throws GeneralSecurityException {
+
+		Certificate cert = caConnAdapter.signCertificateRequest(csr, caConfig);
+
+		if(cert != null) {
+			cert.setCreationExecutionId(executionId);
+
+			certificateRepository.save(cert);
+			LOGGER.debug("certificateId " + cert.getId());
+		}else {
+			LOGGER.warn("ceated certificate for csr #" + csr.getId() + " == null!");
+		}
+		return cert;
+	}
+
 }
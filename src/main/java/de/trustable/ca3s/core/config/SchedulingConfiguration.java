@@ -0,0 +1,46 @@
+package de.trustable.ca3s.core.config;
+
+import de.trustable.ca3s.core.schedule.LaneTaskScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.task.TaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Runs the {@code @Scheduled} jobs in the lanes of a {@link LaneTaskScheduler}. The 'spring.task.scheduling' settings
+ * now apply to the threads triggering the jobs only.
+ */
+@Configuration
+public class SchedulingConfiguration implements SchedulingConfigurer {
+
+    private final Logger log = LoggerFactory.getLogger(SchedulingConfiguration.class);
+
+    private final TaskSchedulerBuilder taskSchedulerBuilder;
+    private final Environment env;
+    private final MeterRegistry meterRegistry;
+
+    public SchedulingConfiguration(TaskSchedulerBuilder taskSchedulerBuilder, Environment env, MeterRegistry meterRegistry) {
+        this.taskSchedulerBuilder = taskSchedulerBuilder;
+        this.env = env;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public LaneTaskScheduler laneTaskScheduler() {
+        log.debug("Creating Lane Task Scheduler");
+        ThreadPoolTaskScheduler triggerScheduler = taskSchedulerBuilder.build();
+        triggerScheduler.initialize();
+        return new LaneTaskScheduler(triggerScheduler, env, meterRegistry);
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.setTaskScheduler(laneTaskScheduler());
+    }
+}
@@ -231,7 +231,7 @@ public class ACMEAccount implements Serializable {
         if (!(o instanceof ACMEAccount)) {
             return false;
         }
-        return id != null && id.equals(((ACMEAccount) o).id);
+        return id != null && id.equals(((ACMEAccount) o).getId());
     }
 
     @Override
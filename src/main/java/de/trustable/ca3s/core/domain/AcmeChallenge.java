@@ -14,6 +14,18 @@ import de.trustable.ca3s.core.domain.enumeration.ChallengeStatus;
  */
 @Entity
 @Table(name = "acme_challenge")
+@NamedQueries({
+    @NamedQuery(name = "AcmeChallenge.findValidatedByAccountAndIdentifier",
+        query = "SELECT c FROM AcmeChallenge c JOIN c.acmeAuthorization a WHERE " +
+            "a.order.account = :account and " +
+            "a.order.pipeline.id = :pipelineId and " +
+            "a.type = :type and " +
+            "a.value = :value and " +
+            "c.status = :status and " +
+            "c.validated > :validatedAfter " +
+            "ORDER BY c.validated DESC"
+    )
+})
 public class AcmeChallenge implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -34,6 +34,12 @@ import javax.validation.constraints.*;
             "a.expires < :expiresBefore AND " +
             "a.status = 'PENDING'"
     ),
+    @NamedQuery(name = "AcmeOrder.findProcessingWithoutCertificateBefore",
+        query = "SELECT a FROM AcmeOrder a WHERE " +
+            "a.status = 'PROCESSING' AND " +
+            "a.certificate IS NULL AND " +
+            "a.csr.requestedOn < :processingBefore"
+    ),
 })
 public class AcmeOrder implements Serializable {
 
@@ -3,6 +3,8 @@ package de.trustable.ca3s.core.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import org.hibernate.annotations.BatchSize;
+
 import javax.persistence.*;
 import javax.validation.constraints.*;
 
@@ -164,6 +166,7 @@ public class CSR implements Serializable {
 
     @OneToMany(fetch = FetchType.EAGER, mappedBy = "csr", cascade = {CascadeType.ALL})
     @JsonIgnoreProperties({"csr"})
+    @BatchSize(size = 100)
     private Set<CsrAttribute> csrAttributes = new HashSet<>();
 
     @ManyToOne
@@ -39,6 +39,12 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
             "LOWER(c.issuer) = LOWER( :issuer ) AND " +
             " c.serial = :serial"
     ),
+    @NamedQuery(name = "Certificate.findRevokedByIssuerSince",
+    query = "SELECT c FROM Certificate c WHERE " +
+            "c.revokedSince >= :since AND " +
+            " c.revoked = TRUE AND " +
+            " LOWER(c.issuer) = LOWER( :issuer )"
+    ),
     @NamedQuery(name = "Certificate.findCACertByIssuer",
     query = "SELECT distinct c FROM Certificate c JOIN c.certificateAttributes att1 WHERE " +
     	"c.subject = :issuer AND " +
@@ -156,6 +162,31 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
             " certAtt.value not like 'ldap%'" +
             " order by certAtt.value "
     ),
+    @NamedQuery(name = "Certificate.findActiveCertificateIdSerialByCrlURL",
+        query = "SELECT c.id, c.serial, certAtt.value, c.issuer FROM Certificate c JOIN c.certificateAttributes certAtt WHERE " +
+            " certAtt.name = 'CRL_URL' and " +
+            " c.active = TRUE and" +
+            " certAtt.value not like 'ldap%'" +
+            " order by certAtt.value "
+    ),
+    @NamedQuery(name = "Certificate.findIdTBSDigestByTBSDigests",
+        query = "SELECT c.id, c.tbsDigest FROM Certificate c WHERE " +
+            " c.tbsDigest in :tbsDigests"
+    ),
+    @NamedQuery(name = "Certificate.findByIdsWithDetails",
+        query = "SELECT distinct c FROM Certificate c" +
+            " LEFT JOIN FETCH c.certificateAttributes" +
+            " LEFT JOIN FETCH c.comment" +
+            " LEFT JOIN FETCH c.csr csr" +
+            " LEFT JOIN FETCH csr.comment" +
+            " WHERE c.id in :ids"
+    ),
+    @NamedQuery(name = "Certificate.findCACertificateRefBySKI",
+        query = "SELECT c.id, c.subject, c.selfsigned, c.revoked, c.revokedSince, c.validFrom, c.validTo, c.root, rc.id, certAtt.value " +
+            " FROM Certificate c LEFT JOIN c.rootCertificate rc JOIN c.certificateAttributes certAtt WHERE " +
+            " certAtt.name = 'SKI' and " +
+            " c.endEntity = FALSE"
+    ),
     @NamedQuery(name = "Certificate.findActiveCertificateBySerial",
         query = "SELECT distinct c FROM Certificate c WHERE " +
             " c.serial = :serial and " +
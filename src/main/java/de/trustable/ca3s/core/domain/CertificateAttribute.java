@@ -12,6 +12,13 @@ import java.io.Serializable;
  */
 @Entity
 @Table(name = "certificate_attribute")
+@NamedQueries({
+    @NamedQuery(name = "CertificateAttribute.updateValueByNameAndCertificateIds",
+        query = "UPDATE CertificateAttribute ca SET ca.value = :value WHERE " +
+            " ca.name = :name and " +
+            " ca.certificate.id in :certificateIds"
+    )
+})
 public class CertificateAttribute implements Serializable {
 
     private static final long serialVersionUID = 1L;
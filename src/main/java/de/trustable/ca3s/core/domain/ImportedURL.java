@@ -15,6 +15,10 @@ import java.time.Instant;
 	@NamedQuery(name = "ImportedURL.findByURL",
 	query = "SELECT impURL FROM ImportedURL impURL WHERE " +
 			"impURL.name = :url"
+    ),
+	@NamedQuery(name = "ImportedURL.findByURLPrefix",
+	query = "SELECT impURL FROM ImportedURL impURL WHERE " +
+			"impURL.name LIKE :prefix"
     )
 })
 public class ImportedURL implements Serializable {
@@ -33,6 +37,12 @@ public class ImportedURL implements Serializable {
     @Column(name = "import_date", nullable = false)
     private Instant importDate;
 
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
     public Long getId() {
         return id;
@@ -67,6 +77,32 @@ public class ImportedURL implements Serializable {
     public void setImportDate(Instant importDate) {
         this.importDate = importDate;
     }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public ImportedURL fileSize(Long fileSize) {
+        this.fileSize = fileSize;
+        return this;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public ImportedURL contentHash(String contentHash) {
+        this.contentHash = contentHash;
+        return this;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here, do not remove
 
     @Override
@@ -91,6 +127,8 @@ public class ImportedURL implements Serializable {
             "id=" + getId() +
             ", name='" + getName() + "'" +
             ", importDate='" + getImportDate() + "'" +
+            ", fileSize=" + getFileSize() +
+            ", contentHash='" + getContentHash() + "'" +
             "}";
     }
 }
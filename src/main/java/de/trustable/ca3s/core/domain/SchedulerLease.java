@@ -0,0 +1,133 @@
+package de.trustable.ca3s.core.domain;
+
+import javax.persistence.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A SchedulerLease: the instance running a scheduled job (or being alive, for 'node:' leases) until 'leaseUntil'.
+ */
+@Entity
+@Table(name = "scheduler_lease")
+@NamedQueries({
+    @NamedQuery(name = "SchedulerLease.findByJobName",
+    query = "SELECT l FROM SchedulerLease l WHERE " +
+        "l.jobName = :jobName"
+    ),
+    @NamedQuery(name = "SchedulerLease.findActiveOwnersByJobNamePrefix",
+    query = "SELECT l.owner FROM SchedulerLease l WHERE " +
+        "l.jobName LIKE :prefix and " +
+        " l.leaseUntil >= :now " +
+        " order by l.owner"
+    ),
+    @NamedQuery(name = "SchedulerLease.acquire",
+    query = "UPDATE SchedulerLease l SET l.owner = :owner, l.leaseUntil = :leaseUntil WHERE " +
+        "l.jobName = :jobName and " +
+        " (l.owner = :owner or l.leaseUntil < :now)"
+    ),
+    @NamedQuery(name = "SchedulerLease.renewByOwner",
+    query = "UPDATE SchedulerLease l SET l.leaseUntil = :leaseUntil WHERE " +
+        "l.owner = :owner and " +
+        " l.leaseUntil >= :now"
+    ),
+    @NamedQuery(name = "SchedulerLease.releaseByOwner",
+    query = "UPDATE SchedulerLease l SET l.leaseUntil = :expired WHERE " +
+        "l.owner = :owner"
+    ),
+    @NamedQuery(name = "SchedulerLease.deleteExpiredByJobNamePrefix",
+    query = "DELETE FROM SchedulerLease l WHERE " +
+        "l.jobName LIKE :prefix and " +
+        " l.leaseUntil < :expiredBefore"
+    )
+})
+public class SchedulerLease implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", length = 100, nullable = false, unique = true)
+    private String jobName;
+
+    @Column(name = "owner", length = 100, nullable = false)
+    private String owner;
+
+    @Column(name = "lease_until", nullable = false)
+    private Instant leaseUntil;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public SchedulerLease jobName(String jobName) {
+        this.jobName = jobName;
+        return this;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public SchedulerLease owner(String owner) {
+        this.owner = owner;
+        return this;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public SchedulerLease leaseUntil(Instant leaseUntil) {
+        this.leaseUntil = leaseUntil;
+        return this;
+    }
+
+    public void setLeaseUntil(Instant leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SchedulerLease)) {
+            return false;
+        }
+        return id != null && id.equals(((SchedulerLease) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "SchedulerLease{" +
+            "id=" + getId() +
+            ", jobName='" + getJobName() + "'" +
+            ", owner='" + getOwner() + "'" +
+            ", leaseUntil='" + getLeaseUntil() + "'" +
+            "}";
+    }
+}
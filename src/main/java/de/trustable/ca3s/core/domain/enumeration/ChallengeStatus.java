@@ -10,7 +10,7 @@ import com.fasterxml.jackson.annotation.JsonValue;
  * The ChallengeStatus enumeration.
  */
 public enum ChallengeStatus {
-    PENDING, VALID, INVALID, DEACTIVATED, EXPIRED, REVOKED;
+    PENDING, PROCESSING, VALID, INVALID, DEACTIVATED, EXPIRED, REVOKED;
     
     
 	private static final Logger LOG = LoggerFactory.getLogger(ChallengeStatus.class);
@@ -115,23 +115,32 @@ public final class ACMEOrderSpecifications {
             }
         }
 
+        boolean ascending = "asc".equalsIgnoreCase(orderDirection);
+        Expression<Long> idExpression = root.get(AcmeOrder_.id);
+        Expression<?> sortExpression = "id".equals(sortCol) ? null : (Expression<?>) orderSelection;
+
+        // keyset paging: continue after the last row of the previous page
+        Long afterId = getAfterId(parameterMap);
+        if (afterId != null) {
+            Predicate keysetPred = buildKeysetPredicate(cb, sortExpression, idExpression,
+                getStringValue(parameterMap.get(AFTER), ""), afterId, ascending);
+            pred = (pred == null) ? keysetPred : cb.and(pred, keysetPred);
+        }
+
         query.where(pred);
 
-        Sort.Direction sortDir = Sort.Direction.ASC;
-
-        // care for the ordering
-        if ("asc".equalsIgnoreCase(orderDirection)) {
-            query.orderBy(cb.asc((Expression<?>) orderSelection));
-        } else {
-            query.orderBy(cb.desc((Expression<?>) orderSelection));
-            sortDir = Sort.Direction.DESC;
-        }
+        // care for the ordering, the id makes it unique
+        Sort.Direction sortDir = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        query.orderBy(buildOrderList(cb, sortExpression, idExpression, ascending));
 
         query.multiselect(selectionList);
 
+        // without a count, an additional row tells whether there is a following page
+        boolean countNone = COUNT_NONE.equals(getCountMode(parameterMap));
+
         TypedQuery<Object[]> typedQuery = entityManager.createQuery(query);
-        typedQuery.setMaxResults(pagesize);
-        typedQuery.setFirstResult(pageOffset);
+        typedQuery.setMaxResults(countNone ? pagesize + 1 : pagesize);
+        typedQuery.setFirstResult(afterId == null ? pageOffset : 0);
 
         try {
             logger.debug("assembled query: " + typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString());
@@ -142,6 +151,11 @@ public final class ACMEOrderSpecifications {
         // submit the query
         List<Object[]> listResponse = typedQuery.getResultList();
 
+        boolean hasMore = listResponse.size() > pagesize;
+        if (hasMore) {
+            listResponse = listResponse.subList(0, pagesize);
+        }
+
         // use the result set to fill the response object
         List<ACMEOrderView> acmeOrderViewList = new ArrayList<>();
         for (Object[] objArr : listResponse) {
@@ -154,10 +168,21 @@ public final class ACMEOrderSpecifications {
             acmeOrderViewList.add(acmeOrderView);
         }
 
-        // start again to retrieve the row count
         Pageable pageable = PageRequest.of(pageOffset / pagesize, pagesize, sortDir, sortCol);
 
-        Long nTotalElements;
+        // start again to retrieve the row count, if requested
+        String countCacheKey = buildCountCacheKey("ACMEOrder", parameterMap, additionalSelectionAttributes);
+        final String[] countColumnArr = columnArr;
+        return buildPage(acmeOrderViewList, pageable, pageOffset, hasMore, parameterMap, countCacheKey,
+            () -> countACMEOrders(entityManager, cb, countColumnArr, selectionMap, additionalSelectionAttributes));
+
+    }
+
+    private static Long countACMEOrders(EntityManager entityManager,
+                                        CriteriaBuilder cb,
+                                        String[] columnArr,
+                                        Map<String, List<SelectionData>> selectionMap,
+                                        List<String> additionalSelectionAttributes) {
 
         CriteriaQuery<Long> queryCount = cb.createQuery(Long.class);
         Root<AcmeOrder> iRoot = queryCount.from(AcmeOrder.class);
@@ -168,7 +193,6 @@ public final class ACMEOrderSpecifications {
 
         // walk thru all requested columns
         for (String col : columnArr) {
-            colList.add(col);
 
             if (selectionMap.containsKey(col)) {
                 List<SelectionData> selDataList = selectionMap.get(col);
@@ -214,11 +238,10 @@ public final class ACMEOrderSpecifications {
 
         queryCount.where(predCount);
 
-        nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
+        Long nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
         logger.debug("buildPredicate selects {} elements ", nTotalElements);
 
-        return new PageImpl<>(acmeOrderViewList, pageable, nTotalElements);
-
+        return nTotalElements;
     }
 
     private static ACMEOrderView buildACMEOrderViewFromObjArr(ArrayList<String> colList,
@@ -1,9 +1,16 @@
 package de.trustable.ca3s.core.repository;
 
+import de.trustable.ca3s.core.domain.ACMEAccount;
 import de.trustable.ca3s.core.domain.AcmeChallenge;
+import de.trustable.ca3s.core.domain.enumeration.ChallengeStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+
 
 /**
  * Spring Data  repository for the AcmeChallenge entity.
@@ -12,4 +19,13 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface AcmeChallengeRepository extends JpaRepository<AcmeChallenge, Long> {
 
+    @Query(name = "AcmeChallenge.findValidatedByAccountAndIdentifier")
+    List<AcmeChallenge> findValidatedByAccountAndIdentifier(@Param("account") ACMEAccount account,
+                                                            @Param("pipelineId") Long pipelineId,
+                                                            @Param("type") String type,
+                                                            @Param("value") String value,
+                                                            @Param("status") ChallengeStatus status,
+                                                            @Param("validatedAfter") Instant validatedAfter,
+                                                            Pageable pageable);
+
 }
@@ -32,4 +32,7 @@ public interface AcmeOrderRepository extends JpaRepository<AcmeOrder, Long> {
     @Query(name = "AcmeOrder.findByPendingExpiryBefore")
     List<AcmeOrder> findByPendingExpiryBefore(@Param("expiresBefore") Instant expiresBefore);
 
+    @Query(name = "AcmeOrder.findProcessingWithoutCertificateBefore")
+    List<AcmeOrder> findProcessingWithoutCertificateBefore(@Param("processingBefore") Instant processingBefore);
+
 }
@@ -5,7 +5,6 @@ import de.trustable.ca3s.core.service.dto.AuditTraceView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -17,6 +16,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static de.trustable.ca3s.core.repository.SpecificationsHelper.*;
 
@@ -33,6 +33,66 @@ public final class AuditTraceSpecifications {
                                                                         CriteriaBuilder cb,
                                                                         Map<String, String[]> parameterMap) {
 
+        int pageOffset = getIntValue(parameterMap.get("offset"), 0);
+        int pagesize = getIntValue(parameterMap.get("limit"), 20);
+
+        ViewQuery viewQuery = buildAuditTraceViewQuery(cb, parameterMap);
+        CriteriaQuery<Object[]> query = viewQuery.query;
+        List<String> colList = viewQuery.colList;
+        String sortCol = viewQuery.sortCol;
+        Long afterId = getAfterId(parameterMap);
+        Sort.Direction sortDir = viewQuery.ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+        // without a count, an additional row tells whether there is a following page
+        boolean countNone = COUNT_NONE.equals(getCountMode(parameterMap));
+
+        TypedQuery<Object[]> typedQuery = entityManager.createQuery(query);
+        typedQuery.setMaxResults(countNone ? pagesize + 1 : pagesize);
+        typedQuery.setFirstResult(afterId == null ? pageOffset : 0);
+
+        try {
+            logger.debug("assembled query: " + typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString());
+        } catch (Exception e) {
+            logger.debug("failed in retrieve sql query", e);
+        }
+
+        // submit the query
+        List<Object[]> listResponse = typedQuery.getResultList();
+
+        boolean hasMore = listResponse.size() > pagesize;
+        if (hasMore) {
+            listResponse = listResponse.subList(0, pagesize);
+        }
+
+        // use the result set to fill the response object
+        List<AuditTraceView> certViewList = new ArrayList<AuditTraceView>();
+        for (Object[] objArr : listResponse) {
+
+            if (logger.isDebugEnabled() && (objArr.length != colList.size())) {
+                logger.debug("objArr len {}, colList len {}", objArr.length, colList.size());
+            }
+
+            AuditTraceView cv = buildAuditTraceViewFromObjArr(colList, objArr);
+
+            certViewList.add(cv);
+        }
+
+        Pageable pageable = PageRequest.of(pageOffset / pagesize, pagesize, sortDir, sortCol);
+
+        // start again to retrieve the row count, if requested
+        String countCacheKey = buildCountCacheKey("AuditTrace", parameterMap);
+        final String[] countColumnArr = colList.toArray(new String[0]);
+        return buildPage(certViewList, pageable, pageOffset, hasMore, parameterMap, countCacheKey,
+            () -> countAuditTraces(entityManager, cb, countColumnArr, viewQuery.selectionMap));
+
+    }
+
+    /**
+     * build the selection query of audit trace views from the request parameters, without paging
+     */
+    static ViewQuery buildAuditTraceViewQuery(CriteriaBuilder cb,
+                                              Map<String, String[]> parameterMap) {
+
         CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
         Root<AuditTrace> root = query.from(AuditTrace.class);
 
@@ -40,9 +100,6 @@ public final class AuditTraceSpecifications {
         Selection<?> orderSelection = null;
         String orderDirection = getStringValue(parameterMap.get("order"), "asc");
 
-        int pageOffset = getIntValue(parameterMap.get("offset"), 0);
-        int pagesize = getIntValue(parameterMap.get("limit"), 20);
-
         ArrayList<Selection<?>> selectionList = new ArrayList<Selection<?>>();
         ArrayList<String> colList = new ArrayList<String>();
 
@@ -108,51 +165,48 @@ public final class AuditTraceSpecifications {
             }
         }
 
-        query.where(pred);
-
-        Sort.Direction sortDir = Sort.Direction.ASC;
+        boolean ascending = "asc".equalsIgnoreCase(orderDirection);
+        Expression<Long> idExpression = root.get(AuditTrace_.id);
+        Expression<?> sortExpression = "id".equals(sortCol) ? null : (Expression<?>) orderSelection;
 
-        // care for the ordering
-        if ("asc".equalsIgnoreCase(orderDirection)) {
-            query.orderBy(cb.asc((Expression<?>) orderSelection));
-        } else {
-            query.orderBy(cb.desc((Expression<?>) orderSelection));
-            sortDir = Sort.Direction.DESC;
+        // keyset paging: continue after the last row of the previous page
+        Long afterId = getAfterId(parameterMap);
+        if (afterId != null) {
+            Predicate keysetPred = buildKeysetPredicate(cb, sortExpression, idExpression,
+                getStringValue(parameterMap.get(AFTER), ""), afterId, ascending);
+            pred = (pred == null) ? keysetPred : cb.and(pred, keysetPred);
         }
 
-        query.multiselect(selectionList);
-//    	query.distinct(true);
-
-        TypedQuery<Object[]> typedQuery = entityManager.createQuery(query);
-        typedQuery.setMaxResults(pagesize);
-        typedQuery.setFirstResult(pageOffset);
-
-        try {
-            logger.debug("assembled query: " + typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString());
-        } catch (Exception e) {
-            logger.debug("failed in retrieve sql query", e);
-        }
-
-        // submit the query
-        List<Object[]> listResponse = typedQuery.getResultList();
+        query.where(pred);
 
-        // use the result set to fill the response object
-        List<AuditTraceView> certViewList = new ArrayList<AuditTraceView>();
-        for (Object[] objArr : listResponse) {
+        // care for the ordering, the id makes it unique
+        query.orderBy(buildOrderList(cb, sortExpression, idExpression, ascending));
 
-            if (logger.isDebugEnabled() && (objArr.length != colList.size())) {
-                logger.debug("objArr len {}, colList len {}", objArr.length, colList.size());
-            }
+        query.multiselect(selectionList);
+//    	query.distinct(true);
 
-            AuditTraceView cv = buildAuditTraceViewFromObjArr(colList, objArr);
+        return new ViewQuery(query, colList, selectionMap, sortCol, ascending);
+    }
 
-            certViewList.add(cv);
-        }
+    /**
+     * stream all audit trace views of a selection, offset and limit are ignored
+     *
+     * @param consumer receives the views in the order of the selection
+     * @return the number of views
+     */
+    public static long streamQueryParamsAuditTraceView(EntityManager entityManager,
+                                                       CriteriaBuilder cb,
+                                                       Map<String, String[]> parameterMap,
+                                                       Consumer<AuditTraceView> consumer) {
 
-        // start again to retrieve the row count
-        Pageable pageable = PageRequest.of(pageOffset / pagesize, pagesize, sortDir, sortCol);
+        ViewQuery viewQuery = buildAuditTraceViewQuery(cb, parameterMap);
+        return scrollViews(entityManager, viewQuery, AuditTraceSpecifications::buildAuditTraceViewFromObjArr, consumer);
+    }
 
-        Long nTotalElements = 1000L;
+    private static Long countAuditTraces(EntityManager entityManager,
+                                         CriteriaBuilder cb,
+                                         String[] columnArr,
+                                         Map<String, List<SelectionData>> selectionMap) {
 
         CriteriaQuery<Long> queryCount = cb.createQuery(Long.class);
         Root<AuditTrace> iRoot = queryCount.from(AuditTrace.class);
@@ -163,7 +217,6 @@ public final class AuditTraceSpecifications {
 
         // walk thru all requested columns
         for (String col : columnArr) {
-            colList.add(col);
 
             if (selectionMap.containsKey(col)) {
                 List<SelectionData> selDataList = selectionMap.get(col);
@@ -207,14 +260,13 @@ public final class AuditTraceSpecifications {
 
         queryCount.where(predCount);
 
-        nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
+        Long nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
         logger.debug("buildPredicate selects {} elements ", nTotalElements);
 
-        return new PageImpl<AuditTraceView>(certViewList, pageable, nTotalElements);
-
+        return nTotalElements;
     }
 
-    private static AuditTraceView buildAuditTraceViewFromObjArr(ArrayList<String> colList, Object[] objArr) {
+    private static AuditTraceView buildAuditTraceViewFromObjArr(List<String> colList, Object[] objArr) {
         AuditTraceView atv = new AuditTraceView();
         int i = 0;
 
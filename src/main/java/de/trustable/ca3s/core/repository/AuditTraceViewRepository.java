@@ -3,10 +3,12 @@ package de.trustable.ca3s.core.repository;
 import de.trustable.ca3s.core.service.dto.AuditTraceView;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
 import java.util.Map;
+import java.util.function.Consumer;
 
 
 @Service
@@ -28,4 +30,22 @@ public class AuditTraceViewRepository {
 
 	}
 
+    /**
+     * stream the complete selection, offset and limit are ignored
+     *
+     * @param parameterMap the selection parameters
+     * @param consumer receives the views in the order of the selection
+     * @return the number of views
+     */
+    @Transactional(readOnly = true)
+    public long streamSelection(Map<String, String[]> parameterMap, Consumer<AuditTraceView> consumer) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        return AuditTraceSpecifications.streamQueryParamsAuditTraceView(entityManager,
+            cb,
+            parameterMap,
+            consumer);
+    }
+
 }
@@ -14,6 +14,7 @@ import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static de.trustable.ca3s.core.repository.SpecificationsHelper.*;
@@ -36,6 +37,67 @@ public final class CSRSpecifications {
                                                          List<String> csrSelectionAttributes,
                                                          List<Long> pipelineIds) {
 
+        int pageOffset = getIntValue(parameterMap.get("offset"), 0);
+        int pagesize = getIntValue(parameterMap.get("limit"), 20);
+
+        ViewQuery viewQuery = buildCSRViewQuery(cb, parameterMap, csrSelectionAttributes, pipelineIds);
+        CriteriaQuery<Object[]> query = viewQuery.query;
+        List<String> colList = viewQuery.colList;
+        String sortCol = viewQuery.sortCol;
+        Long afterId = getAfterId(parameterMap);
+        Sort.Direction sortDir = viewQuery.ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+        // without a count, an additional row tells whether there is a following page
+        boolean countNone = COUNT_NONE.equals(getCountMode(parameterMap));
+
+        TypedQuery<Object[]> typedQuery = entityManager.createQuery(query);
+        typedQuery.setMaxResults(countNone ? pagesize + 1 : pagesize);
+        typedQuery.setFirstResult(afterId == null ? pageOffset : 0);
+
+        try {
+            logger.debug("assembled query: " + typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString());
+        } catch (Exception e) {
+            logger.debug("failed in retrieve sql query", e);
+        }
+
+        // submit the query
+        List<Object[]> listResponse = typedQuery.getResultList();
+
+        boolean hasMore = listResponse.size() > pagesize;
+        if (hasMore) {
+            listResponse = listResponse.subList(0, pagesize);
+        }
+
+        // use the result set to fill the response object
+        List<CSRView> certViewList = new ArrayList<>();
+        for (Object[] objArr : listResponse) {
+
+            if (logger.isDebugEnabled() && (objArr.length != colList.size())) {
+                logger.debug("objArr len {}, colList len {}", objArr.length, colList.size());
+            }
+
+            CSRView cv = buildCSRViewFromObjArr(colList, objArr);
+
+            certViewList.add(cv);
+        }
+
+        Pageable pageable = PageRequest.of(pageOffset / pagesize, pagesize, sortDir, sortCol);
+
+        // start again to retrieve the row count, if requested
+        String countCacheKey = buildCountCacheKey("CSR", parameterMap, csrSelectionAttributes, pipelineIds);
+        return buildPage(certViewList, pageable, pageOffset, hasMore, parameterMap, countCacheKey,
+            () -> countCSRs(entityManager, cb, new HashSet<>(colList), viewQuery.selectionMap, csrSelectionAttributes));
+
+    }
+
+    /**
+     * build the selection query of CSR views from the request parameters, without paging
+     */
+    static ViewQuery buildCSRViewQuery(CriteriaBuilder cb,
+                                       Map<String, String[]> parameterMap,
+                                       List<String> csrSelectionAttributes,
+                                       List<Long> pipelineIds) {
+
         CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
         Root<CSR> root = query.from(CSR.class);
 
@@ -43,9 +105,6 @@ public final class CSRSpecifications {
         Selection<?> orderSelection = null;
         String orderDirection = getStringValue(parameterMap.get("order"), "asc");
 
-        int pageOffset = getIntValue(parameterMap.get("offset"), 0);
-        int pagesize = getIntValue(parameterMap.get("limit"), 20);
-
         ArrayList<Selection<?>> selectionList = new ArrayList<>();
         ArrayList<String> colList = new ArrayList<>();
 
@@ -133,51 +192,51 @@ public final class CSRSpecifications {
             }
         }
 
-        query.where(pred);
-
-        Sort.Direction sortDir = Sort.Direction.ASC;
-
-        // care for the ordering
-        if ("asc".equalsIgnoreCase(orderDirection)) {
-            query.orderBy(cb.asc((Expression<?>) orderSelection));
-        } else {
-            query.orderBy(cb.desc((Expression<?>) orderSelection));
-            sortDir = Sort.Direction.DESC;
-        }
-
-        query.multiselect(selectionList);
-//    	query.distinct(true);
-
-        TypedQuery<Object[]> typedQuery = entityManager.createQuery(query);
-        typedQuery.setMaxResults(pagesize);
-        typedQuery.setFirstResult(pageOffset);
+        boolean ascending = "asc".equalsIgnoreCase(orderDirection);
+        Expression<Long> idExpression = root.get(CSR_.id);
+        Expression<?> sortExpression = "id".equals(sortCol) ? null : (Expression<?>) orderSelection;
 
-        try {
-            logger.debug("assembled query: " + typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString());
-        } catch (Exception e) {
-            logger.debug("failed in retrieve sql query", e);
+        // keyset paging: continue after the last row of the previous page
+        Long afterId = getAfterId(parameterMap);
+        if (afterId != null) {
+            Predicate keysetPred = buildKeysetPredicate(cb, sortExpression, idExpression,
+                getStringValue(parameterMap.get(AFTER), ""), afterId, ascending);
+            pred = (pred == null) ? keysetPred : cb.and(pred, keysetPred);
         }
 
-        // submit the query
-        List<Object[]> listResponse = typedQuery.getResultList();
-
-        // use the result set to fill the response object
-        List<CSRView> certViewList = new ArrayList<>();
-        for (Object[] objArr : listResponse) {
+        query.where(pred);
 
-            if (logger.isDebugEnabled() && (objArr.length != colList.size())) {
-                logger.debug("objArr len {}, colList len {}", objArr.length, colList.size());
-            }
+        // care for the ordering, the id makes it unique
+        query.orderBy(buildOrderList(cb, sortExpression, idExpression, ascending));
 
-            CSRView cv = buildCSRViewFromObjArr(colList, objArr);
+        query.multiselect(selectionList);
+//    	query.distinct(true);
 
-            certViewList.add(cv);
-        }
+        return new ViewQuery(query, colList, selectionMap, sortCol, ascending);
+    }
 
-        // start again to retrieve the row count
-        Pageable pageable = PageRequest.of(pageOffset / pagesize, pagesize, sortDir, sortCol);
+    /**
+     * stream all CSR views of a selection, offset and limit are ignored
+     *
+     * @param consumer receives the views in the order of the selection
+     * @return the number of views
+     */
+    public static long streamQueryParamsCSRView(EntityManager entityManager,
+                                                CriteriaBuilder cb,
+                                                Map<String, String[]> parameterMap,
+                                                List<String> csrSelectionAttributes,
+                                                List<Long> pipelineIds,
+                                                Consumer<CSRView> consumer) {
+
+        ViewQuery viewQuery = buildCSRViewQuery(cb, parameterMap, csrSelectionAttributes, pipelineIds);
+        return scrollViews(entityManager, viewQuery, CSRSpecifications::buildCSRViewFromObjArr, consumer);
+    }
 
-        Long nTotalElements;
+    private static Long countCSRs(EntityManager entityManager,
+                                  CriteriaBuilder cb,
+                                  Set<String> columnSet,
+                                  Map<String, List<SelectionData>> selectionMap,
+                                  List<String> csrSelectionAttributes) {
 
         CriteriaQuery<Long> queryCount = cb.createQuery(Long.class);
         Root<CSR> iRoot = queryCount.from(CSR.class);
@@ -188,7 +247,6 @@ public final class CSRSpecifications {
 
         // walk thru all requested columns
         for (String col : columnSet) {
-            colList.add(col);
 
             if (selectionMap.containsKey(col)) {
                 List<SelectionData> selDataList = selectionMap.get(col);
@@ -234,14 +292,13 @@ public final class CSRSpecifications {
 
         queryCount.where(predCount);
 
-        nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
+        Long nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
         logger.debug("buildPredicate selects {} elements ", nTotalElements);
 
-        return new PageImpl<>(certViewList, pageable, nTotalElements);
-
+        return nTotalElements;
     }
 
-    private static CSRView buildCSRViewFromObjArr(ArrayList<String> colList, Object[] objArr) {
+    private static CSRView buildCSRViewFromObjArr(List<String> colList, Object[] objArr) {
         CSRView cv = new CSRView();
         int i = 0;
 
@@ -3,6 +3,7 @@ package de.trustable.ca3s.core.repository;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -12,6 +13,7 @@ import de.trustable.ca3s.core.service.util.CSRUtil;
 import de.trustable.ca3s.core.service.util.CertificateSelectionUtil;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import de.trustable.ca3s.core.service.dto.CSRView;
 
@@ -42,6 +44,27 @@ public class CSRViewRepository {
             pipelineIds);
 	}
 
+    /**
+     * stream the complete selection, offset and limit are ignored
+     *
+     * @param parameterMap the selection parameters
+     * @param pipelineIds the pipelines administrable by the current user
+     * @param consumer receives the views in the order of the selection
+     * @return the number of views
+     */
+    @Transactional(readOnly = true)
+    public long streamSelection(Map<String, String[]> parameterMap, List<Long> pipelineIds, Consumer<CSRView> consumer) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        return CSRSpecifications.streamQueryParamsCSRView(entityManager,
+            cb,
+            parameterMap,
+            certificateSelectionAttributeList.getCertificateSelectionAttributes(),
+            pipelineIds,
+            consumer);
+    }
+
     public Optional<CSRView> findbyCSRId(final Long csrId) {
 
         Optional<CSR> optCSR = csrRepository.findById(csrId);
@@ -3,8 +3,11 @@ package de.trustable.ca3s.core.repository;
 import de.trustable.ca3s.core.domain.CertificateAttribute;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * Spring Data  repository for the CertificateAttribute entity.
  */
@@ -12,4 +15,10 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface CertificateAttributeRepository extends JpaRepository<CertificateAttribute, Long> {
 
+    @Modifying
+    @Query(name = "CertificateAttribute.updateValueByNameAndCertificateIds")
+    int updateValueByNameAndCertificateIds(@Param("name") String name,
+                                           @Param("value") String value,
+                                           @Param("certificateIds") List<Long> certificateIds);
+
 }
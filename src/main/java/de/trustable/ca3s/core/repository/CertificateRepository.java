@@ -1,5 +1,6 @@
 package de.trustable.ca3s.core.repository;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 import javax.persistence.NamedQuery;
@@ -25,6 +26,10 @@ public interface CertificateRepository extends JpaRepository<Certificate, Long>
 	  List<Certificate> findByIssuerSerial(@Param("issuer") String issuer,
 	      @Param("serial") String serial);
 
+	  @Query(name = "Certificate.findRevokedByIssuerSince")
+	  List<Certificate> findRevokedByIssuerSince(@Param("issuer") String issuer,
+	      @Param("since") Instant since);
+
 	  @Query(name = "Certificate.findCACertByIssuer")
 	  List<Certificate> findCACertByIssuer(@Param("issuer") String issuer);
 
@@ -96,9 +101,21 @@ public interface CertificateRepository extends JpaRepository<Certificate, Long>
     @Query(name = "Certificate.findActiveCertificateOrderedByCrlURL")
     List<Object[]> findActiveCertificateOrderedByCrlURL();
 
+    @Query(name = "Certificate.findActiveCertificateIdSerialByCrlURL")
+    List<Object[]> findActiveCertificateIdSerialByCrlURL();
+
     @Query(name = "Certificate.findCrlURLForActiveCertificates")
     List<String> findCrlURLForActiveCertificates();
 
+    @Query(name = "Certificate.findIdTBSDigestByTBSDigests")
+    List<Object[]> findIdTBSDigestByTBSDigests(@Param("tbsDigests") Collection<String> tbsDigests);
+
+    @Query(name = "Certificate.findByIdsWithDetails")
+    List<Certificate> findByIdsWithDetails(@Param("ids") Collection<Long> ids);
+
+    @Query(name = "Certificate.findCACertificateRefBySKI")
+    List<Object[]> findCACertificateRefBySKI();
+
     @Query(name = "Certificate.findActiveCertificateBySerial")
     List<Certificate> findActiveCertificateBySerial( @Param("serial") String serial );
 
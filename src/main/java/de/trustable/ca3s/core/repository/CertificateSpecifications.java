@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static de.trustable.ca3s.core.repository.SpecificationsHelper.*;
 
@@ -120,6 +121,8 @@ public final class CertificateSpecifications {
 	}
 
     /**
+     * Pages by 'offset' or, if 'afterId' and 'after' hold the id and the sort value of the last row of the previous page,
+     * by keyset. The 'count' parameter selects an 'exact' (default), a 'cached' or no ('none') total count.
      *
      * @param entityManager    EntityManager
      * @param cb CriteriaBuilder
@@ -134,6 +137,78 @@ public final class CertificateSpecifications {
 
 		long startTime = System.currentTimeMillis();
 
+    	int pageOffset = getIntValue( parameterMap.get("offset"), 0 );
+    	int pagesize = getIntValue( parameterMap.get("limit"), 20 );
+
+        logger.debug("buildPredicate: offset '{}', limit '{}' ", pageOffset, pagesize);
+
+		ViewQuery viewQuery = buildCertificateViewQuery(cb, parameterMap, certificateSelectionAttributes);
+		CriteriaQuery<Object[]> query = viewQuery.query;
+		List<String> colList = viewQuery.colList;
+		String sortCol = viewQuery.sortCol;
+		Long afterId = getAfterId(parameterMap);
+		Sort.Direction sortDir = viewQuery.ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+		// without a count, an additional row tells whether there is a following page
+		boolean countNone = COUNT_NONE.equals(getCountMode(parameterMap));
+
+    	TypedQuery<Object[]> typedQuery = entityManager.createQuery(query);
+    	typedQuery.setMaxResults(countNone ? pagesize + 1 : pagesize);
+    	typedQuery.setFirstResult(afterId == null ? pageOffset : 0);
+
+    	try {
+    		logger.debug("assembled query: " + typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString());
+    	}catch( Exception e ){
+    		logger.debug("failed in retrieve sql query", e);
+    	}
+
+		long queryStartTime = System.currentTimeMillis();
+
+    	// submit the query
+    	List<Object[]> listResponse = typedQuery.getResultList();
+
+		logger.debug("typedQuery.getResultList() took {} msecs", System.currentTimeMillis() - queryStartTime);
+
+		boolean hasMore = listResponse.size() > pagesize;
+		if( hasMore ) {
+			listResponse = listResponse.subList(0, pagesize);
+		}
+
+    	// use the result set to fill the response object
+    	List<CertificateView> certViewList = new ArrayList<CertificateView>();
+        for (Object[] objArr : listResponse) {
+
+            if (logger.isDebugEnabled() && (objArr.length != colList.size())) {
+                logger.debug("objArr len {}, colList len {}", objArr.length, colList.size());
+            }
+
+            CertificateView cv = buildCertificateViewFromObjArr(colList, objArr);
+
+            certViewList.add(cv);
+        }
+
+        Pageable pageable = PageRequest.of(pageOffset / pagesize, pagesize, sortDir, sortCol);
+
+		// start again to retrieve the row count, if requested
+		String countCacheKey = buildCountCacheKey("Certificate", parameterMap, certificateSelectionAttributes);
+		final String[] countColumnArr = colList.toArray(new String[0]);
+		final Map<String, List<SelectionData>> selectionMap = viewQuery.selectionMap;
+		Page<CertificateView> page = buildPage(certViewList, pageable, pageOffset, hasMore, parameterMap, countCacheKey,
+			() -> countCertificates(entityManager, cb, countColumnArr, selectionMap, certificateSelectionAttributes));
+
+		logger.debug("buildPredicate selects {} elements in {} msecs", page.getTotalElements(), System.currentTimeMillis() - startTime);
+
+        return page;
+
+	}
+
+	/**
+	 * build the selection query of certificate views from the request parameters, without paging
+	 */
+	static ViewQuery buildCertificateViewQuery(CriteriaBuilder cb,
+											   Map<String, String[]> parameterMap,
+											   List<String> certificateSelectionAttributes) {
+
 		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
 		Root<Certificate> root = query.from(Certificate.class);
 
@@ -141,11 +216,6 @@ public final class CertificateSpecifications {
 		Selection<?> orderSelection = null;
 		String orderDirection = getStringValue(parameterMap.get("order"), "asc");
 
-    	int pageOffset = getIntValue( parameterMap.get("offset"), 0 );
-    	int pagesize = getIntValue( parameterMap.get("limit"), 20 );
-
-        logger.debug("buildPredicate: offset '{}', limit '{}' ", pageOffset, pagesize);
-
         ArrayList<Selection<?>> selectionList = new ArrayList<Selection<?>>();
 		ArrayList<String> colList = new ArrayList<String>();
 
@@ -241,55 +311,50 @@ public final class CertificateSpecifications {
 			}
     	}
 
-		query.where(pred);
-
-    	Sort.Direction sortDir = Sort.Direction.ASC;
+		boolean ascending = "asc".equalsIgnoreCase(orderDirection);
+		Expression<Long> idExpression = root.get(Certificate_.id);
+		Expression<?> sortExpression = "id".equals(sortCol) ? null : (Expression<?>) orderSelection;
 
-		// care for the ordering
-		if( "asc".equalsIgnoreCase(orderDirection)) {
-			query.orderBy(cb.asc((Expression<?>) orderSelection));
-		}else {
-			query.orderBy(cb.desc((Expression<?>) orderSelection));
-	    	sortDir = Sort.Direction.DESC;
+		// keyset paging: continue after the last row of the previous page
+		Long afterId = getAfterId(parameterMap);
+		if( afterId != null) {
+			Predicate keysetPred = buildKeysetPredicate(cb, sortExpression, idExpression,
+				getStringValue(parameterMap.get(AFTER), ""), afterId, ascending);
+			pred = (pred == null) ? keysetPred : cb.and(pred, keysetPred);
 		}
 
-		query.multiselect(selectionList);
-//    	query.distinct(true);
-
-    	TypedQuery<Object[]> typedQuery = entityManager.createQuery(query);
-    	typedQuery.setMaxResults(pagesize);
-    	typedQuery.setFirstResult(pageOffset);
-
-    	try {
-    		logger.debug("assembled query: " + typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString());
-    	}catch( Exception e ){
-    		logger.debug("failed in retrieve sql query", e);
-    	}
-
-		long queryStartTime = System.currentTimeMillis();
-
-    	// submit the query
-    	List<Object[]> listResponse = typedQuery.getResultList();
-
-		logger.debug("typedQuery.getResultList() took {} msecs", System.currentTimeMillis() - queryStartTime);
-
-    	// use the result set to fill the response object
-    	List<CertificateView> certViewList = new ArrayList<CertificateView>();
-        for (Object[] objArr : listResponse) {
+		query.where(pred);
 
-            if (logger.isDebugEnabled() && (objArr.length != colList.size())) {
-                logger.debug("objArr len {}, colList len {}", objArr.length, colList.size());
-            }
+		// care for the ordering, the id makes it unique
+		query.orderBy(buildOrderList(cb, sortExpression, idExpression, ascending));
 
-            CertificateView cv = buildCertificateViewFromObjArr(colList, objArr);
+		query.multiselect(selectionList);
+//    	query.distinct(true);
 
-            certViewList.add(cv);
-        }
+		return new ViewQuery(query, colList, selectionMap, sortCol, ascending);
+	}
 
-    	// start again to retrieve the row count
-        Pageable pageable = PageRequest.of(pageOffset / pagesize, pagesize, sortDir, sortCol);
+	/**
+	 * stream all certificate views of a selection, offset and limit are ignored
+	 *
+	 * @param consumer receives the views in the order of the selection
+	 * @return the number of views
+	 */
+	public static long streamQueryParamsCertificateView(EntityManager entityManager,
+														CriteriaBuilder cb,
+														Map<String, String[]> parameterMap,
+														List<String> certificateSelectionAttributes,
+														Consumer<CertificateView> consumer) {
+
+		ViewQuery viewQuery = buildCertificateViewQuery(cb, parameterMap, certificateSelectionAttributes);
+		return scrollViews(entityManager, viewQuery, CertificateSpecifications::buildCertificateViewFromObjArr, consumer);
+	}
 
-        Long nTotalElements = 1000L;
+	private static Long countCertificates(EntityManager entityManager,
+										  CriteriaBuilder cb,
+										  String[] columnArr,
+										  Map<String, List<SelectionData>> selectionMap,
+										  List<String> certificateSelectionAttributes) {
 
         CriteriaQuery<Long> queryCount = cb.createQuery(Long.class);
         Root<Certificate> iRoot = queryCount.from(Certificate.class);
@@ -302,7 +367,6 @@ public final class CertificateSpecifications {
 
 		// walk thru all requested columns
 		for( String col: columnArr) {
-			colList.add(col);
 
 			if( selectionMap.containsKey(col) ) {
 				List<SelectionData> selDataList = selectionMap.get(col);
@@ -330,7 +394,7 @@ public final class CertificateSpecifications {
 
 		}
 
-		selectionListDummy.clear();
+		ArrayList<Selection<?>> selectionListDummy = new ArrayList<Selection<?>>();
 		for( String selection: selectionMap.keySet()) {
 			boolean handled = false;
 			for( String col: columnArr) {
@@ -377,17 +441,14 @@ public final class CertificateSpecifications {
 
 		long countStartTime = System.currentTimeMillis();
 
-		nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
+		Long nTotalElements = entityManager.createQuery(queryCount).getSingleResult();
 
 		logger.debug("count getSingleResult() took {} msecs", System.currentTimeMillis() - countStartTime);
 
-		logger.debug("buildPredicate selects {} elements in {} msecs", nTotalElements, System.currentTimeMillis() - startTime);
-
-        return new PageImpl<CertificateView>(certViewList, pageable, nTotalElements);
-
+		return nTotalElements;
 	}
 
-	private static CertificateView buildCertificateViewFromObjArr(ArrayList<String> colList, Object[] objArr) {
+	private static CertificateView buildCertificateViewFromObjArr(List<String> colList, Object[] objArr) {
 		CertificateView cv = new CertificateView();
 		int i = 0;
 		for( String attribute: colList) {
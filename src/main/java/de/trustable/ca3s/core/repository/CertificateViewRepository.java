@@ -1,15 +1,22 @@
 package de.trustable.ca3s.core.repository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
 
 import de.trustable.ca3s.core.domain.Certificate;
 import de.trustable.ca3s.core.service.util.CertificateSelectionUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import de.trustable.ca3s.core.service.dto.CertificateView;
 
@@ -17,16 +24,29 @@ import de.trustable.ca3s.core.service.dto.CertificateView;
 @Service
 public class CertificateViewRepository {
 
+    /**
+     * keep the IN list below the limits of the supported databases
+     */
+    static final int MAX_IDS_PER_QUERY = 500;
+
     final private EntityManager entityManager;
 
     final private CertificateSelectionUtil certificateSelectionAttributeList;
 
     final private CertificateRepository certificateRepository;
 
-    public CertificateViewRepository(EntityManager entityManager, CertificateSelectionUtil certificateSelectionAttributeList, CertificateRepository certificateRepository) {
+    final private long chainStatusValidityMillis;
+
+    final private Map<Long, ChainStatus> chainStatusMap = new ConcurrentHashMap<>();
+
+    public CertificateViewRepository(EntityManager entityManager,
+                                     CertificateSelectionUtil certificateSelectionAttributeList,
+                                     CertificateRepository certificateRepository,
+                                     @Value("${ca3s.ui.chain.cache.seconds:300}") long chainStatusValiditySeconds) {
         this.entityManager = entityManager;
         this.certificateSelectionAttributeList = certificateSelectionAttributeList;
         this.certificateRepository = certificateRepository;
+        this.chainStatusValidityMillis = chainStatusValiditySeconds * 1000L;
     }
 
     public Page<CertificateView> findSelection(Map<String, String[]> parameterMap) {
@@ -40,6 +60,25 @@ public class CertificateViewRepository {
 
     }
 
+    /**
+     * stream the complete selection, offset and limit are ignored
+     *
+     * @param parameterMap the selection parameters
+     * @param consumer receives the views in the order of the selection
+     * @return the number of views
+     */
+    @Transactional(readOnly = true)
+    public long streamSelection(Map<String, String[]> parameterMap, Consumer<CertificateView> consumer) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        return CertificateSpecifications.streamQueryParamsCertificateView(entityManager,
+            cb,
+            parameterMap,
+            certificateSelectionAttributeList.getCertificateSelectionAttributes(),
+            consumer);
+    }
+
     public Optional<CertificateView> findbyCertificateId(final Long certificateId) {
 
         Optional<Certificate> optCert = certificateRepository.findById(certificateId);
@@ -48,4 +87,59 @@ public class CertificateViewRepository {
         }
         return Optional.empty();
     }
+
+    /**
+     * build the full views of a list of certificates, e.g. a result page.
+     * The certificates are loaded with their attributes, comment and CSR in one query per chunk of ids.
+     * The chain status is taken from a cache, keyed by the issuing certificate.
+     *
+     * @param certificateIdList the certificate ids
+     * @return the views in the order of the given ids, unknown ids are skipped
+     */
+    public List<CertificateView> findByCertificateIds(final List<Long> certificateIdList) {
+
+        Map<Long, Certificate> certMap = new HashMap<>();
+        for (int i = 0; i < certificateIdList.size(); i += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = certificateIdList.subList(i, Math.min(i + MAX_IDS_PER_QUERY, certificateIdList.size()));
+            for (Certificate cert : certificateRepository.findByIdsWithDetails(chunk)) {
+                certMap.put(cert.getId(), cert);
+            }
+        }
+
+        List<CertificateView> cvList = new ArrayList<>(certMap.size());
+        for (Long id : certificateIdList) {
+            Certificate cert = certMap.get(id);
+            if (cert != null) {
+                cvList.add(new CertificateView(cert, isFullChainAvailable(cert)));
+            }
+        }
+        return cvList;
+    }
+
+    boolean isFullChainAvailable(final Certificate cert) {
+
+        Certificate issuer = cert.getIssuingCertificate();
+        if (issuer == null) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        ChainStatus chainStatus = chainStatusMap.get(issuer.getId());
+        if (chainStatus == null || chainStatus.expiresAt < now) {
+            chainStatus = new ChainStatus(CertificateView.isChainComplete(issuer), now + chainStatusValidityMillis);
+            chainStatusMap.put(issuer.getId(), chainStatus);
+        }
+        return chainStatus.fullChainAvailable;
+    }
+
+    private static final class ChainStatus {
+
+        private final boolean fullChainAvailable;
+        private final long expiresAt;
+
+        ChainStatus(boolean fullChainAvailable, long expiresAt) {
+            this.fullChainAvailable = fullChainAvailable;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
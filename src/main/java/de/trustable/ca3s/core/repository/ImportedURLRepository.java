@@ -19,5 +19,8 @@ public interface ImportedURLRepository extends JpaRepository<ImportedURL, Long>
 	  @Query(name = "ImportedURL.findByURL")
 	  List<ImportedURL> findEntityByUrl(@Param("url") String url);
 
+	  @Query(name = "ImportedURL.findByURLPrefix")
+	  List<ImportedURL> findEntityByUrlPrefix(@Param("prefix") String prefix);
+
 	
 }
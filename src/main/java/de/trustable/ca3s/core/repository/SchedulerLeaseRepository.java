@@ -0,0 +1,56 @@
+package de.trustable.ca3s.core.repository;
+
+import de.trustable.ca3s.core.domain.SchedulerLease;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+
+/**
+ * Spring Data  repository for the SchedulerLease entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, Long> {
+
+    @Query(name = "SchedulerLease.findByJobName")
+    List<SchedulerLease> findByJobName(@Param("jobName") String jobName);
+
+    @Query(name = "SchedulerLease.findActiveOwnersByJobNamePrefix")
+    List<String> findActiveOwnersByJobNamePrefix(@Param("prefix") String prefix, @Param("now") Instant now);
+
+    /**
+     * take over an expired lease or prolong an own lease
+     *
+     * @return 1 if the lease is held by 'owner' until 'leaseUntil', 0 otherwise
+     */
+    @Modifying
+    @Query(name = "SchedulerLease.acquire")
+    int acquire(@Param("jobName") String jobName,
+                @Param("owner") String owner,
+                @Param("now") Instant now,
+                @Param("leaseUntil") Instant leaseUntil);
+
+    @Modifying
+    @Query(name = "SchedulerLease.renewByOwner")
+    int renewByOwner(@Param("owner") String owner,
+                     @Param("now") Instant now,
+                     @Param("leaseUntil") Instant leaseUntil);
+
+    @Modifying
+    @Query(name = "SchedulerLease.releaseByOwner")
+    int releaseByOwner(@Param("owner") String owner,
+                       @Param("expired") Instant expired);
+
+    /**
+     * remove the leases of instances gone for good
+     */
+    @Modifying
+    @Query(name = "SchedulerLease.deleteExpiredByJobNamePrefix")
+    int deleteExpiredByJobNamePrefix(@Param("prefix") String prefix,
+                                     @Param("expiredBefore") Instant expiredBefore);
+}
@@ -4,18 +4,36 @@ import de.trustable.ca3s.core.service.dto.Selector;
 import de.trustable.ca3s.core.service.util.DateUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+
+import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Selection;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 public final class SpecificationsHelper {
@@ -25,6 +43,30 @@ public final class SpecificationsHelper {
     static final String SORT = "sort";
     static final String ORDER = "order";
 
+    // keyset paging: sort value and id of the last row of the previous page
+    static final String AFTER = "after";
+    static final String AFTER_ID = "afterId";
+
+    static final String COUNT = "count";
+    static final String COUNT_EXACT = "exact";
+    static final String COUNT_CACHED = "cached";
+    static final String COUNT_NONE = "none";
+
+    static final Set<String> NON_FILTER_PARAMS = new HashSet<>(Arrays.asList("offset", "limit", SORT, ORDER, AFTER, AFTER_ID, COUNT));
+
+    // rows fetched per roundtrip when streaming a selection
+    static final int EXPORT_FETCH_SIZE = 500;
+
+    static final int COUNT_CACHE_SIZE = 1000;
+    static final long COUNT_CACHE_TTL_MILLIS = 60_000L;
+
+    private static final Map<String, CachedCount> COUNT_CACHE = new LinkedHashMap<String, CachedCount>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+            return size() > COUNT_CACHE_SIZE;
+        }
+    };
+
     private SpecificationsHelper() {
     }
 
@@ -293,4 +335,244 @@ public final class SpecificationsHelper {
         return cb.conjunction();
 
     }
+
+    /**
+     * Read the id of the last row of the previous page, requesting keyset paging.
+     *
+     * @param parameterMap the request parameters
+     * @return the id or null if paging by offset
+     */
+    static Long getAfterId(Map<String, String[]> parameterMap) {
+        String afterId = getStringValue(parameterMap.get(AFTER_ID), "").trim();
+        if (afterId.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(afterId);
+        } catch (NumberFormatException nfe) {
+            logger.debug("ignoring unparsable keyset id '{}'", afterId);
+            return null;
+        }
+    }
+
+    static String getCountMode(Map<String, String[]> parameterMap) {
+        String countMode = getStringValue(parameterMap.get(COUNT), COUNT_EXACT).trim();
+        if (COUNT_NONE.equalsIgnoreCase(countMode)) {
+            return COUNT_NONE;
+        } else if (COUNT_CACHED.equalsIgnoreCase(countMode)) {
+            return COUNT_CACHED;
+        }
+        return COUNT_EXACT;
+    }
+
+    /**
+     * Order by the sort column and use the id as tie-breaker, giving a stable order for keyset paging.
+     * Null values of the sort column are explicitly ordered in front of all other values in ascending order (and
+     * behind them in descending order), the databases differ in their default.
+     *
+     * @param sortExpression the sort column, null if sorting by id
+     */
+    static List<Order> buildOrderList(CriteriaBuilder cb, Expression<?> sortExpression, Expression<Long> idExpression, boolean ascending) {
+        List<Order> orderList = new ArrayList<>();
+        if (sortExpression != null) {
+            Expression<Integer> nullsFirst = cb.<Integer>selectCase().when(cb.isNull(sortExpression), 0).otherwise(1);
+            orderList.add(ascending ? cb.asc(nullsFirst) : cb.desc(nullsFirst));
+            orderList.add(ascending ? cb.asc(sortExpression) : cb.desc(sortExpression));
+        }
+        orderList.add(ascending ? cb.asc(idExpression) : cb.desc(idExpression));
+        return orderList;
+    }
+
+    /**
+     * Select the rows following the row with the given sort value and id in the order of {@link #buildOrderList}:
+     * null values of the sort column in front of all other values in ascending order.
+     *
+     * @param sortExpression the sort column, null if sorting by id
+     * @param afterValue     the sort value of the last row of the previous page, empty for null
+     * @param afterId        the id of the last row of the previous page
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Predicate buildKeysetPredicate(CriteriaBuilder cb, Expression<?> sortExpression, Expression<Long> idExpression,
+                                          String afterValue, long afterId, boolean ascending) {
+
+        Predicate idPred = ascending ? cb.greaterThan(idExpression, afterId) : cb.lessThan(idExpression, afterId);
+        if (sortExpression == null) {
+            return idPred;
+        }
+
+        Comparable value;
+        try {
+            value = parseSortValue(sortExpression.getJavaType(), afterValue);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            logger.debug("keyset value '{}' not parsable, selecting nothing", afterValue);
+            return cb.disjunction();
+        }
+
+        Expression sortExpr = sortExpression;
+        if (value == null) {
+            if (ascending) {
+                return cb.or(cb.and(cb.isNull(sortExpr), idPred), cb.isNotNull(sortExpr));
+            }
+            return cb.and(cb.isNull(sortExpr), idPred);
+        }
+
+        Predicate beyondPred = ascending ? cb.greaterThan(sortExpr, value) : cb.lessThan(sortExpr, value);
+        Predicate tiePred = cb.and(cb.equal(sortExpr, value), idPred);
+        if (ascending) {
+            return cb.or(beyondPred, tiePred);
+        }
+        return cb.or(beyondPred, tiePred, cb.isNull(sortExpr));
+    }
+
+    /**
+     * Convert the sort value of a row, as sent to the client, back into the type of the sort column.
+     * Instants are accepted as epoch millis or in ISO-8601 format.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Comparable<?> parseSortValue(Class<?> javaType, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        if (Long.class.equals(javaType) || long.class.equals(javaType)) {
+            return Long.valueOf(trimmed);
+        } else if (Integer.class.equals(javaType) || int.class.equals(javaType)) {
+            return Integer.valueOf(trimmed);
+        } else if (Boolean.class.equals(javaType) || boolean.class.equals(javaType)) {
+            return Boolean.valueOf(trimmed);
+        } else if (Instant.class.equals(javaType)) {
+            if (trimmed.matches("-?\\d+")) {
+                return Instant.ofEpochMilli(Long.parseLong(trimmed));
+            }
+            return Instant.parse(trimmed);
+        } else if (javaType != null && javaType.isEnum()) {
+            return Enum.valueOf((Class<Enum>) javaType, trimmed);
+        }
+        return value;
+    }
+
+    /**
+     * Build the page, counting the total number of elements as requested by the 'count' parameter:
+     * 'exact' runs the count query, 'cached' reuses a recent count of the same selection and 'none' just tells
+     * whether there is a following page.
+     *
+     * @param content       the rows of the page, at most pagesize
+     * @param hasMore       more rows follow this page
+     * @param countCacheKey identifies the selection, see {@link #buildCountCacheKey}
+     * @param countSupplier runs the count query
+     */
+    static <T> Page<T> buildPage(List<T> content, Pageable pageable, int pageOffset, boolean hasMore,
+                                 Map<String, String[]> parameterMap, String countCacheKey, Supplier<Long> countSupplier) {
+
+        String countMode = getCountMode(parameterMap);
+        long nTotalElements;
+        if (COUNT_NONE.equals(countMode)) {
+            nTotalElements = pageOffset + content.size() + (hasMore ? 1 : 0);
+        } else if (COUNT_CACHED.equals(countMode)) {
+            nTotalElements = getCachedCount(countCacheKey, countSupplier);
+        } else {
+            nTotalElements = countSupplier.get();
+        }
+        logger.debug("count mode '{}' selects {} elements ", countMode, nTotalElements);
+        return new PageImpl<>(content, pageable, nTotalElements);
+    }
+
+    /**
+     * Identify a selection by the query type and all filter parameters, ignoring paging and ordering.
+     *
+     * @param queryType the type of the list
+     * @param extra     additional restrictions not contained in the parameters
+     */
+    static String buildCountCacheKey(String queryType, Map<String, String[]> parameterMap, Object... extra) {
+        TreeMap<String, String[]> sortedParams = new TreeMap<>(parameterMap);
+        StringBuilder sb = new StringBuilder(queryType);
+        for (Map.Entry<String, String[]> entry : sortedParams.entrySet()) {
+            if (NON_FILTER_PARAMS.contains(entry.getKey())) {
+                continue;
+            }
+            sb.append('&').append(entry.getKey()).append('=').append(Arrays.toString(entry.getValue()));
+        }
+        for (Object o : extra) {
+            sb.append('&').append(o);
+        }
+        return sb.toString();
+    }
+
+    static long getCachedCount(String countCacheKey, Supplier<Long> countSupplier) {
+        long now = System.currentTimeMillis();
+        synchronized (COUNT_CACHE) {
+            CachedCount cachedCount = COUNT_CACHE.get(countCacheKey);
+            if (cachedCount != null && cachedCount.validUntil > now) {
+                return cachedCount.count;
+            }
+        }
+
+        long count = countSupplier.get();
+        synchronized (COUNT_CACHE) {
+            COUNT_CACHE.put(countCacheKey, new CachedCount(count, now + COUNT_CACHE_TTL_MILLIS));
+        }
+        return count;
+    }
+
+    /**
+     * Stream all rows of a selection through a forward-only cursor, ignoring offset and limit.
+     * The persistence context is cleared regularly, so memory consumption does not grow with the number of rows.
+     * Must be called within a transaction, the cursor holds the connection until all rows are consumed.
+     *
+     * @param viewQuery   the selection
+     * @param viewBuilder builds a view from the selected columns and a row
+     * @param consumer    receives the views in the order of the selection
+     * @return the number of rows
+     */
+    static <T> long scrollViews(EntityManager entityManager, ViewQuery viewQuery,
+                                BiFunction<List<String>, Object[], T> viewBuilder, Consumer<T> consumer) {
+
+        long startTime = System.currentTimeMillis();
+
+        org.hibernate.query.Query<?> query = entityManager.createQuery(viewQuery.query).unwrap(org.hibernate.query.Query.class);
+        query.setFetchSize(EXPORT_FETCH_SIZE);
+        query.setReadOnly(true);
+
+        long nRows = 0;
+        try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept(viewBuilder.apply(viewQuery.colList, results.get()));
+                if (++nRows % EXPORT_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        logger.debug("streamed {} rows in {} msecs", nRows, System.currentTimeMillis() - startTime);
+        return nRows;
+    }
+
+    /**
+     * a selection query with its ordering and the names of the selected columns
+     */
+    static final class ViewQuery {
+        final CriteriaQuery<Object[]> query;
+        final List<String> colList;
+        final Map<String, List<SelectionData>> selectionMap;
+        final String sortCol;
+        final boolean ascending;
+
+        ViewQuery(CriteriaQuery<Object[]> query, List<String> colList, Map<String, List<SelectionData>> selectionMap,
+                  String sortCol, boolean ascending) {
+            this.query = query;
+            this.colList = colList;
+            this.selectionMap = selectionMap;
+            this.sortCol = sortCol;
+            this.ascending = ascending;
+        }
+    }
+
+    static final class CachedCount {
+        final long count;
+        final long validUntil;
+
+        CachedCount(long count, long validUntil) {
+            this.count = count;
+            this.validUntil = validUntil;
+        }
+    }
 }
@@ -8,6 +8,9 @@ import de.trustable.ca3s.core.domain.enumeration.ContentRelationType;
 import de.trustable.ca3s.core.domain.enumeration.CsrStatus;
 import de.trustable.ca3s.core.repository.AcmeOrderRepository;
 import de.trustable.ca3s.core.service.AuditService;
+import de.trustable.ca3s.core.service.util.AcmeNonceStore;
+import de.trustable.ca3s.core.service.util.AcmeOrderIssuanceExecutor;
+import de.trustable.ca3s.core.service.util.ClusterJobCoordinator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -23,32 +26,56 @@ import java.util.Optional;
  *
  */
 @Component
+@SchedulingLane(SchedulingLane.HOUSEKEEPING)
 public class ACMEExpiryScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(ACMEExpiryScheduler.class);
 
+    static final String JOB_ACME_EXPIRY = "acmeOrderExpiry";
+
     final private AcmeOrderRepository acmeOrderRepository;
     final private AuditService auditService;
+    final private AcmeNonceStore acmeNonceStore;
+    final private ClusterJobCoordinator jobCoordinator;
+    final private AcmeOrderIssuanceExecutor issuanceExecutor;
 
-    public ACMEExpiryScheduler(AcmeOrderRepository acmeOrderRepository, AuditService auditService) {
+    public ACMEExpiryScheduler(AcmeOrderRepository acmeOrderRepository, AuditService auditService, AcmeNonceStore acmeNonceStore,
+                               ClusterJobCoordinator jobCoordinator, AcmeOrderIssuanceExecutor issuanceExecutor) {
         this.acmeOrderRepository = acmeOrderRepository;
         this.auditService = auditService;
+        this.acmeNonceStore = acmeNonceStore;
+        this.jobCoordinator = jobCoordinator;
+        this.issuanceExecutor = issuanceExecutor;
     }
 
     @Scheduled(fixedDelay = 60000)
 	public void runMinute() {
 
-        Instant now = Instant.now();
+        boolean leader = jobCoordinator.isLeader(JOB_ACME_EXPIRY);
+        if( leader) {
+            Instant now = Instant.now();
+
+            List<AcmeOrder> acmeOrderExpiredList =  acmeOrderRepository.findByPendingExpiryBefore(now);
+            if( !acmeOrderExpiredList.isEmpty()) {
+                LOG.info("setting #{} expired orders to status 'invalid'", acmeOrderExpiredList.size());
+                for( AcmeOrder acmeOrder: acmeOrderExpiredList){
+                    acmeOrder.setStatus(AcmeOrderStatus.INVALID);
+                    auditService.createAuditTraceACMEOrderExpired(acmeOrder);
+                    acmeOrderRepository.save(acmeOrder);
+                }
+            }
 
-        List<AcmeOrder> acmeOrderExpiredList =  acmeOrderRepository.findByPendingExpiryBefore(now);
-        if( !acmeOrderExpiredList.isEmpty()) {
-            LOG.info("setting #{} expired orders to status 'invalid'", acmeOrderExpiredList.size());
-            for( AcmeOrder acmeOrder: acmeOrderExpiredList){
-                acmeOrder.setStatus(AcmeOrderStatus.INVALID);
-                auditService.createAuditTraceACMEOrderExpired(acmeOrder);
-                acmeOrderRepository.save(acmeOrder);
+            // orders left in state 'processing', e.g. by a stopped instance
+            int staleOrders = issuanceExecutor.invalidateStaleOrders();
+            if( staleOrders > 0) {
+                LOG.info("set #{} stale orders in processing to status 'invalid'", staleOrders);
             }
         }
+
+        // nonces held in memory are cleaned up by every instance
+        if( leader || !acmeNonceStore.isShared()) {
+            acmeNonceStore.cleanupExpired();
+        }
 	}
 
 }
@@ -22,6 +22,7 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Component
 @Transactional(propagation = Propagation.REQUIRES_NEW)
+@SchedulingLane(SchedulingLane.CONNECTOR)
 public class CaConnectorStatusScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(CertificateImportScheduler.class);
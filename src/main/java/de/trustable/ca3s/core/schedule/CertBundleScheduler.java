@@ -25,6 +25,7 @@ import de.trustable.ca3s.core.service.util.CertificateUtil;
  */
 @Component
 @Transactional(propagation = Propagation.REQUIRES_NEW)
+@SchedulingLane(SchedulingLane.HOUSEKEEPING)
 public class CertBundleScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(CertBundleScheduler.class);
@@ -1,13 +1,10 @@
 package de.trustable.ca3s.core.schedule;
 
 import de.trustable.ca3s.core.domain.Certificate;
-import de.trustable.ca3s.core.domain.CertificateAttribute;
 import de.trustable.ca3s.core.repository.CertificateRepository;
-import de.trustable.ca3s.core.service.AuditService;
 import de.trustable.ca3s.core.service.NotificationService;
-import de.trustable.ca3s.core.service.dto.CRLUpdateInfo;
-import de.trustable.ca3s.core.service.util.CRLUtil;
-import de.trustable.ca3s.core.service.util.CertificateUtil;
+import de.trustable.ca3s.core.service.util.CRLRevocationEngine;
+import de.trustable.ca3s.core.service.util.ClusterJobCoordinator;
 import de.trustable.ca3s.core.service.util.PreferenceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,9 +15,7 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.mail.MessagingException;
-import java.security.GeneralSecurityException;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -30,42 +25,49 @@ import java.util.List;
  */
 @Component
 @Transactional(propagation = Propagation.REQUIRES_NEW)
+@SchedulingLane(SchedulingLane.MAINTENANCE)
 public class CertExpiryScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(CertExpiryScheduler.class);
 
+	static final String JOB_VALIDITY = "certificateValidity";
+	static final String JOB_EXPIRY_NOTIFICATION = "certificateExpiryNotification";
+
 	private final int maxRecordsPerTransaction;
 
 	private final CertificateRepository certificateRepo;
 
-	private final CertificateUtil certUtil;
-
-    private final CRLUtil crlUtil;
-
+    private final CRLRevocationEngine crlRevocationEngine;
 
     private final PreferenceUtil preferenceUtil;
 
     private final NotificationService notificationService;
 
+    private final ClusterJobCoordinator jobCoordinator;
+
     public CertExpiryScheduler(@Value("${ca3s.batch.maxRecordsPerTransaction:1000}") int maxRecordsPerTransaction,
                                CertificateRepository certificateRepo,
-                               CertificateUtil certUtil,
-                               AuditService auditService,
-                               CRLUtil crlUtil, PreferenceUtil preferenceUtil,
-                               NotificationService notificationService) {
+                               CRLRevocationEngine crlRevocationEngine,
+                               PreferenceUtil preferenceUtil,
+                               NotificationService notificationService,
+                               ClusterJobCoordinator jobCoordinator) {
 
         this.maxRecordsPerTransaction = maxRecordsPerTransaction;
         this.certificateRepo = certificateRepo;
-        this.certUtil = certUtil;
-        this.crlUtil = crlUtil;
+        this.crlRevocationEngine = crlRevocationEngine;
         this.preferenceUtil = preferenceUtil;
         this.notificationService = notificationService;
+        this.jobCoordinator = jobCoordinator;
     }
 
 
     @Scheduled(fixedDelay = 3600000)
 	public void retrieveCertificates() {
 
+		if( !jobCoordinator.isLeader(JOB_VALIDITY)) {
+			return;
+		}
+
 		Instant now = Instant.now();
 
 		List<Certificate> becomingValidList = certificateRepo.findInactiveCertificatesByValidFrom(now);
@@ -100,6 +102,8 @@ public class CertExpiryScheduler {
 
 
 	@Scheduled(fixedDelay = 3600000)
+	@SchedulingLane(SchedulingLane.REVOCATION)
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public void updateRevocationStatus() {
 
 		if( !preferenceUtil.isCheckCrl()){
@@ -107,62 +111,8 @@ public class CertExpiryScheduler {
 			return;
 		}
 
-        long excessiveNextUpdate = System.currentTimeMillis() + (2L * 1000L * preferenceUtil.getMaxNextUpdatePeriodCRLSec());
-
-        long startTime = System.currentTimeMillis();
-
-		HashSet<String> brokenCrlUrlList = new HashSet<>();
-
-		List<Object[]> certWithURLList = certificateRepo.findActiveCertificateOrderedByCrlURL();
-        LOG.debug("findActiveCertificateOrderedByCrlURL returns #{} certificates in {} ms", certWithURLList.size(), System.currentTimeMillis() - startTime);
-
-		int count = 0;
-		for (Object[] resultArr : certWithURLList) {
-            Certificate cert = (Certificate) resultArr[0];
-
-			LOG.debug("Checking certificate {} for CRL status, URL '{}'", cert.getId(), resultArr[1]);
-
-            String nextUpdate = certUtil.getCertAttribute(cert, CertificateAttribute.ATTRIBUTE_CRL_NEXT_UPDATE);
-            if( nextUpdate != null ) {
-                try {
-                    long nextUpdateMilliSec = Long.parseLong(nextUpdate);
-                    if( nextUpdateMilliSec > excessiveNextUpdate) {
-                        LOG.info("Excessively long CRL validity period for certificate {} ({} sec left), enforcing check.", cert.getId(), (nextUpdateMilliSec - startTime) / 1000L);
-                    } else if( startTime < nextUpdateMilliSec ) {
-                        LOG.debug("No CRL check for certificate {}, {} sec left ...", cert.getId(), (nextUpdateMilliSec - startTime) / 1000L);
-                        continue;
-                    }
-                } catch(NumberFormatException nfe) {
-                    LOG.warn("unexpected value for 'next update' in ATTRIBUTE_CRL_NEXT_UPDATE: {} in cert {}", nextUpdate, cert.getId());
-                }
-            }
-
-            try {
-                CRLUpdateInfo crlInfo = certUtil.checkAllCRLsForCertificate( cert,
-                    CertificateUtil.convertPemToCertificate(cert.getContent()),
-                    crlUtil,
-                    brokenCrlUrlList);
-
-                if( !crlInfo.isbCRLDownloadSuccess() ) {
-                    LOG.info("Downloading all CRL #{} for certificate {} failed", crlInfo.getCrlUrlCount(), cert.getId());
-                }
-
-            }catch(GeneralSecurityException gse){
-                LOG.debug("problem converting certificate id '"+ cert.getId()+"' to X509",gse);
-                continue;
-            }
-
-            if( count++ > maxRecordsPerTransaction) {
-                LOG.info("limited certificate revocation check to {} per call", maxRecordsPerTransaction);
-                break;
-            }
-
-		}
-
-		if( !brokenCrlUrlList.isEmpty()) {
-            LOG.info("#{} CRL URLs marked as inaccessible / broken", brokenCrlUrlList.size());
-        }
-        LOG.info("#{} certificate revocation checks in {} mSec", count, System.currentTimeMillis() - startTime );
+		// every node checks its share of the CRLs
+		crlRevocationEngine.updateRevocationStatus(jobCoordinator.getShard());
 	}
 
 	/**
@@ -173,6 +123,10 @@ public class CertExpiryScheduler {
 //	@Scheduled(fixedDelay = 60000)
 	public int notifyRAOfficerHolderOnExpiry() {
 
+		if( !jobCoordinator.isLeader(JOB_EXPIRY_NOTIFICATION)) {
+			return 0;
+		}
+
         try {
             return notificationService.notifyRAOfficerHolderOnExpiry();
         } catch (MessagingException e) {
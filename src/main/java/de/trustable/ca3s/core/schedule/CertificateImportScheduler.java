@@ -16,6 +16,7 @@ import de.trustable.ca3s.core.domain.enumeration.Interval;
 import de.trustable.ca3s.core.repository.CAConnectorConfigRepository;
 import de.trustable.ca3s.core.service.adcs.ADCSConnector;
 import de.trustable.ca3s.core.service.dir.DirectoryConnector;
+import de.trustable.ca3s.core.service.util.ClusterJobCoordinator;
 
 /**
  *
@@ -23,6 +24,7 @@ import de.trustable.ca3s.core.service.dir.DirectoryConnector;
  *
  */
 @Component
+@SchedulingLane(SchedulingLane.IMPORT)
 public class CertificateImportScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(CertificateImportScheduler.class);
@@ -39,6 +41,9 @@ public class CertificateImportScheduler {
     @Autowired
     private AuditService auditService;
 
+    @Autowired
+    private ClusterJobCoordinator jobCoordinator;
+
 
     @Value("${certificate.import.active:true}")
 	private String certificateImportActive;
@@ -47,10 +52,12 @@ public class CertificateImportScheduler {
 	public void runMinute() {
 
 		if ("true".equalsIgnoreCase(certificateImportActive) ) {
+			// every node imports the connectors of its shard
+			ClusterJobCoordinator.Shard shard = jobCoordinator.getShard();
 			for (CAConnectorConfig caConfig : caConfigRepo.findAll()) {
 
 //                LOG.debug("--------- runMinute for {}, interval {}, active {}", caConfig.getName(), caConfig.getInterval(), caConfig.isActive());
-				if( Interval.MINUTE.equals(caConfig.getInterval()) && caConfig.isActive()){
+				if( Interval.MINUTE.equals(caConfig.getInterval()) && caConfig.isActive() && shard.owns(caConfig.getId())){
 					runImporter(caConfig);
 				}
 			}
@@ -64,9 +71,10 @@ public class CertificateImportScheduler {
 	public void runHour() {
 
 		if ("true".equalsIgnoreCase(certificateImportActive)) {
+			ClusterJobCoordinator.Shard shard = jobCoordinator.getShard();
 			for (CAConnectorConfig caConfig : caConfigRepo.findAll()) {
 
-				if( Interval.HOUR.equals(caConfig.getInterval()) && caConfig.isActive()){
+				if( Interval.HOUR.equals(caConfig.getInterval()) && caConfig.isActive() && shard.owns(caConfig.getId())){
 					runImporter(caConfig);
 				}
 			}
@@ -80,9 +88,10 @@ public class CertificateImportScheduler {
 	public void runDay() {
 
 		if ("true".equalsIgnoreCase(certificateImportActive)) {
+			ClusterJobCoordinator.Shard shard = jobCoordinator.getShard();
 			for (CAConnectorConfig caConfig : caConfigRepo.findAll()) {
 
-				if( Interval.DAY.equals(caConfig.getInterval()) && caConfig.isActive()){
+				if( Interval.DAY.equals(caConfig.getInterval()) && caConfig.isActive() && shard.owns(caConfig.getId())){
 					runImporter(caConfig);
 				}
 			}
@@ -96,9 +105,10 @@ public class CertificateImportScheduler {
 	public void runWeek() {
 
 		if ("true".equalsIgnoreCase(certificateImportActive)) {
+			ClusterJobCoordinator.Shard shard = jobCoordinator.getShard();
 			for (CAConnectorConfig caConfig : caConfigRepo.findAll()) {
 
-				if( Interval.WEEK.equals(caConfig.getInterval()) && caConfig.isActive()){
+				if( Interval.WEEK.equals(caConfig.getInterval()) && caConfig.isActive() && shard.owns(caConfig.getId())){
 					runImporter(caConfig);
 				}
 			}
@@ -112,9 +122,10 @@ public class CertificateImportScheduler {
 	public void runMonth() {
 
 		if ("true".equalsIgnoreCase(certificateImportActive)) {
+			ClusterJobCoordinator.Shard shard = jobCoordinator.getShard();
 			for (CAConnectorConfig caConfig : caConfigRepo.findAll()) {
 
-				if( Interval.MONTH.equals(caConfig.getInterval()) && caConfig.isActive()){
+				if( Interval.MONTH.equals(caConfig.getInterval()) && caConfig.isActive() && shard.owns(caConfig.getId())){
 					runImporter(caConfig);
 				}
 			}
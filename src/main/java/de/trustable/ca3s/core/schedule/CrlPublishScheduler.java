@@ -0,0 +1,31 @@
+package de.trustable.ca3s.core.schedule;
+
+import de.trustable.ca3s.core.service.util.CrlPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * publishes the full and delta CRLs of the internal CA
+ */
+@Component
+@SchedulingLane(SchedulingLane.HOUSEKEEPING)
+public class CrlPublishScheduler {
+
+	transient Logger LOG = LoggerFactory.getLogger(CrlPublishScheduler.class);
+
+	private final CrlPublisher crlPublisher;
+
+	public CrlPublishScheduler(CrlPublisher crlPublisher) {
+		this.crlPublisher = crlPublisher;
+	}
+
+	@Scheduled(fixedDelayString = "${ca3s.crl.publish.check.millis:60000}")
+	public void publishCrls() {
+
+		long startTime = System.currentTimeMillis();
+		crlPublisher.publish();
+		LOG.debug("checking CRLs of the internal CA took {} ms.", System.currentTimeMillis() - startTime);
+	}
+}
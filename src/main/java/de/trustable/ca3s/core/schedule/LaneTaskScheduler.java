@@ -0,0 +1,241 @@
+package de.trustable.ca3s.core.schedule;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+import org.springframework.util.CustomizableThreadFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Runs the scheduled jobs in lanes, see {@link SchedulingLane}. The trigger scheduler just fires the jobs, each lane
+ * runs them on its own bounded pool of 'ca3s.scheduler.lane.&lt;lane&gt;.threads' threads. So a lane of slow jobs (e.g. a
+ * large import) can't delay the jobs of the other lanes.
+ *
+ * A job still running (or waiting for a thread of its lane) when triggered again skips this run. A fixed delay is
+ * therefore measured from the trigger of the previous run, not from its end.
+ *
+ * Meters per job: 'ca3s.scheduler.job.duration' (tagged by outcome), 'ca3s.scheduler.job.lag' (time between trigger and
+ * start, waiting for a thread of the lane) and 'ca3s.scheduler.job.skipped' (reason 'running' or 'rejected').
+ */
+public class LaneTaskScheduler implements TaskScheduler, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LaneTaskScheduler.class);
+
+    static final String PROPERTY_PREFIX = "ca3s.scheduler.lane.";
+
+    private static final Map<String, Integer> DEFAULT_THREADS = new HashMap<>();
+    static {
+        DEFAULT_THREADS.put(SchedulingLane.HOUSEKEEPING, 2);
+        DEFAULT_THREADS.put(SchedulingLane.CONNECTOR, 2);
+        DEFAULT_THREADS.put(SchedulingLane.MAINTENANCE, 1);
+        DEFAULT_THREADS.put(SchedulingLane.REVOCATION, 1);
+        DEFAULT_THREADS.put(SchedulingLane.IMPORT, 2);
+        DEFAULT_THREADS.put(SchedulingLane.DEFAULT, 1);
+    }
+
+    private final ThreadPoolTaskScheduler triggerScheduler;
+    private final Environment env;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ThreadPoolExecutor> laneMap = new ConcurrentHashMap<>();
+
+    public LaneTaskScheduler(ThreadPoolTaskScheduler triggerScheduler, Environment env, MeterRegistry meterRegistry) {
+        this.triggerScheduler = triggerScheduler;
+        this.env = env;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        return triggerScheduler.schedule(laneJob(task), trigger);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+        return triggerScheduler.schedule(laneJob(task), startTime);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+        return triggerScheduler.scheduleAtFixedRate(laneJob(task), startTime, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+        return triggerScheduler.scheduleAtFixedRate(laneJob(task), period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+        return triggerScheduler.scheduleWithFixedDelay(laneJob(task), startTime, delay);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        return triggerScheduler.scheduleWithFixedDelay(laneJob(task), delay);
+    }
+
+    @Override
+    public void destroy() {
+        triggerScheduler.shutdown();
+        for (Map.Entry<String, ThreadPoolExecutor> entry : laneMap.entrySet()) {
+            entry.getValue().shutdownNow();
+            LOG.debug("scheduling lane '{}' stopped", entry.getKey());
+        }
+    }
+
+    LaneJob laneJob(final Runnable task) {
+
+        String lane = SchedulingLane.DEFAULT;
+        String jobName = task.getClass().getSimpleName();
+
+        if (task instanceof ScheduledMethodRunnable) {
+            ScheduledMethodRunnable methodRunnable = (ScheduledMethodRunnable) task;
+            Class<?> targetClass = AopUtils.getTargetClass(methodRunnable.getTarget());
+            Method method = AopUtils.getMostSpecificMethod(methodRunnable.getMethod(), targetClass);
+            jobName = targetClass.getSimpleName() + "." + method.getName();
+
+            SchedulingLane schedulingLane = AnnotatedElementUtils.findMergedAnnotation(method, SchedulingLane.class);
+            if (schedulingLane == null) {
+                schedulingLane = AnnotatedElementUtils.findMergedAnnotation(targetClass, SchedulingLane.class);
+            }
+            if (schedulingLane != null) {
+                lane = schedulingLane.value();
+            }
+        }
+
+        LOG.debug("scheduled job '{}' runs in lane '{}'", jobName, lane);
+        return new LaneJob(lane, jobName, task, laneMap.computeIfAbsent(lane, this::createLane));
+    }
+
+    private ThreadPoolExecutor createLane(final String lane) {
+
+        int threads = env.getProperty(PROPERTY_PREFIX + lane + ".threads", Integer.class,
+            DEFAULT_THREADS.getOrDefault(lane, 1));
+        int queueCapacity = env.getProperty(PROPERTY_PREFIX + lane + ".queue", Integer.class, 32);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("ca-3-s-lane-" + lane + "-"));
+        executor.allowCoreThreadTimeOut(true);
+        LOG.info("scheduling lane '{}' with #{} threads", lane, threads);
+        return executor;
+    }
+
+    /**
+     * one scheduled job, handed from the trigger thread to the pool of its lane
+     */
+    final class LaneJob implements Runnable {
+
+        private final String lane;
+        private final String jobName;
+        private final Runnable task;
+        private final ThreadPoolExecutor executor;
+
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        private final Timer successTimer;
+        private final Timer failureTimer;
+        private final Timer lagTimer;
+        private final Counter skippedRunningCounter;
+        private final Counter skippedRejectedCounter;
+
+        LaneJob(String lane, String jobName, Runnable task, ThreadPoolExecutor executor) {
+            this.lane = lane;
+            this.jobName = jobName;
+            this.task = task;
+            this.executor = executor;
+
+            this.successTimer = durationTimer("success");
+            this.failureTimer = durationTimer("failure");
+            this.lagTimer = Timer.builder("ca3s.scheduler.job.lag")
+                .description("time between the trigger of a scheduled job and its start")
+                .tag("lane", lane)
+                .tag("job", jobName)
+                .register(meterRegistry);
+            this.skippedRunningCounter = skippedCounter("running");
+            this.skippedRejectedCounter = skippedCounter("rejected");
+        }
+
+        String getLane() {
+            return lane;
+        }
+
+        String getJobName() {
+            return jobName;
+        }
+
+        @Override
+        public void run() {
+
+            if (!running.compareAndSet(false, true)) {
+                skippedRunningCounter.increment();
+                LOG.debug("scheduled job '{}' still running, skipping this run", jobName);
+                return;
+            }
+
+            long triggerTime = System.nanoTime();
+            try {
+                executor.execute(() -> execute(triggerTime));
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                skippedRejectedCounter.increment();
+                LOG.warn("scheduling lane '{}' exhausted, skipping this run of job '{}'", lane, jobName);
+            }
+        }
+
+        private void execute(final long triggerTime) {
+
+            long startTime = System.nanoTime();
+            lagTimer.record(startTime - triggerTime, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+                successTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            } catch (Throwable th) {
+                failureTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                LOG.warn("scheduled job '{}' failed", jobName, th);
+            } finally {
+                running.set(false);
+            }
+        }
+
+        private Timer durationTimer(final String outcome) {
+            return Timer.builder("ca3s.scheduler.job.duration")
+                .description("run time of a scheduled job")
+                .tag("lane", lane)
+                .tag("job", jobName)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+        }
+
+        private Counter skippedCounter(final String reason) {
+            return Counter.builder("ca3s.scheduler.job.skipped")
+                .description("runs of a scheduled job skipped")
+                .tag("lane", lane)
+                .tag("job", jobName)
+                .tag("reason", reason)
+                .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package de.trustable.ca3s.core.schedule;
+
+import de.trustable.ca3s.core.service.util.OcspResponder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * re-signs the cached OCSP responses before they expire
+ */
+@Component
+@SchedulingLane(SchedulingLane.HOUSEKEEPING)
+public class OcspResponseScheduler {
+
+	transient Logger LOG = LoggerFactory.getLogger(OcspResponseScheduler.class);
+
+	private final OcspResponder ocspResponder;
+
+	public OcspResponseScheduler(OcspResponder ocspResponder) {
+		this.ocspResponder = ocspResponder;
+	}
+
+	@Scheduled(fixedDelayString = "${ca3s.ocsp.refresh.check.millis:60000}")
+	public void refreshOcspResponses() {
+
+		long startTime = System.currentTimeMillis();
+		ocspResponder.refreshResponses();
+		LOG.debug("refreshing #{} cached OCSP responses took {} ms.", ocspResponder.size(), System.currentTimeMillis() - startTime);
+	}
+}
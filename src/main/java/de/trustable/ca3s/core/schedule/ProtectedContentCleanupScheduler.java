@@ -10,6 +10,7 @@ import de.trustable.ca3s.core.repository.CertificateRepository;
 import de.trustable.ca3s.core.repository.ProtectedContentRepository;
 import de.trustable.ca3s.core.service.AuditService;
 import de.trustable.ca3s.core.service.util.CSRUtil;
+import de.trustable.ca3s.core.service.util.ClusterJobCoordinator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -25,27 +26,36 @@ import java.util.Optional;
  *
  */
 @Component
+@SchedulingLane(SchedulingLane.HOUSEKEEPING)
 public class ProtectedContentCleanupScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(ProtectedContentCleanupScheduler.class);
 
+    static final String JOB_PROTECTED_CONTENT_CLEANUP = "protectedContentCleanup";
+
     final private ProtectedContentRepository protectedContentRepository;
     final private CSRRepository csrRepository;
     final private CertificateRepository certificateRepository;
     final private CSRUtil csrUtil;
     final private AuditService auditService;
+    final private ClusterJobCoordinator jobCoordinator;
 
-    public ProtectedContentCleanupScheduler(ProtectedContentRepository protectedContentRepository, CSRRepository csrRepository, CertificateRepository certificateRepository, CSRUtil csrUtil, AuditService auditService) {
+    public ProtectedContentCleanupScheduler(ProtectedContentRepository protectedContentRepository, CSRRepository csrRepository, CertificateRepository certificateRepository, CSRUtil csrUtil, AuditService auditService, ClusterJobCoordinator jobCoordinator) {
         this.protectedContentRepository = protectedContentRepository;
         this.csrRepository = csrRepository;
         this.certificateRepository = certificateRepository;
         this.csrUtil = csrUtil;
         this.auditService = auditService;
+        this.jobCoordinator = jobCoordinator;
     }
 
     @Scheduled(fixedDelay = 60000)
 	public void runMinute() {
 
+        if( !jobCoordinator.isLeader(JOB_PROTECTED_CONTENT_CLEANUP)) {
+            return;
+        }
+
         Instant now = Instant.now();
         List<ProtectedContent> invalidList = protectedContentRepository.findByValidToPassed(now);
         for (ProtectedContent pc : invalidList){
@@ -17,6 +17,7 @@ import de.trustable.ca3s.core.web.websocket.WSConnectionPool;
  *
  */
 @Component
+@SchedulingLane(SchedulingLane.CONNECTOR)
 public class RequestProxyScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(RequestProxyScheduler.class);
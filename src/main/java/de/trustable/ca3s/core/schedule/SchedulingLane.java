@@ -0,0 +1,49 @@
+package de.trustable.ca3s.core.schedule;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The lane running a {@code @Scheduled} method, see {@link LaneTaskScheduler}. Placed on a class, it applies to all its
+ * scheduled methods. Methods without a lane run in the lane {@link #DEFAULT}.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SchedulingLane {
+
+    /**
+     * short and frequent jobs keeping the instance working, e.g. cleanups, cache refreshes, TLS certificate renewal
+     */
+    String HOUSEKEEPING = "housekeeping";
+
+    /**
+     * polling of remote CAs and request proxies, depending on the response times of remote systems
+     */
+    String CONNECTOR = "connector";
+
+    /**
+     * periodic database updates and notifications
+     */
+    String MAINTENANCE = "maintenance";
+
+    /**
+     * CRL based revocation checks
+     */
+    String REVOCATION = "revocation";
+
+    /**
+     * certificate imports
+     */
+    String IMPORT = "import";
+
+    String DEFAULT = "default";
+
+    /**
+     * @return the name of the lane
+     */
+    String value();
+}
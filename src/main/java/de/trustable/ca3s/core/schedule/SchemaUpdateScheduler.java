@@ -7,6 +7,7 @@ import de.trustable.ca3s.core.repository.*;
 import de.trustable.ca3s.core.service.AuditService;
 import de.trustable.ca3s.core.service.util.CSRUtil;
 import de.trustable.ca3s.core.service.util.CertificateUtil;
+import de.trustable.ca3s.core.service.util.ClusterJobCoordinator;
 import de.trustable.ca3s.core.service.util.CryptoService;
 import org.bouncycastle.util.encoders.DecoderException;
 import org.bouncycastle.util.encoders.Hex;
@@ -33,12 +34,15 @@ import java.util.*;
  */
 @Component
 @Transactional(propagation = Propagation.REQUIRES_NEW)
+@SchedulingLane(SchedulingLane.MAINTENANCE)
 public class SchemaUpdateScheduler {
 
     transient Logger LOG = LoggerFactory.getLogger(SchemaUpdateScheduler.class);
 
     final static int MAX_RECORDS_PER_TRANSACTION = 10000;
 
+    static final String JOB_SCHEMA_UPDATE = "schemaUpdate";
+
     final private CertificateRepository certificateRepo;
     final private CertificateUtil certUtil;
 
@@ -53,7 +57,9 @@ public class SchemaUpdateScheduler {
 
     final private AuditService auditService;
 
-    public SchemaUpdateScheduler(CertificateRepository certificateRepo, CertificateUtil certUtil, CSRRepository csrRepository, CsrAttributeRepository csrAttributeRepository, CSRUtil csrUtil, AcmeOrderRepository acmeOrderRepository, ACMEAccountRepository acmeAccountRepository, PipelineRepository pipelineRepository, AuditService auditService) {
+    final private ClusterJobCoordinator jobCoordinator;
+
+    public SchemaUpdateScheduler(CertificateRepository certificateRepo, CertificateUtil certUtil, CSRRepository csrRepository, CsrAttributeRepository csrAttributeRepository, CSRUtil csrUtil, AcmeOrderRepository acmeOrderRepository, ACMEAccountRepository acmeAccountRepository, PipelineRepository pipelineRepository, AuditService auditService, ClusterJobCoordinator jobCoordinator) {
         this.certificateRepo = certificateRepo;
         this.certUtil = certUtil;
         this.csrRepository = csrRepository;
@@ -63,6 +69,7 @@ public class SchemaUpdateScheduler {
         this.acmeAccountRepository = acmeAccountRepository;
         this.pipelineRepository = pipelineRepository;
         this.auditService = auditService;
+        this.jobCoordinator = jobCoordinator;
     }
 
 
@@ -70,6 +77,10 @@ public class SchemaUpdateScheduler {
     @Scheduled(fixedDelay = 60000)
     public void performSchemaApdates() {
 
+        if( !jobCoordinator.isLeader(JOB_SCHEMA_UPDATE)) {
+            return;
+        }
+
         Instant now = Instant.now();
         updateCertificateAttributes();
         LOG.info("updateCertificateAttributes took {} ms", Duration.between(now, Instant.now()));
@@ -26,6 +26,7 @@ import java.time.temporal.ChronoUnit;
  */
 @Component
 @Transactional(propagation = Propagation.REQUIRES_NEW)
+@SchedulingLane(SchedulingLane.MAINTENANCE)
 public class UserRetentionScheduler {
 
 	transient Logger LOG = LoggerFactory.getLogger(UserRetentionScheduler.class);
@@ -2,55 +2,232 @@ package de.trustable.ca3s.core.schedule.spider;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
+/**
+ * Crawls web pages for links to certificates.
+ *
+ * Pages are fetched in parallel by 'ca3s.crawler.threads' threads, with at most 'ca3s.crawler.maxPerHost' concurrent
+ * requests per host. Every page is visited once per search, in breadth first order up to 'ca3s.crawler.maxDepth'
+ * links away from the start page and limited to 'ca3s.crawler.maxPages' pages.
+ * Pages providing an ETag or Last-Modified header are requested conditionally on the next search. The cache is shared
+ * by all searches, so the certificate links of unchanged pages are taken from the cache and reported on every search.
+ */
+@Component
 public class Crawler {
 
     Logger LOGGER = LoggerFactory.getLogger(Crawler.class);
 
     private static final int MAX_PAGES_TO_SEARCH = 100;
 
+    private final int nThreads;
+    private final int maxPerHost;
+    private final int maxPages;
+    private final int maxDepth;
+
+    private final CrawlerWorker worker;
+    private final ExecutorService fetchExecutor;
+    private final Map<String, CrawlerWorker.PageResult> pageCache;
+
+    public Crawler() {
+        this(4, 2, MAX_PAGES_TO_SEARCH, 5, 10000, 10000);
+    }
+
+    @Autowired
+    public Crawler(@Value("${ca3s.crawler.threads:4}") int nThreads,
+                   @Value("${ca3s.crawler.maxPerHost:2}") int maxPerHost,
+                   @Value("${ca3s.crawler.maxPages:100}") int maxPages,
+                   @Value("${ca3s.crawler.maxDepth:5}") int maxDepth,
+                   @Value("${ca3s.crawler.timeout.millis:10000}") int timeoutMillis,
+                   @Value("${ca3s.crawler.cache.size:10000}") int cacheSize) {
+
+        this.nThreads = Math.max(1, nThreads);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.maxPages = maxPages;
+        this.maxDepth = maxDepth;
+        this.worker = new CrawlerWorker(timeoutMillis);
+
+        this.pageCache = Collections.synchronizedMap(new LinkedHashMap<String, CrawlerWorker.PageResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CrawlerWorker.PageResult> eldest) {
+                return size() > cacheSize;
+            }
+        });
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "crawler-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.fetchExecutor = Executors.newFixedThreadPool(this.nThreads, threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
     public Set<String> search(String url, String regEx) {
 
-        Set<String> pagesVisited = new HashSet<String>();
-        Set<String> certificateSet = new HashSet<String>();
-        List<String> pagesToVisit = new LinkedList<String>();
+        Set<String> certificateSet = new HashSet<>();
+        search(url, regEx, certificateSet::add);
+        return certificateSet;
+    }
+
+    /**
+     * crawl the pages reachable from a start page
+     *
+     * @param url the start page
+     * @param regEx the pattern of the certificate links
+     * @param certificateConsumer called once for every certificate link found by this search, in the calling thread
+     * @return the number of pages visited
+     */
+    public int search(String url, String regEx, Consumer<String> certificateConsumer) {
 
         Pattern searchPattern = Pattern.compile(regEx);
 
-        while (pagesVisited.size() < MAX_PAGES_TO_SEARCH) {
-            String currentUrl;
-            CrawlerWorker leg = new CrawlerWorker();
-            if (pagesToVisit.isEmpty()) {
-                currentUrl = url;
-                pagesVisited.add(url);
-            } else {
+        Set<String> pagesSeen = new HashSet<>();
+        Set<String> certificatesFound = new HashSet<>();
+        Deque<CrawlTask> pagesToVisit = new ArrayDeque<>();
+        Map<String, Integer> inFlightPerHost = new HashMap<>();
+        CompletionService<CrawlTask> completionService = new ExecutorCompletionService<>(fetchExecutor);
+
+        int inFlight = 0;
+        int pagesVisited = 0;
+        int pagesNotModified = 0;
 
-                String nextUrl;
-                do {
-                    nextUrl = pagesToVisit.remove(0);
-                } while (pagesVisited.contains(nextUrl));
-                pagesVisited.add(nextUrl);
-                currentUrl = nextUrl;
+        CrawlTask startTask = CrawlTask.of(url, 0);
+        if (startTask == null) {
+            LOGGER.debug("unexpected URL '{}' as start page", url);
+            return 0;
+        }
+        pagesSeen.add(startTask.url);
+        pagesToVisit.add(startTask);
+
+        while (!pagesToVisit.isEmpty() || inFlight > 0) {
+
+            // dispatch in breadth first order, skipping hosts at their limit
+            Iterator<CrawlTask> taskIterator = pagesToVisit.iterator();
+            while (taskIterator.hasNext() && inFlight < nThreads && pagesVisited + inFlight < maxPages) {
+                CrawlTask task = taskIterator.next();
+                int hostCount = inFlightPerHost.getOrDefault(task.host, 0);
+                if (hostCount >= maxPerHost) {
+                    continue;
+                }
+                taskIterator.remove();
+                inFlightPerHost.put(task.host, hostCount + 1);
+
+                CrawlerWorker.PageResult cached = pageCache.get(task.url);
+                completionService.submit(() -> {
+                    task.result = worker.crawl(task.url, cached);
+                    return task;
+                });
+                inFlight++;
             }
 
+            if (inFlight == 0) {
+                break;
+            }
+
+            CrawlTask done;
             try {
-                leg.crawl(currentUrl, searchPattern, certificateSet); // Lots of stuff happening here. Look at the crawl method in
-            }catch(IllegalArgumentException mue){
-                LOGGER.debug("unexpected URL found at url '" +  url + "'", mue );
+                done = completionService.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.info("crawling '{}' interrupted", url);
+                break;
+            } catch (ExecutionException e) {
+                // not expected, the worker handles all problems of a page
+                throw new IllegalStateException("crawling '" + url + "' failed", e.getCause());
+            }
+            inFlight--;
+            pagesVisited++;
+            inFlightPerHost.merge(done.host, -1, Integer::sum);
+
+            CrawlerWorker.PageResult result = done.result;
+            if (result.isNotModified()) {
+                pagesNotModified++;
+            } else if (result.isCacheable()) {
+                pageCache.put(done.url, result);
             }
 
-            pagesToVisit.addAll(leg.getLinks());
+            for (String link : result.getLinks()) {
+                if (searchPattern.matcher(link).matches()) {
+                    if (certificatesFound.add(link)) {
+                        LOGGER.info("found certificate at {}", link);
+                        certificateConsumer.accept(link);
+                    }
+                } else if (done.depth < maxDepth && pagesVisited + inFlight + pagesToVisit.size() < maxPages) {
+                    CrawlTask task = CrawlTask.of(link, done.depth + 1);
+                    if (task != null && pagesSeen.add(task.url)) {
+                        pagesToVisit.add(task);
+                    }
+                }
+            }
         }
-        LOGGER.debug("Visited " + pagesVisited.size() + " web page(s), found #"+certificateSet.size()+" different certificates");
 
-        return certificateSet;
+        LOGGER.debug("Visited " + pagesVisited + " web page(s), #" + pagesNotModified + " not modified, found #" +
+            certificatesFound.size() + " different certificates");
+
+        return pagesVisited;
     }
 
+    static final class CrawlTask {
+        final String url;
+        final String host;
+        final int depth;
+        CrawlerWorker.PageResult result;
+
+        private CrawlTask(String url, String host, int depth) {
+            this.url = url;
+            this.host = host;
+            this.depth = depth;
+        }
+
+        /**
+         * @return the task of a http(s) page without fragment, null for other links
+         */
+        static CrawlTask of(String link, int depth) {
+            try {
+                URL pageUrl = new URL(link);
+                String protocol = pageUrl.getProtocol().toLowerCase();
+                if (!"http".equals(protocol) && !"https".equals(protocol)) {
+                    return null;
+                }
+                int fragmentIdx = link.indexOf('#');
+                String url = fragmentIdx < 0 ? link : link.substring(0, fragmentIdx);
+                return new CrawlTask(url, pageUrl.getHost().toLowerCase(), depth);
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+    }
 }
@@ -1,10 +1,9 @@
 package de.trustable.ca3s.core.schedule.spider;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
@@ -14,58 +13,137 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Fetches a single page and extracts its links. A page fetched before is requested conditionally using its
+ * ETag / Last-Modified, an unchanged page is answered from the previous result.
+ */
 public class CrawlerWorker
 {
 
     Logger LOGGER = LoggerFactory.getLogger(CrawlerWorker.class);
 
     private static final String USER_AGENT = "ca3s certificate crawler";
-    private List<String> links = new LinkedList<String>();
 
+    private static final int HTTP_NOT_MODIFIED = 304;
 
-    public boolean crawl(String url, Pattern searchPattern, Set<String> certificateSet)
+    private final int timeoutMillis;
+
+    public CrawlerWorker(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * fetch a page
+     *
+     * @param url the page url
+     * @param cached the result of the previous visit of the page or null
+     * @return the links of the page, never null
+     */
+    public PageResult crawl(String url, PageResult cached)
     {
         try
         {
-            Connection connection = Jsoup.connect(url).userAgent(USER_AGENT);
-            Document htmlDocument = connection.get();
-            if(connection.response().statusCode() >= 300){
-                LOGGER.debug("problem ({}) reading page at {}", connection.response().statusCode(), url);
-                return false;
+            Connection connection = Jsoup.connect(url)
+                .userAgent(USER_AGENT)
+                .timeout(timeoutMillis)
+                .ignoreHttpErrors(true);
+
+            if (cached != null) {
+                if (cached.getETag() != null) {
+                    connection.header("If-None-Match", cached.getETag());
+                }
+                if (cached.getLastModified() != null) {
+                    connection.header("If-Modified-Since", cached.getLastModified());
+                }
+            }
+
+            Connection.Response response = connection.execute();
+            if (response.statusCode() == HTTP_NOT_MODIFIED && cached != null) {
+                LOGGER.debug("page at {} not modified", url);
+                return cached.notModified();
+            }
+            if (response.statusCode() >= 300) {
+                LOGGER.debug("problem ({}) reading page at {}", response.statusCode(), url);
+                return PageResult.failed();
             }
 
-            if(!connection.response().contentType().contains("text/html"))
+            if (response.contentType() == null || !response.contentType().contains("text/html"))
             {
-                LOGGER.debug("unexpected content type  '{}' found at {}", connection.response().contentType(), url);
-                return false;
+                LOGGER.debug("unexpected content type  '{}' found at {}", response.contentType(), url);
+                return PageResult.failed();
             }
 
+            Document htmlDocument = response.parse();
             Elements linksOnPage = htmlDocument.select("a[href]");
             LOGGER.debug("found #{} links at {}", linksOnPage.size(), url);
-            for(Element link : linksOnPage)
-            {
 
+            List<String> links = new ArrayList<>(linksOnPage.size());
+            for (Element link : linksOnPage)
+            {
                 String href = link.absUrl("href");
-//                LOGGER.debug("checking {}", href);
-
-                if (searchPattern.matcher(href).matches()) {
-                    LOGGER.info("found certificate at {}", href);
-                    certificateSet.add(href);
-                }else {
-                    this.links.add(link.absUrl("href"));
+                if (!href.isEmpty()) {
+                    links.add(href);
                 }
             }
-            return true;
-        }catch(IOException ioe){
-            LOGGER.debug("problem  '{}' occurred reading {}", ioe.getMessage(), url);
+            return new PageResult(links, response.header("ETag"), response.header("Last-Modified"), false);
+
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug("problem  '{}' occurred reading {}", e.getMessage(), url);
         }
-        return false;
+        return PageResult.failed();
     }
 
+    /**
+     * the links found on a page
+     */
+    public static final class PageResult {
 
-    public List<String> getLinks()
-    {
-        return this.links;
-    }
+        private static final PageResult FAILED = new PageResult(Collections.emptyList(), null, null, false);
+
+        private final List<String> links;
+        private final String eTag;
+        private final String lastModified;
+        private final boolean notModified;
 
+        PageResult(List<String> links, String eTag, String lastModified, boolean notModified) {
+            this.links = links;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.notModified = notModified;
+        }
+
+        static PageResult failed() {
+            return FAILED;
+        }
+
+        PageResult notModified() {
+            return new PageResult(links, eTag, lastModified, true);
+        }
+
+        public List<String> getLinks() {
+            return links;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return true, if the page is unchanged since the previous visit
+         */
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        /**
+         * @return true, if the page can be requested conditionally on the next visit
+         */
+        boolean isCacheable() {
+            return this != FAILED && (eTag != null || lastModified != null);
+        }
+    }
 }
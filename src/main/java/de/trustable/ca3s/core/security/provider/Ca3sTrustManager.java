@@ -6,29 +6,39 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.X509TrustManager;
 
 import de.trustable.ca3s.core.service.AuditService;
+import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import de.trustable.ca3s.core.domain.Certificate;
-import de.trustable.ca3s.core.domain.CertificateAttribute;
-import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.ca3s.core.service.util.CaCertificateIndex;
 import de.trustable.ca3s.core.service.util.CertificateUtil;
 import de.trustable.ca3s.core.service.util.CryptoService;
 
 
-
+/**
+ * Checks server certificates of outbound TLS connections against the CA certificates of the database.
+ *
+ * The chain is verified in memory using the {@link CaCertificateIndex}. Successfully checked server certificates are
+ * remembered for 'ca3s.trust.chain.cache.seconds' or until the index is invalidated, e.g. by a revocation.
+ * Unknown server and intermediate certificates are imported into the database.
+ */
 @Service
 public class Ca3sTrustManager implements X509TrustManager {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Ca3sTrustManager.class);
 
-	private final CertificateRepository certificateRepository;
+	private static final int MAX_CHAIN_LENGTH = 10;
 
 	private final CryptoService cryptoUtil;
 
@@ -36,12 +46,26 @@ public class Ca3sTrustManager implements X509TrustManager {
 
     private final AuditService auditService;
 
+    private final CaCertificateIndex caCertificateIndex;
+
+    private final long chainValidityMillis;
+
+    private final int maxChains;
 
-    public Ca3sTrustManager(CertificateRepository certificateRepository, CryptoService cryptoUtil, CertificateUtil certUtil, AuditService auditService) {
-        this.certificateRepository = certificateRepository;
+    // successfully checked server certificates, keyed by the SHA-256 fingerprint
+    private final Map<String, ValidatedChain> validatedChainMap = new ConcurrentHashMap<>();
+
+
+    public Ca3sTrustManager(CryptoService cryptoUtil, CertificateUtil certUtil, AuditService auditService,
+                            CaCertificateIndex caCertificateIndex,
+                            @Value("${ca3s.trust.chain.cache.seconds:300}") long chainValiditySeconds,
+                            @Value("${ca3s.trust.chain.cache.size:1000}") int maxChains) {
         this.cryptoUtil = cryptoUtil;
         this.certUtil = certUtil;
         this.auditService = auditService;
+        this.caCertificateIndex = caCertificateIndex;
+        this.chainValidityMillis = chainValiditySeconds * 1000L;
+        this.maxChains = maxChains;
     }
 
     @Override
@@ -72,37 +96,27 @@ public class Ca3sTrustManager implements X509TrustManager {
 		}
 
 		try {
+			String fingerprint = Base64.encodeBase64String(cryptoUtil.getSHA256Digest(serverCert.getEncoded()));
+
+			CaCertificateIndex.Snapshot snapshot = caCertificateIndex.getSnapshot();
+			ValidatedChain validatedChain = validatedChainMap.get(fingerprint);
+			if( validatedChain != null && validatedChain.isValid(snapshot.getGeneration(), now.getTime())) {
+				LOGGER.debug("checkServerTrusted succeeded for certificate subject '{}' using cached chain", serverCert.getSubjectX500Principal().getName());
+				return;
+			}
+
+			Certificate serverCertDao = getCertificateObject(serverCert);
+
+			List<X509Certificate> certList = buildChain(chain, serverCert, serverCertDao, now);
 
-            Certificate issuingCACertDao = getCertificateObject(chain, serverCert);
-
-            ArrayList<X509Certificate> certList = new ArrayList<>();
-			certList.add(serverCert);
-			certList.add(serverCert);
-			certList.add(CryptoService.convertPemToCertificate(issuingCACertDao.getContent()));
-
-			for( int i = 0; i < 8; i++) {
-				Certificate nextCACertDao = certUtil.findIssuingCertificate(issuingCACertDao);
-				if( nextCACertDao == null){
-					LOGGER.debug("checkServerTrusted : no issuing certificate found for certificate subject '" + issuingCACertDao.getSubject() + "', issuer : '" + issuingCACertDao.getIssuer() + "'");
-					throw new CertificateException();
-				}
-
-				issuingCACertDao = nextCACertDao;
-				if( issuingCACertDao.isRevoked()) {
-					LOGGER.debug("checkServerTrusted : certificate forsubject '" + issuingCACertDao.getSubject() + "', revoked '" + issuingCACertDao.getRevocationReason() + "' on " + issuingCACertDao.getRevokedSince());
-					throw new CertificateException();
-				}
-				certList.add(CryptoService.convertPemToCertificate( issuingCACertDao.getContent()));
-
-				if( "true".equalsIgnoreCase(certUtil.getCertAttribute(issuingCACertDao, CertificateAttribute.ATTRIBUTE_SELFSIGNED))) {
-					LOGGER.debug("certificate chain complete, cert id '{}' is selfsigned", issuingCACertDao.getId());
-					if(!issuingCACertDao.isTrusted()){
-                        LOGGER.warn("checkServerTrusted : root certificate with subject '" + issuingCACertDao.getSubject() + "' is NOT explicitly marked as trusted !");
-                    }
-
-					break;
-				}
+			long expiresAt = now.getTime() + chainValidityMillis;
+			for( X509Certificate x509Cert: certList) {
+				expiresAt = Math.min(expiresAt, x509Cert.getNotAfter().getTime());
 			}
+			if( validatedChainMap.size() >= maxChains) {
+				limitChains(now.getTime());
+			}
+			validatedChainMap.put(fingerprint, new ValidatedChain(snapshot.getGeneration(), expiresAt));
 
 			/**
 			 * @todo
@@ -122,69 +136,137 @@ public class Ca3sTrustManager implements X509TrustManager {
 
 	}
 
-    private synchronized Certificate getCertificateObject(X509Certificate[] chain, X509Certificate serverCert) throws GeneralSecurityException, IOException {
-//        LOGGER.debug("checkServerTrusted : entering synchronized block!" );
+    /**
+     * walk up the chain of the server certificate using the in-memory index of the CA certificates
+     */
+    private List<X509Certificate> buildChain(X509Certificate[] chain, X509Certificate serverCert, Certificate serverCertDao, Date now) throws GeneralSecurityException, IOException {
+
+        ArrayList<X509Certificate> certList = new ArrayList<>();
+        certList.add(serverCert);
+
+        if( CaCertificateIndex.isIssuedBy(serverCert, serverCert)) {
+            LOGGER.debug("certificate chain complete, server cert id '{}' is selfsigned", serverCertDao.getId());
+            if(!Boolean.TRUE.equals(serverCertDao.isTrusted())){
+                LOGGER.warn("checkServerTrusted : selfsigned certificate with subject '" + serverCertDao.getSubject() + "' is NOT explicitly marked as trusted !");
+            }
+            return certList;
+        }
+
+        CaCertificateIndex.CaEntry issuer = caCertificateIndex.getSnapshot().findIssuer(serverCert, now);
+        if( issuer == null && (chain.length > 1) && CaCertificateIndex.isIssuedBy(serverCert, chain[1])) {
+            LOGGER.debug("checkServerTrusted : no issuing certificate found in database for certificate subject '" + serverCertDao.getSubject() + "',  : chain has " + chain.length + " elements");
+            issuer = caCertificateIndex.add(importIssuingCertificate(chain[1]));
+        }
+
+        for( int i = 0; i < MAX_CHAIN_LENGTH; i++) {
+            if( issuer == null){
+                X509Certificate current = certList.get(certList.size() - 1);
+                LOGGER.debug("checkServerTrusted : no issuing certificate found for certificate subject '" + current.getSubjectX500Principal().getName() + "', issuer : '" + current.getIssuerX500Principal().getName() + "'");
+                throw new CertificateException("no issuing certificate found for '" + current.getSubjectX500Principal().getName() + "'");
+            }
+
+            if( issuer.isRevoked()) {
+                LOGGER.debug("checkServerTrusted : certificate for subject '" + issuer.getX509Cert().getSubjectX500Principal().getName() + "' with id " + issuer.getId() + " revoked");
+                throw new CertificateException("issuing certificate '" + issuer.getX509Cert().getSubjectX500Principal().getName() + "' revoked");
+            }
+            certList.add(issuer.getX509Cert());
+
+            if( issuer.isSelfSigned()) {
+                LOGGER.debug("certificate chain complete, cert id '{}' is selfsigned", issuer.getId());
+                if(!issuer.isTrusted()){
+                    LOGGER.warn("checkServerTrusted : root certificate with subject '" + issuer.getX509Cert().getSubjectX500Principal().getName() + "' is NOT explicitly marked as trusted !");
+                }
+                return certList;
+            }
+
+            issuer = caCertificateIndex.getSnapshot().findIssuer(issuer.getX509Cert(), now);
+        }
+
+        String msg = "maximum chain length exceeded for certificate '" + serverCert.getSubjectX500Principal().getName() + "'";
+        LOGGER.debug("checkServerTrusted : " + msg);
+        throw new CertificateException(msg);
+    }
+
+    /**
+     * find the server certificate in the database, import it if unknown
+     */
+    private Certificate getCertificateObject(X509Certificate serverCert) throws GeneralSecurityException, IOException {
 
         Certificate serverCertDao = certUtil.getCertificateByX509(serverCert);
         if( serverCertDao!= null){
             LOGGER.debug("checkServerTrusted : server certificate found in database  '" + serverCertDao.getSubject() + "' with id  '" + serverCertDao.getId() + "'" );
         }else {
-            serverCertDao = certUtil.createCertificate(cryptoUtil.x509CertToPem(serverCert), null,
-                null,
-                false);
-            auditService.saveAuditTrace(auditService.createAuditTraceCertificate(AuditService.AUDIT_TLS_CERTIFICATE_IMPORTED, serverCertDao));
+            serverCertDao = importCertificate(serverCert, AuditService.AUDIT_TLS_CERTIFICATE_IMPORTED);
         }
 
-        if( serverCertDao.isRevoked()) {
+        if( Boolean.TRUE.equals(serverCertDao.isRevoked())) {
             LOGGER.debug("checkServerTrusted : certificate for subject '" + serverCert.getSubjectX500Principal().getName() + "', revoked '" + serverCertDao.getRevocationReason() + "' on " + serverCertDao.getRevokedSince());
             throw new CertificateException();
         }
+        return serverCertDao;
+    }
 
-        Certificate issuingCACertDao = null;
-        try {
-            issuingCACertDao = certUtil.findIssuingCertificate(serverCertDao);
-        }catch( GeneralSecurityException gse){
-            LOGGER.debug("checkServerTrusted : issuing certificate not available for certificate subject '" + serverCertDao.getSubject() + "', checking TLS chain with " + chain.length + " elements");
-        }
+    private Certificate importIssuingCertificate(X509Certificate issuingCert) throws GeneralSecurityException, IOException {
 
-        if( issuingCACertDao == null && (chain.length > 1)) {
-            LOGGER.debug("checkServerTrusted : no issuing certificate found in database for certificate subject '" + serverCertDao.getSubject() + "',  : chain has " + chain.length + " elements");
+        Certificate issuingCACertDao = certUtil.getCertificateByX509(issuingCert);
+        if( issuingCACertDao == null) {
+            LOGGER.debug("checkServerTrusted importing issuing CA cert '" + issuingCert.getSubjectX500Principal().getName() + "'");
+            issuingCACertDao = importCertificate(issuingCert, AuditService.AUDIT_TLS_INTERMEDIATE_CERTIFICATE_IMPORTED);
+        }
+        return issuingCACertDao;
+    }
 
-            issuingCACertDao = certUtil.createCertificate(cryptoUtil.x509CertToPem(chain[1]), null,
-                    null,
-                    false);
-            auditService.saveAuditTrace(auditService.createAuditTraceCertificate(AuditService.AUDIT_TLS_INTERMEDIATE_CERTIFICATE_IMPORTED, serverCertDao));
-            LOGGER.debug("checkServerTrusted importing issuing CA cert '" + chain[1].getSubjectX500Principal().getName() + "'");
+    /**
+     * concurrent handshakes with the same unknown certificate must not import it twice
+     */
+    private synchronized Certificate importCertificate(X509Certificate x509Cert, String auditTemplate) throws GeneralSecurityException, IOException {
 
+        Certificate certDao = certUtil.getCertificateByX509(x509Cert);
+        if( certDao == null) {
+            certDao = certUtil.createCertificate(cryptoUtil.x509CertToPem(x509Cert), null,
+                null,
+                false);
+            auditService.saveAuditTrace(auditService.createAuditTraceCertificate(auditTemplate, certDao));
         }
-        if( issuingCACertDao == null){
-            LOGGER.debug("checkServerTrusted : no issuing certificate found for certificate subject '" + serverCert.getSubjectX500Principal().getName() + "', issuer : '" + serverCert.getIssuerX500Principal().getName() + "'");
-            throw new CertificateException();
-        }
+        return certDao;
+    }
 
-        if( issuingCACertDao.isRevoked()) {
-            LOGGER.debug("checkServerTrusted : certificate for subject '" + issuingCACertDao.getSubject() + "', revoked '" + issuingCACertDao.getRevocationReason() + "' on " + issuingCACertDao.getRevokedSince());
-            throw new CertificateException();
+    /**
+     * drop expired chains, if that's not sufficient drop arbitrary chains until there is room for 10% new entries
+     */
+    private void limitChains(final long now) {
+        validatedChainMap.values().removeIf(vc -> vc.expiresAt <= now);
+
+        int targetSize = maxChains - Math.max(1, maxChains / 10);
+        Iterator<String> it = validatedChainMap.keySet().iterator();
+        while (validatedChainMap.size() > targetSize && it.hasNext()) {
+            it.next();
+            it.remove();
         }
-        return issuingCACertDao;
     }
 
     @Override
 	public X509Certificate[] getAcceptedIssuers() {
-		LOGGER.debug("getAcceptedIssuers call !");
-
-		List<Certificate> acceptedIssuerList = certificateRepository.findBySearchTermNamed1(CertificateAttribute.ATTRIBUTE_CA, "true");
-		X509Certificate[] certArray = new X509Certificate[acceptedIssuerList.size()];
-		for( int i = 0; i < acceptedIssuerList.size(); i++) {
-			try {
-				certArray[i] = CryptoService.convertPemToCertificate( acceptedIssuerList.get(i).getContent());
-			} catch (GeneralSecurityException e) {
-				LOGGER.debug("getAcceptedIssuers exception processing certificate dao with id  '" + acceptedIssuerList.get(i).getId() + "'", e);
-			}
-		}
-
+		X509Certificate[] certArray = caCertificateIndex.getSnapshot().getAcceptedIssuers();
 		LOGGER.debug("getAcceptedIssuers returns {} elements", certArray.length);
 		return certArray;
 	}
 
+    /**
+     * a successfully checked server certificate
+     */
+    private static final class ValidatedChain {
+        private final long generation;
+        private final long expiresAt;
+
+        ValidatedChain(long generation, long expiresAt) {
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isValid(long currentGeneration, long now) {
+            return generation == currentGeneration && now < expiresAt;
+        }
+    }
+
 }
@@ -0,0 +1,94 @@
+package de.trustable.ca3s.core.service.badkeys;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped lookup table of known compromised keys, using the 'blocklist.dat' format of badkeys:
+ * sorted, fixed size records of a SHA-256 hash truncated to 15 bytes followed by a one byte blocklist id.
+ */
+public class BadKeysBlocklist {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BadKeysBlocklist.class);
+
+    static final int HASH_LENGTH = 15;
+    static final int RECORD_LENGTH = HASH_LENGTH + 1;
+
+    private final ByteBuffer table;
+    private final int nRecords;
+
+    BadKeysBlocklist(ByteBuffer table) {
+        this.table = table;
+        this.nRecords = table.capacity() / RECORD_LENGTH;
+    }
+
+    /**
+     * map the blocklist file
+     *
+     * @param blocklistFile the file, e.g. 'blocklist.dat' of a badkeys installation
+     * @return the blocklist or null, if the file is not available
+     */
+    public static BadKeysBlocklist load(final File blocklistFile) {
+
+        if (!blocklistFile.isFile() || !blocklistFile.canRead()) {
+            LOGGER.info("badkeys blocklist '{}' not available", blocklistFile.getAbsolutePath());
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(blocklistFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() % RECORD_LENGTH != 0 || channel.size() > Integer.MAX_VALUE) {
+                LOGGER.warn("unexpected size {} of badkeys blocklist '{}'", channel.size(), blocklistFile.getAbsolutePath());
+                return null;
+            }
+            BadKeysBlocklist blocklist = new BadKeysBlocklist(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            LOGGER.info("badkeys blocklist '{}' with #{} entries mapped", blocklistFile.getAbsolutePath(), blocklist.size());
+            return blocklist;
+        } catch (IOException e) {
+            LOGGER.warn("problem mapping badkeys blocklist '" + blocklistFile.getAbsolutePath() + "'", e);
+            return null;
+        }
+    }
+
+    public int size() {
+        return nRecords;
+    }
+
+    /**
+     * @param hash SHA-256 hash (at least 15 bytes) of the key material
+     * @return the blocklist id or -1, if not found
+     */
+    public int lookup(final byte[] hash) {
+
+        int low = 0;
+        int high = nRecords - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareAt(mid, hash);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return table.get(mid * RECORD_LENGTH + HASH_LENGTH) & 0xff;
+            }
+        }
+        return -1;
+    }
+
+    private int compareAt(final int idx, final byte[] hash) {
+        int base = idx * RECORD_LENGTH;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int cmp = Integer.compare(table.get(base + i) & 0xff, hash[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+}
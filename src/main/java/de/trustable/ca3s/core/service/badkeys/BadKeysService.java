@@ -4,6 +4,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -11,6 +12,10 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Checks public keys for known weaknesses. By default the checks run in-JVM ({@link KeyWeaknessChecker}),
+ * the badkeys CLI is used if 'ca3s.badkeys.native' is false or as a fallback for keys the in-JVM checks can't handle.
+ */
 @Service
 public class BadKeysService {
 
@@ -20,17 +25,35 @@ public class BadKeysService {
     private final String badkeysExecutable;
     private final File badkeysDirectory;
 
+    private final KeyWeaknessChecker keyWeaknessChecker;
+
     private List<String> availableChecks;
 
     private boolean isInstalled = false;
 
+    public BadKeysService(boolean useBadkeys,
+                          String badkeysExecutable,
+                          File badkeysDirectory) {
+        this(useBadkeys, false, badkeysExecutable, badkeysDirectory, "");
+    }
+
+    @Autowired
     public BadKeysService(@Value("${ca3s.badkeys.use:false}") boolean useBadkeys,
+                          @Value("${ca3s.badkeys.native:true}") boolean useNative,
                           @Value("${ca3s.badkeys.executable:badkeys-cli}") String badkeysExecutable,
-                          @Value("${ca3s.badkeys.directory:/var/opt/badkeys}") File badkeysDirectory) {
+                          @Value("${ca3s.badkeys.directory:/var/opt/badkeys}") File badkeysDirectory,
+                          @Value("${ca3s.badkeys.blocklist:}") String blocklistPath) {
         this.useBadkeys = useBadkeys;
         this.badkeysExecutable = badkeysExecutable;
         this.badkeysDirectory = badkeysDirectory;
 
+        if( useBadkeys && useNative ){
+            File blocklistFile = blocklistPath.trim().isEmpty() ? new File(badkeysDirectory, "blocklist.dat") : new File(blocklistPath);
+            keyWeaknessChecker = new KeyWeaknessChecker(BadKeysBlocklist.load(blocklistFile));
+        } else {
+            keyWeaknessChecker = null;
+        }
+
         if( useBadkeys && badkeysDirectory.exists() && badkeysDirectory.canRead()){
 
             try {
@@ -51,6 +74,14 @@ public class BadKeysService {
         if( !useBadkeys ){
             return new BadKeysResult(false, false, "useBadkeys == false");
         }
+
+        if( keyWeaknessChecker != null ){
+            BadKeysResult badKeysResult = keyWeaknessChecker.check(pemCSR);
+            if( badKeysResult.getResponse() != null || !isInstalled ){
+                return badKeysResult;
+            }
+            LOGGER.debug("in-JVM check not applicable ({}), falling back to badkeys-cli", badKeysResult.getMesssage());
+        }
         if( !badkeysDirectory.exists() ){
             return new BadKeysResult(false, false, "badkeysDirectory '"+badkeysDirectory.getAbsolutePath()+"' does not exist");
         }
@@ -141,7 +172,7 @@ public class BadKeysService {
     }
 
     public boolean isInstalled() {
-        return isInstalled;
+        return isInstalled || keyWeaknessChecker != null;
     }
 
     public List<String> getAvailableChecks() {
@@ -0,0 +1,364 @@
+package de.trustable.ca3s.core.service.badkeys;
+
+import com.google.gson.JsonObject;
+import org.bouncycastle.asn1.pkcs.CertificationRequest;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.RSAPublicKey;
+import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.bouncycastle.util.encoders.Hex;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-JVM implementation of the badkeys checks relevant for enrollment: invalid RSA parameters, small factors,
+ * Fermat factorization of close primes, the ROCA fingerprint, trivial patterns and the blocklist lookup.
+ *
+ * The outcome is reported in the JSON structure of the badkeys CLI, so the result is processed the same way.
+ */
+public class KeyWeaknessChecker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyWeaknessChecker.class);
+
+    static final int FERMAT_ROUNDS = 100;
+
+    static final int SMALL_PRIME_LIMIT = 10000;
+
+    // primes and generator of the ROCA fingerprint (CVE-2017-15361)
+    private static final int[] ROCA_PRIMES = {3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67,
+        71, 73, 79, 83, 89, 97, 101, 103, 107, 109, 113, 127, 131, 137, 139, 149, 151, 157, 163, 167};
+    private static final int ROCA_GENERATOR = 65537;
+    private static final boolean[][] ROCA_RESIDUES = new boolean[ROCA_PRIMES.length][];
+
+    private static final BigInteger SMALL_PRIME_PRODUCT;
+
+    // quadratic residues, used to skip most of the square root calculations
+    private static final boolean[] SQUARE_MOD_64 = new boolean[64];
+    private static final int SQUARE_FILTER_MODULUS = 63 * 65 * 11;
+    private static final boolean[] SQUARE_MOD_FILTER = new boolean[SQUARE_FILTER_MODULUS];
+    private static final BigInteger BIG_SQUARE_FILTER_MODULUS = BigInteger.valueOf(SQUARE_FILTER_MODULUS);
+
+    static {
+        for (int i = 0; i < ROCA_PRIMES.length; i++) {
+            int p = ROCA_PRIMES[i];
+            boolean[] residues = new boolean[p];
+            int r = 1;
+            do {
+                residues[r] = true;
+                r = (int) ((long) r * ROCA_GENERATOR % p);
+            } while (r != 1);
+            ROCA_RESIDUES[i] = residues;
+        }
+
+        boolean[] composite = new boolean[SMALL_PRIME_LIMIT];
+        BigInteger product = BigInteger.ONE;
+        for (int i = 2; i < SMALL_PRIME_LIMIT; i++) {
+            if (!composite[i]) {
+                product = product.multiply(BigInteger.valueOf(i));
+                for (int j = i * i; j < SMALL_PRIME_LIMIT; j += i) {
+                    composite[j] = true;
+                }
+            }
+        }
+        SMALL_PRIME_PRODUCT = product;
+
+        for (int i = 0; i < 64; i++) {
+            SQUARE_MOD_64[(i * i) % 64] = true;
+        }
+        for (int i = 0; i < SQUARE_FILTER_MODULUS; i++) {
+            SQUARE_MOD_FILTER[(int) ((long) i * i % SQUARE_FILTER_MODULUS)] = true;
+        }
+    }
+
+    private final BadKeysBlocklist blocklist;
+
+    public KeyWeaknessChecker(BadKeysBlocklist blocklist) {
+        this.blocklist = blocklist;
+    }
+
+    /**
+     * check the public key contained in a PEM encoded CSR, certificate or public key
+     *
+     * @param pem the PEM encoded object
+     * @return the check result
+     */
+    public BadKeysResult check(final String pem) {
+
+        SubjectPublicKeyInfo spki;
+        try {
+            spki = parsePublicKey(pem);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug("problem parsing PEM for badkeys check", e);
+            return new BadKeysResult(false, "unable to parse the public key");
+        }
+        if (spki == null) {
+            return new BadKeysResult(false, "no public key found");
+        }
+
+        JsonObject results = new JsonObject();
+        Response response;
+        try {
+            if (PKCSObjectIdentifiers.rsaEncryption.equals(spki.getAlgorithm().getAlgorithm())) {
+                RSAPublicKey rsaPublicKey = RSAPublicKey.getInstance(spki.parsePublicKey());
+                response = checkRSA(rsaPublicKey.getModulus(), rsaPublicKey.getPublicExponent(), results);
+            } else if (X9ObjectIdentifiers.id_ecPublicKey.equals(spki.getAlgorithm().getAlgorithm())) {
+                response = checkEC(spki.getPublicKeyData().getOctets(), results);
+            } else {
+                response = createResponse(spki.getAlgorithm().getAlgorithm().getId(), results);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug("problem parsing public key for badkeys check", e);
+            return new BadKeysResult(false, "unable to parse the public key");
+        }
+
+        response.setSpkisha256(Hex.toHexString(sha256(spkiEncoded(spki))));
+        return new BadKeysResult(response);
+    }
+
+    Response checkRSA(final BigInteger n, final BigInteger e, final JsonObject results) {
+
+        String invalidSubtest = checkRSAParameters(n, e);
+        if (invalidSubtest != null) {
+            results.add("rsainvalid", detected(invalidSubtest));
+        } else {
+            if (!SMALL_PRIME_PRODUCT.gcd(n).equals(BigInteger.ONE)) {
+                results.add("smallfactors", detected(null));
+            }
+
+            BigInteger[] ab = fermat(n);
+            if (ab != null) {
+                JsonObject fermat = detected(null);
+                fermat.addProperty("p", ab[0].add(ab[1]));
+                fermat.addProperty("q", ab[0].subtract(ab[1]));
+                fermat.addProperty("a", ab[0]);
+                fermat.addProperty("b", ab[1]);
+                results.add("fermat", fermat);
+            }
+
+            if (isRocaFingerprint(n)) {
+                results.add("roca", detected(null));
+            }
+
+            if (isPattern(n)) {
+                results.add("pattern", detected(null));
+            }
+        }
+
+        checkBlocklist(n, results);
+
+        Response response = createResponse("rsa", results);
+        response.setN(n);
+        response.setE(e);
+        response.setBits(n.bitLength());
+        return response;
+    }
+
+    Response checkEC(final byte[] point, final JsonObject results) {
+
+        // uncompressed (04 | x | y) or compressed (02 / 03 | x) point
+        BigInteger x = null;
+        if (point.length > 1 && point[0] == 0x04) {
+            x = new BigInteger(1, Arrays.copyOfRange(point, 1, 1 + (point.length - 1) / 2));
+        } else if (point.length > 1 && (point[0] == 0x02 || point[0] == 0x03)) {
+            x = new BigInteger(1, Arrays.copyOfRange(point, 1, point.length));
+        }
+
+        if (x != null) {
+            checkBlocklist(x, results);
+        }
+
+        Response response = createResponse("ec", results);
+        response.setX(x);
+        if (x != null) {
+            response.setBits(x.bitLength());
+        }
+        return response;
+    }
+
+    /**
+     * @return the failed subtest or null, if the parameters are plausible
+     */
+    static String checkRSAParameters(final BigInteger n, final BigInteger e) {
+        if (e.compareTo(BigInteger.valueOf(3)) < 0 || !e.testBit(0)) {
+            return "exponent";
+        }
+        if (!n.testBit(0)) {
+            return "even";
+        }
+        if (n.isProbablePrime(20)) {
+            return "prime";
+        }
+        return null;
+    }
+
+    /**
+     * Fermat's factorization, successful if the two primes are close to each other
+     *
+     * @return a and b with n = a^2 - b^2 or null, if not found within the given number of rounds
+     */
+    static BigInteger[] fermat(final BigInteger n) {
+
+        BigInteger a = sqrt(n);
+        if (a.multiply(a).compareTo(n) < 0) {
+            a = a.add(BigInteger.ONE);
+        }
+        BigInteger b2 = a.multiply(a).subtract(n);
+
+        for (int i = 0; i < FERMAT_ROUNDS; i++) {
+            if (isSquare(b2)) {
+                return new BigInteger[]{a, sqrt(b2)};
+            }
+            // (a+1)^2 - n = b2 + 2a + 1
+            b2 = b2.add(a.shiftLeft(1)).add(BigInteger.ONE);
+            a = a.add(BigInteger.ONE);
+        }
+        return null;
+    }
+
+    static boolean isRocaFingerprint(final BigInteger n) {
+        for (int i = 0; i < ROCA_PRIMES.length; i++) {
+            int residue = n.mod(BigInteger.valueOf(ROCA_PRIMES[i])).intValue();
+            if (!ROCA_RESIDUES[i][residue]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * a modulus dominated by a single byte value can't be the product of two random primes
+     */
+    static boolean isPattern(final BigInteger n) {
+        byte[] bytes = n.toByteArray();
+        int[] counts = new int[256];
+        int max = 0;
+        for (byte b : bytes) {
+            max = Math.max(max, ++counts[b & 0xff]);
+        }
+        return max > bytes.length / 2;
+    }
+
+    private void checkBlocklist(final BigInteger value, final JsonObject results) {
+        if (blocklist == null) {
+            return;
+        }
+
+        byte[] hash = sha256(value.toString().getBytes(StandardCharsets.US_ASCII));
+        int blid = blocklist.lookup(hash);
+        if (blid >= 0) {
+            JsonObject blocklistResult = detected(null);
+            blocklistResult.addProperty("blid", blid);
+            blocklistResult.addProperty("lookup", Hex.toHexString(hash, 0, 8));
+            blocklistResult.addProperty("debug", "Truncated Hash: " + Hex.toHexString(hash, 0, BadKeysBlocklist.HASH_LENGTH));
+            results.add("blocklist", blocklistResult);
+        }
+    }
+
+    private static Response createResponse(final String type, final JsonObject results) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("type", type);
+        jsonObject.add("results", results);
+        return new Response(jsonObject);
+    }
+
+    private static JsonObject detected(final String subtest) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("detected", true);
+        if (subtest != null) {
+            jsonObject.addProperty("subtest", subtest);
+        }
+        return jsonObject;
+    }
+
+    static SubjectPublicKeyInfo parsePublicKey(final String pem) throws IOException {
+
+        List<PemObject> pemObjectList = new ArrayList<>();
+        try (PemReader pemReader = new PemReader(new StringReader(pem))) {
+            PemObject pemObject;
+            while ((pemObject = pemReader.readPemObject()) != null) {
+                pemObjectList.add(pemObject);
+            }
+        }
+
+        for (PemObject pemObject : pemObjectList) {
+            switch (pemObject.getType()) {
+                case "CERTIFICATE REQUEST":
+                case "NEW CERTIFICATE REQUEST":
+                    return CertificationRequest.getInstance(pemObject.getContent())
+                        .getCertificationRequestInfo().getSubjectPublicKeyInfo();
+                case "CERTIFICATE":
+                    return Certificate.getInstance(pemObject.getContent()).getSubjectPublicKeyInfo();
+                case "PUBLIC KEY":
+                    return SubjectPublicKeyInfo.getInstance(pemObject.getContent());
+                case "RSA PUBLIC KEY":
+                    return new SubjectPublicKeyInfo(
+                        new org.bouncycastle.asn1.x509.AlgorithmIdentifier(PKCSObjectIdentifiers.rsaEncryption,
+                            org.bouncycastle.asn1.DERNull.INSTANCE),
+                        RSAPublicKey.getInstance(pemObject.getContent()));
+                default:
+                    LOGGER.debug("ignoring PEM object of type '{}'", pemObject.getType());
+            }
+        }
+        return null;
+    }
+
+    private static byte[] spkiEncoded(final SubjectPublicKeyInfo spki) {
+        try {
+            return spki.getEncoded();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static byte[] sha256(final byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isSquare(final BigInteger x) {
+        if (x.signum() < 0) {
+            return false;
+        }
+        if (!SQUARE_MOD_64[x.intValue() & 63]) {
+            return false;
+        }
+        if (!SQUARE_MOD_FILTER[x.mod(BIG_SQUARE_FILTER_MODULUS).intValue()]) {
+            return false;
+        }
+        BigInteger root = sqrt(x);
+        return root.multiply(root).equals(x);
+    }
+
+    /**
+     * @return the integer square root, rounded down
+     */
+    static BigInteger sqrt(final BigInteger x) {
+        if (x.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        BigInteger r = BigInteger.ONE.shiftLeft((x.bitLength() + 1) / 2);
+        while (true) {
+            BigInteger next = r.add(x.divide(r)).shiftRight(1);
+            if (next.compareTo(r) >= 0) {
+                return r;
+            }
+            r = next;
+        }
+    }
+}
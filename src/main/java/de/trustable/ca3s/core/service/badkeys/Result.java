@@ -19,6 +19,7 @@ public class Result implements Serializable {
     private Invalid rsaInvalid;
     private Invalid roca;
     private Invalid pattern;
+    private Invalid smallFactors;
     private Fermat fermat;
     private String resultType = "valid";
 
@@ -40,6 +41,10 @@ public class Result implements Serializable {
             pattern = new Invalid(jsonObject.getAsJsonObject("pattern"));
             resultType = "pattern";
         }
+        if( jsonObject.has("smallfactors")){
+            smallFactors = new Invalid(jsonObject.getAsJsonObject("smallfactors"));
+            resultType = "smallfactors";
+        }
 
         if( jsonObject.has("fermat")){
             fermat = new Fermat(jsonObject.getAsJsonObject("fermat"));
@@ -81,6 +86,14 @@ public class Result implements Serializable {
         this.pattern = pattern;
     }
 
+    public Invalid getSmallFactors() {
+        return smallFactors;
+    }
+
+    public void setSmallFactors(Invalid smallFactors) {
+        this.smallFactors = smallFactors;
+    }
+
     public Fermat getFermat() {
         return fermat;
     }
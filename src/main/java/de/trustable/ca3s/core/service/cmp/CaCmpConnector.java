@@ -121,7 +121,7 @@ public class CaCmpConnector {
 
 			// send and receive ..
 			byte[] responseBytes = remoteConnector.sendHttpReq(caConnConfig.getCaUrl() + "/" + caConnConfig.getSelector(),
-					requestBytes);
+					requestBytes, caConnConfig.getName());
 
 			if (responseBytes == null) {
 				throw new GeneralSecurityException("remote connector returned 'null'");
@@ -1,34 +1,24 @@
 package de.trustable.ca3s.core.service.cmp;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 
-import de.trustable.ca3s.core.security.provider.Ca3sTrustManager;
+import de.trustable.ca3s.core.service.util.ConnectorHttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-
 @Service
 public class RemoteConnector {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(RemoteConnector.class);
 
     private final Environment environment;
-    private final Ca3sTrustManager ca3sTrustManager;
+    private final ConnectorHttpTransport connectorHttpTransport;
 
-    public RemoteConnector(Environment environment, Ca3sTrustManager ca3sTrustManager) {
+    public RemoteConnector(Environment environment, ConnectorHttpTransport connectorHttpTransport) {
         this.environment = environment;
-        this.ca3sTrustManager = ca3sTrustManager;
+        this.connectorHttpTransport = connectorHttpTransport;
     }
 
     /**
@@ -39,6 +29,18 @@ public class RemoteConnector {
 	 * @throws IOException
 	 */
 	public byte[] sendHttpReq(final String requestUrlParam, final byte[] requestBytes) throws IOException {
+		return sendHttpReq(requestUrlParam, requestBytes, "cmp");
+	}
+
+	/**
+	 *
+	 * @param requestUrlParam
+	 * @param requestBytes
+	 * @param connectorName the name of the connector, used for the metrics
+	 * @return byte array
+	 * @throws IOException
+	 */
+	public byte[] sendHttpReq(final String requestUrlParam, final byte[] requestBytes, final String connectorName) throws IOException {
 
 		if (requestUrlParam == null) {
 			throw new IllegalArgumentException("requestUrlParam can not be null.");
@@ -61,69 +63,12 @@ public class RemoteConnector {
 
 		LOGGER.debug("Sending request to: " + requestUrl);
 
-		long startTime = System.currentTimeMillis();
-
-		URL url = new URL(requestUrl);
-        HttpURLConnection con = (HttpURLConnection) url.openConnection();
-        if("https".equals(url.getProtocol())) {
-            try {
-                SSLContext sc = SSLContext.getInstance("SSL");
-                sc.init(null,
-                    new TrustManager[]{ca3sTrustManager},
-                    new java.security.SecureRandom());
-
-                HttpsURLConnection conTLS = (HttpsURLConnection)con;
-                conTLS.setSSLSocketFactory(sc.getSocketFactory());
-            } catch (NoSuchAlgorithmException | KeyManagementException e) {
-                throw new IOException("problem configuring the SSLContext", e);
-            }
-
-        }else if("http".equals(url.getProtocol())) {
-            // everything's fine, nothing to do ...
-        }else{
-            throw new IOException("Unexpected protocol '" + url.getProtocol() + "'");
-        }
-
-		// we are going to do a POST
-		con.setDoOutput(true);
-		con.setRequestMethod("POST");
-
-		con.setRequestProperty("Content-Type", "application/octet-stream;charset=UTF-8");
-
-		java.io.OutputStream os = con.getOutputStream();
-		os.write(requestBytes);
-		os.close();
-
-		// Read the response
-		InputStream in = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		try {
-			in = con.getInputStream();
-
-			byte[] tmpBA = new byte[4096];
-			int nBytes = 0;
-			while ((nBytes = in.read(tmpBA)) > 0) {
-				baos.write(tmpBA, 0, nBytes);
-			}
-			LOGGER.debug("# " + baos.size() + " response bytes recieved");
-		} finally {
-			if (in != null) {
-				in.close();
-			}
-		}
-
-		if (con.getResponseCode() == 200) {
-			LOGGER.debug("Received certificate reply.");
-		} else {
-			throw new IOException("Error sending CMP request. Response codse != 200 : " + con.getResponseCode());
-		}
-
-		// We are done, disconnect
-		con.disconnect();
+		byte[] responseBytes = connectorHttpTransport.post(connectorName, requestUrl,
+			"application/octet-stream;charset=UTF-8", requestBytes);
 
-		LOGGER.debug("duration of remote CMP call " + (System.currentTimeMillis() - startTime));
+		LOGGER.debug("Received certificate reply.");
 
-		return baos.toByteArray();
+		return responseBytes;
 	}
 
 }
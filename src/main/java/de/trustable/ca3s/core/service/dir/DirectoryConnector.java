@@ -15,19 +15,35 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.GeneralSecurityException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import de.trustable.ca3s.core.domain.Certificate;
 import de.trustable.ca3s.core.schedule.spider.Crawler;
 import de.trustable.ca3s.core.service.AuditService;
+import de.trustable.ca3s.core.service.dto.CertificateImportResult;
+import de.trustable.ca3s.core.service.util.CertificateBatchImporter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -51,6 +67,11 @@ public class DirectoryConnector {
 
 	private static final long MAX_IMPORTS_MILLISECONDS = 300L * 1000L;
 
+	public static final String METRIC_DIRECTORY_FILES = "ca3s.import.directory.files";
+	public static final String METRIC_DIRECTORY_CERTIFICATES = "ca3s.import.directory.certificates";
+	public static final String METRIC_DIRECTORY_PENDING = "ca3s.import.directory.pending";
+	public static final String METRIC_DIRECTORY_DURATION = "ca3s.import.directory.duration";
+
 	Logger LOGGER = LoggerFactory.getLogger(DirectoryConnector.class);
 
 	@Autowired
@@ -71,6 +92,26 @@ public class DirectoryConnector {
     @Autowired
     private AuditService auditService;
 
+    @Autowired
+    private CertificateBatchImporter certificateBatchImporter;
+
+    @Autowired
+    private DirectoryWatcher directoryWatcher;
+
+    @Autowired
+    private Crawler crawler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ca3s.import.directory.incremental:false}")
+    private boolean incrementalImport;
+
+    @Value("${ca3s.import.directory.filesPerChunk:200}")
+    private int filesPerChunk;
+
+    private final Map<String, AtomicLong> pendingMap = new ConcurrentHashMap<>();
+
     /**
 	 *
 	 */
@@ -135,14 +176,9 @@ public class DirectoryConnector {
 		if( url.startsWith("http://") ||
 				url.startsWith("https://") ) {
 
-            Crawler crawler = new Crawler();
-
             List<String> crawlDomains = Arrays.asList(caConfig.getCaUrl());
 			for( String domain: crawlDomains) {
-                Set<String> certificateSet = crawler.search(domain, regEx);
-                for( String certUrl: certificateSet) {
-                    importCertifiateFromURL(certUrl, importInfo, caConfig);
-                }
+                crawler.search(domain, regEx, certUrl -> importCertifiateFromURL(certUrl, importInfo, caConfig));
             }
 
         }else {
@@ -151,6 +187,9 @@ public class DirectoryConnector {
 
 			LOGGER.debug("in retrieveCertificates for directory '{}' using regex '{}'", dir, regEx);
 
+			if( incrementalImport && !Boolean.TRUE.equals(caConfig.getTrustSelfsignedCertificates())) {
+				return retrieveChangedCertificates(caConfig, dir.toPath().toAbsolutePath(), regEx);
+			}
 
 			Set<String> certSet = listFilesUsingFileWalkAndVisitor(dir.getAbsolutePath(), regEx);
 
@@ -169,6 +208,185 @@ public class DirectoryConnector {
 	}
 
 
+
+	/**
+	 * import the new and modified files of a directory tree. A file is regarded as unchanged if its size and
+	 * modification date or its content hash match the checkpoint recorded in the ImportedURL table.
+	 * The changed files are imported by the {@link CertificateBatchImporter}, chunk by chunk, each chunk followed by
+	 * the update of its checkpoints.
+	 *
+	 * @param caConfig the connector
+	 * @param dir the absolute root of the directory tree
+	 * @param regEx the selector of the file names
+	 * @return the number of imported certificates
+	 * @throws IOException scanning the directory failed
+	 */
+	int retrieveChangedCertificates(final CAConnectorConfig caConfig, final Path dir, final String regEx) throws IOException {
+
+		String connectorName = String.valueOf(caConfig.getName());
+		long startTime = currentTimeMillis();
+
+		List<Path> fileList = new ArrayList<>();
+		Set<Path> changedSet = directoryWatcher.pollChanges(dir);
+		boolean fullScan = (changedSet == null);
+		if( fullScan ) {
+			for( String filename: listFilesUsingFileWalkAndVisitor(dir.toString(), regEx)) {
+				fileList.add(Paths.get(filename));
+			}
+			Collections.sort(fileList);
+		} else {
+			Pattern pattern = Pattern.compile(regEx);
+			for( Path file: changedSet) {
+				if( Files.isRegularFile(file) && Files.isReadable(file) &&
+					pattern.matcher(file.getFileName().toString().toLowerCase().trim()).matches()) {
+					fileList.add(file);
+				}
+			}
+		}
+		LOGGER.debug("retrieveChangedCertificates: #{} candidate files in '{}', full scan: {}", fileList.size(), dir, fullScan);
+
+		Map<String, ImportedURL> checkpointMap = new HashMap<>();
+		if( !fileList.isEmpty()) {
+			// same form as the names recorded by importCertifiateFromFile
+			String prefix = dir.toFile().toURI().toString();
+			for( ImportedURL impUrl: transactionHandler.runInNewTransaction(() -> importedURLRepository.findEntityByUrlPrefix(prefix + "%"))) {
+				checkpointMap.put(impUrl.getName(), impUrl);
+			}
+		}
+
+		int imported = 0;
+		int idx = 0;
+		while( idx < fileList.size()) {
+			List<Path> chunk = fileList.subList(idx, Math.min(idx + Math.max(1, filesPerChunk), fileList.size()));
+			idx += chunk.size();
+
+			Map<String, byte[]> contentMap = new LinkedHashMap<>();
+			List<ImportedURL> checkpointList = new ArrayList<>();
+			for( Path file: chunk) {
+				try {
+					ImportedURL impUrl = checkpoint(file, checkpointMap, contentMap);
+					if( impUrl != null) {
+						checkpointList.add(impUrl);
+					}
+				} catch (IOException e) {
+					LOGGER.info("reading file '{}' causes {}", file, e.getLocalizedMessage());
+				}
+			}
+
+			countFiles(connectorName, "unchanged", chunk.size() - contentMap.size());
+			countFiles(connectorName, "changed", contentMap.size());
+
+			if( !contentMap.isEmpty()) {
+				CertificateImportResult result = certificateBatchImporter.importCertificates(contentMap, dir.toString());
+				imported += result.getImported();
+				countCertificates(connectorName, "imported", result.getImported());
+				countCertificates(connectorName, "existing", result.getExisting());
+				countCertificates(connectorName, "failed", result.getFailed());
+			}
+
+			// the import does not necessarily succeed, but we should mark the files as imported
+			if( !checkpointList.isEmpty()) {
+				transactionHandler.runInNewTransaction(() -> importedURLRepository.saveAll(checkpointList));
+			}
+
+			getPendingGauge(connectorName).set(fileList.size() - idx);
+
+			if( idx < fileList.size() && (currentTimeMillis() - startTime) > MAX_IMPORTS_MILLISECONDS ) {
+				LOGGER.debug("retrieveChangedCertificates: imported for more than {} sec., delaying #{} files ...",
+					MAX_IMPORTS_MILLISECONDS / 1000L, fileList.size() - idx);
+				directoryWatcher.requeue(dir, fileList.subList(idx, fileList.size()));
+				break;
+			}
+		}
+
+		Timer.builder(METRIC_DIRECTORY_DURATION)
+			.tag("connector", connectorName)
+			.tag("scan", fullScan ? "full" : "watch")
+			.description("duration of a directory import")
+			.register(meterRegistry)
+			.record(currentTimeMillis() - startTime, TimeUnit.MILLISECONDS);
+
+		LOGGER.debug("retrieveChangedCertificates: #{} files checked, #{} certificates imported from '{}' in {} mSec",
+			idx, imported, dir, currentTimeMillis() - startTime);
+		return imported;
+	}
+
+	/**
+	 * compare a file with its checkpoint and read the content of a changed file
+	 *
+	 * @return the new or updated checkpoint, null if the file is unchanged
+	 */
+	private ImportedURL checkpoint(final Path file, final Map<String, ImportedURL> checkpointMap,
+								   final Map<String, byte[]> contentMap) throws IOException {
+
+		BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		long fileSize = attrs.size();
+
+		// discard the milliseconds
+		Instant lastChangeDate = Instant.ofEpochSecond(attrs.lastModifiedTime().toMillis() / 1000L);
+
+		String url = file.toFile().toURI().toString();
+		ImportedURL impUrl = checkpointMap.get(url);
+		boolean sameDate = impUrl != null && impUrl.getImportDate().getEpochSecond() == lastChangeDate.getEpochSecond();
+		if( sameDate && Long.valueOf(fileSize).equals(impUrl.getFileSize())) {
+			return null;
+		}
+
+		byte[] content = Files.readAllBytes(file);
+		String contentHash = DigestUtils.sha256Hex(content);
+
+		// files just touched or recorded before checkpoints held a hash are not imported again
+		boolean unchanged = impUrl != null &&
+			(contentHash.equals(impUrl.getContentHash()) || (impUrl.getContentHash() == null && sameDate));
+		if( impUrl == null) {
+			impUrl = new ImportedURL();
+			impUrl.setName(url);
+		}
+		if( unchanged) {
+			LOGGER.debug("content of '{}' unchanged", file);
+		} else {
+			contentMap.put(file.toString(), content);
+		}
+
+		impUrl.setImportDate(lastChangeDate);
+		impUrl.setFileSize(fileSize);
+		impUrl.setContentHash(contentHash);
+		return impUrl;
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private void countFiles(final String connectorName, final String result, final int count) {
+		Counter.builder(METRIC_DIRECTORY_FILES)
+			.tag("connector", connectorName)
+			.tag("result", result)
+			.description("files checked by directory imports")
+			.register(meterRegistry)
+			.increment(count);
+	}
+
+	private void countCertificates(final String connectorName, final String result, final int count) {
+		Counter.builder(METRIC_DIRECTORY_CERTIFICATES)
+			.tag("connector", connectorName)
+			.tag("result", result)
+			.description("certificates read by directory imports")
+			.register(meterRegistry)
+			.increment(count);
+	}
+
+	private AtomicLong getPendingGauge(final String connectorName) {
+		return pendingMap.computeIfAbsent(connectorName, name -> {
+			AtomicLong pending = new AtomicLong();
+			Gauge.builder(METRIC_DIRECTORY_PENDING, pending, AtomicLong::get)
+				.tag("connector", name)
+				.description("files delayed to the next directory import")
+				.register(meterRegistry);
+			return pending;
+		});
+	}
+
 	/**
 	 *
      * @param filename
@@ -0,0 +1,184 @@
+package de.trustable.ca3s.core.service.dir;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Collects the files created or modified in the import directories between two imports.
+ *
+ * The events of a directory tree are queued by the file system's {@link WatchService} and drained on every call of
+ * {@link #pollChanges(Path)}, no background thread is involved. A full scan of the directory is requested on first use,
+ * if watching is not supported, if events were lost and every 'ca3s.import.directory.rescan.seconds'. The periodic
+ * scan also covers file systems not reporting all changes, e.g. network shares modified by other hosts.
+ */
+@Service
+public class DirectoryWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    private final long rescanMillis;
+
+    private final Map<Path, DirectoryWatch> watchMap = new ConcurrentHashMap<>();
+
+    public DirectoryWatcher(@Value("${ca3s.import.directory.rescan.seconds:3600}") long rescanSeconds) {
+        this.rescanMillis = rescanSeconds * 1000L;
+    }
+
+    /**
+     * get the files created or modified since the last call
+     *
+     * @param dir the root of the directory tree
+     * @return the changed files or null, if the whole directory tree has to be scanned
+     */
+    public Set<Path> pollChanges(final Path dir) {
+
+        DirectoryWatch watch = watchMap.computeIfAbsent(dir, this::startWatch);
+        synchronized (watch) {
+            long now = System.currentTimeMillis();
+            boolean fullScan = watch.watchService == null || watch.nextFullScan <= now;
+
+            if (watch.watchService != null && !drainEvents(watch)) {
+                fullScan = true;
+            }
+
+            if (fullScan) {
+                watch.pendingSet.clear();
+                watch.nextFullScan = now + rescanMillis;
+                return null;
+            }
+
+            Set<Path> changedSet = new LinkedHashSet<>(watch.pendingSet);
+            watch.pendingSet.clear();
+            return changedSet;
+        }
+    }
+
+    /**
+     * return files not processed in time, they are returned again by the next call of {@link #pollChanges(Path)}
+     *
+     * @param dir       the root of the directory tree
+     * @param fileList  the unprocessed files
+     */
+    public void requeue(final Path dir, final Collection<Path> fileList) {
+        DirectoryWatch watch = watchMap.get(dir);
+        if (watch != null) {
+            synchronized (watch) {
+                watch.pendingSet.addAll(fileList);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (DirectoryWatch watch : watchMap.values()) {
+            closeQuietly(watch.watchService);
+        }
+        watchMap.clear();
+    }
+
+    private DirectoryWatch startWatch(final Path dir) {
+
+        DirectoryWatch watch = new DirectoryWatch();
+        try {
+            watch.watchService = FileSystems.getDefault().newWatchService();
+            registerTree(watch, dir);
+            LOG.info("watching #{} directories below '{}'", watch.keyMap.size(), dir);
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.info("watching directory '{}' not possible ({}), scanning on every import", dir, e.getMessage());
+            closeQuietly(watch.watchService);
+            watch.watchService = null;
+            watch.keyMap.clear();
+        }
+        return watch;
+    }
+
+    /**
+     * @return false, if events were lost
+     */
+    private boolean drainEvents(final DirectoryWatch watch) {
+
+        boolean complete = true;
+        try {
+            WatchKey key;
+            while ((key = watch.watchService.poll()) != null) {
+                Path parent = watch.keyMap.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || parent == null) {
+                        complete = false;
+                        continue;
+                    }
+                    Path child = parent.resolve((Path) event.context());
+                    if (Files.isDirectory(child)) {
+                        // a new or moved directory, its content was not watched before. Modifications of a
+                        // watched directory are reported by its own key.
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && !watch.keyMap.containsValue(child)) {
+                            registerTree(watch, child);
+                            complete = false;
+                        }
+                    } else {
+                        watch.pendingSet.add(child);
+                    }
+                }
+                if (!key.reset()) {
+                    watch.keyMap.remove(key);
+                }
+            }
+        } catch (IOException | ClosedWatchServiceException e) {
+            LOG.info("problem watching directory: {}", e.getMessage());
+            complete = false;
+        }
+        return complete;
+    }
+
+    private void registerTree(final DirectoryWatch watch, final Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = subDir.register(watch.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watch.keyMap.put(key, subDir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void closeQuietly(final WatchService watchService) {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.debug("problem closing watch service", e);
+            }
+        }
+    }
+
+    private static final class DirectoryWatch {
+        private WatchService watchService;
+        private final Map<WatchKey, Path> keyMap = new HashMap<>();
+        private final Set<Path> pendingSet = new LinkedHashSet<>();
+        private long nextFullScan = 0;
+    }
+}
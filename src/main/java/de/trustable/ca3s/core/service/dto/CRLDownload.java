@@ -0,0 +1,44 @@
+package de.trustable.ca3s.core.service.dto;
+
+import java.security.cert.X509CRL;
+
+/**
+ * Outcome of a conditional CRL download
+ */
+public class CRLDownload {
+
+    private final X509CRL crl;
+    private final boolean notModified;
+    private final String eTag;
+    private final String lastModified;
+
+    public CRLDownload(X509CRL crl, boolean notModified, String eTag, String lastModified) {
+        this.crl = crl;
+        this.notModified = notModified;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public static CRLDownload notModified(String eTag, String lastModified) {
+        return new CRLDownload(null, true, eTag, lastModified);
+    }
+
+    /**
+     * @return the downloaded and verified CRL, null if not modified or not verifiable
+     */
+    public X509CRL getCrl() {
+        return crl;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,59 @@
+package de.trustable.ca3s.core.service.dto;
+
+public class CertificateImportResult {
+
+    int read = 0;
+    int imported = 0;
+    int existing = 0;
+    int failed = 0;
+    int batches = 0;
+    long durationMillis = 0;
+
+    public CertificateImportResult(){}
+
+    public CertificateImportResult(int read, int imported, int existing, int failed, long durationMillis) {
+        this.read = read;
+        this.imported = imported;
+        this.existing = existing;
+        this.failed = failed;
+        this.batches = 1;
+        this.durationMillis = durationMillis;
+    }
+
+    public void add(CertificateImportResult other) {
+        read += other.read;
+        imported += other.imported;
+        existing += other.existing;
+        failed += other.failed;
+        batches += other.batches;
+        durationMillis += other.durationMillis;
+    }
+
+    public int getRead() {
+        return read;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getExisting() {
+        return existing;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getCertificatesPerSecond() {
+        return (read * 1000L) / Math.max(1L, durationMillis);
+    }
+}
@@ -221,6 +221,16 @@ public class CertificateView implements Serializable {
     public CertificateView() {}
 
     public CertificateView(final Certificate cert) {
+        this(cert, cert.getIssuingCertificate() != null && isChainComplete(cert.getIssuingCertificate()));
+    }
+
+    /**
+     * build the view with a chain status already known to the caller, avoiding the walk along the issuer chain
+     *
+     * @param cert the certificate
+     * @param isFullChainAvailable true, if the chain up to a self-signed root is present in the database
+     */
+    public CertificateView(final Certificate cert, final boolean isFullChainAvailable) {
     	this.id = cert.getId();
     	this.tbsDigest = cert.getTbsDigest();
     	this.subject = cert.getSubject();
@@ -264,18 +274,9 @@ public class CertificateView implements Serializable {
 
         this.root = "";
         this.intermediate = false;
-        this.isFullChainAvailable = false;
+        this.isFullChainAvailable = isFullChainAvailable;
     	if( cert.getIssuingCertificate() != null) {
     		this.issuerId = cert.getIssuingCertificate().getId();
-
-            Certificate issuerCheck = cert.getIssuingCertificate();
-            for(int i = 0; i < 10 && issuerCheck != null; i++){
-                if( issuerCheck.isSelfsigned() ){
-                    this.isFullChainAvailable = true;
-                    break;
-                }
-                issuerCheck = issuerCheck.getIssuingCertificate();
-            }
         }
 
     	List<String> usageList = new ArrayList<>();
@@ -839,6 +840,21 @@ public class CertificateView implements Serializable {
         this.arArr = arArr;
     }
 
+    /**
+     * @param issuer the issuing certificate
+     * @return true, if a self-signed certificate is reached within 10 steps along the issuer chain
+     */
+    public static boolean isChainComplete(final Certificate issuer) {
+        Certificate issuerCheck = issuer;
+        for(int i = 0; i < 10 && issuerCheck != null; i++){
+            if( Boolean.TRUE.equals(issuerCheck.isSelfsigned()) ){
+                return true;
+            }
+            issuerCheck = issuerCheck.getIssuingCertificate();
+        }
+        return false;
+    }
+
     private NamedValue[] copyArAttributes(final Certificate cert) {
 
         List<NamedValue> nvList = new ArrayList<>();
@@ -37,6 +37,9 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import de.trustable.ca3s.core.domain.AcmeOrder;
+import de.trustable.ca3s.core.domain.enumeration.AcmeOrderStatus;
+import de.trustable.ca3s.core.service.dto.acme.problem.ProblemDetail;
+import de.trustable.ca3s.core.service.util.ACMEUtil;
 import de.trustable.ca3s.core.service.util.DateUtil;
 
 
@@ -84,11 +87,17 @@ public class OrderResponse extends NewOrderResponse {
 	@JsonProperty("certificate") 
 	private String certificate;
 
+	@JsonProperty("error")
+	private ProblemDetail error;
+
 	public OrderResponse (AcmeOrder orderDao, Set<String> authUrlSet, String finalizeUrl, String certificateUrl) {
 		super(orderDao, authUrlSet, finalizeUrl);
 		this.setNotBefore(DateUtil.asDate(orderDao.getNotBefore()));
 		this.setNotAfter(DateUtil.asDate(orderDao.getNotAfter()));
 		this.setCertificate(certificateUrl);
+		if( orderDao.getStatus() == AcmeOrderStatus.INVALID && orderDao.getError() != null) {
+			this.setError(new ProblemDetail(ACMEUtil.SERVER_INTERNAL, orderDao.getError(), null, null, null));
+		}
 	}
 		
 	public OrderResponse() {
@@ -143,6 +152,20 @@ public class OrderResponse extends NewOrderResponse {
 		this.certificate = certificate;
 	}
 
+	/**
+	 * @return the reason of an invalid order
+	 */
+	public ProblemDetail getError() {
+		return error;
+	}
+
+	/**
+	 * @param error the reason of an invalid order
+	 */
+	public void setError(ProblemDetail error) {
+		this.error = error;
+	}
+
 	
   }
 
@@ -3,6 +3,7 @@ package de.trustable.ca3s.core.service.impl;
 import de.trustable.ca3s.core.service.ACMEAccountService;
 import de.trustable.ca3s.core.domain.ACMEAccount;
 import de.trustable.ca3s.core.repository.ACMEAccountRepository;
+import de.trustable.ca3s.core.service.util.AcmeAccountKeyCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,8 +24,11 @@ public class ACMEAccountServiceImpl implements ACMEAccountService {
 
     private final ACMEAccountRepository aCMEAccountRepository;
 
-    public ACMEAccountServiceImpl(ACMEAccountRepository aCMEAccountRepository) {
+    private final AcmeAccountKeyCache accountKeyCache;
+
+    public ACMEAccountServiceImpl(ACMEAccountRepository aCMEAccountRepository, AcmeAccountKeyCache accountKeyCache) {
         this.aCMEAccountRepository = aCMEAccountRepository;
+        this.accountKeyCache = accountKeyCache;
     }
 
     /**
@@ -36,6 +40,9 @@ public class ACMEAccountServiceImpl implements ACMEAccountService {
     @Override
     public ACMEAccount save(ACMEAccount aCMEAccount) {
         log.debug("Request to save ACMEAccount : {}", aCMEAccount);
+        if (aCMEAccount.getAccountId() != null) {
+            accountKeyCache.invalidate(aCMEAccount.getAccountId());
+        }
         return aCMEAccountRepository.save(aCMEAccount);
     }
 
@@ -73,6 +80,7 @@ public class ACMEAccountServiceImpl implements ACMEAccountService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete ACMEAccount : {}", id);
+        aCMEAccountRepository.findById(id).ifPresent(acct -> accountKeyCache.invalidate(acct.getAccountId()));
         aCMEAccountRepository.deleteById(id);
     }
 }
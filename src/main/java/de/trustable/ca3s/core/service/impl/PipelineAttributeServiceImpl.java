@@ -3,9 +3,11 @@ package de.trustable.ca3s.core.service.impl;
 import de.trustable.ca3s.core.service.PipelineAttributeService;
 import de.trustable.ca3s.core.domain.PipelineAttribute;
 import de.trustable.ca3s.core.repository.PipelineAttributeRepository;
+import de.trustable.ca3s.core.service.util.PipelineChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,8 +25,11 @@ public class PipelineAttributeServiceImpl implements PipelineAttributeService {
 
     private final PipelineAttributeRepository pipelineAttributeRepository;
 
-    public PipelineAttributeServiceImpl(PipelineAttributeRepository pipelineAttributeRepository) {
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public PipelineAttributeServiceImpl(PipelineAttributeRepository pipelineAttributeRepository, ApplicationEventPublisher applicationEventPublisher) {
         this.pipelineAttributeRepository = pipelineAttributeRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     /**
@@ -36,7 +41,10 @@ public class PipelineAttributeServiceImpl implements PipelineAttributeService {
     @Override
     public PipelineAttribute save(PipelineAttribute pipelineAttribute) {
         log.debug("Request to save PipelineAttribute : {}", pipelineAttribute);
-        return pipelineAttributeRepository.save(pipelineAttribute);
+        PipelineAttribute result = pipelineAttributeRepository.save(pipelineAttribute);
+        applicationEventPublisher.publishEvent(new PipelineChangedEvent(this,
+            (result.getPipeline() == null) ? null : result.getPipeline().getId()));
+        return result;
     }
 
     /**
@@ -74,5 +82,6 @@ public class PipelineAttributeServiceImpl implements PipelineAttributeService {
     public void delete(Long id) {
         log.debug("Request to delete PipelineAttribute : {}", id);
         pipelineAttributeRepository.deleteById(id);
+        applicationEventPublisher.publishEvent(new PipelineChangedEvent(this, null));
     }
 }
@@ -8,9 +8,11 @@ import de.trustable.ca3s.core.service.PipelineService;
 import de.trustable.ca3s.core.domain.Pipeline;
 import de.trustable.ca3s.core.repository.PipelineRepository;
 import de.trustable.ca3s.core.exception.IntegrityException;
+import de.trustable.ca3s.core.service.util.PipelineChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,11 +34,14 @@ public class PipelineServiceImpl implements PipelineService {
     private final AuditService auditService;
     private final AuditTraceRepository auditTraceRepository;
 
-    public PipelineServiceImpl(PipelineRepository pipelineRepository, PipelineAttributeRepository pipelineAttributeRepository, AuditService auditService, AuditTraceRepository auditTraceRepository) {
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public PipelineServiceImpl(PipelineRepository pipelineRepository, PipelineAttributeRepository pipelineAttributeRepository, AuditService auditService, AuditTraceRepository auditTraceRepository, ApplicationEventPublisher applicationEventPublisher) {
         this.pipelineRepository = pipelineRepository;
         this.pipelineAttributeRepository = pipelineAttributeRepository;
         this.auditService = auditService;
         this.auditTraceRepository = auditTraceRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     /**
@@ -48,7 +53,9 @@ public class PipelineServiceImpl implements PipelineService {
     @Override
     public Pipeline save(Pipeline pipeline) {
         log.debug("Request to save Pipeline : {}", pipeline);
-        return pipelineRepository.save(pipeline);
+        Pipeline result = pipelineRepository.save(pipeline);
+        applicationEventPublisher.publishEvent(new PipelineChangedEvent(this, result.getId()));
+        return result;
     }
 
     /**
@@ -113,6 +120,7 @@ public class PipelineServiceImpl implements PipelineService {
             auditService.saveAuditTrace(auditService.createAuditTracePipeline(AuditService.AUDIT_PIPELINE_DELETED, null));
             pipelineAttributeRepository.deleteAll(pipeline.getPipelineAttributes());
             pipelineRepository.deleteById(id);
+            applicationEventPublisher.publishEvent(new PipelineChangedEvent(this, id));
         }
     }
 }
@@ -6,6 +6,7 @@ import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,6 +15,7 @@ import de.trustable.ca3s.core.domain.PipelineAttribute;
 import de.trustable.ca3s.core.repository.PipelineRepository;
 import de.trustable.ca3s.core.service.PipelineViewService;
 import de.trustable.ca3s.core.service.dto.PipelineView;
+import de.trustable.ca3s.core.service.util.PipelineChangedEvent;
 import de.trustable.ca3s.core.service.util.PipelineUtil;
 
 /**
@@ -27,10 +29,12 @@ public class PipelineViewServiceImpl implements PipelineViewService {
 
     private final PipelineRepository pipelineRepository;
     private final PipelineUtil pvUtil;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
-    public PipelineViewServiceImpl(PipelineRepository pipelineRepository, PipelineUtil pvUtil) {
+    public PipelineViewServiceImpl(PipelineRepository pipelineRepository, PipelineUtil pvUtil, ApplicationEventPublisher applicationEventPublisher) {
         this.pipelineRepository = pipelineRepository;
         this.pvUtil = pvUtil;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     /**
@@ -105,5 +109,6 @@ public class PipelineViewServiceImpl implements PipelineViewService {
     public void delete(Long id) {
         log.debug("Request to delete Pipeline : {}", id);
         pipelineRepository.deleteById(id);
+        applicationEventPublisher.publishEvent(new PipelineChangedEvent(this, id));
     }
 }
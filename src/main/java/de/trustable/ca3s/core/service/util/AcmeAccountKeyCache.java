@@ -0,0 +1,196 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.security.PublicKey;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.lang.JoseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.ACMEAccount;
+import de.trustable.ca3s.core.domain.enumeration.AccountStatus;
+import de.trustable.ca3s.core.repository.ACMEAccountRepository;
+
+/**
+ * Bounded cache of the decoded public keys of ACME accounts.
+ *
+ * Every authenticated ACME request is signed with the account key. Instead of loading the account and
+ * parsing its key for each request, the decoded key, a reusable JWT verifier, the account status and the
+ * realm are kept here, keyed by the ACME account id.
+ *
+ * Entries are invalidated when the key or the status of an account changes. Changes made by other
+ * instances are picked up when the entry expires ('ca3s.acme.account.cache.seconds').
+ */
+@Service
+public class AcmeAccountKeyCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AcmeAccountKeyCache.class);
+
+    private final ACMEAccountRepository acctRepository;
+    private final JwtUtil jwtUtil;
+    private final int maxEntries;
+    private final long validityMillis;
+
+    private final Map<Long, AccountKey> accountKeyMap = new ConcurrentHashMap<>();
+
+    public AcmeAccountKeyCache(ACMEAccountRepository acctRepository,
+                               JwtUtil jwtUtil,
+                               @Value("${ca3s.acme.account.cache.size:10000}") int maxEntries,
+                               @Value("${ca3s.acme.account.cache.seconds:300}") long validitySeconds) {
+        this.acctRepository = acctRepository;
+        this.jwtUtil = jwtUtil;
+        this.maxEntries = maxEntries;
+        this.validityMillis = validitySeconds * 1000L;
+    }
+
+    /**
+     * get the key data of an account, load and parse it if not cached
+     *
+     * @param accountId the ACME account id
+     * @param algHeader the JWS algorithm header of the request, selects the key algorithm when parsing the key
+     * @return the key data or null, if the account does not exist
+     * @throws JoseException the key of the account is not parseable
+     */
+    public AccountKey getAccountKey(final long accountId, final String algHeader) throws JoseException {
+
+        long now = currentTimeMillis();
+        AccountKey accountKey = accountKeyMap.get(accountId);
+        if (accountKey != null && accountKey.expiresAt > now) {
+            return accountKey;
+        }
+
+        List<ACMEAccount> accListExisting = acctRepository.findByAccountId(accountId);
+        if (accListExisting.isEmpty()) {
+            accountKeyMap.remove(accountId);
+            return null;
+        }
+
+        ACMEAccount acctDao = accListExisting.get(0);
+        PublicKey publicKey = jwtUtil.parsePublicKey(acctDao.getPublicKey(), algHeader);
+        accountKey = new AccountKey(acctDao.getId(), acctDao.getAccountId(), acctDao.getRealm(), acctDao.getStatus(),
+            publicKey, jwtUtil.buildVerifier(publicKey), now + validityMillis);
+
+        if (accountKeyMap.size() >= maxEntries) {
+            limitEntries(now);
+        }
+        accountKeyMap.put(accountId, accountKey);
+        LOG.debug("key of account {} added to cache", accountId);
+
+        return accountKey;
+    }
+
+    /**
+     * drop the cached data of an account.
+     * If called within a transaction, the entry is dropped again after completion, so data loaded concurrently
+     * before the commit does not survive.
+     *
+     * @param accountId the ACME account id
+     */
+    public void invalidate(final long accountId) {
+        accountKeyMap.remove(accountId);
+        LOG.debug("key of account {} removed from cache", accountId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accountKeyMap.remove(accountId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        accountKeyMap.clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accountKeyMap.clear();
+                }
+            });
+        }
+    }
+
+    int size() {
+        return accountKeyMap.size();
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * drop expired entries, if that's not sufficient drop arbitrary entries until there is room for 10% new entries
+     */
+    private void limitEntries(final long now) {
+        accountKeyMap.values().removeIf(ak -> ak.expiresAt <= now);
+
+        int targetSize = maxEntries - Math.max(1, maxEntries / 10);
+        Iterator<Long> it = accountKeyMap.keySet().iterator();
+        while (accountKeyMap.size() > targetSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * immutable snapshot of the key related data of an account
+     */
+    public static final class AccountKey {
+
+        private final long id;
+        private final long accountId;
+        private final String realm;
+        private final AccountStatus status;
+        private final PublicKey publicKey;
+        private final JwtConsumer verifier;
+        private final long expiresAt;
+
+        AccountKey(long id, long accountId, String realm, AccountStatus status,
+                   PublicKey publicKey, JwtConsumer verifier, long expiresAt) {
+            this.id = id;
+            this.accountId = accountId;
+            this.realm = realm;
+            this.status = status;
+            this.publicKey = publicKey;
+            this.verifier = verifier;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the primary key of the ACMEAccount entity
+         */
+        public long getId() {
+            return id;
+        }
+
+        public long getAccountId() {
+            return accountId;
+        }
+
+        public String getRealm() {
+            return realm;
+        }
+
+        public AccountStatus getStatus() {
+            return status;
+        }
+
+        public PublicKey getPublicKey() {
+            return publicKey;
+        }
+
+        public JwtConsumer getVerifier() {
+            return verifier;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.ACMEAccount;
+import de.trustable.ca3s.core.domain.AcmeAuthorization;
+import de.trustable.ca3s.core.domain.AcmeChallenge;
+import de.trustable.ca3s.core.domain.enumeration.ChallengeStatus;
+import de.trustable.ca3s.core.repository.AcmeChallengeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Index of the successfully validated ACME authorizations, keyed by account, pipeline, identifier type and identifier
+ * value. A validation is reused within the pipeline of the order only, as pipelines may differ in their challenge
+ * settings and in the restrictions they apply.
+ *
+ * A new order of a pipeline with 'ACME_AUTHORIZATION_REUSE_SECONDS' > 0 looks up the identifiers here and
+ * attaches an authorization validated within this period instead of asking for a new validation.
+ * Entries are added after the commit of the validation. Identifiers missing in the index, e.g. validated before a
+ * restart or by another instance, are looked up in the database.
+ *
+ * Entries older than 'ca3s.acme.authorization.reuse.maxSeconds' are dropped, lookups are counted by outcome in
+ * 'ca3s.acme.authorization.reuse'.
+ */
+@Service
+public class AcmeAuthorizationReuseIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AcmeAuthorizationReuseIndex.class);
+
+    public static final String METRIC_REUSE = "ca3s.acme.authorization.reuse";
+
+    private final AcmeChallengeRepository challengeRepository;
+    private final long maxAgeMillis;
+    private final int maxEntries;
+
+    private final Map<String, ValidatedAuthorization> authorizationMap = new ConcurrentHashMap<>();
+
+    private final Counter hitIndex;
+    private final Counter hitDatabase;
+    private final Counter miss;
+
+    public AcmeAuthorizationReuseIndex(AcmeChallengeRepository challengeRepository,
+                                       @Value("${ca3s.acme.authorization.reuse.maxSeconds:2592000}") long maxAgeSeconds,
+                                       @Value("${ca3s.acme.authorization.reuse.maxEntries:100000}") int maxEntries,
+                                       MeterRegistry meterRegistry) {
+        this.challengeRepository = challengeRepository;
+        this.maxAgeMillis = maxAgeSeconds * 1000L;
+        this.maxEntries = maxEntries;
+
+        hitIndex = Counter.builder(METRIC_REUSE).tag("result", "index")
+            .description("authorizations reused from the index").register(meterRegistry);
+        hitDatabase = Counter.builder(METRIC_REUSE).tag("result", "database")
+            .description("authorizations reused from the database").register(meterRegistry);
+        miss = Counter.builder(METRIC_REUSE).tag("result", "miss")
+            .description("authorizations requiring a new validation").register(meterRegistry);
+    }
+
+    /**
+     * record a successfully validated challenge. If called within a transaction, the challenge is added after the commit.
+     *
+     * @param challengeDao the challenge, just set to VALID
+     */
+    public void register(final AcmeChallenge challengeDao) {
+
+        AcmeAuthorization authDao = challengeDao.getAcmeAuthorization();
+        if (challengeDao.getStatus() != ChallengeStatus.VALID || challengeDao.getValidated() == null ||
+            authDao == null || authDao.getOrder() == null || authDao.getOrder().getAccount() == null ||
+            authDao.getOrder().getPipeline() == null) {
+            return;
+        }
+
+        final String key = buildKey(authDao.getOrder().getAccount().getId(), authDao.getOrder().getPipeline().getId(),
+            authDao.getType(), authDao.getValue());
+        final ValidatedAuthorization validatedAuthorization =
+            new ValidatedAuthorization(challengeDao.getType(), challengeDao.getValidated());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(key, validatedAuthorization);
+                }
+            });
+        } else {
+            put(key, validatedAuthorization);
+        }
+    }
+
+    /**
+     * find a validation of an identifier by an account within a pipeline, not older than 'reuseSeconds'
+     *
+     * @param account the account of the new order
+     * @param pipelineId the pipeline of the new order
+     * @param type the identifier type
+     * @param value the identifier value
+     * @param reuseSeconds the maximum age of the validation
+     * @return the validation or null, if the identifier needs to be validated again
+     */
+    public ValidatedAuthorization findReusable(final ACMEAccount account, final Long pipelineId,
+                                               final String type, final String value,
+                                               final int reuseSeconds) {
+
+        Instant validatedAfter = Instant.now().minusSeconds(Math.min(reuseSeconds, maxAgeMillis / 1000L));
+
+        String key = buildKey(account.getId(), pipelineId, type, value);
+        ValidatedAuthorization validatedAuthorization = authorizationMap.get(key);
+        if (validatedAuthorization != null && validatedAuthorization.validated.isAfter(validatedAfter)) {
+            hitIndex.increment();
+            LOG.debug("reusing validation of {} '{}' from index", type, value);
+            return validatedAuthorization;
+        }
+
+        List<AcmeChallenge> challengeList = challengeRepository.findValidatedByAccountAndIdentifier(account, pipelineId, type, value,
+            ChallengeStatus.VALID, validatedAfter, PageRequest.of(0, 1));
+        if (!challengeList.isEmpty()) {
+            AcmeChallenge challengeDao = challengeList.get(0);
+            validatedAuthorization = new ValidatedAuthorization(challengeDao.getType(), challengeDao.getValidated());
+            put(key, validatedAuthorization);
+            hitDatabase.increment();
+            LOG.debug("reusing validation of {} '{}' from database", type, value);
+            return validatedAuthorization;
+        }
+
+        miss.increment();
+        return null;
+    }
+
+    public void invalidateAll() {
+        authorizationMap.clear();
+    }
+
+    public int size() {
+        return authorizationMap.size();
+    }
+
+    void put(final String key, final ValidatedAuthorization validatedAuthorization) {
+
+        if (authorizationMap.size() >= maxEntries) {
+            purgeExpired();
+            if (authorizationMap.size() >= maxEntries) {
+                LOG.info("authorization reuse index exceeds {} entries, dropping all entries", maxEntries);
+                authorizationMap.clear();
+            }
+        }
+
+        authorizationMap.merge(key, validatedAuthorization,
+            (existing, added) -> added.validated.isAfter(existing.validated) ? added : existing);
+    }
+
+    void purgeExpired() {
+        Instant limit = Instant.now().minusMillis(maxAgeMillis);
+        authorizationMap.values().removeIf(entry -> !entry.validated.isAfter(limit));
+    }
+
+    static String buildKey(final Long accountId, final Long pipelineId, final String type, final String value) {
+        return accountId + "|" + pipelineId + "|" + type + "|" + value;
+    }
+
+    /**
+     * a successful validation of an identifier
+     */
+    public static final class ValidatedAuthorization {
+
+        private final String challengeType;
+        private final Instant validated;
+
+        ValidatedAuthorization(String challengeType, Instant validated) {
+            this.challengeType = challengeType;
+            this.validated = validated;
+        }
+
+        /**
+         * @return the type of the challenge used for the validation
+         */
+        public String getChallengeType() {
+            return challengeType;
+        }
+
+        public Instant getValidated() {
+            return validated;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.AcmeChallenge;
+import de.trustable.ca3s.core.domain.enumeration.ChallengeStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bounded worker pool for ACME challenge validations.
+ *
+ * Validations call out to the client hosts (HTTP-01, TLS-ALPN-01) or to DNS and may take several seconds.
+ * They are executed here instead of the request thread. The number of concurrent validations per contacted host
+ * is limited, a challenge is validated at most once at a time. HTTP-01 and TLS-ALPN-01 validations contact the
+ * client host, DNS-01 validations all contact the configured DNS resolver and have a limit of their own.
+ */
+@Service
+public class AcmeChallengeValidationExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AcmeChallengeValidationExecutor.class);
+
+    public static final String METRIC_VALIDATION = "ca3s.acme.challenge.validation";
+    public static final String METRIC_REJECTED = "ca3s.acme.challenge.validation.rejected";
+
+    public enum SubmitResult { SUBMITTED, ALREADY_RUNNING, HOST_LIMIT_EXCEEDED, QUEUE_FULL }
+
+    private final ThreadPoolExecutor executor;
+    private final int maxPerHost;
+    private final int maxPerResolver;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<Long> challengesInFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> validationsPerHost = new ConcurrentHashMap<>();
+
+    private final Counter rejectedHostLimit;
+    private final Counter rejectedQueueFull;
+
+    public AcmeChallengeValidationExecutor(@Value("${ca3s.acme.challenge.validation.threads:8}") int threads,
+                                           @Value("${ca3s.acme.challenge.validation.queue:1000}") int queueCapacity,
+                                           @Value("${ca3s.acme.challenge.validation.maxPerHost:2}") int maxPerHost,
+                                           @Value("${ca3s.acme.challenge.validation.maxPerResolver:8}") int maxPerResolver,
+                                           MeterRegistry meterRegistry) {
+
+        this.maxPerHost = maxPerHost;
+        this.maxPerResolver = maxPerResolver;
+        this.meterRegistry = meterRegistry;
+
+        this.executor = new ThreadPoolExecutor(threads, threads,
+            60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new CustomizableThreadFactory("ca3s-acme-validation-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder(METRIC_VALIDATION + ".queue", executor, e -> e.getQueue().size())
+            .description("number of challenge validations waiting for execution")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_VALIDATION + ".active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("number of challenge validations currently executed")
+            .register(meterRegistry);
+
+        rejectedHostLimit = Counter.builder(METRIC_REJECTED).tag("reason", "host")
+            .description("challenge validations rejected").register(meterRegistry);
+        rejectedQueueFull = Counter.builder(METRIC_REJECTED).tag("reason", "queue")
+            .description("challenge validations rejected").register(meterRegistry);
+
+        LOG.info("ACME challenge validation using {} threads, queue capacity {}, max. {} validations per host, {} per DNS resolver",
+            threads, queueCapacity, maxPerHost, maxPerResolver);
+    }
+
+    /**
+     * submit the validation of a challenge
+     *
+     * @param challengeId the id of the challenge to be validated
+     * @param challengeType the type of the challenge, used as metrics tag
+     * @param host the host contacted by the validation, the DNS resolver for DNS-01 challenges
+     * @param validation the validation itself, returning the new status of the challenge
+     * @return the outcome of the submission
+     */
+    public SubmitResult submit(final long challengeId,
+                               final String challengeType,
+                               final String host,
+                               final Supplier<ChallengeStatus> validation) {
+
+        if (!challengesInFlight.add(challengeId)) {
+            LOG.debug("validation of challenge {} already running", challengeId);
+            return SubmitResult.ALREADY_RUNNING;
+        }
+
+        if (executor.getQueue().remainingCapacity() == 0) {
+            challengesInFlight.remove(challengeId);
+            rejectedQueueFull.increment();
+            LOG.warn("validation of challenge {} rejected, validation queue full", challengeId);
+            return SubmitResult.QUEUE_FULL;
+        }
+
+        int hostLimit = AcmeChallenge.CHALLENGE_TYPE_DNS_01.equals(challengeType) ? maxPerResolver : maxPerHost;
+        if (!acquireHost(host, hostLimit)) {
+            challengesInFlight.remove(challengeId);
+            rejectedHostLimit.increment();
+            LOG.info("validation of challenge {} rejected, too many validations for host '{}'", challengeId, host);
+            return SubmitResult.HOST_LIMIT_EXCEEDED;
+        }
+
+        final Runnable dispatch = () -> {
+            try {
+                executor.execute(() -> runValidation(challengeId, challengeType, host, validation));
+                LOG.debug("validation of challenge {} for host '{}' submitted", challengeId, host);
+            } catch (RejectedExecutionException ree) {
+                release(challengeId, host);
+                rejectedQueueFull.increment();
+                LOG.warn("validation of challenge {} rejected, validation queue full", challengeId);
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the validation must not start before the state 'processing' is visible to the worker
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatch.run();
+                    } else {
+                        release(challengeId, host);
+                    }
+                }
+            });
+        } else {
+            dispatch.run();
+        }
+
+        return SubmitResult.SUBMITTED;
+    }
+
+    public boolean isInFlight(final long challengeId) {
+        return challengesInFlight.contains(challengeId);
+    }
+
+    void runValidation(final long challengeId,
+                       final String challengeType,
+                       final String host,
+                       final Supplier<ChallengeStatus> validation) {
+
+        long startTime = System.nanoTime();
+        String outcome = "error";
+        try {
+            ChallengeStatus newStatus = validation.get();
+            outcome = (newStatus == null) ? "unknown" : newStatus.getValue();
+        } catch (RuntimeException re) {
+            LOG.warn("validation of challenge {} failed", challengeId, re);
+        } finally {
+            long duration = System.nanoTime() - startTime;
+            Timer.builder(METRIC_VALIDATION)
+                .description("duration of challenge validations")
+                .tag("type", String.valueOf(challengeType))
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(duration, TimeUnit.NANOSECONDS);
+            LOG.debug("validation of challenge {} finished with outcome '{}' in {} ms", challengeId, outcome,
+                TimeUnit.NANOSECONDS.toMillis(duration));
+
+            // the validation is complete, including its metrics, once the challenge is released
+            release(challengeId, host);
+        }
+    }
+
+    int getValidationCount(final String host) {
+        return validationsPerHost.getOrDefault(host, 0);
+    }
+
+    private boolean acquireHost(final String host, final int hostLimit) {
+        final boolean[] acquired = {false};
+        validationsPerHost.compute(host, (h, count) -> {
+            int current = (count == null) ? 0 : count;
+            if (current >= hostLimit) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(final long challengeId, final String host) {
+        validationsPerHost.computeIfPresent(host, (h, count) -> (count <= 1) ? null : count - 1);
+        challengesInFlight.remove(challengeId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
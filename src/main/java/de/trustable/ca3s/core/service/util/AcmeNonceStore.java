@@ -0,0 +1,43 @@
+package de.trustable.ca3s.core.service.util;
+
+/**
+ * Issues and redeems ACME replay nonces (RFC 8555, section 6.5).
+ *
+ * The implementation is selected by 'ca3s.acme.nonce.store':
+ * 'memory' (default) keeps everything in-process, 'database' uses the AcmeNonce table
+ * and is required if several ca3s instances serve the same ACME realm.
+ */
+public interface AcmeNonceStore {
+
+    /**
+     * default of 'ca3s.acme.nonce.validity.seconds', the same for all implementations: one day, as before the stores
+     */
+    String DEFAULT_VALIDITY_SECONDS = "86400";
+
+    /**
+     * create a new nonce, valid for exactly one request
+     *
+     * @return the nonce value, base64url encoded without padding
+     */
+    String createNonce();
+
+    /**
+     * check the given nonce and mark it as used
+     *
+     * @param nonceValue the nonce value presented by the client
+     * @return true, if the nonce was issued by this store, is not expired and was not used before
+     */
+    boolean consumeNonce(String nonceValue);
+
+    /**
+     * drop expired nonces
+     */
+    void cleanupExpired();
+
+    /**
+     * @return true, if the nonces are shared by all instances, so the cleanup needs to run on one instance only
+     */
+    default boolean isShared() {
+        return false;
+    }
+}
@@ -0,0 +1,274 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.AcmeOrder;
+import de.trustable.ca3s.core.domain.enumeration.AcmeOrderStatus;
+import de.trustable.ca3s.core.repository.AcmeOrderRepository;
+import de.trustable.ca3s.core.service.AuditService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bounded worker pool for the certificate issuance of finalized ACME orders.
+ *
+ * The issuance runs the BPMN process and calls the CA connector, with upstream CAs this may take a long time.
+ * It is executed here instead of the request thread, the client polls the order until it leaves the state
+ * 'processing'. An order is issued at most once at a time, a full queue rejects further orders.
+ *
+ * Orders which can't be issued any more (rejected after the commit, dropped at shutdown or left behind by a stopped
+ * instance) are set to 'invalid' with an error, so the client gets a final answer and may place a new order.
+ */
+@Service
+public class AcmeOrderIssuanceExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AcmeOrderIssuanceExecutor.class);
+
+    public static final String METRIC_ISSUANCE = "ca3s.acme.order.issuance";
+    public static final String METRIC_REJECTED = "ca3s.acme.order.issuance.rejected";
+
+    public enum SubmitResult { SUBMITTED, ALREADY_RUNNING, QUEUE_FULL }
+
+    static final String ERROR_REJECTED = "certificate issuance rejected, too many orders in processing";
+    static final String ERROR_SHUTDOWN = "certificate issuance interrupted by a shutdown";
+    static final String ERROR_INCOMPLETE = "certificate issuance not completed";
+
+    private final ThreadPoolExecutor executor;
+    private final AcmeOrderRepository orderRepository;
+    private final AuditService auditService;
+    private final TransactionHandler transactionHandler;
+    private final MeterRegistry meterRegistry;
+    private final long staleMinutes;
+
+    private final Set<Long> ordersInFlight = ConcurrentHashMap.newKeySet();
+
+    private final Counter rejectedQueueFull;
+
+    public AcmeOrderIssuanceExecutor(@Value("${ca3s.acme.order.issuance.threads:4}") int threads,
+                                     @Value("${ca3s.acme.order.issuance.queue:200}") int queueCapacity,
+                                     @Value("${ca3s.acme.order.issuance.stale.minutes:30}") long staleMinutes,
+                                     AcmeOrderRepository orderRepository,
+                                     AuditService auditService,
+                                     TransactionHandler transactionHandler,
+                                     MeterRegistry meterRegistry) {
+
+        this.orderRepository = orderRepository;
+        this.auditService = auditService;
+        this.transactionHandler = transactionHandler;
+        this.meterRegistry = meterRegistry;
+        this.staleMinutes = staleMinutes;
+
+        this.executor = new ThreadPoolExecutor(threads, threads,
+            60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new CustomizableThreadFactory("ca3s-acme-issuance-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder(METRIC_ISSUANCE + ".queue", executor, e -> e.getQueue().size())
+            .description("number of order issuances waiting for execution")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_ISSUANCE + ".active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("number of order issuances currently executed")
+            .register(meterRegistry);
+
+        rejectedQueueFull = Counter.builder(METRIC_REJECTED).tag("reason", "queue")
+            .description("order issuances rejected").register(meterRegistry);
+
+        LOG.info("ACME order issuance using {} threads, queue capacity {}", threads, queueCapacity);
+    }
+
+    /**
+     * submit the issuance of an order. If called within a transaction, the issuance is started after the commit.
+     *
+     * @param orderId the id of the order
+     * @param issuance the issuance itself, returning the new status of the order
+     * @return the outcome of the submission
+     */
+    public SubmitResult submit(final long orderId, final Supplier<AcmeOrderStatus> issuance) {
+
+        if (!ordersInFlight.add(orderId)) {
+            LOG.debug("issuance of order {} already running", orderId);
+            return SubmitResult.ALREADY_RUNNING;
+        }
+
+        if (executor.getQueue().remainingCapacity() == 0) {
+            ordersInFlight.remove(orderId);
+            rejectedQueueFull.increment();
+            LOG.warn("issuance of order {} rejected, issuance queue full", orderId);
+            return SubmitResult.QUEUE_FULL;
+        }
+
+        final long submitTime = System.nanoTime();
+        final Runnable dispatch = () -> {
+            try {
+                executor.execute(new IssuanceTask(orderId, () -> runIssuance(orderId, submitTime, issuance)));
+                LOG.debug("issuance of order {} submitted", orderId);
+            } catch (RejectedExecutionException ree) {
+                ordersInFlight.remove(orderId);
+                rejectedQueueFull.increment();
+                LOG.warn("issuance of order {} rejected after commit, issuance queue full", orderId);
+                // the order is committed in state 'processing' already
+                invalidateOrder(orderId, ERROR_REJECTED);
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the issuance must not start before the state 'processing' and the CSR are visible to the worker
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatch.run();
+                    } else {
+                        ordersInFlight.remove(orderId);
+                    }
+                }
+            });
+        } else {
+            dispatch.run();
+        }
+
+        return SubmitResult.SUBMITTED;
+    }
+
+    public boolean isInFlight(final long orderId) {
+        return ordersInFlight.contains(orderId);
+    }
+
+    void runIssuance(final long orderId, final long submitTime, final Supplier<AcmeOrderStatus> issuance) {
+
+        long startTime = System.nanoTime();
+        String outcome = "error";
+        try {
+            AcmeOrderStatus newStatus = issuance.get();
+            outcome = (newStatus == null) ? "unknown" : newStatus.getValue();
+        } catch (RuntimeException re) {
+            LOG.warn("issuance of order {} failed", orderId, re);
+        } finally {
+            ordersInFlight.remove(orderId);
+
+            long endTime = System.nanoTime();
+            Timer.builder(METRIC_ISSUANCE + ".wait")
+                .description("time order issuances spent in the queue")
+                .register(meterRegistry)
+                .record(startTime - submitTime, TimeUnit.NANOSECONDS);
+            Timer.builder(METRIC_ISSUANCE)
+                .description("duration of order issuances")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(endTime - startTime, TimeUnit.NANOSECONDS);
+            LOG.debug("issuance of order {} finished with outcome '{}' in {} ms", orderId, outcome,
+                TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
+    /**
+     * set an order in state 'processing' to 'invalid', in a new transaction
+     *
+     * @param orderId the id of the order
+     * @param error the reason, returned to the client as the error of the order
+     */
+    public void invalidateOrder(final long orderId, final String error) {
+        transactionHandler.runInNewTransaction(() -> {
+            for (AcmeOrder orderDao : orderRepository.findByOrderId(orderId)) {
+                invalidateOrder(orderDao, error);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * set the orders to 'invalid', which are in state 'processing' for more than 'ca3s.acme.order.issuance.stale.minutes'
+     * without a certificate and without an issuance running on this instance.
+     *
+     * @return the number of invalidated orders
+     */
+    public int invalidateStaleOrders() {
+        return invalidateStaleOrders(Instant.now().minus(staleMinutes, ChronoUnit.MINUTES));
+    }
+
+    /**
+     * @param processingBefore orders processed since this point in time are not considered stale
+     * @return the number of invalidated orders
+     */
+    public int invalidateStaleOrders(final Instant processingBefore) {
+        return transactionHandler.runInNewTransaction(() -> {
+            int count = 0;
+            for (AcmeOrder orderDao : orderRepository.findProcessingWithoutCertificateBefore(processingBefore)) {
+                if (!isInFlight(orderDao.getOrderId())) {
+                    invalidateOrder(orderDao, ERROR_INCOMPLETE);
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    private void invalidateOrder(final AcmeOrder orderDao, final String error) {
+        if (orderDao.getStatus() != AcmeOrderStatus.PROCESSING) {
+            LOG.debug("order {} in state '{}', not invalidated", orderDao.getOrderId(), orderDao.getStatus());
+            return;
+        }
+        LOG.info("order {} set to 'invalid': {}", orderDao.getOrderId(), error);
+        auditService.saveAuditTrace(
+            auditService.createAuditTraceACMEOrderInvalid(orderDao.getAccount(), orderDao, error));
+        orderDao.setError(error);
+        orderDao.setStatus(AcmeOrderStatus.INVALID);
+        orderRepository.save(orderDao);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Runnable dropped : executor.shutdownNow()) {
+            if (dropped instanceof IssuanceTask) {
+                long orderId = ((IssuanceTask) dropped).orderId;
+                try {
+                    invalidateOrder(orderId, ERROR_SHUTDOWN);
+                } catch (RuntimeException re) {
+                    // left to the stale order check of the remaining instances or the next start
+                    LOG.warn("order {} dropped at shutdown, remains in state 'processing'", orderId, re);
+                }
+            }
+        }
+    }
+
+    /**
+     * keeps the order id of a queued issuance, to identify the orders dropped at shutdown
+     */
+    private static class IssuanceTask implements Runnable {
+
+        private final long orderId;
+        private final Runnable issuance;
+
+        IssuanceTask(final long orderId, final Runnable issuance) {
+            this.orderId = orderId;
+            this.issuance = issuance;
+        }
+
+        @Override
+        public void run() {
+            issuance.run();
+        }
+    }
+}
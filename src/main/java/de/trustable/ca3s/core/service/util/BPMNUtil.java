@@ -10,6 +10,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 import de.trustable.ca3s.core.domain.*;
 import de.trustable.ca3s.core.domain.enumeration.BPMNProcessType;
@@ -63,8 +64,10 @@ public class BPMNUtil{
 
     private final NameAndRoleUtil nameAndRoleUtil;
 
+    private final DefaultProcessFastPath defaultProcessFastPath;
+
     @Autowired
-    public BPMNUtil(ConfigUtil configUtil, CaConnectorAdapter caConnAdapter, CAConnectorConfigRepository caConnConRepo, CryptoUtil cryptoUtil, RuntimeService runtimeService, RepositoryService repoService, BPMNProcessInfoRepository bpnmInfoRepo, CSRRepository csrRepository, CertificateRepository certRepository, CertificateUtil certUtil, NameAndRoleUtil nameAndRoleUtil) {
+    public BPMNUtil(ConfigUtil configUtil, CaConnectorAdapter caConnAdapter, CAConnectorConfigRepository caConnConRepo, CryptoUtil cryptoUtil, RuntimeService runtimeService, RepositoryService repoService, BPMNProcessInfoRepository bpnmInfoRepo, CSRRepository csrRepository, CertificateRepository certRepository, CertificateUtil certUtil, NameAndRoleUtil nameAndRoleUtil, DefaultProcessFastPath defaultProcessFastPath) {
         this.configUtil = configUtil;
         this.caConnAdapter = caConnAdapter;
         this.caConnConRepo = caConnConRepo;
@@ -76,6 +79,7 @@ public class BPMNUtil{
         this.certRepository = certRepository;
         this.certUtil = certUtil;
         this.nameAndRoleUtil = nameAndRoleUtil;
+        this.defaultProcessFastPath = defaultProcessFastPath;
     }
 
     public String addModel(final String bpmnString, final String name){
@@ -85,6 +89,7 @@ public class BPMNUtil{
 
         String modelName = name + ".bpmn20.xml";
         Deployment deployment = repoService.createDeployment().addModelInstance(modelName, modelInstance).deploy();
+        defaultProcessFastPath.invalidate();
         LOG.debug( "deployment with name {} and if {} is a {}", modelName, deployment.getId(), deployment.getClass().getName() );
 
         for(ProcessDefinition pd: getProcessDefinitions()){
@@ -167,6 +172,7 @@ public class BPMNUtil{
 
     public void deleteProcessDefinitions(String processId) {
         repoService.deleteProcessDefinitions().byIds(processId).delete();
+        defaultProcessFastPath.invalidate();
     }
 
 
@@ -207,22 +213,35 @@ public class BPMNUtil{
 		String processInstanceId = "";
 
 		String processName;
+		boolean fastPath = false;
 
 		if( processInfo != null) {
 			processName = processInfo.getName();
 		}else{
 
-            List<ProcessDefinition> processDefinitionList = repoService.createProcessDefinitionQuery().processDefinitionKey("CAInvocationProcess").latestVersion().list();
-            if( processDefinitionList.isEmpty()){
+            processName = defaultProcessFastPath.getDefaultProcessDefinitionId();
+            if( processName == null){
                 LOG.warn( "Default process 'CAInvocationProcess' not found!");
                 return null;
             }
-            processName = processDefinitionList.get(0).getId();
+            fastPath = defaultProcessFastPath.isApplicable(processName);
         }
 
 		if(caConfig != null ){
 
-			if(processName != null && (processName.trim().length() > 0 )) {
+			if( fastPath ) {
+				// the task of the default process, without the engine
+				processInstanceId = UUID.randomUUID().toString();
+				try {
+					certificate = defaultProcessFastPath.signCertificateRequest(csr, caConfig, processInstanceId);
+					status = "Created";
+
+					// catch all (runtime) Exception, as the task does
+				} catch (Exception e) {
+					failureReason = e.getMessage();
+					LOG.info("signCertificateRequest failed", e);
+				}
+			} else if(processName != null && (processName.trim().length() > 0 )) {
 				// BPNM call
 				try {
                     Map<String, Object> variables = buildVariableMapFromCSR(csr, caConfig);
@@ -0,0 +1,233 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.CertificateAttribute;
+import de.trustable.ca3s.core.repository.CertificateAttributeRepository;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.ca3s.core.service.AuditService;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * CRL centric revocation check: certificates are grouped by CRL distribution point, every distinct CRL is
+ * refreshed once (in parallel) in the {@link CRLStore}, revocations are written in batches.
+ */
+@Service
+public class CRLRevocationEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CRLRevocationEngine.class);
+
+    private final CertificateRepository certificateRepository;
+    private final CertificateAttributeRepository certificateAttributeRepository;
+    private final CertificateUtil certUtil;
+    private final CRLStore crlStore;
+    private final CryptoService cryptoUtil;
+    private final AuditService auditService;
+    private final TransactionHandler transactionHandler;
+    private final int maxRecordsPerTransaction;
+
+    private final ExecutorService downloadExecutor;
+
+    public CRLRevocationEngine(CertificateRepository certificateRepository,
+                               CertificateAttributeRepository certificateAttributeRepository,
+                               CertificateUtil certUtil,
+                               CRLStore crlStore,
+                               CryptoService cryptoUtil,
+                               AuditService auditService,
+                               TransactionHandler transactionHandler,
+                               @Value("${ca3s.batch.maxRecordsPerTransaction:1000}") int maxRecordsPerTransaction,
+                               @Value("${ca3s.crl.check.threads:4}") int nThreads) {
+        this.certificateRepository = certificateRepository;
+        this.certificateAttributeRepository = certificateAttributeRepository;
+        this.certUtil = certUtil;
+        this.crlStore = crlStore;
+        this.cryptoUtil = cryptoUtil;
+        this.auditService = auditService;
+        this.transactionHandler = transactionHandler;
+        this.maxRecordsPerTransaction = Math.max(1, maxRecordsPerTransaction);
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "crl-check-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.downloadExecutor = Executors.newFixedThreadPool(Math.max(1, nThreads), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        downloadExecutor.shutdownNow();
+    }
+
+    /**
+     * check all active certificates against the CRLs referenced by them
+     *
+     * @return the number of certificates found revoked
+     */
+    public int updateRevocationStatus() {
+        return updateRevocationStatus(ClusterJobCoordinator.Shard.ALL);
+    }
+
+    /**
+     * check the active certificates against the CRLs of a shard, every CRL URL belongs to exactly one shard
+     *
+     * @param shard the part of the CRLs to check
+     * @return the number of certificates found revoked
+     */
+    public int updateRevocationStatus(final ClusterJobCoordinator.Shard shard) {
+
+        long startTime = System.currentTimeMillis();
+
+        // group the active certificates by CRL URL, just id, serial and issuer
+        Map<String, List<CertRef>> certsByCrlUrl = new HashMap<>();
+        List<Object[]> rowList = certificateRepository.findActiveCertificateIdSerialByCrlURL();
+        for (Object[] row : rowList) {
+            String crlUrl = (String) row[2];
+            if (shard.owns(crlUrl)) {
+                certsByCrlUrl.computeIfAbsent(crlUrl, k -> new ArrayList<>())
+                    .add(new CertRef((Long) row[0], (String) row[1], (String) row[3]));
+            }
+        }
+        LOG.debug("findActiveCertificateIdSerialByCrlURL returns #{} rows, #{} CRLs in {} in {} ms",
+            rowList.size(), certsByCrlUrl.size(), shard, System.currentTimeMillis() - startTime);
+
+        // loading a stored CRL after a restart is done by the worker threads, too
+        Map<String, Future<StoredCRL>> pendingMap = new HashMap<>();
+        for (String crlUrl : certsByCrlUrl.keySet()) {
+            pendingMap.put(crlUrl, downloadExecutor.submit(() ->
+                crlStore.isRefreshDue(crlUrl) ? crlStore.refresh(crlUrl) : null));
+        }
+
+        Set<String> brokenCrlUrlSet = new HashSet<>();
+        Map<String, Long> updatedNextUpdateMap = new HashMap<>();
+        for (Map.Entry<String, Future<StoredCRL>> entry : pendingMap.entrySet()) {
+            String crlUrl = entry.getKey();
+            try {
+                StoredCRL refreshedCRL = entry.getValue().get();
+                if (refreshedCRL != null) {
+                    updatedNextUpdateMap.put(crlUrl, refreshedCRL.getEffectiveExpiresAt());
+                }
+            } catch (ExecutionException e) {
+                LOG.info("Problem retrieving CRL from '{}'", crlUrl);
+                LOG.debug("CRL retrieval from '" + crlUrl + "' failed", e.getCause());
+                brokenCrlUrlSet.add(crlUrl);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.info("CRL revocation check interrupted");
+                return 0;
+            }
+        }
+
+        // match serial and issuer against the indexed CRLs, a broken CRL URL falls back to the last known CRL
+        Map<Long, StoredCRL.RevokedEntry> revocationMap = new LinkedHashMap<>();
+        for (Map.Entry<String, List<CertRef>> entry : certsByCrlUrl.entrySet()) {
+            StoredCRL storedCRL = crlStore.getCached(entry.getKey());
+            if (storedCRL == null) {
+                continue;
+            }
+            for (CertRef certRef : entry.getValue()) {
+                StoredCRL.RevokedEntry revokedEntry = findRevoked(storedCRL, certRef);
+                if (revokedEntry != null && !revocationMap.containsKey(certRef.id)) {
+                    revocationMap.put(certRef.id, revokedEntry);
+                }
+            }
+        }
+
+        List<Long> revokedIdList = new ArrayList<>(revocationMap.keySet());
+        for (int i = 0; i < revokedIdList.size(); i += maxRecordsPerTransaction) {
+            List<Long> chunk = revokedIdList.subList(i, Math.min(revokedIdList.size(), i + maxRecordsPerTransaction));
+            transactionHandler.runInNewTransaction(() -> markRevoked(chunk, revocationMap));
+        }
+
+        for (Map.Entry<String, Long> entry : updatedNextUpdateMap.entrySet()) {
+            List<Long> idList = new ArrayList<>();
+            for (CertRef certRef : certsByCrlUrl.get(entry.getKey())) {
+                idList.add(certRef.id);
+            }
+            String nextUpdate = Long.toString(entry.getValue());
+            for (int i = 0; i < idList.size(); i += maxRecordsPerTransaction) {
+                List<Long> chunk = idList.subList(i, Math.min(idList.size(), i + maxRecordsPerTransaction));
+                transactionHandler.runInNewTransaction(() ->
+                    certificateAttributeRepository.updateValueByNameAndCertificateIds(
+                        CertificateAttribute.ATTRIBUTE_CRL_NEXT_UPDATE, nextUpdate, chunk));
+            }
+        }
+
+        if (!brokenCrlUrlSet.isEmpty()) {
+            LOG.info("#{} CRL URLs marked as inaccessible / broken", brokenCrlUrlSet.size());
+        }
+        LOG.info("#{} CRLs checked, #{} refreshed, #{} certificates revoked in {} mSec",
+            certsByCrlUrl.size(), updatedNextUpdateMap.size(), revokedIdList.size(),
+            System.currentTimeMillis() - startTime);
+
+        return revokedIdList.size();
+    }
+
+    private int markRevoked(final List<Long> idList, final Map<Long, StoredCRL.RevokedEntry> revocationMap) {
+
+        int count = 0;
+        for (Certificate cert : certificateRepository.findAllById(idList)) {
+            if (Boolean.TRUE.equals(cert.isRevoked())) {
+                continue;
+            }
+            StoredCRL.RevokedEntry revokedEntry = revocationMap.get(cert.getId());
+
+            String revocationReason = "unspecified";
+            if (revokedEntry.getReason() != null) {
+                String reasonStr = cryptoUtil.crlReasonAsString(CRLReason.lookup(revokedEntry.getReason().ordinal()));
+                if (reasonStr != null) {
+                    revocationReason = reasonStr;
+                }
+            }
+
+            Instant revocationDate = Instant.now();
+            if (revokedEntry.getRevocationDate() != 0L) {
+                revocationDate = Instant.ofEpochMilli(revokedEntry.getRevocationDate());
+            } else {
+                LOG.debug("Checking certificate {}: no RevocationDate present for reason {}!", cert.getId(), revocationReason);
+            }
+
+            certUtil.setRevocationStatus(cert, revocationReason, revocationDate);
+            certificateRepository.save(cert);
+            auditService.saveAuditTrace(auditService.createAuditTraceCertificate(AuditService.AUDIT_CERTIFICATE_REVOKED_BY_CRL, cert));
+            LOG.info("Certificate {} revoked by CRL", cert.getId());
+            count++;
+        }
+        return count;
+    }
+
+    private static StoredCRL.RevokedEntry findRevoked(final StoredCRL storedCRL, final CertRef certRef) {
+        try {
+            return storedCRL.findRevoked(new BigInteger(certRef.serial), certRef.issuer);
+        } catch (NumberFormatException | NullPointerException e) {
+            LOG.debug("unexpected serial '{}' of certificate {}", certRef.serial, certRef.id);
+            return null;
+        }
+    }
+
+    private static final class CertRef {
+        private final long id;
+        private final String serial;
+        private final String issuer;
+
+        CertRef(long id, String serial, String issuer) {
+            this.id = id;
+            this.serial = serial;
+            this.issuer = issuer;
+        }
+    }
+}
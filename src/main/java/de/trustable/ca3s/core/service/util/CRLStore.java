@@ -0,0 +1,422 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.service.dto.CRLDownload;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.DERIA5String;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.naming.NamingException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local store of downloaded CRLs.
+ *
+ * Each CRL is written to 'ca3s.crl.store.dir' (default: 'crl' in the data directory 'ca3s.data.dir', which defaults to
+ * '.ca3s' in the user's home) and memory mapped from there, the heap holds the index of the
+ * revoked serials only. A CRL expires with its 'next update', limited by the preference 'maxNextUpdatePeriodCRLSec'.
+ * Refreshes use conditional requests, delta CRLs announced in the 'freshest CRL' extension are attached to their
+ * base CRL. The store survives restarts, the total size of the files is limited by 'ca3s.crl.store.maxSizeMB'.
+ * A CRL loaded from disk is verified against its issuer again, as after a download.
+ */
+@Service
+public class CRLStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CRLStore.class);
+
+    private static final String CRL_SUFFIX = ".crl";
+    private static final String META_SUFFIX = ".properties";
+
+    private static final String META_URL = "url";
+    private static final String META_ETAG = "eTag";
+    private static final String META_LAST_MODIFIED = "lastModified";
+    private static final String META_FETCHED_AT = "fetchedAt";
+
+    private final CRLUtil crlUtil;
+    private final PreferenceUtil preferenceUtil;
+    private final File storeDir;
+    private final long maxSizeBytes;
+
+    private final Map<String, StoredCRL> crlMap = new ConcurrentHashMap<>();
+    private final Map<String, Object> lockMap = new ConcurrentHashMap<>();
+
+    public CRLStore(CRLUtil crlUtil,
+                    PreferenceUtil preferenceUtil,
+                    @Value("${ca3s.crl.store.dir:${ca3s.data.dir:${user.home}/.ca3s}/crl}") String storeDir,
+                    @Value("${ca3s.crl.store.maxSizeMB:512}") long maxSizeMB) throws IOException {
+        this.crlUtil = crlUtil;
+        this.preferenceUtil = preferenceUtil;
+        this.storeDir = new File(storeDir);
+        this.maxSizeBytes = maxSizeMB * 1024L * 1024L;
+
+        Files.createDirectories(this.storeDir.toPath());
+        LOG.info("CRL store located at '{}'", this.storeDir.getAbsolutePath());
+    }
+
+    /**
+     * get the CRL for the given URL, refreshing it if expired
+     *
+     * @param crlUrl the CRL's URL
+     * @return the current CRL including a delta CRL, if available
+     */
+    public StoredCRL get(final String crlUrl) throws IOException, GeneralSecurityException, NamingException {
+        StoredCRL storedCRL = getCached(crlUrl);
+        if (isCurrent(storedCRL)) {
+            return storedCRL;
+        }
+        return refresh(crlUrl);
+    }
+
+    /**
+     * @param crlUrl the CRL's URL
+     * @return true, if the CRL is unknown or expired
+     */
+    public boolean isRefreshDue(final String crlUrl) {
+        return !isCurrent(getCached(crlUrl));
+    }
+
+    private static boolean isCurrent(final StoredCRL storedCRL) {
+        if (storedCRL == null || storedCRL.getEffectiveExpiresAt() <= System.currentTimeMillis()) {
+            return false;
+        }
+        // a delta CRL is announced but not (yet) attached
+        return storedCRL.getDeltaUrlList().isEmpty() || storedCRL.getDelta() != null;
+    }
+
+    /**
+     * get the locally available CRL without any network access, regardless of its expiry
+     *
+     * @param crlUrl the CRL's URL
+     * @return the CRL or null, if not available
+     */
+    public StoredCRL getCached(final String crlUrl) {
+        StoredCRL storedCRL = crlMap.get(crlUrl);
+        if (storedCRL != null) {
+            return storedCRL;
+        }
+
+        synchronized (getLock(crlUrl)) {
+            storedCRL = crlMap.get(crlUrl);
+            if (storedCRL == null) {
+                storedCRL = load(crlUrl);
+                if (storedCRL != null) {
+                    crlMap.put(crlUrl, storedCRL);
+                }
+            }
+            return storedCRL;
+        }
+    }
+
+    /**
+     * refresh the CRL (and its delta CRL), if expired
+     *
+     * @param crlUrl the CRL's URL
+     * @return the refreshed CRL
+     */
+    public StoredCRL refresh(final String crlUrl) throws IOException, GeneralSecurityException, NamingException {
+
+        synchronized (getLock(crlUrl)) {
+            long now = System.currentTimeMillis();
+
+            StoredCRL base = getCached(crlUrl);
+            if (base == null || base.getExpiresAt() <= now) {
+                base = fetch(crlUrl, base);
+            }
+
+            StoredCRL delta = base.getDelta();
+            if (!base.getDeltaUrlList().isEmpty() && (delta == null || delta.getExpiresAt() <= now)) {
+                delta = fetchDelta(base);
+            }
+            base = base.withDelta(delta);
+
+            crlMap.put(crlUrl, base);
+            return base;
+        }
+    }
+
+    private StoredCRL fetchDelta(final StoredCRL base) {
+
+        for (String deltaUrl : base.getDeltaUrlList()) {
+            try {
+                StoredCRL delta = getCached(deltaUrl);
+                if (delta == null || delta.getExpiresAt() <= System.currentTimeMillis()) {
+                    delta = fetch(deltaUrl, delta);
+                    crlMap.put(deltaUrl, delta);
+                }
+
+                if (!delta.isDelta() || base.getCrlNumber() == null ||
+                    delta.getBaseCrlNumber().compareTo(base.getCrlNumber()) > 0 ||
+                    !delta.getIssuer().equals(base.getIssuer())) {
+                    LOG.info("CRL from '{}' is not a usable delta CRL for '{}'", deltaUrl, base.getUrl());
+                    continue;
+                }
+                return delta;
+            } catch (IOException | GeneralSecurityException | NamingException e) {
+                LOG.info("Problem retrieving delta CRL from '{}'", deltaUrl);
+                LOG.debug("delta CRL retrieval from '" + deltaUrl + "' failed", e);
+            }
+        }
+        return null;
+    }
+
+    private StoredCRL fetch(final String crlUrl, final StoredCRL current)
+        throws IOException, GeneralSecurityException, NamingException {
+
+        CRLDownload download = crlUtil.downloadCRLIfModified(crlUrl,
+            (current == null) ? null : current.getETag(),
+            (current == null) ? null : current.getLastModified());
+
+        long now = System.currentTimeMillis();
+        File crlFile = getFile(crlUrl, CRL_SUFFIX);
+
+        if (download.isNotModified() && current != null) {
+            writeMeta(crlUrl, download.getETag(), download.getLastModified(), now);
+            return current.withExpiry(download.getETag(), download.getLastModified(),
+                getExpiresAt(current.getNextUpdate(), now));
+        }
+
+        X509CRL crl = download.getCrl();
+        if (crl == null) {
+            throw new CRLException("CRL from '" + crlUrl + "' not present or not verifiable");
+        }
+
+        File tmpFile = File.createTempFile("download", ".tmp", storeDir);
+        try {
+            try (OutputStream os = new FileOutputStream(tmpFile)) {
+                os.write(crl.getEncoded());
+            }
+            Files.move(tmpFile.toPath(), crlFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+        writeMeta(crlUrl, download.getETag(), download.getLastModified(), now);
+
+        StoredCRL storedCRL = create(crlUrl, crl, map(crlFile), download.getETag(), download.getLastModified(), now);
+        LOG.debug("CRL '{}' with #{} entries stored in '{}'", crlUrl, storedCRL.getIndex().size(), crlFile.getName());
+
+        enforceSizeLimit(crlFile);
+        return storedCRL;
+    }
+
+    private StoredCRL load(final String crlUrl) {
+
+        File crlFile = getFile(crlUrl, CRL_SUFFIX);
+        File metaFile = getFile(crlUrl, META_SUFFIX);
+        if (!crlFile.exists() || !metaFile.exists()) {
+            return null;
+        }
+
+        try {
+            Properties meta = new Properties();
+            try (InputStream is = new FileInputStream(metaFile)) {
+                meta.load(is);
+            }
+            if (!crlUrl.equals(meta.getProperty(META_URL))) {
+                LOG.warn("CRL store file '{}' does not belong to '{}'", metaFile.getName(), crlUrl);
+                return null;
+            }
+
+            ByteBuffer encoded = map(crlFile);
+            X509CRL crl;
+            try (InputStream is = new StoredCRL.ByteBufferInputStream(encoded.duplicate())) {
+                crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(is);
+            }
+
+            // the file may have been modified since the download
+            if (crlUtil.verifyCRL(crl, crlUrl) == null) {
+                LOG.warn("stored CRL for '{}' not verifiable by its issuer, dropping it", crlUrl);
+                delete(crlUrl);
+                return null;
+            }
+
+            long fetchedAt = Long.parseLong(meta.getProperty(META_FETCHED_AT, "0"));
+            StoredCRL storedCRL = create(crlUrl, crl, encoded,
+                meta.getProperty(META_ETAG), meta.getProperty(META_LAST_MODIFIED), fetchedAt);
+            LOG.debug("CRL '{}' with #{} entries loaded from '{}'", crlUrl, storedCRL.getIndex().size(), crlFile.getName());
+            return storedCRL;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            LOG.info("Problem loading stored CRL for '{}', dropping it", crlUrl);
+            LOG.debug("loading stored CRL failed", e);
+            delete(crlUrl);
+            return null;
+        }
+    }
+
+    private StoredCRL create(final String crlUrl, final X509CRL crl, final ByteBuffer encoded,
+                             final String eTag, final String lastModified, final long fetchedAt) throws IOException {
+
+        long nextUpdate = (crl.getNextUpdate() == null) ? 0L : crl.getNextUpdate().getTime();
+
+        return new StoredCRL(crlUrl, eTag, lastModified,
+            crl.getIssuerX500Principal().getName(),
+            crl.getThisUpdate().getTime(),
+            nextUpdate,
+            getExpiresAt(nextUpdate, fetchedAt),
+            getIntegerExtension(crl, Extension.cRLNumber.getId()),
+            getIntegerExtension(crl, Extension.deltaCRLIndicator.getId()),
+            getFreshestCRLUrls(crl),
+            RevokedSerialIndex.of(crl),
+            encoded,
+            null);
+    }
+
+    private long getExpiresAt(final long nextUpdate, final long fetchedAt) {
+        long maxNextUpdate = fetchedAt + 1000L * preferenceUtil.getMaxNextUpdatePeriodCRLSec();
+        if (nextUpdate == 0L) {
+            return maxNextUpdate;
+        }
+        return Math.min(nextUpdate, maxNextUpdate);
+    }
+
+    private void writeMeta(final String crlUrl, final String eTag, final String lastModified, final long fetchedAt) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty(META_URL, crlUrl);
+        if (eTag != null) {
+            meta.setProperty(META_ETAG, eTag);
+        }
+        if (lastModified != null) {
+            meta.setProperty(META_LAST_MODIFIED, lastModified);
+        }
+        meta.setProperty(META_FETCHED_AT, Long.toString(fetchedAt));
+
+        File metaFile = getFile(crlUrl, META_SUFFIX);
+        File tmpFile = File.createTempFile("meta", ".tmp", storeDir);
+        try {
+            try (OutputStream os = new FileOutputStream(tmpFile)) {
+                meta.store(os, null);
+            }
+            Files.move(tmpFile.toPath(), metaFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    /**
+     * drop the least recently refreshed CRLs if the store exceeds its size limit
+     */
+    private void enforceSizeLimit(final File keepFile) {
+
+        File[] crlFiles = storeDir.listFiles((dir, name) -> name.endsWith(CRL_SUFFIX));
+        if (crlFiles == null) {
+            return;
+        }
+
+        long totalSize = 0;
+        for (File file : crlFiles) {
+            totalSize += file.length();
+        }
+        if (totalSize <= maxSizeBytes) {
+            return;
+        }
+
+        Arrays.sort(crlFiles, Comparator.comparingLong(File::lastModified));
+        for (File file : crlFiles) {
+            if (totalSize <= maxSizeBytes) {
+                break;
+            }
+            if (file.equals(keepFile)) {
+                continue;
+            }
+
+            String baseName = file.getName().substring(0, file.getName().length() - CRL_SUFFIX.length());
+            crlMap.values().removeIf(storedCRL -> baseName.equals(getBaseName(storedCRL.getUrl())));
+
+            long length = file.length();
+            if (file.delete()) {
+                totalSize -= length;
+                LOG.info("CRL store size limit exceeded, dropped '{}'", file.getName());
+            }
+            new File(storeDir, baseName + META_SUFFIX).delete();
+        }
+    }
+
+    private void delete(final String crlUrl) {
+        crlMap.remove(crlUrl);
+        getFile(crlUrl, CRL_SUFFIX).delete();
+        getFile(crlUrl, META_SUFFIX).delete();
+    }
+
+    private static ByteBuffer map(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private File getFile(final String crlUrl, final String suffix) {
+        return new File(storeDir, getBaseName(crlUrl) + suffix);
+    }
+
+    private static String getBaseName(final String crlUrl) {
+        return DigestUtils.sha256Hex(crlUrl);
+    }
+
+    private Object getLock(final String crlUrl) {
+        return lockMap.computeIfAbsent(crlUrl, k -> new Object());
+    }
+
+    private static BigInteger getIntegerExtension(final X509CRL crl, final String oid) throws IOException {
+        byte[] extValue = crl.getExtensionValue(oid);
+        if (extValue == null) {
+            return null;
+        }
+        ASN1Primitive prim = ASN1Primitive.fromByteArray(ASN1OctetString.getInstance(extValue).getOctets());
+        return ASN1Integer.getInstance(prim).getValue();
+    }
+
+    private static List<String> getFreshestCRLUrls(final X509CRL crl) throws IOException {
+
+        List<String> urlList = new ArrayList<>();
+
+        byte[] extValue = crl.getExtensionValue(Extension.freshestCRL.getId());
+        if (extValue == null) {
+            return urlList;
+        }
+
+        CRLDistPoint distPoint = CRLDistPoint.getInstance(
+            ASN1Primitive.fromByteArray(ASN1OctetString.getInstance(extValue).getOctets()));
+        for (DistributionPoint dp : distPoint.getDistributionPoints()) {
+            DistributionPointName dpn = dp.getDistributionPoint();
+            if (dpn != null && dpn.getType() == DistributionPointName.FULL_NAME) {
+                for (GeneralName genName : GeneralNames.getInstance(dpn.getName()).getNames()) {
+                    if (genName.getTagNo() == GeneralName.uniformResourceIdentifier) {
+                        urlList.add(DERIA5String.getInstance(genName.getName()).getString());
+                    }
+                }
+            }
+        }
+        return urlList;
+    }
+}
@@ -25,11 +25,12 @@ package de.trustable.ca3s.core.service.util;
 
 import de.trustable.ca3s.core.domain.Certificate;
 import de.trustable.ca3s.core.repository.CertificateSpecifications;
+import de.trustable.ca3s.core.service.dto.CRLDownload;
 import de.trustable.ca3s.core.service.dto.CertificateView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 
@@ -46,6 +47,7 @@ import javax.security.auth.x500.X500Principal;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.GeneralSecurityException;
@@ -64,12 +66,14 @@ public class CRLUtil {
 	@Autowired
 	private CertificateUtil certUtil;
 
+	@Value("${ca3s.crl.download.timeout.millis:30000}")
+	private int downloadTimeoutMillis;
+
 
     /**
      * Downloads CRL from given URL. Supports http, https, ftp and ldap based
      * URLs.
      */
-	@Cacheable("CRLs")
     public X509CRL downloadCRL(String crlURL) throws IOException,
             CertificateException, CRLException, NamingException {
 
@@ -104,6 +108,69 @@ public class CRLUtil {
         }
 		LOG.info("download from '{}' with #{} items took {} mSec", crlURL, nRevCerts, System.currentTimeMillis() - startTime );
 
+        return verifyCRL(crl, crlURL);
+    }
+
+    /**
+     * Downloads a CRL from given URL, for http and https URLs only if modified since the last download.
+     *
+     * @param crlURL the CRL's URL
+     * @param eTag the ETag header of the last download, may be null
+     * @param lastModified the Last-Modified header of the last download, may be null
+     * @return the download outcome, containing the verified CRL if modified
+     */
+    public CRLDownload downloadCRLIfModified(String crlURL, String eTag, String lastModified) throws IOException,
+            CertificateException, CRLException, NamingException {
+
+        if (!crlURL.startsWith("http://") && !crlURL.startsWith("https://")) {
+            return new CRLDownload(downloadCRL(crlURL), false, null, null);
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        HttpURLConnection con = (HttpURLConnection) new URL(crlURL).openConnection();
+        try {
+            con.setConnectTimeout(downloadTimeoutMillis);
+            con.setReadTimeout(downloadTimeoutMillis);
+            if (eTag != null) {
+                con.setRequestProperty("If-None-Match", eTag);
+            }
+            if (lastModified != null) {
+                con.setRequestProperty("If-Modified-Since", lastModified);
+            }
+
+            int status = con.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                LOG.debug("CRL at '{}' not modified", crlURL);
+                return CRLDownload.notModified(eTag, lastModified);
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected status " + status + " downloading CRL from " + crlURL);
+            }
+
+            X509CRL crl;
+            try (InputStream crlStream = con.getInputStream()) {
+                CertificateFactory cf = CertificateFactory.getInstance("X.509");
+                crl = (X509CRL) cf.generateCRL(crlStream);
+            }
+            LOG.info("download from '{}' took {} mSec", crlURL, System.currentTimeMillis() - startTime);
+
+            return new CRLDownload(verifyCRL(crl, crlURL), false,
+                con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"));
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    /**
+     * verify the CRL's signature with one of the known certificates of the CRL issuer
+     *
+     * @param crl the CRL to be verified
+     * @param crlURL the CRL's URL, for logging only
+     * @return the CRL or null, if no issuer certificate verifies the CRL
+     */
+    public X509CRL verifyCRL(X509CRL crl, String crlURL) {
+
         X500Principal principal = crl.getIssuerX500Principal();
 
 //    	List<Certificate> certList = CertificateSpecifications.findCertificatesBySubject(entityManager,
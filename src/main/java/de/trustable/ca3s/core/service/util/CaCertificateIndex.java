@@ -0,0 +1,354 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.commons.codec.binary.Hex;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.CertificateAttribute;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+
+/**
+ * In-memory index of the CA certificates known to the database, keyed by subject key identifier and subject.
+ *
+ * The index is an immutable snapshot, readers never block. Certificates added at runtime are copied into a new
+ * snapshot. The whole index is rebuilt from the database after an invalidation or after
+ * 'ca3s.trust.index.refresh.seconds', changes made by other instances become visible after this period.
+ * While a rebuild is running, the previous snapshot stays in use.
+ *
+ * Each invalidation starts a new generation, caches derived from the index compare the generation to detect
+ * outdated content.
+ */
+@Service
+public class CaCertificateIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CaCertificateIndex.class);
+
+    private final CertificateRepository certificateRepository;
+    private final long refreshMillis;
+
+    private final AtomicReference<Snapshot> snapshotRef = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    public CaCertificateIndex(CertificateRepository certificateRepository,
+                              @Value("${ca3s.trust.index.refresh.seconds:300}") long refreshSeconds) {
+        this.certificateRepository = certificateRepository;
+        this.refreshMillis = refreshSeconds * 1000L;
+    }
+
+    /**
+     * @return the current snapshot, built on first use
+     */
+    public Snapshot getSnapshot() {
+
+        Snapshot snapshot = snapshotRef.get();
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = snapshotRef.get();
+                if (snapshot == null) {
+                    snapshot = build();
+                    snapshotRef.set(snapshot);
+                }
+            }
+            return snapshot;
+        }
+
+        if (!isCurrent(snapshot) && rebuilding.compareAndSet(false, true)) {
+            try {
+                Snapshot rebuilt = build();
+                snapshotRef.set(rebuilt);
+                return rebuilt;
+            } catch (RuntimeException e) {
+                LOG.warn("rebuilding CA certificate index failed, keeping the previous index", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * add a CA certificate to the index without rebuilding it
+     *
+     * @param cert the certificate, already persisted
+     * @return the entry of the certificate
+     */
+    public CaEntry add(final Certificate cert) throws GeneralSecurityException {
+
+        CaEntry entry = new CaEntry(cert.getId(), CryptoService.convertPemToCertificate(cert.getContent()),
+            Boolean.TRUE.equals(cert.isRevoked()), Boolean.TRUE.equals(cert.isTrusted()));
+
+        Snapshot snapshot;
+        Snapshot extended;
+        do {
+            snapshot = getSnapshot();
+            extended = snapshot.with(entry);
+        } while (!snapshotRef.compareAndSet(snapshot, extended));
+
+        LOG.debug("certificate id {} added to CA certificate index", cert.getId());
+        return entry;
+    }
+
+    /**
+     * drop the index, it's rebuilt on next use.
+     * If called within a transaction, the index is dropped again after completion, so a rebuild running concurrently
+     * before the commit does not survive.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        LOG.debug("CA certificate index invalidated");
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private boolean isCurrent(final Snapshot snapshot) {
+        return snapshot.generation == generation.get() &&
+            System.currentTimeMillis() < snapshot.createdAt + refreshMillis;
+    }
+
+    private Snapshot build() {
+
+        long buildGeneration = generation.get();
+        long startTime = System.currentTimeMillis();
+
+        Map<Long, Certificate> certMap = new LinkedHashMap<>();
+        for (Certificate cert : certificateRepository.findBySearchTermNamed1(CertificateAttribute.ATTRIBUTE_CA, "true")) {
+            certMap.put(cert.getId(), cert);
+        }
+        for (Certificate cert : certificateRepository.findBySearchTermNamed1(CertificateAttribute.ATTRIBUTE_SELFSIGNED, "true")) {
+            certMap.putIfAbsent(cert.getId(), cert);
+        }
+
+        List<CaEntry> entryList = new ArrayList<>(certMap.size());
+        for (Certificate cert : certMap.values()) {
+            try {
+                entryList.add(new CaEntry(cert.getId(), CryptoService.convertPemToCertificate(cert.getContent()),
+                    Boolean.TRUE.equals(cert.isRevoked()), Boolean.TRUE.equals(cert.isTrusted())));
+            } catch (GeneralSecurityException e) {
+                LOG.debug("CA certificate index ignores unparsable certificate with id '" + cert.getId() + "'", e);
+            }
+        }
+
+        Snapshot snapshot = new Snapshot(buildGeneration, startTime, entryList);
+        LOG.debug("CA certificate index with {} entries built in {} msecs", entryList.size(), System.currentTimeMillis() - startTime);
+        return snapshot;
+    }
+
+    static String getSubjectKeyIdentifier(final X509Certificate x509Cert) {
+        byte[] extValue = x509Cert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+        if (extValue == null) {
+            return null;
+        }
+        try {
+            SubjectKeyIdentifier ski = SubjectKeyIdentifier.getInstance(ASN1OctetString.getInstance(extValue).getOctets());
+            return Hex.encodeHexString(ski.getKeyIdentifier());
+        } catch (IllegalArgumentException e) {
+            LOG.debug("unparsable SKI extension in certificate '{}'", x509Cert.getSubjectX500Principal().getName());
+            return null;
+        }
+    }
+
+    static String getAuthorityKeyIdentifier(final X509Certificate x509Cert) {
+        byte[] extValue = x509Cert.getExtensionValue(Extension.authorityKeyIdentifier.getId());
+        if (extValue == null) {
+            return null;
+        }
+        try {
+            AuthorityKeyIdentifier aki = AuthorityKeyIdentifier.getInstance(ASN1OctetString.getInstance(extValue).getOctets());
+            byte[] keyIdentifier = aki.getKeyIdentifier();
+            return keyIdentifier == null ? null : Hex.encodeHexString(keyIdentifier);
+        } catch (IllegalArgumentException e) {
+            LOG.debug("unparsable AKI extension in certificate '{}'", x509Cert.getSubjectX500Principal().getName());
+            return null;
+        }
+    }
+
+    /**
+     * @return true, if the signature of 'cert' verifies with the public key of 'issuer'
+     */
+    public static boolean isIssuedBy(final X509Certificate cert, final X509Certificate issuer) {
+        if (!cert.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())) {
+            return false;
+        }
+        try {
+            cert.verify(issuer.getPublicKey());
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * immutable view of the CA certificates
+     */
+    public static final class Snapshot {
+
+        private final long generation;
+        private final long createdAt;
+        private final List<CaEntry> entryList;
+        private final Map<String, List<CaEntry>> skiMap = new HashMap<>();
+        private final Map<X500Principal, List<CaEntry>> subjectMap = new HashMap<>();
+
+        Snapshot(long generation, long createdAt, List<CaEntry> entryList) {
+            this.generation = generation;
+            this.createdAt = createdAt;
+            this.entryList = Collections.unmodifiableList(entryList);
+            for (CaEntry entry : entryList) {
+                if (entry.ski != null) {
+                    skiMap.computeIfAbsent(entry.ski, k -> new ArrayList<>()).add(entry);
+                }
+                subjectMap.computeIfAbsent(entry.x509Cert.getSubjectX500Principal(), k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        Snapshot with(final CaEntry entry) {
+            List<CaEntry> extendedList = new ArrayList<>(entryList.size() + 1);
+            for (CaEntry existing : entryList) {
+                if (existing.id != entry.id) {
+                    extendedList.add(existing);
+                }
+            }
+            extendedList.add(entry);
+            return new Snapshot(generation, createdAt, extendedList);
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * find the issuer of a certificate, matching the authority key identifier or, if not present, the issuer name.
+         * Only candidates with a matching signature are returned, preferring the certificate valid at 'now' with the
+         * longest validity.
+         *
+         * @param cert the certificate
+         * @param now  point in time for the validity check
+         * @return the entry of the issuer or null
+         */
+        public CaEntry findIssuer(final X509Certificate cert, final Date now) {
+
+            List<CaEntry> candidateList = null;
+            String aki = getAuthorityKeyIdentifier(cert);
+            if (aki != null) {
+                candidateList = skiMap.get(aki);
+            }
+            if (candidateList == null) {
+                candidateList = subjectMap.get(cert.getIssuerX500Principal());
+            }
+            if (candidateList == null) {
+                return null;
+            }
+
+            CaEntry issuer = null;
+            for (CaEntry candidate : candidateList) {
+                if (!isIssuedBy(cert, candidate.x509Cert)) {
+                    continue;
+                }
+                if (issuer == null ||
+                    (candidate.isValidAt(now) && !issuer.isValidAt(now)) ||
+                    (candidate.isValidAt(now) == issuer.isValidAt(now) &&
+                        candidate.x509Cert.getNotAfter().after(issuer.x509Cert.getNotAfter()))) {
+                    issuer = candidate;
+                }
+            }
+            return issuer;
+        }
+
+        public X509Certificate[] getAcceptedIssuers() {
+            X509Certificate[] certArray = new X509Certificate[entryList.size()];
+            for (int i = 0; i < entryList.size(); i++) {
+                certArray[i] = entryList.get(i).x509Cert;
+            }
+            return certArray;
+        }
+
+        public int size() {
+            return entryList.size();
+        }
+    }
+
+    /**
+     * a CA certificate of the index
+     */
+    public static final class CaEntry {
+
+        private final long id;
+        private final X509Certificate x509Cert;
+        private final boolean revoked;
+        private final boolean trusted;
+        private final boolean selfSigned;
+        private final String ski;
+
+        CaEntry(long id, X509Certificate x509Cert, boolean revoked, boolean trusted) {
+            this.id = id;
+            this.x509Cert = x509Cert;
+            this.revoked = revoked;
+            this.trusted = trusted;
+            this.selfSigned = isIssuedBy(x509Cert, x509Cert);
+            this.ski = getSubjectKeyIdentifier(x509Cert);
+        }
+
+        boolean isValidAt(final Date now) {
+            return !now.before(x509Cert.getNotBefore()) && !now.after(x509Cert.getNotAfter());
+        }
+
+        /**
+         * @return the id of the Certificate entity
+         */
+        public long getId() {
+            return id;
+        }
+
+        public X509Certificate getX509Cert() {
+            return x509Cert;
+        }
+
+        public boolean isRevoked() {
+            return revoked;
+        }
+
+        public boolean isTrusted() {
+            return trusted;
+        }
+
+        public boolean isSelfSigned() {
+            return selfSigned;
+        }
+
+        @Override
+        public String toString() {
+            return "CaEntry{id=" + id + ", subject='" + x509Cert.getSubjectX500Principal().getName() + "'}";
+        }
+    }
+}
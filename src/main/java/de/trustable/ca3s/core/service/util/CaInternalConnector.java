@@ -25,7 +25,10 @@ import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import de.trustable.ca3s.core.domain.CAConnectorConfig;
 import de.trustable.ca3s.core.domain.CSR;
@@ -60,6 +63,12 @@ public class CaInternalConnector {
     @Autowired
     CSRUtil csrUtil;
 
+    @Value("${ca3s.internalCA.signer.recheck.seconds:300}")
+    long signerRecheckSeconds;
+
+    // decoded signing key of the current intermediate, avoids the key decryption for every request
+    private volatile SigningKeyHandle intermediateHandle;
+
 
 	Certificate getRoot() throws GeneralSecurityException, IOException {
 
@@ -87,6 +96,64 @@ public class CaInternalConnector {
 
 	}
 
+	/**
+	 * get the signing key of the current intermediate.
+	 * The handle is reused until the intermediate expires. Every 'ca3s.internalCA.signer.recheck.seconds' the
+	 * database is checked for a rollover to a different intermediate.
+	 *
+	 * @return the signing key handle
+	 * @throws GeneralSecurityException
+	 * @throws IOException
+	 */
+	SigningKeyHandle getIntermediateSigningKey() throws GeneralSecurityException, IOException {
+
+		SigningKeyHandle handle = intermediateHandle;
+		if( handle != null && handle.isUsable()) {
+			return handle;
+		}
+
+		synchronized (this) {
+			handle = intermediateHandle;
+			if( handle != null && handle.isUsable()) {
+				return handle;
+			}
+
+			Certificate intermediate = getIntermediate();
+			long recheckAt = System.currentTimeMillis() + signerRecheckSeconds * 1000L;
+
+			if( handle != null && handle.certificateId == intermediate.getId() && Instant.now().isBefore(handle.validTo)) {
+				handle = new SigningKeyHandle(handle, recheckAt);
+			}else {
+				PrivateKey privKeyIntermediate = certUtil.getPrivateKey(intermediate);
+				if( privKeyIntermediate == null) {
+					throw new GeneralSecurityException("no private key available for intermediate certificate " + intermediate.getId());
+				}
+				KeyPair kpIntermediate = new KeyPair(certUtil.convertPemToCertificate(intermediate.getContent()).getPublicKey(), privKeyIntermediate);
+				handle = new SigningKeyHandle(intermediate.getId(),
+					normalizeX500Name(new X500Name(intermediate.getSubject())),
+					kpIntermediate,
+					intermediate.getValidTo(),
+					recheckAt);
+				LOG.info("signing key of intermediate certificate {} loaded", intermediate.getId());
+			}
+			intermediateHandle = handle;
+		}
+
+		if( TransactionSynchronizationManager.isSynchronizationActive()) {
+			// a freshly created intermediate may vanish with a rollback
+			final SigningKeyHandle registeredHandle = handle;
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if( status != STATUS_COMMITTED && intermediateHandle == registeredHandle) {
+						intermediateHandle = null;
+					}
+				}
+			});
+		}
+		return handle;
+	}
+
 	private Certificate createNewIntermediate(Certificate root) throws GeneralSecurityException, IOException {
 
 		KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
@@ -189,10 +256,7 @@ public class CaInternalConnector {
 
 			csr.setStatus(CsrStatus.PROCESSING);
 
-			Certificate intermediate = getIntermediate();
-
-			PrivateKey privKeyIntermediate = certUtil.getPrivateKey(intermediate);
-			KeyPair kpIntermediate = new KeyPair(certUtil.convertPemToCertificate(intermediate.getContent()).getPublicKey(), privKeyIntermediate);
+			SigningKeyHandle signingKeyHandle = getIntermediateSigningKey();
 
 			PKCS10CertificationRequest p10 = cryptoUtil.convertPemToPKCS10CertificationRequest(csr.getCsrBase64());
 
@@ -206,8 +270,8 @@ public class CaInternalConnector {
             }
 
             X509Certificate x509Cert = cryptoUtil.issueCertificate(
-                normalizeX500Name(new X500Name(intermediate.getSubject())),
-                kpIntermediate,
+                signingKeyHandle.issuerName,
+                signingKeyHandle.keyPair,
                 normalizeX500Name(p10.getSubject()),
                 p10.getSubjectPublicKeyInfo(),
                 Calendar.YEAR, 1,
@@ -272,4 +336,32 @@ public class CaInternalConnector {
 
 	}
 
+	/**
+	 * decoded key material of an issuing certificate
+	 */
+	static final class SigningKeyHandle {
+
+		final long certificateId;
+		final X500Name issuerName;
+		final KeyPair keyPair;
+		final Instant validTo;
+		final long recheckAt;
+
+		SigningKeyHandle(long certificateId, X500Name issuerName, KeyPair keyPair, Instant validTo, long recheckAt) {
+			this.certificateId = certificateId;
+			this.issuerName = issuerName;
+			this.keyPair = keyPair;
+			this.validTo = validTo;
+			this.recheckAt = recheckAt;
+		}
+
+		SigningKeyHandle(SigningKeyHandle handle, long recheckAt) {
+			this(handle.certificateId, handle.issuerName, handle.keyPair, handle.validTo, recheckAt);
+		}
+
+		boolean isUsable() {
+			return System.currentTimeMillis() < recheckAt && Instant.now().isBefore(validTo);
+		}
+	}
+
 }
@@ -0,0 +1,577 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.CertificateAttribute;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.ca3s.core.service.dto.CertificateImportResult;
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.cert.X509Certificate;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Bulk import of certificates, e.g. from ADCS, LDAP or file uploads: the certificates of a batch are parsed in
+ * parallel, issuers are resolved against an in-memory index of the known CA certificates and the new rows are
+ * written using JDBC batch inserts. In contrast to {@link CertificateUtil#createCertificate} no replacement
+ * relations are recorded.
+ */
+@Service
+public class CertificateBatchImporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CertificateBatchImporter.class);
+
+    static final int MAX_CHAIN_LENGTH = 10;
+
+    static final String INSERT_CERTIFICATE_SQL = "INSERT INTO certificate (tbs_digest, subject, sans, issuer, root, type, " +
+        "description, fingerprint, serial, valid_from, valid_to, key_algorithm, key_length, curve_name, hashing_algorithm, " +
+        "padding_algorithm, signing_algorithm, creation_execution_id, content_added_at, revoked, end_entity, selfsigned, " +
+        "trusted, active, content) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String UPDATE_CHAIN_SQL = "UPDATE certificate SET issuing_certificate_id = ?, root_certificate_id = ? WHERE id = ?";
+
+    static final String INSERT_ATTRIBUTE_SQL = "INSERT INTO certificate_attribute (name, value_, certificate_id) VALUES (?, ?, ?)";
+
+    private static final Calendar UTC_CALENDAR = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+    private final CertificateUtil certUtil;
+    private final CertificateRepository certificateRepository;
+    private final CryptoService cryptoUtil;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionHandler transactionHandler;
+    private final int batchSize;
+
+    private final ExecutorService parseExecutor;
+
+    public CertificateBatchImporter(CertificateUtil certUtil,
+                                    CertificateRepository certificateRepository,
+                                    CryptoService cryptoUtil,
+                                    JdbcTemplate jdbcTemplate,
+                                    TransactionHandler transactionHandler,
+                                    @Value("${ca3s.batch.maxRecordsPerTransaction:1000}") int batchSize,
+                                    @Value("${ca3s.import.threads:4}") int nThreads) {
+        this.certUtil = certUtil;
+        this.certificateRepository = certificateRepository;
+        this.cryptoUtil = cryptoUtil;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionHandler = transactionHandler;
+        this.batchSize = Math.max(1, batchSize);
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cert-import-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.parseExecutor = Executors.newFixedThreadPool(Math.max(1, nThreads), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseExecutor.shutdownNow();
+    }
+
+    /**
+     * import all certificates of a stream
+     *
+     * @param is        concatenated DER or PEM encoded certificates
+     * @param importUrl the source of the certificates, recorded as attribute 'SOURCE'
+     * @return the summary of the import
+     * @throws IOException reading the stream failed
+     */
+    public CertificateImportResult importCertificates(final InputStream is, final String importUrl) throws IOException {
+
+        try (CertificateStreamReader reader = new CertificateStreamReader(is)) {
+            return importCertificates(reader, importUrl);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * import certificates in batches of 'ca3s.batch.maxRecordsPerTransaction', each batch in its own transaction
+     *
+     * @param encodedCertIterator DER encoded certificates
+     * @param importUrl           the source of the certificates, recorded as attribute 'SOURCE'
+     * @return the summary of the import
+     */
+    public CertificateImportResult importCertificates(final Iterator<byte[]> encodedCertIterator, final String importUrl) {
+        return importCertificates(encodedCertIterator, () -> importUrl, importUrl);
+    }
+
+    /**
+     * import the certificates of several sources, e.g. the files of a directory. Sources not readable as
+     * certificates are skipped.
+     *
+     * @param contentMap concatenated DER or PEM encoded certificates by source, the source is recorded as attribute 'SOURCE'
+     * @param importName the name of the import, used for logging only
+     * @return the summary of the import
+     */
+    public CertificateImportResult importCertificates(final Map<String, byte[]> contentMap, final String importName) {
+        SourceContentIterator sourceContentIterator = new SourceContentIterator(contentMap);
+        return importCertificates(sourceContentIterator, sourceContentIterator::getCurrentSource, importName);
+    }
+
+    /**
+     * @param encodedCertIterator DER encoded certificates
+     * @param sourceSupplier      the source of the certificate just returned by the iterator
+     * @param importName          the name of the import, used for logging only
+     */
+    CertificateImportResult importCertificates(final Iterator<byte[]> encodedCertIterator,
+                                               final Supplier<String> sourceSupplier,
+                                               final String importName) {
+
+        CertificateImportResult result = new CertificateImportResult();
+        List<byte[]> encodedCertList = new ArrayList<>(batchSize);
+        List<String> sourceList = new ArrayList<>(batchSize);
+        while (encodedCertIterator.hasNext()) {
+            encodedCertList.add(encodedCertIterator.next());
+            sourceList.add(sourceSupplier.get());
+            if (encodedCertList.size() >= batchSize) {
+                result.add(importBatch(encodedCertList, sourceList, result.getBatches() + 1));
+                encodedCertList = new ArrayList<>(batchSize);
+                sourceList = new ArrayList<>(batchSize);
+            }
+        }
+        if (!encodedCertList.isEmpty()) {
+            result.add(importBatch(encodedCertList, sourceList, result.getBatches() + 1));
+        }
+
+        LOG.info("import from '{}' finished: #{} certificates read in #{} batches, #{} imported, #{} already present, #{} failed in {} mSec ({} certificates / sec)",
+            importName, result.getRead(), result.getBatches(), result.getImported(), result.getExisting(), result.getFailed(),
+            result.getDurationMillis(), result.getCertificatesPerSecond());
+        return result;
+    }
+
+    CertificateImportResult importBatch(final List<byte[]> encodedCertList, final List<String> sourceList, final int batchNo) {
+
+        long startTime = System.currentTimeMillis();
+
+        List<Future<ParsedCertificate>> futureList = new ArrayList<>(encodedCertList.size());
+        for (int i = 0; i < encodedCertList.size(); i++) {
+            final byte[] encodedCert = encodedCertList.get(i);
+            final String source = sourceList.get(i);
+            futureList.add(parseExecutor.submit(() -> parse(encodedCert, source)));
+        }
+
+        // duplicates within the batch are dropped here
+        Map<String, ParsedCertificate> parsedMap = new LinkedHashMap<>();
+        int failed = 0;
+        int duplicates = 0;
+        for (Future<ParsedCertificate> future : futureList) {
+            try {
+                ParsedCertificate parsed = future.get();
+                if (parsedMap.putIfAbsent(parsed.cert.getTbsDigest(), parsed) != null) {
+                    duplicates++;
+                }
+            } catch (ExecutionException e) {
+                LOG.debug("problem parsing certificate in batch #" + batchNo, e.getCause());
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("certificate import interrupted", e);
+            }
+        }
+
+        int imported = 0;
+        int existing = duplicates;
+        int nCandidates = parsedMap.size();
+        if (nCandidates > 0) {
+            try {
+                imported = transactionHandler.runInNewTransaction(() -> writeBatch(parsedMap));
+                existing += nCandidates - imported;
+            } catch (RuntimeException e) {
+                LOG.warn("problem writing import batch #" + batchNo, e);
+                failed += nCandidates;
+            }
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        CertificateImportResult batchResult = new CertificateImportResult(encodedCertList.size(), imported, existing, failed, duration);
+        LOG.info("import batch #{}: #{} certificates, #{} imported, #{} already present ({} within batch), #{} failed in {} mSec ({} certificates / sec)",
+            batchNo, encodedCertList.size(), imported, existing, duplicates, failed, duration, batchResult.getCertificatesPerSecond());
+        return batchResult;
+    }
+
+    ParsedCertificate parse(final byte[] encodedCert, final String importUrl) throws Exception {
+
+        X509Certificate x509Cert = certUtil.getCertifcateFromBytes(encodedCert);
+
+        String tbsDigestBase64 = Base64.encodeBase64String(cryptoUtil.getSHA256Digest(x509Cert.getTBSCertificate())).toLowerCase();
+        Certificate cert = certUtil.buildCertificate(cryptoUtil.x509CertToPem(x509Cert), null, x509Cert, tbsDigestBase64);
+
+        // save the source of the certificate
+        certUtil.setCertAttribute(cert, CertificateAttribute.ATTRIBUTE_SOURCE, importUrl);
+
+        String akiBase64 = null;
+        X509CertificateHolder x509CertHolder = new X509CertificateHolder(x509Cert.getEncoded());
+        if (x509CertHolder.getExtensions() != null) {
+            AuthorityKeyIdentifier aki = AuthorityKeyIdentifier.fromExtensions(x509CertHolder.getExtensions());
+            if (aki != null && aki.getKeyIdentifier() != null) {
+                akiBase64 = Base64.encodeBase64String(aki.getKeyIdentifier());
+            }
+        }
+
+        return new ParsedCertificate(cert, akiBase64, DateUtil.asInstant(x509Cert.getNotBefore()));
+    }
+
+    /**
+     * write the new certificates of a batch, expected to run in a transaction
+     *
+     * @param parsedMap the certificates of the batch by TBS digest
+     * @return the number of inserted certificates
+     */
+    private int writeBatch(final Map<String, ParsedCertificate> parsedMap) {
+
+        for (Object[] row : certificateRepository.findIdTBSDigestByTBSDigests(new ArrayList<>(parsedMap.keySet()))) {
+            parsedMap.remove((String) row[1]);
+        }
+        if (parsedMap.isEmpty()) {
+            return 0;
+        }
+        List<ParsedCertificate> newList = new ArrayList<>(parsedMap.values());
+
+        resolveChains(newList, buildIssuerIndex(newList));
+
+        jdbcTemplate.batchUpdate(INSERT_CERTIFICATE_SQL, newList, batchSize,
+            (ps, parsed) -> setCertificateParameters(ps, parsed.cert));
+
+        // retrieve the generated ids
+        for (Object[] row : certificateRepository.findIdTBSDigestByTBSDigests(new ArrayList<>(parsedMap.keySet()))) {
+            parsedMap.get((String) row[1]).ref.id = (Long) row[0];
+        }
+
+        List<ParsedCertificate> chainedList = new ArrayList<>();
+        List<Object[]> attributeRowList = new ArrayList<>();
+        for (ParsedCertificate parsed : newList) {
+            if (parsed.ref.issuer != null) {
+                chainedList.add(parsed);
+            }
+            for (CertificateAttribute certAttr : parsed.cert.getCertificateAttributes()) {
+                attributeRowList.add(new Object[]{certAttr.getName(), certAttr.getValue(), parsed.ref.id});
+            }
+        }
+
+        jdbcTemplate.batchUpdate(UPDATE_CHAIN_SQL, chainedList, batchSize,
+            (ps, parsed) -> {
+                ps.setLong(1, parsed.ref.issuer.id);
+                if (parsed.ref.root == null) {
+                    ps.setNull(2, Types.BIGINT);
+                } else {
+                    ps.setLong(2, parsed.ref.root.id);
+                }
+                ps.setLong(3, parsed.ref.id);
+            });
+
+        jdbcTemplate.batchUpdate(INSERT_ATTRIBUTE_SQL, attributeRowList, batchSize,
+            (ps, row) -> {
+                ps.setString(1, (String) row[0]);
+                ps.setString(2, (String) row[1]);
+                ps.setLong(3, (Long) row[2]);
+            });
+
+        LOG.debug("#{} certificates with #{} attributes inserted, #{} linked to their issuer",
+            newList.size(), attributeRowList.size(), chainedList.size());
+        return newList.size();
+    }
+
+    /**
+     * index the known CA certificates and the CA certificates of the batch by SKI and by subject
+     */
+    IssuerIndex buildIssuerIndex(final List<ParsedCertificate> parsedList) {
+
+        IssuerIndex index = new IssuerIndex();
+
+        Map<Long, CertRef> refMap = new HashMap<>();
+        for (Object[] row : certificateRepository.findCACertificateRefBySKI()) {
+            Long id = (Long) row[0];
+            CertRef ref = refMap.get(id);
+            if (ref == null) {
+                ref = new CertRef(id, (String) row[1], Boolean.TRUE.equals(row[2]), Boolean.TRUE.equals(row[3]),
+                    (Instant) row[4], (Instant) row[5], (Instant) row[6]);
+                if (row[8] != null) {
+                    ref.root = new CertRef((Long) row[8], (String) row[7], true, false, null, null, null);
+                }
+                refMap.put(id, ref);
+                index.addSubject(ref);
+            }
+            index.addSKI((String) row[9], ref);
+        }
+
+        for (ParsedCertificate parsed : parsedList) {
+            if (!Boolean.TRUE.equals(parsed.cert.isEndEntity())) {
+                index.addSubject(parsed.ref);
+                for (String ski : certUtil.getCertAttributes(parsed.cert, CertificateAttribute.ATTRIBUTE_SKI)) {
+                    index.addSKI(ski, parsed.ref);
+                }
+            }
+        }
+        LOG.debug("issuer index contains #{} known and #{} new CA certificates", refMap.size(), index.size() - refMap.size());
+        return index;
+    }
+
+    /**
+     * link the certificates of the batch to their issuer and root, in memory only
+     */
+    void resolveChains(final List<ParsedCertificate> parsedList, final IssuerIndex index) {
+
+        for (ParsedCertificate parsed : parsedList) {
+            if (!parsed.ref.selfsigned) {
+                parsed.ref.issuer = index.findIssuer(parsed);
+                if (parsed.ref.issuer == null) {
+                    LOG.debug("unable to find issuer for certificate '{}' in batch", parsed.cert.getSubject());
+                }
+            }
+        }
+
+        for (ParsedCertificate parsed : parsedList) {
+            CertRef root = findRoot(parsed.ref.issuer);
+            if (root != null) {
+                parsed.ref.root = root;
+                parsed.cert.setRoot(root.subject);
+                certUtil.setCertAttribute(parsed.cert, CertificateAttribute.ATTRIBUTE_ROOT, root.subject.toLowerCase());
+            }
+        }
+    }
+
+    private static CertRef findRoot(CertRef ref) {
+        for (int i = 0; ref != null && i < MAX_CHAIN_LENGTH; i++) {
+            if (ref.selfsigned) {
+                return ref;
+            }
+            if (ref.root != null) {
+                return ref.root;
+            }
+            ref = ref.issuer;
+        }
+        return null;
+    }
+
+    private static void setCertificateParameters(final PreparedStatement ps, final Certificate cert) throws SQLException {
+        ps.setString(1, cert.getTbsDigest());
+        ps.setString(2, cert.getSubject());
+        ps.setString(3, cert.getSans());
+        ps.setString(4, cert.getIssuer());
+        ps.setString(5, cert.getRoot());
+        ps.setString(6, cert.getType());
+        ps.setString(7, cert.getDescription());
+        ps.setString(8, cert.getFingerprint());
+        ps.setString(9, cert.getSerial());
+        setInstant(ps, 10, cert.getValidFrom());
+        setInstant(ps, 11, cert.getValidTo());
+        ps.setString(12, cert.getKeyAlgorithm());
+        if (cert.getKeyLength() == null) {
+            ps.setNull(13, Types.INTEGER);
+        } else {
+            ps.setInt(13, cert.getKeyLength());
+        }
+        ps.setString(14, cert.getCurveName());
+        ps.setString(15, cert.getHashingAlgorithm());
+        ps.setString(16, cert.getPaddingAlgorithm());
+        ps.setString(17, cert.getSigningAlgorithm());
+        ps.setString(18, cert.getCreationExecutionId());
+        setInstant(ps, 19, cert.getContentAddedAt());
+        setBoolean(ps, 20, cert.isRevoked());
+        setBoolean(ps, 21, cert.isEndEntity());
+        setBoolean(ps, 22, cert.isSelfsigned());
+        setBoolean(ps, 23, cert.isTrusted());
+        setBoolean(ps, 24, cert.isActive());
+        ps.setString(25, cert.getContent());
+    }
+
+    // same as hibernate with 'hibernate.jdbc.time_zone: UTC'
+    private static void setInstant(final PreparedStatement ps, final int idx, final Instant instant) throws SQLException {
+        if (instant == null) {
+            ps.setNull(idx, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(idx, Timestamp.from(instant), (Calendar) UTC_CALENDAR.clone());
+        }
+    }
+
+    private static void setBoolean(final PreparedStatement ps, final int idx, final Boolean value) throws SQLException {
+        if (value == null) {
+            ps.setNull(idx, Types.BOOLEAN);
+        } else {
+            ps.setBoolean(idx, value);
+        }
+    }
+
+    static final class ParsedCertificate {
+        final Certificate cert;
+        final String akiBase64;
+        final Instant notBefore;
+        final CertRef ref;
+
+        ParsedCertificate(Certificate cert, String akiBase64, Instant notBefore) {
+            this.cert = cert;
+            this.akiBase64 = akiBase64;
+            this.notBefore = notBefore;
+            this.ref = new CertRef(null, cert.getSubject(), Boolean.TRUE.equals(cert.isSelfsigned()), false,
+                null, cert.getValidFrom(), cert.getValidTo());
+        }
+    }
+
+    /**
+     * lightweight reference to a certificate, the id of a new certificate is known after insertion only
+     */
+    static final class CertRef {
+        Long id;
+        final String subject;
+        final boolean selfsigned;
+        final boolean revoked;
+        final Instant revokedSince;
+        final Instant validFrom;
+        final Instant validTo;
+        CertRef issuer;
+        CertRef root;
+
+        CertRef(Long id, String subject, boolean selfsigned, boolean revoked,
+                Instant revokedSince, Instant validFrom, Instant validTo) {
+            this.id = id;
+            this.subject = subject;
+            this.selfsigned = selfsigned;
+            this.revoked = revoked;
+            this.revokedSince = revokedSince;
+            this.validFrom = validFrom;
+            this.validTo = validTo;
+        }
+
+        boolean isValidOn(final Instant instant) {
+            if (revoked && revokedSince != null && instant.isAfter(revokedSince)) {
+                return false;
+            }
+            return (validFrom == null || !instant.isBefore(validFrom)) &&
+                (validTo == null || !instant.isAfter(validTo));
+        }
+    }
+
+    /**
+     * the certificates of all sources in a row, keeping track of the source of the current certificate
+     */
+    static final class SourceContentIterator implements Iterator<byte[]> {
+
+        private final Iterator<Map.Entry<String, byte[]>> entryIterator;
+        private CertificateStreamReader reader;
+        private String nextSource;
+        private String currentSource;
+
+        SourceContentIterator(final Map<String, byte[]> contentMap) {
+            this.entryIterator = contentMap.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                if (reader != null) {
+                    try {
+                        if (reader.hasNext()) {
+                            return true;
+                        }
+                    } catch (UncheckedIOException e) {
+                        LOG.info("reading certificates from '{}' causes {}", nextSource, e.getCause().getLocalizedMessage());
+                    }
+                    reader = null;
+                }
+                if (!entryIterator.hasNext()) {
+                    return false;
+                }
+                Map.Entry<String, byte[]> entry = entryIterator.next();
+                nextSource = entry.getKey();
+                reader = new CertificateStreamReader(new ByteArrayInputStream(entry.getValue()));
+            }
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            currentSource = nextSource;
+            return reader.next();
+        }
+
+        String getCurrentSource() {
+            return currentSource;
+        }
+    }
+
+    static final class IssuerIndex {
+
+        private final Map<String, List<CertRef>> skiMap = new HashMap<>();
+        private final Map<String, List<CertRef>> subjectMap = new HashMap<>();
+        private int size = 0;
+
+        void addSKI(final String ski, final CertRef ref) {
+            List<CertRef> refList = skiMap.computeIfAbsent(ski, k -> new ArrayList<>(1));
+            if (!refList.contains(ref)) {
+                refList.add(ref);
+            }
+        }
+
+        void addSubject(final CertRef ref) {
+            subjectMap.computeIfAbsent(ref.subject, k -> new ArrayList<>(1)).add(ref);
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * find the issuer by the AKI or, as a fallback, by the issuer name. Ambiguous candidates are
+         * reduced to the ones valid at the 'notBefore' date of the certificate.
+         */
+        CertRef findIssuer(final ParsedCertificate parsed) {
+
+            List<CertRef> candidateList = null;
+            if (parsed.akiBase64 != null) {
+                candidateList = skiMap.get(parsed.akiBase64);
+            }
+            if (candidateList == null || candidateList.isEmpty()) {
+                candidateList = subjectMap.get(parsed.cert.getIssuer());
+            }
+            if (candidateList == null) {
+                return null;
+            }
+
+            List<CertRef> checkedList = new ArrayList<>(candidateList.size());
+            for (CertRef candidate : candidateList) {
+                if (candidate != parsed.ref) {
+                    checkedList.add(candidate);
+                }
+            }
+            if (checkedList.size() > 1) {
+                checkedList.removeIf(candidate -> !candidate.isValidOn(parsed.notBefore));
+            }
+            if (checkedList.size() == 1) {
+                return checkedList.get(0);
+            }
+            if (checkedList.size() > 1) {
+                LOG.debug("more than one ({}) issuing certificate for '{}'", checkedList.size(), parsed.cert.getSubject());
+            }
+            return null;
+        }
+    }
+}
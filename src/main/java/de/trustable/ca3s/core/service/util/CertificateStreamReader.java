@@ -0,0 +1,183 @@
+package de.trustable.ca3s.core.service.util;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a stream of concatenated DER or PEM encoded certificates into the DER encodings of the single
+ * certificates, without parsing them. Other PEM objects and text outside of the PEM blocks are skipped,
+ * DER encoded certificates are expected in front of any text.
+ * IO problems are reported as {@link UncheckedIOException}.
+ */
+final class CertificateStreamReader implements Iterator<byte[]>, Closeable {
+
+    static final int MAX_CERTIFICATE_LENGTH = 1024 * 1024;
+
+    private static final int DER_SEQUENCE = 0x30;
+
+    private final PushbackInputStream in;
+
+    // a '0' may start a line of text, so stay in text mode once text was found
+    private boolean textMode = false;
+
+    private byte[] next;
+
+    CertificateStreamReader(final InputStream is) {
+        this.in = new PushbackInputStream(new BufferedInputStream(is), 1);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        byte[] encoded = next;
+        next = null;
+        return encoded;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private byte[] readNext() throws IOException {
+
+        while (true) {
+            int b = skipWhitespace();
+            if (b < 0) {
+                return null;
+            }
+            if (b == DER_SEQUENCE && !textMode) {
+                return readDER();
+            }
+
+            in.unread(b);
+            textMode = true;
+            String line = readLine();
+            if (line.startsWith("-----BEGIN ")) {
+                boolean isCertificate = line.contains("CERTIFICATE") && !line.contains("REQUEST");
+                byte[] encoded = readPEMBody();
+                if (isCertificate && encoded.length > 0) {
+                    return encoded;
+                }
+            }
+        }
+    }
+
+    private byte[] readDER() throws IOException {
+
+        int first = read();
+        int length;
+        byte[] lengthBytes;
+        if (first < 0x80) {
+            length = first;
+            lengthBytes = new byte[]{(byte) first};
+        } else {
+            int nBytes = first & 0x7f;
+            if (nBytes == 0 || nBytes > 3) {
+                throw new IOException("unsupported DER length encoding in certificate stream");
+            }
+            lengthBytes = new byte[1 + nBytes];
+            lengthBytes[0] = (byte) first;
+            length = 0;
+            for (int i = 1; i <= nBytes; i++) {
+                int lb = read();
+                lengthBytes[i] = (byte) lb;
+                length = (length << 8) | lb;
+            }
+        }
+        if (length > MAX_CERTIFICATE_LENGTH) {
+            throw new IOException("certificate of " + length + " bytes exceeds the limit of " + MAX_CERTIFICATE_LENGTH + " bytes");
+        }
+
+        byte[] encoded = new byte[1 + lengthBytes.length + length];
+        encoded[0] = DER_SEQUENCE;
+        System.arraycopy(lengthBytes, 0, encoded, 1, lengthBytes.length);
+        int offset = 1 + lengthBytes.length;
+        while (offset < encoded.length) {
+            int n = in.read(encoded, offset, encoded.length - offset);
+            if (n < 0) {
+                throw new EOFException("certificate stream truncated");
+            }
+            offset += n;
+        }
+        return encoded;
+    }
+
+    private byte[] readPEMBody() throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int b = skipWhitespace();
+            if (b < 0) {
+                throw new EOFException("PEM block not terminated");
+            }
+            in.unread(b);
+            String line = readLine();
+            if (line.startsWith("-----END ")) {
+                return Base64.decodeBase64(sb.toString());
+            }
+            // skip PEM headers like 'Proc-Type'
+            if (line.indexOf(':') < 0) {
+                sb.append(line);
+            }
+            if (sb.length() > 2 * MAX_CERTIFICATE_LENGTH) {
+                throw new IOException("PEM block exceeds the limit of " + MAX_CERTIFICATE_LENGTH + " bytes");
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int b;
+        do {
+            b = in.read();
+        } while (b == ' ' || b == '\t' || b == '\r' || b == '\n');
+        return b;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(80);
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r') {
+                baos.write(b);
+            }
+            if (baos.size() > MAX_CERTIFICATE_LENGTH) {
+                throw new IOException("line exceeds the limit of " + MAX_CERTIFICATE_LENGTH + " bytes");
+            }
+        }
+        return new String(baos.toByteArray(), StandardCharsets.US_ASCII).trim();
+    }
+
+    private int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("certificate stream truncated");
+        }
+        return b;
+    }
+}
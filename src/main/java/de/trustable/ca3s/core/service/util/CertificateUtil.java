@@ -132,8 +132,10 @@ public class CertificateUtil {
 
     final private AuditService auditService;
 
+    final private CaCertificateIndex caCertificateIndex;
+
     @Autowired
-    public CertificateUtil(CertificateRepository certificateRepository, CertificateAttributeRepository certificateAttributeRepository, CertificateCommentRepository certificateCommentRepository, ProtectedContentRepository protContentRepository, ProtectedContentUtil protUtil, PreferenceUtil preferenceUtil, CryptoService cryptoUtil, AuditService auditService) {
+    public CertificateUtil(CertificateRepository certificateRepository, CertificateAttributeRepository certificateAttributeRepository, CertificateCommentRepository certificateCommentRepository, ProtectedContentRepository protContentRepository, ProtectedContentUtil protUtil, PreferenceUtil preferenceUtil, CryptoService cryptoUtil, AuditService auditService, CaCertificateIndex caCertificateIndex) {
         this.certificateRepository = certificateRepository;
         this.certificateAttributeRepository = certificateAttributeRepository;
         this.certificateCommentRepository = certificateCommentRepository;
@@ -142,6 +144,7 @@ public class CertificateUtil {
         this.preferenceUtil = preferenceUtil;
         this.cryptoUtil = cryptoUtil;
         this.auditService = auditService;
+        this.caCertificateIndex = caCertificateIndex;
     }
 
     private static Map<ASN1ObjectIdentifier, Integer> createDnOrderMap() {
@@ -432,13 +435,100 @@ public class CertificateUtil {
         throws CertificateEncodingException, IOException, NoSuchAlgorithmException, CertificateParsingException,
         CertificateException, InvalidKeyException, NoSuchProviderException, SignatureException {
 
-        Certificate cert;
         LOG.debug("creating new certificate '" + x509Cert.getSubjectX500Principal().getName() + "'");
 
+        Certificate cert = buildCertificate(pemCert, executionId, x509Cert, tbsDigestBase64);
+        X509CertificateHolder x509CertHolder = new X509CertificateHolder(x509Cert.getEncoded());
+
+        if (csr != null) {
+            // do not overwrite an existing CSR
+            cert.setCsr(csr);
+        }
+
+        certificateRepository.save(cert);
+        certificateAttributeRepository.saveAll(cert.getCertificateAttributes());
+
+        copyCsrAttributesToCertificate(csr, cert);
+
+        if (!cert.isSelfsigned()) {
+            // try to build cert chain
+            try {
+                Certificate issuingCert = findIssuingCertificate(x509CertHolder);
+
+                if (issuingCert == null) {
+                    LOG.info("unable to find issuer for non-self-signed certificate '" + x509Cert.getSubjectX500Principal().getName() + "' right now ...");
+                } else {
+                    cert.setIssuingCertificate(issuingCert);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("certificate '" + x509Cert.getSubjectX500Principal().getName() + "' issued by " + issuingCert.getSubject());
+                    }
+                }
+
+                Certificate rootCert = findRootCertificate(issuingCert);
+                if (rootCert != null) {
+                    cert.setRootCertificate(rootCert);
+                    cert.setRoot(rootCert.getSubject());
+                    setCertAttribute(cert, CertificateAttribute.ATTRIBUTE_ROOT, rootCert.getSubject().toLowerCase());
+                }
+            } catch (GeneralSecurityException gse) {
+//				LOG.debug("exception while retrieving issuer", gse);
+                LOG.info("problem retrieving issuer for certificate '" + x509Cert.getSubjectX500Principal().getName() + "' right now ...");
+            }
+        }
+
+        certificateRepository.save(cert);
+//		LOG.debug("certificate id '" + cert.getId() +"' post-save");
+        certificateAttributeRepository.saveAll(cert.getCertificateAttributes());
+        LOG.debug("certificate id '{}' saved containing #{} attributes", cert.getId(), cert.getCertificateAttributes().size());
+        for (CertificateAttribute cad : cert.getCertificateAttributes()) {
+            LOG.debug("Name '" + cad.getName() + "' got value '" + cad.getValue() + "'");
+        }
+
+        final X509Principal principal = PrincipalUtil.getSubjectX509Principal(x509Cert);
+        final Vector<?> values = principal.getValues(X509Name.CN);
+
+        String cn = values.size() > 0 ? (String) values.get(0) : null;
+
+        List<String> sanList = getCertAttributes(cert, CertificateAttribute.ATTRIBUTE_SAN);
+        sanList.addAll(getCertAttributes(cert, CsrAttribute.ATTRIBUTE_TYPED_SAN));
+        sanList.addAll(getCertAttributes(cert, CsrAttribute.ATTRIBUTE_TYPED_VSAN));
+
+        List<Certificate> replacedCerts = findReplaceCandidates(Instant.now(), cn, sanList);
+
+        if (replacedCerts.isEmpty()) {
+            LOG.debug("certificate id {} does not replace any certificate", cert.getId());
+        } else {
+            for (Certificate replacedCert : replacedCerts) {
+                if (!cert.equals(replacedCert)) {
+                    LOG.debug("certificate id {} replaces certificate id {}", cert.getId(), replacedCert.getId());
+                    setCertMultiValueAttribute(replacedCert, CertificateAttribute.ATTRIBUTE_REPLACED_BY, cert.getId().toString());
+                    certificateAttributeRepository.saveAll(replacedCert.getCertificateAttributes());
+                }
+            }
+        }
+
+        return cert;
+    }
+
+    /**
+     * build a new certificate entity including all its attributes without touching the database.
+     * The issuing and root certificate of a non-selfsigned certificate are left unresolved.
+     *
+     * @param pemCert the certificate in PEM format
+     * @param executionId the id of the creating process, may be null
+     * @param x509Cert the parsed certificate
+     * @param tbsDigestBase64 the digest of the certificate's TBS structure
+     * @return the unsaved certificate entity
+     */
+    public Certificate buildCertificate(final String pemCert, final String executionId,
+                                        X509Certificate x509Cert, String tbsDigestBase64)
+        throws CertificateEncodingException, IOException, NoSuchAlgorithmException, CertificateParsingException,
+        CertificateException, InvalidKeyException, NoSuchProviderException, SignatureException {
+
         byte[] certBytes = x509Cert.getEncoded();
         X509CertificateHolder x509CertHolder = new X509CertificateHolder(certBytes);
 
-        cert = new Certificate();
+        Certificate cert = new Certificate();
         cert.setCertificateAttributes(new HashSet<>());
 
         String type = "X509V" + x509Cert.getVersion();
@@ -449,11 +539,6 @@ public class CertificateUtil {
 
         cert.setContent(pemCert);
 
-        if (csr != null) {
-            // do not overwrite an existing CSR
-            cert.setCsr(csr);
-        }
-
         // indexed key for searching
         cert.setTbsDigest(tbsDigestBase64);
 
@@ -498,8 +583,6 @@ public class CertificateUtil {
 
         cert.setSelfsigned(false);
 
-        certificateRepository.save(cert);
-
         interpretBasicConstraint(x509Cert, cert);
 
 
@@ -561,11 +644,6 @@ public class CertificateUtil {
 
         addAdditionalCertificateAttributes(x509Cert, cert);
 
-        copyCsrAttributesToCertificate(csr, cert);
-
-        certificateRepository.save(cert);
-        certificateAttributeRepository.saveAll(cert.getCertificateAttributes());
-
         if (x500NameIssuer.equals(x500NameSubject)) {
 
             // check whether is really selfsigned
@@ -586,63 +664,6 @@ public class CertificateUtil {
             setCertAttribute(cert, CertificateAttribute.ATTRIBUTE_ROOT, cert.getSubject().toLowerCase());
 
             LOG.debug("certificate '" + x509Cert.getSubjectX500Principal().getName() + "' is selfsigned");
-
-        } else {
-            // try to build cert chain
-            try {
-                Certificate issuingCert = findIssuingCertificate(x509CertHolder);
-
-                if (issuingCert == null) {
-                    LOG.info("unable to find issuer for non-self-signed certificate '" + x509Cert.getSubjectX500Principal().getName() + "' right now ...");
-                } else {
-                    cert.setIssuingCertificate(issuingCert);
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("certificate '" + x509Cert.getSubjectX500Principal().getName() + "' issued by " + issuingCert.getSubject());
-                    }
-                }
-
-                Certificate rootCert = findRootCertificate(issuingCert);
-                if (rootCert != null) {
-                    cert.setRootCertificate(rootCert);
-                    cert.setRoot(rootCert.getSubject());
-                    setCertAttribute(cert, CertificateAttribute.ATTRIBUTE_ROOT, rootCert.getSubject().toLowerCase());
-                }
-            } catch (GeneralSecurityException gse) {
-//				LOG.debug("exception while retrieving issuer", gse);
-                LOG.info("problem retrieving issuer for certificate '" + x509Cert.getSubjectX500Principal().getName() + "' right now ...");
-            }
-        }
-
-
-        certificateRepository.save(cert);
-//		LOG.debug("certificate id '" + cert.getId() +"' post-save");
-        certificateAttributeRepository.saveAll(cert.getCertificateAttributes());
-        LOG.debug("certificate id '{}' saved containing #{} attributes", cert.getId(), cert.getCertificateAttributes().size());
-        for (CertificateAttribute cad : cert.getCertificateAttributes()) {
-            LOG.debug("Name '" + cad.getName() + "' got value '" + cad.getValue() + "'");
-        }
-
-        final X509Principal principal = PrincipalUtil.getSubjectX509Principal(x509Cert);
-        final Vector<?> values = principal.getValues(X509Name.CN);
-
-        String cn = values.size() > 0 ? (String) values.get(0) : null;
-
-        List<String> sanList = getCertAttributes(cert, CertificateAttribute.ATTRIBUTE_SAN);
-        sanList.addAll(getCertAttributes(cert, CsrAttribute.ATTRIBUTE_TYPED_SAN));
-        sanList.addAll(getCertAttributes(cert, CsrAttribute.ATTRIBUTE_TYPED_VSAN));
-
-        List<Certificate> replacedCerts = findReplaceCandidates(Instant.now(), cn, sanList);
-
-        if (replacedCerts.isEmpty()) {
-            LOG.debug("certificate id {} does not replace any certificate", cert.getId());
-        } else {
-            for (Certificate replacedCert : replacedCerts) {
-                if (!cert.equals(replacedCert)) {
-                    LOG.debug("certificate id {} replaces certificate id {}", cert.getId(), replacedCert.getId());
-                    setCertMultiValueAttribute(replacedCert, CertificateAttribute.ATTRIBUTE_REPLACED_BY, cert.getId().toString());
-                    certificateAttributeRepository.saveAll(replacedCert.getCertificateAttributes());
-                }
-            }
         }
 
         return cert;
@@ -1229,7 +1250,10 @@ public class CertificateUtil {
 
         cert.getCertificateAttributes().add(cAtt);
 
-        certificateAttributeRepository.save(cAtt);
+        // attributes of a certificate not persisted yet are written together with the certificate
+        if (cert.getId() != null) {
+            certificateAttributeRepository.save(cAtt);
+        }
 
     }
 
@@ -2031,6 +2055,9 @@ public class CertificateUtil {
         }
 
         cert.setRevokedSince(revocationDate);
+
+        // revoked certificates must not be trusted from cached data
+        caCertificateIndex.invalidate();
     }
 
 
@@ -2193,12 +2220,10 @@ public class CertificateUtil {
     }
 
     public CRLUpdateInfo checkAllCRLsForCertificate(final Certificate cert,
-                                                    final X509Certificate x509Cert,
-                                                    final CRLUtil crlUtil,
+                                                    final CRLStore crlStore,
                                                     final HashSet<String> brokenCrlUrlList){
 
         CRLUpdateInfo info = new CRLUpdateInfo();
-        long maxNextUpdate = System.currentTimeMillis() + 1000L * preferenceUtil.getMaxNextUpdatePeriodCRLSec();
 
         for( CertificateAttribute certAtt: cert.getCertificateAttributes()) {
 
@@ -2214,36 +2239,27 @@ public class CertificateUtil {
 
                 info.incUrlCount();
                 try {
-                    LOG.debug("downloading CRL '{}'", crlUrl);
-                    X509CRL crl = crlUtil.downloadCRL(crlUrl);
-                    if( crl == null) {
-                        LOG.debug("downloaded CRL == null ");
-                        continue;
-                    }
-
-                    long nextUpdate = crl.getNextUpdate().getTime();
-                    if( nextUpdate > maxNextUpdate ){
-                        LOG.debug("nextUpdate {} from CRL limited to {}", crl.getNextUpdate(), new Date(maxNextUpdate));
-                        nextUpdate = maxNextUpdate;
-                    }
+                    LOG.debug("retrieving CRL '{}'", crlUrl);
+                    StoredCRL crl = crlStore.get(crlUrl);
 
                     // set the crl's 'next update' timestamp to the certificate
-                    setCertAttribute(cert, CertificateAttribute.ATTRIBUTE_CRL_NEXT_UPDATE, Long.toString(nextUpdate), false);
+                    setCertAttribute(cert, CertificateAttribute.ATTRIBUTE_CRL_NEXT_UPDATE, Long.toString(crl.getEffectiveExpiresAt()), false);
 
-                    X509CRLEntry crlItem = crl.getRevokedCertificate(new BigInteger(cert.getSerial()));
+                    // the CRL may be shared with other issuers, so the issuer needs to match, too
+                    StoredCRL.RevokedEntry crlItem = crl.findRevoked(new BigInteger(cert.getSerial()), cert.getIssuer());
 
-                    if( (crlItem != null) && (crl.isRevoked(x509Cert) ) ) {
+                    if( crlItem != null ) {
 
                         String revocationReason = "unspecified";
-                        if( crlItem.getRevocationReason() != null ) {
-                            if( cryptoUtil.crlReasonAsString(CRLReason.lookup(crlItem.getRevocationReason().ordinal())) != null ) {
-                                revocationReason = cryptoUtil.crlReasonAsString(CRLReason.lookup(crlItem.getRevocationReason().ordinal()));
+                        if( crlItem.getReason() != null ) {
+                            if( cryptoUtil.crlReasonAsString(CRLReason.lookup(crlItem.getReason().ordinal())) != null ) {
+                                revocationReason = cryptoUtil.crlReasonAsString(CRLReason.lookup(crlItem.getReason().ordinal()));
                             }
                         }
 
                         Date revocationDate = new Date();
-                        if( crlItem.getRevocationDate() != null) {
-                            revocationDate = crlItem.getRevocationDate();
+                        if( crlItem.getRevocationDate() != 0L) {
+                            revocationDate = new Date(crlItem.getRevocationDate());
                         }else {
                             LOG.debug("Checking certificate {}: no RevocationDate present for reason {}!", cert.getId(), revocationReason);
                         }
@@ -2254,7 +2270,7 @@ public class CertificateUtil {
                     }
                     info.setSuccess();
                     break;
-                } catch (CertificateException | CRLException | IOException | NamingException e2) {
+                } catch (GeneralSecurityException | IOException | NamingException e2) {
                     LOG.info("Problem retrieving CRL for certificate "+ cert.getId());
                     LOG.debug("CRL retrieval for certificate "+ cert.getId() + " failed", e2);
                     brokenCrlUrlList.add(crlUrl);
@@ -0,0 +1,286 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import de.trustable.ca3s.core.domain.SchedulerLease;
+import de.trustable.ca3s.core.repository.SchedulerLeaseRepository;
+
+/**
+ * Coordinates the scheduled jobs of several ca3s instances sharing one database, enabled by
+ * 'ca3s.scheduler.cluster.enabled'. Without it every instance runs every job, as before.
+ *
+ * Jobs to be run by a single instance ask {@link #isLeader(String)}: the first instance taking the lease of the job in
+ * the SchedulerLease table runs it, keeps the lease by a heartbeat every 'ca3s.scheduler.heartbeat.millis' and loses it
+ * 'ca3s.scheduler.lease.seconds' after its last heartbeat. The heartbeat runs on a thread of its own, so it's not
+ * delayed by long running jobs in the scheduling lanes. Large jobs split their work by {@link #getShard()}: every
+ * live instance (holding a 'node:' lease) gets one shard, so adding instances adds throughput. The 'node:' leases of
+ * instances gone without releasing them are removed one lease period after their expiry.
+ * While instances join or leave, a unit of work may be processed twice or skipped once until the next run. The clocks
+ * of the instances need to be synchronized, with a skew well below the lease period.
+ */
+@Service
+public class ClusterJobCoordinator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterJobCoordinator.class);
+
+    static final String NODE_PREFIX = "node:";
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final TransactionHandler transactionHandler;
+    private final boolean enabled;
+    private final long leaseMillis;
+    private final long heartbeatMillis;
+    private final String nodeId;
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    private final Set<String> ledJobSet = ConcurrentHashMap.newKeySet();
+
+    public ClusterJobCoordinator(SchedulerLeaseRepository leaseRepository,
+                                 TransactionHandler transactionHandler,
+                                 @Value("${ca3s.scheduler.cluster.enabled:false}") boolean enabled,
+                                 @Value("${ca3s.scheduler.lease.seconds:60}") long leaseSeconds,
+                                 @Value("${ca3s.scheduler.heartbeat.millis:15000}") long heartbeatMillis,
+                                 @Value("${ca3s.scheduler.node.id:}") String nodeId) {
+        this.leaseRepository = leaseRepository;
+        this.transactionHandler = transactionHandler;
+        this.enabled = enabled;
+        this.leaseMillis = leaseSeconds * 1000L;
+        this.heartbeatMillis = heartbeatMillis;
+        this.nodeId = (nodeId == null || nodeId.trim().isEmpty()) ? defaultNodeId() : nodeId.trim();
+        if (enabled) {
+            LOG.info("scheduled jobs coordinated as node '{}' with a lease period of {} seconds", this.nodeId, leaseSeconds);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * check whether this instance is the one to run a job, taking over the lease of the job if it's expired
+     *
+     * @param jobName the unique name of the job
+     * @return true, if the job is to be run by this instance
+     */
+    public boolean isLeader(final String jobName) {
+
+        if (!enabled) {
+            return true;
+        }
+
+        boolean leader = acquire(jobName);
+        if (leader && ledJobSet.add(jobName)) {
+            LOG.info("node '{}' runs job '{}'", nodeId, jobName);
+        } else if (!leader && ledJobSet.remove(jobName)) {
+            LOG.info("node '{}' lost job '{}' to another node", nodeId, jobName);
+        }
+        return leader;
+    }
+
+    /**
+     * @return the part of the work of a sharded job to be done by this instance
+     */
+    public Shard getShard() {
+
+        if (!enabled) {
+            return Shard.ALL;
+        }
+
+        acquire(NODE_PREFIX + nodeId);
+        List<String> nodeList = leaseRepository.findActiveOwnersByJobNamePrefix(NODE_PREFIX + "%", Instant.now());
+        int index = nodeList.indexOf(nodeId);
+        if (index < 0) {
+            LOG.warn("node '{}' not registered, processing all shards", nodeId);
+            return Shard.ALL;
+        }
+        return new Shard(index, nodeList.size());
+    }
+
+    /**
+     * start the heartbeat thread
+     */
+    @PostConstruct
+    public void startHeartbeat() {
+
+        if (!enabled) {
+            return;
+        }
+
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "scheduler-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat();
+            } catch (RuntimeException e) {
+                // a failing run must not cancel the following ones
+                LOG.warn("heartbeat of node '{}' failed: {}", nodeId, e.getMessage());
+            }
+        }, 0L, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * prolong the leases held by this instance, register the instance as alive and remove the leases of instances gone
+     */
+    public void heartbeat() {
+
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        int nRenewed = transactionHandler.runInNewTransaction(() ->
+            leaseRepository.renewByOwner(nodeId, now, now.plusMillis(leaseMillis)));
+        acquire(NODE_PREFIX + nodeId);
+        LOG.debug("node '{}' renewed #{} leases", nodeId, nRenewed);
+
+        int nRemoved = transactionHandler.runInNewTransaction(() ->
+            leaseRepository.deleteExpiredByJobNamePrefix(NODE_PREFIX + "%", now.minusMillis(leaseMillis)));
+        if (nRemoved > 0) {
+            LOG.info("removed #{} leases of gone nodes", nRemoved);
+        }
+    }
+
+    /**
+     * hand over the leases of this instance on shutdown
+     */
+    @PreDestroy
+    public void release() {
+
+        if (!enabled) {
+            return;
+        }
+
+        if (heartbeatExecutor != null) {
+            // a running heartbeat would take the leases again
+            heartbeatExecutor.shutdownNow();
+            try {
+                if (!heartbeatExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    LOG.info("heartbeat of node '{}' still running on release", nodeId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            Instant expired = Instant.now().minusMillis(leaseMillis);
+            int nReleased = transactionHandler.runInNewTransaction(() -> leaseRepository.releaseByOwner(nodeId, expired));
+            ledJobSet.clear();
+            LOG.info("node '{}' released #{} leases", nodeId, nReleased);
+        } catch (DataAccessException e) {
+            LOG.info("problem releasing the leases of node '{}': {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * take over an expired lease or prolong an own lease, creating the lease if it doesn't exist
+     */
+    boolean acquire(final String jobName) {
+
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plusMillis(leaseMillis);
+        int nUpdated = transactionHandler.runInNewTransaction(() -> leaseRepository.acquire(jobName, nodeId, now, leaseUntil));
+        if (nUpdated > 0) {
+            return true;
+        }
+        if (!leaseRepository.findByJobName(jobName).isEmpty()) {
+            return false;
+        }
+
+        try {
+            SchedulerLease lease = new SchedulerLease().jobName(jobName).owner(nodeId).leaseUntil(leaseUntil);
+            transactionHandler.runInNewTransaction(() -> leaseRepository.saveAndFlush(lease));
+            return true;
+        } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+            // unique job name, another instance was faster
+            LOG.debug("lease of job '{}' created concurrently by another node", jobName);
+            return false;
+        }
+    }
+
+    private static String defaultNodeId() {
+        String hostName;
+        try {
+            hostName = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            hostName = "unknown";
+        }
+        if (hostName.length() > 60) {
+            hostName = hostName.substring(0, 60);
+        }
+        return hostName + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * one of 'count' parts of the work of a sharded job
+     */
+    public static final class Shard {
+
+        public static final Shard ALL = new Shard(0, 1);
+
+        private final int index;
+        private final int count;
+
+        Shard(int index, int count) {
+            this.index = index;
+            this.count = count;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @param id the id of a unit of work, e.g. an entity id
+         * @return true, if the unit belongs to this shard
+         */
+        public boolean owns(final long id) {
+            return Math.floorMod(id, (long) count) == index;
+        }
+
+        /**
+         * @param key the key of a unit of work, e.g. a URL
+         * @return true, if the unit belongs to this shard
+         */
+        public boolean owns(final String key) {
+            return Math.floorMod(key.hashCode(), count) == index;
+        }
+
+        @Override
+        public String toString() {
+            return "shard " + (index + 1) + " of " + count;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import de.trustable.ca3s.core.security.provider.Ca3sTrustManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Shared HTTP transport of the remote CA connectors.
+ *
+ * All TLS connections use one socket factory trusting the certificates known to ca3s, so TLS sessions are resumed and
+ * connections are kept alive by the JDK's connection cache (up to 'http.maxConnections' idle connections per
+ * endpoint, a JVM system property). Connections are returned to the cache by reading responses completely and never
+ * disconnecting explicitly.
+ * The duration of every exchange is recorded in 'ca3s.connector.http.request' by connector, endpoint and status.
+ */
+@Service
+public class ConnectorHttpTransport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectorHttpTransport.class);
+
+    public static final String METRIC_REQUEST = "ca3s.connector.http.request";
+
+    private final Ca3sTrustManager ca3sTrustManager;
+    private final MeterRegistry meterRegistry;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private volatile SSLSocketFactory sslSocketFactory;
+
+    public ConnectorHttpTransport(Ca3sTrustManager ca3sTrustManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${ca3s.connector.http.connect.timeout.millis:10000}") int connectTimeoutMillis,
+                                  @Value("${ca3s.connector.http.read.timeout.millis:60000}") int readTimeoutMillis) {
+        this.ca3sTrustManager = ca3sTrustManager;
+        this.meterRegistry = meterRegistry;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * POST a request and return the response body
+     *
+     * @param connectorName the name of the calling connector, used for the metrics
+     * @param requestUrl the endpoint
+     * @param contentType the content type of the request
+     * @param requestBytes the request body
+     * @return the response body
+     * @throws IOException the exchange failed or the endpoint did not respond with status 200
+     */
+    public byte[] post(final String connectorName, final String requestUrl, final String contentType,
+                       final byte[] requestBytes) throws IOException {
+
+        URL url = new URL(requestUrl);
+        String status = "IO_ERROR";
+        long startTime = System.nanoTime();
+        try {
+            HttpURLConnection con = openConnection(url);
+            con.setConnectTimeout(connectTimeoutMillis);
+            con.setReadTimeout(readTimeoutMillis);
+            con.setDoOutput(true);
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Content-Type", contentType);
+            con.setFixedLengthStreamingMode(requestBytes.length);
+
+            try (OutputStream os = con.getOutputStream()) {
+                os.write(requestBytes);
+            }
+
+            int responseCode = con.getResponseCode();
+            status = Integer.toString(responseCode);
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                drain(con.getErrorStream());
+                throw new IOException("Error sending request to '" + requestUrl + "'. Response code != 200 : " + responseCode);
+            }
+
+            byte[] responseBytes;
+            try (InputStream in = con.getInputStream()) {
+                int contentLength = con.getContentLength();
+                responseBytes = (contentLength >= 0) ? IOUtils.toByteArray(in, contentLength) : IOUtils.toByteArray(in);
+            }
+            LOG.debug("# {} response bytes received from '{}'", responseBytes.length, requestUrl);
+            return responseBytes;
+
+        } finally {
+            long durationNanos = System.nanoTime() - startTime;
+            Timer.builder(METRIC_REQUEST)
+                .tag("connector", String.valueOf(connectorName))
+                .tag("endpoint", url.getProtocol() + "://" + url.getAuthority())
+                .tag("status", status)
+                .description("duration of requests to remote CAs")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+            LOG.debug("request to '{}' took {} mSec", requestUrl, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        }
+    }
+
+    private HttpURLConnection openConnection(final URL url) throws IOException {
+
+        if ("https".equals(url.getProtocol())) {
+            HttpsURLConnection conTLS = (HttpsURLConnection) url.openConnection();
+            conTLS.setSSLSocketFactory(getSSLSocketFactory());
+            return conTLS;
+        } else if ("http".equals(url.getProtocol())) {
+            return (HttpURLConnection) url.openConnection();
+        }
+        throw new IOException("Unexpected protocol '" + url.getProtocol() + "'");
+    }
+
+    /**
+     * the connection cache of the JDK keeps TLS connections per socket factory, so always use the same one
+     */
+    private SSLSocketFactory getSSLSocketFactory() throws IOException {
+        SSLSocketFactory factory = sslSocketFactory;
+        if (factory == null) {
+            synchronized (this) {
+                factory = sslSocketFactory;
+                if (factory == null) {
+                    try {
+                        SSLContext sc = SSLContext.getInstance("TLS");
+                        sc.init(null, new TrustManager[]{ca3sTrustManager}, new SecureRandom());
+                        factory = sc.getSocketFactory();
+                        sslSocketFactory = factory;
+                    } catch (GeneralSecurityException e) {
+                        throw new IOException("problem configuring the SSLContext", e);
+                    }
+                }
+            }
+        }
+        return factory;
+    }
+
+    private static void drain(final InputStream in) {
+        if (in != null) {
+            try (InputStream is = in) {
+                IOUtils.skip(is, Long.MAX_VALUE);
+            } catch (IOException e) {
+                LOG.debug("problem reading error response", e);
+            }
+        }
+    }
+}
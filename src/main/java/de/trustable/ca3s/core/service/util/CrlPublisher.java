@@ -0,0 +1,298 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.util.CryptoUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Publishes full and delta CRLs (RFC 5280, section 5.2.4) for the issuers of the internal CA.
+ *
+ * The revoked certificates of every issuer are kept in memory, indexed by serial. A publication run only reads the
+ * certificates revoked since the previous run (less 'ca3s.crl.publish.overlap.seconds' for late commits) using the
+ * index on 'revoked_since', so its cost grows with the number of new revocations, not with the number of certificates.
+ * A full CRL is valid for 'ca3s.crl.publish.full.seconds', a delta CRL holding the revocations since the full CRL for
+ * 'ca3s.crl.publish.delta.seconds'. Both are re-signed 'ca3s.crl.publish.refresh.seconds' before their 'nextUpdate',
+ * the delta CRL also as soon as new revocations show up. New revocations are passed to the {@link OcspResponder}, so
+ * its cached responses don't outlive a revocation made on another instance.
+ * Full and delta CRLs share one ascending CRL number sequence derived from the signing time, so the numbers keep
+ * increasing across restarts. Every CRL is signed once and kept encoded until it's replaced.
+ */
+@Service
+public class CrlPublisher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CrlPublisher.class);
+
+    public static final String METRIC_PUBLISHED = "ca3s.crl.published";
+
+    private final CertificateRepository certificateRepository;
+    private final InternalCaIssuers internalCaIssuers;
+    private final OcspResponder ocspResponder;
+    private final CryptoUtil cryptoUtil;
+    private final long fullMillis;
+    private final long deltaMillis;
+    private final long refreshMillis;
+    private final long overlapMillis;
+
+    private final Map<Long, IssuerState> stateMap = new ConcurrentHashMap<>();
+
+    private final Counter fullPublished;
+    private final Counter deltaPublished;
+
+    public CrlPublisher(CertificateRepository certificateRepository,
+                        InternalCaIssuers internalCaIssuers,
+                        OcspResponder ocspResponder,
+                        CryptoUtil cryptoUtil,
+                        @Value("${ca3s.crl.publish.full.seconds:86400}") long fullSeconds,
+                        @Value("${ca3s.crl.publish.delta.seconds:3600}") long deltaSeconds,
+                        @Value("${ca3s.crl.publish.refresh.seconds:300}") long refreshSeconds,
+                        @Value("${ca3s.crl.publish.overlap.seconds:300}") long overlapSeconds,
+                        MeterRegistry meterRegistry) {
+
+        this.certificateRepository = certificateRepository;
+        this.internalCaIssuers = internalCaIssuers;
+        this.ocspResponder = ocspResponder;
+        this.cryptoUtil = cryptoUtil;
+        this.fullMillis = fullSeconds * 1000L;
+        this.deltaMillis = Math.min(deltaSeconds * 1000L, fullMillis);
+        this.refreshMillis = Math.min(refreshSeconds * 1000L, deltaMillis / 2);
+        this.overlapMillis = overlapSeconds * 1000L;
+
+        fullPublished = Counter.builder(METRIC_PUBLISHED).tag("type", "full")
+            .description("full CRLs signed for the internal CA").register(meterRegistry);
+        deltaPublished = Counter.builder(METRIC_PUBLISHED).tag("type", "delta")
+            .description("delta CRLs signed for the internal CA").register(meterRegistry);
+    }
+
+    /**
+     * pick up new revocations and sign the CRLs due
+     */
+    public synchronized void publish() {
+
+        Set<Long> issuerIdSet = new HashSet<>();
+        for (InternalCaIssuers.Issuer issuer : internalCaIssuers.getIssuers()) {
+            issuerIdSet.add(issuer.certificateId);
+            IssuerState state = stateMap.computeIfAbsent(issuer.certificateId, id -> new IssuerState());
+            state.issuer = issuer;
+            try {
+                publish(state);
+            } catch (GeneralSecurityException | IOException e) {
+                LOG.warn("problem publishing CRL for internal CA certificate " + issuer.certificateId, e);
+            }
+        }
+        stateMap.keySet().retainAll(issuerIdSet);
+    }
+
+    /**
+     * @param issuerCertificateId the id of the internal CA certificate
+     * @return the current full CRL, null if none published (yet)
+     */
+    public PublishedCrl getFullCrl(final long issuerCertificateId) {
+        IssuerState state = stateMap.get(issuerCertificateId);
+        return (state == null) ? null : state.fullCrl;
+    }
+
+    /**
+     * @param issuerCertificateId the id of the internal CA certificate
+     * @return the current delta CRL, null if none published (yet)
+     */
+    public PublishedCrl getDeltaCrl(final long issuerCertificateId) {
+        IssuerState state = stateMap.get(issuerCertificateId);
+        return (state == null) ? null : state.deltaCrl;
+    }
+
+    private void publish(final IssuerState state) throws GeneralSecurityException, IOException {
+
+        int nNew = collectRevocations(state);
+
+        long now = System.currentTimeMillis();
+        PublishedCrl fullCrl = state.fullCrl;
+        boolean newBase = false;
+        if (fullCrl == null || now >= fullCrl.getNextUpdate().getTime() - refreshMillis) {
+            fullCrl = sign(state, state.revokedMap.values(), null, now, fullMillis);
+            state.deltaList.clear();
+            state.fullCrl = fullCrl;
+            newBase = true;
+            fullPublished.increment();
+            LOG.info("full CRL #{} with {} entries published for internal CA certificate {}",
+                fullCrl.getCrlNumber(), state.revokedMap.size(), state.issuer.certificateId);
+        }
+
+        PublishedCrl deltaCrl = state.deltaCrl;
+        if (newBase || nNew > 0 || deltaCrl == null || now >= deltaCrl.getNextUpdate().getTime() - refreshMillis) {
+            state.deltaCrl = sign(state, state.deltaList, fullCrl.getCrlNumber(), now, deltaMillis);
+            deltaPublished.increment();
+            LOG.debug("delta CRL #{} with {} entries published for internal CA certificate {}",
+                state.deltaCrl.getCrlNumber(), state.deltaList.size(), state.issuer.certificateId);
+        }
+    }
+
+    /**
+     * add the certificates revoked since the last run to the index of the issuer
+     *
+     * @return the number of revocations added
+     */
+    private int collectRevocations(final IssuerState state) {
+
+        Instant queryTime = Instant.now();
+        Instant since = (state.lastQuery == null) ? Instant.EPOCH : state.lastQuery.minusMillis(overlapMillis);
+        List<Certificate> certList = certificateRepository.findRevokedByIssuerSince(state.issuer.subject, since);
+
+        Set<BigInteger> newSerials = new HashSet<>();
+        for (Certificate cert : certList) {
+            if (cert.getSerial() == null || cert.getRevokedSince() == null) {
+                continue;
+            }
+            BigInteger serial = new BigInteger(cert.getSerial());
+            if (state.revokedMap.containsKey(serial)) {
+                continue;
+            }
+            RevokedEntry entry = new RevokedEntry(serial, Date.from(cert.getRevokedSince()), getReason(cert));
+            state.revokedMap.put(serial, entry);
+            state.deltaList.add(entry);
+            newSerials.add(serial);
+        }
+        state.lastQuery = queryTime;
+
+        ocspResponder.invalidate(state.issuer.certificateId, newSerials);
+        return newSerials.size();
+    }
+
+    private int getReason(final Certificate cert) {
+        if (cert.getRevocationReason() == null) {
+            return CRLReason.unspecified;
+        }
+        return cryptoUtil.crlReasonFromString(cert.getRevocationReason()).getValue().intValue();
+    }
+
+    private PublishedCrl sign(final IssuerState state, final Collection<RevokedEntry> entries,
+                              final BigInteger baseCrlNumber, final long now, final long validityMillis)
+        throws GeneralSecurityException, IOException {
+
+        Date thisUpdate = new Date(now);
+        Date nextUpdate = new Date(now + validityMillis);
+
+        // ascending over full and delta CRLs and across restarts
+        BigInteger crlNumber = BigInteger.valueOf(now / 1000L);
+        if (state.lastCrlNumber != null && crlNumber.compareTo(state.lastCrlNumber) <= 0) {
+            crlNumber = state.lastCrlNumber.add(BigInteger.ONE);
+        }
+
+        X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(state.issuer.holder.getSubject(), thisUpdate);
+        crlBuilder.setNextUpdate(nextUpdate);
+        for (RevokedEntry entry : entries) {
+            // a reason 'unspecified' is omitted, as required by RFC 5280
+            crlBuilder.addCRLEntry(entry.serial, entry.revocationDate, entry.reason);
+        }
+        crlBuilder.addExtension(Extension.authorityKeyIdentifier, false, state.getAuthorityKeyIdentifier());
+        crlBuilder.addExtension(Extension.cRLNumber, false, new CRLNumber(crlNumber));
+        if (baseCrlNumber != null) {
+            crlBuilder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(baseCrlNumber));
+        }
+
+        X509CRLHolder crlHolder = crlBuilder.build(state.issuer.buildSigner());
+        state.lastCrlNumber = crlNumber;
+        return new PublishedCrl(crlHolder.getEncoded(), crlNumber, thisUpdate, nextUpdate);
+    }
+
+    /**
+     * an encoded CRL
+     */
+    public static final class PublishedCrl {
+
+        private final byte[] encoded;
+        private final BigInteger crlNumber;
+        private final Date thisUpdate;
+        private final Date nextUpdate;
+
+        PublishedCrl(byte[] encoded, BigInteger crlNumber, Date thisUpdate, Date nextUpdate) {
+            this.encoded = encoded;
+            this.crlNumber = crlNumber;
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+        }
+
+        public byte[] getEncoded() {
+            return encoded;
+        }
+
+        public BigInteger getCrlNumber() {
+            return crlNumber;
+        }
+
+        public Date getThisUpdate() {
+            return thisUpdate;
+        }
+
+        public Date getNextUpdate() {
+            return nextUpdate;
+        }
+
+        /**
+         * @return the entity tag of the CRL, the CRL number is unique per issuer
+         */
+        public String getETag() {
+            return "\"" + crlNumber.toString(16) + "\"";
+        }
+    }
+
+    private static final class IssuerState {
+        private InternalCaIssuers.Issuer issuer;
+        private AuthorityKeyIdentifier authorityKeyIdentifier;
+        private final Map<BigInteger, RevokedEntry> revokedMap = new HashMap<>();
+        private final List<RevokedEntry> deltaList = new ArrayList<>();
+        private Instant lastQuery;
+        private BigInteger lastCrlNumber;
+        private volatile PublishedCrl fullCrl;
+        private volatile PublishedCrl deltaCrl;
+
+        AuthorityKeyIdentifier getAuthorityKeyIdentifier() throws GeneralSecurityException {
+            if (authorityKeyIdentifier == null) {
+                SubjectKeyIdentifier ski = SubjectKeyIdentifier.fromExtensions(issuer.holder.getExtensions());
+                authorityKeyIdentifier = (ski != null) ? new AuthorityKeyIdentifier(ski.getKeyIdentifier())
+                    : new JcaX509ExtensionUtils().createAuthorityKeyIdentifier(issuer.holder.getSubjectPublicKeyInfo());
+            }
+            return authorityKeyIdentifier;
+        }
+    }
+
+    private static final class RevokedEntry {
+        private final BigInteger serial;
+        private final Date revocationDate;
+        private final int reason;
+
+        RevokedEntry(BigInteger serial, Date revocationDate, int reason) {
+            this.serial = serial;
+            this.revocationDate = revocationDate;
+            this.reason = reason;
+        }
+    }
+}
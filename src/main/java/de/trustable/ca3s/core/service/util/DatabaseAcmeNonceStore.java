@@ -0,0 +1,95 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Base64Utils;
+
+import de.trustable.ca3s.core.domain.AcmeNonce;
+import de.trustable.ca3s.core.repository.AcmeNonceRepository;
+
+/**
+ * Nonce store persisting every nonce in the AcmeNonce table.
+ * Slower than the in-memory store, but shared by all instances using the same database.
+ */
+@Service
+@ConditionalOnProperty(name = "ca3s.acme.nonce.store", havingValue = "database")
+public class DatabaseAcmeNonceStore implements AcmeNonceStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DatabaseAcmeNonceStore.class);
+
+	private final SecureRandom secRandom = new SecureRandom();
+
+	private final AcmeNonceRepository nonceRepository;
+	private final long nonceValiditySeconds;
+
+	public DatabaseAcmeNonceStore(AcmeNonceRepository nonceRepository,
+			@Value("${ca3s.acme.nonce.validity.seconds:" + DEFAULT_VALIDITY_SECONDS + "}") long nonceValiditySeconds) {
+		this.nonceRepository = nonceRepository;
+		this.nonceValiditySeconds = nonceValiditySeconds;
+		LOG.info("ACME nonces stored in database, valid for {} seconds", nonceValiditySeconds);
+	}
+
+	@Override
+	@Transactional
+	public String createNonce() {
+
+		final byte[] randomBytes = new byte[16];
+		secRandom.nextBytes(randomBytes);
+
+		AcmeNonce nonce = new AcmeNonce();
+		nonce.setNonceValue(Base64Utils.encodeToUrlSafeString(randomBytes).split("=")[0]);
+		nonce.setExpiresAt(Instant.now().plus(nonceValiditySeconds, ChronoUnit.SECONDS));
+		nonceRepository.save(nonce);
+
+		LOG.debug("New Nonce {} created", nonce.getNonceValue());
+		return nonce.getNonceValue();
+	}
+
+	@Override
+	@Transactional
+	public boolean consumeNonce(String nonceValue) {
+
+		if (nonceValue == null) {
+			return false;
+		}
+
+		List<AcmeNonce> nonceList = nonceRepository.findByNonceValue(nonceValue);
+		if (nonceList.isEmpty()) {
+			LOG.debug("Nonce {} not found in database", nonceValue);
+			return false;
+		}
+
+		nonceRepository.deleteAll(nonceList);
+		LOG.debug("Nonce found ... and deleted");
+		return true;
+	}
+
+	@Override
+	@Transactional
+	public void cleanupExpired() {
+		long startTime = System.currentTimeMillis();
+		List<AcmeNonce> expiredNonceList = nonceRepository.findByNonceExpiryDate(new Date());
+		if (expiredNonceList.isEmpty()) {
+			return;
+		}
+
+		nonceRepository.deleteAll(expiredNonceList);
+		LOG.debug("cleanup of #{} expired nonces finished in {} ms", expiredNonceList.size(),
+				System.currentTimeMillis() - startTime);
+	}
+
+	@Override
+	public boolean isShared() {
+		return true;
+	}
+}
@@ -0,0 +1,166 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.camunda.bpm.engine.RepositoryService;
+import org.camunda.bpm.engine.repository.ProcessDefinition;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.BaseElement;
+import org.camunda.bpm.model.bpmn.instance.EndEvent;
+import org.camunda.bpm.model.bpmn.instance.ExtensionElements;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.StartEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import de.trustable.ca3s.core.bpmn.task.CaBackendTask;
+import de.trustable.ca3s.core.domain.CAConnectorConfig;
+import de.trustable.ca3s.core.domain.CSR;
+import de.trustable.ca3s.core.domain.Certificate;
+
+/**
+ * Issues certificates for the default process 'CAInvocationProcess' without the process engine, if the deployed model
+ * is the bundled one: a start event, the {@link CaBackendTask} and an end event, without waits, listeners or
+ * conditions. The task is called directly, skipping the variable serialization and the engine history. Any other
+ * model (a modified default process or a process assigned to a pipeline) is executed by the engine, as before.
+ *
+ * The id of the latest default process definition is cached for 'ca3s.bpmn.fastpath.recheck.seconds', so a new
+ * version deployed by another instance takes effect after this period at the latest.
+ */
+@Service
+public class DefaultProcessFastPath {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultProcessFastPath.class);
+
+    private final RepositoryService repoService;
+    private final CaBackendTask caBackendTask;
+    private final boolean enabled;
+    private final long recheckMillis;
+
+    private final Map<String, Boolean> applicableMap = new ConcurrentHashMap<>();
+
+    private volatile String defaultProcessDefinitionId;
+    private volatile long nextCheck = 0;
+
+    public DefaultProcessFastPath(RepositoryService repoService,
+                                  CaBackendTask caBackendTask,
+                                  @Value("${ca3s.bpmn.fastpath.enabled:true}") boolean enabled,
+                                  @Value("${ca3s.bpmn.fastpath.recheck.seconds:60}") long recheckSeconds) {
+        this.repoService = repoService;
+        this.caBackendTask = caBackendTask;
+        this.enabled = enabled;
+        this.recheckMillis = recheckSeconds * 1000L;
+    }
+
+    /**
+     * @return the id of the latest version of the default process, null if it's not deployed
+     */
+    public String getDefaultProcessDefinitionId() {
+
+        long now = System.currentTimeMillis();
+        if (defaultProcessDefinitionId == null || now > nextCheck) {
+            List<ProcessDefinition> processDefinitionList = repoService.createProcessDefinitionQuery()
+                .processDefinitionKey(BPMNUtil.CAINVOCATION_PROCESS).latestVersion().list();
+            defaultProcessDefinitionId = processDefinitionList.isEmpty() ? null : processDefinitionList.get(0).getId();
+            nextCheck = now + recheckMillis;
+        }
+        return defaultProcessDefinitionId;
+    }
+
+    /**
+     * drop the cached process definition, e.g. after a deployment
+     */
+    public void invalidate() {
+        defaultProcessDefinitionId = null;
+    }
+
+    /**
+     * @param processDefinitionId the process definition to be executed
+     * @return true, if the process definition may be executed by {@link #signCertificateRequest(CSR, CAConnectorConfig, String)}
+     */
+    public boolean isApplicable(final String processDefinitionId) {
+
+        if (!enabled || processDefinitionId == null) {
+            return false;
+        }
+        return applicableMap.computeIfAbsent(processDefinitionId, this::checkModel);
+    }
+
+    /**
+     * run the task of the default process for a csr
+     *
+     * @see CaBackendTask#signCertificateRequest(CSR, CAConnectorConfig, String)
+     */
+    public Certificate signCertificateRequest(final CSR csr, final CAConnectorConfig caConfig, final String executionId) throws GeneralSecurityException {
+        return caBackendTask.signCertificateRequest(csr, caConfig, executionId);
+    }
+
+    boolean checkModel(final String processDefinitionId) {
+
+        BpmnModelInstance modelInstance = repoService.getBpmnModelInstance(processDefinitionId);
+        boolean applicable = isDefaultModel(modelInstance);
+        LOG.info("process definition '{}' executed {}", processDefinitionId, applicable ? "directly" : "by the process engine");
+        return applicable;
+    }
+
+    static boolean isDefaultModel(final BpmnModelInstance modelInstance) {
+
+        if (modelInstance == null || modelInstance.getModelElementsByType(Process.class).size() != 1) {
+            return false;
+        }
+
+        Collection<FlowNode> flowNodes = modelInstance.getModelElementsByType(FlowNode.class);
+        Collection<ServiceTask> serviceTasks = modelInstance.getModelElementsByType(ServiceTask.class);
+        Collection<StartEvent> startEvents = modelInstance.getModelElementsByType(StartEvent.class);
+        Collection<EndEvent> endEvents = modelInstance.getModelElementsByType(EndEvent.class);
+        if (flowNodes.size() != 3 || serviceTasks.size() != 1 || startEvents.size() != 1 || endEvents.size() != 1) {
+            return false;
+        }
+
+        StartEvent startEvent = startEvents.iterator().next();
+        EndEvent endEvent = endEvents.iterator().next();
+        ServiceTask serviceTask = serviceTasks.iterator().next();
+        if (!startEvent.getEventDefinitions().isEmpty() || !endEvent.getEventDefinitions().isEmpty()) {
+            return false;
+        }
+        if (!CaBackendTask.class.getName().equals(serviceTask.getCamundaClass())) {
+            return false;
+        }
+
+        for (FlowNode flowNode : flowNodes) {
+            if (flowNode.isCamundaAsyncBefore() || flowNode.isCamundaAsyncAfter() || hasExtensions(flowNode)) {
+                return false;
+            }
+        }
+
+        Collection<SequenceFlow> sequenceFlows = modelInstance.getModelElementsByType(SequenceFlow.class);
+        if (sequenceFlows.size() != 2) {
+            return false;
+        }
+        for (SequenceFlow sequenceFlow : sequenceFlows) {
+            if (sequenceFlow.getConditionExpression() != null || hasExtensions(sequenceFlow)) {
+                return false;
+            }
+        }
+        if (startEvent.getOutgoing().size() != 1 || serviceTask.getOutgoing().size() != 1) {
+            return false;
+        }
+        return startEvent.getOutgoing().iterator().next().getTarget() == serviceTask &&
+            serviceTask.getOutgoing().iterator().next().getTarget() == endEvent &&
+            !hasExtensions(modelInstance.getModelElementsByType(Process.class).iterator().next());
+    }
+
+    private static boolean hasExtensions(final BaseElement element) {
+        ExtensionElements extensionElements = element.getExtensionElements();
+        return extensionElements != null && !extensionElements.getElements().isEmpty();
+    }
+}
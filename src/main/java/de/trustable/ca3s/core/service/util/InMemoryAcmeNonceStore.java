@@ -0,0 +1,231 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Base64Utils;
+
+/**
+ * Nonce store without any database access.
+ *
+ * A nonce consists of the issuing time (epoch seconds), 16 random bytes and a truncated HMAC over both.
+ * Forged or expired nonces are rejected by checking the HMAC and the issuing time. Used nonces are
+ * recorded in a set per time bucket, buckets are dropped when they expire. If the number of recorded
+ * nonces exceeds the configured limit, the oldest buckets are dropped early and all nonces issued in
+ * these buckets are rejected from then on, so the memory consumption stays bounded (limit plus the nonces
+ * of the current bucket) without allowing replays.
+ *
+ * The HMAC key is created at startup, nonces issued by other instances or before a restart are rejected
+ * and the client has to retry with a fresh nonce ('badNonce').
+ */
+@Service
+@ConditionalOnProperty(name = "ca3s.acme.nonce.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryAcmeNonceStore implements AcmeNonceStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(InMemoryAcmeNonceStore.class);
+
+	static final String HMAC_ALGO = "HmacSHA256";
+	static final int TIME_LEN = 8;
+	static final int RANDOM_LEN = 16;
+	static final int MAC_LEN = 16;
+	static final int NONCE_LEN = TIME_LEN + RANDOM_LEN + MAC_LEN;
+
+	private final SecureRandom secRandom = new SecureRandom();
+
+	private final SecretKeySpec macKey;
+	private final ThreadLocal<Mac> threadMac;
+
+	private final long nonceValiditySeconds;
+	private final long bucketSeconds;
+	private final int maxUsedNonces;
+
+	private final ConcurrentNavigableMap<Long, Set<String>> usedNoncesByBucket = new ConcurrentSkipListMap<>();
+	private final AtomicInteger usedNonceCount = new AtomicInteger();
+	private final AtomicLong lowestAcceptedBucket = new AtomicLong(Long.MIN_VALUE);
+
+	public InMemoryAcmeNonceStore(@Value("${ca3s.acme.nonce.validity.seconds:" + DEFAULT_VALIDITY_SECONDS + "}") long nonceValiditySeconds,
+			@Value("${ca3s.acme.nonce.bucket.seconds:60}") long bucketSeconds,
+			@Value("${ca3s.acme.nonce.maxUsed:200000}") int maxUsedNonces) {
+
+		this.nonceValiditySeconds = nonceValiditySeconds;
+		this.bucketSeconds = Math.max(1L, bucketSeconds);
+		this.maxUsedNonces = maxUsedNonces;
+
+		final byte[] keyBytes = new byte[32];
+		secRandom.nextBytes(keyBytes);
+		this.macKey = new SecretKeySpec(keyBytes, HMAC_ALGO);
+		this.threadMac = ThreadLocal.withInitial(this::createMac);
+
+		LOG.info("ACME nonces handled in memory, valid for {} seconds, limited to {} used nonces",
+				nonceValiditySeconds, maxUsedNonces);
+	}
+
+	@Override
+	public String createNonce() {
+		return createNonce(currentEpochSeconds());
+	}
+
+	String createNonce(long issuedAt) {
+
+		final byte[] nonceBytes = new byte[NONCE_LEN];
+		ByteBuffer.wrap(nonceBytes).putLong(issuedAt);
+
+		final byte[] randomBytes = new byte[RANDOM_LEN];
+		secRandom.nextBytes(randomBytes);
+		System.arraycopy(randomBytes, 0, nonceBytes, TIME_LEN, RANDOM_LEN);
+		System.arraycopy(calcMac(nonceBytes), 0, nonceBytes, TIME_LEN + RANDOM_LEN, MAC_LEN);
+
+		String nonceValue = Base64Utils.encodeToUrlSafeString(nonceBytes).split("=")[0];
+		LOG.debug("New Nonce {} created", nonceValue);
+		return nonceValue;
+	}
+
+	@Override
+	public boolean consumeNonce(String nonceValue) {
+
+		if (nonceValue == null) {
+			return false;
+		}
+
+		final byte[] nonceBytes;
+		try {
+			nonceBytes = Base64Utils.decodeFromUrlSafeString(nonceValue);
+		} catch (IllegalArgumentException e) {
+			LOG.debug("Nonce {} not decodable", nonceValue);
+			return false;
+		}
+
+		if (nonceBytes.length != NONCE_LEN) {
+			LOG.debug("Nonce {} has unexpected length {}", nonceValue, nonceBytes.length);
+			return false;
+		}
+
+		byte[] expectedMac = calcMac(nonceBytes);
+		byte[] presentedMac = Arrays.copyOfRange(nonceBytes, TIME_LEN + RANDOM_LEN, NONCE_LEN);
+		if (!MessageDigest.isEqual(expectedMac, presentedMac)) {
+			LOG.debug("Nonce {} not issued by this instance", nonceValue);
+			return false;
+		}
+
+		long issuedAt = ByteBuffer.wrap(nonceBytes).getLong();
+		long now = currentEpochSeconds();
+		if (issuedAt > now || (now - issuedAt) > nonceValiditySeconds) {
+			LOG.debug("Nonce {} expired", nonceValue);
+			return false;
+		}
+
+		long bucket = issuedAt / bucketSeconds;
+		if (bucket < lowestAcceptedBucket.get()) {
+			LOG.debug("Nonce {} issued in an evicted bucket", nonceValue);
+			return false;
+		}
+
+		Set<String> usedNonces = usedNoncesByBucket.computeIfAbsent(bucket, k -> ConcurrentHashMap.newKeySet());
+		if (!usedNonces.add(nonceValue)) {
+			LOG.debug("Nonce {} already used", nonceValue);
+			return false;
+		}
+		// count every recorded nonce, a concurrent eviction of the bucket subtracts it again
+		int nUsed = usedNonceCount.incrementAndGet();
+
+		// the bucket may have been evicted concurrently
+		if (bucket < lowestAcceptedBucket.get()) {
+			LOG.debug("Nonce {} issued in an evicted bucket", nonceValue);
+			return false;
+		}
+
+		if (nUsed > maxUsedNonces) {
+			limitUsedNonces();
+		}
+
+		LOG.debug("Nonce {} found valid ... and marked as used", nonceValue);
+		return true;
+	}
+
+	@Override
+	public void cleanupExpired() {
+
+		long oldestValidBucket = (currentEpochSeconds() - nonceValiditySeconds) / bucketSeconds;
+		long lowestBucket = Math.max(oldestValidBucket, lowestAcceptedBucket.get());
+
+		Map<Long, Set<String>> expiredBuckets = usedNoncesByBucket.headMap(lowestBucket);
+		for (Long bucket : expiredBuckets.keySet()) {
+			removeBucket(bucket);
+		}
+
+		// nonces recorded in a bucket while it was evicted are not subtracted, correct the drift
+		usedNonceCount.set(usedNoncesByBucket.values().stream().mapToInt(Set::size).sum());
+	}
+
+	/**
+	 * drop the oldest buckets until the number of used nonces is below the limit.
+	 * The current bucket is never dropped, otherwise all nonces handed out right now would become unusable.
+	 */
+	void limitUsedNonces() {
+
+		cleanupExpired();
+
+		long currentBucket = currentEpochSeconds() / bucketSeconds;
+		while (usedNonceCount.get() > maxUsedNonces) {
+			Map.Entry<Long, Set<String>> oldest = usedNoncesByBucket.firstEntry();
+			if (oldest == null || oldest.getKey() >= currentBucket) {
+				return;
+			}
+
+			long bucket = oldest.getKey();
+			lowestAcceptedBucket.accumulateAndGet(bucket + 1, Math::max);
+			removeBucket(bucket);
+			LOG.info("limit of {} used nonces exceeded, nonces of bucket {} are rejected from now on", maxUsedNonces,
+					bucket);
+		}
+	}
+
+	int getUsedNonceCount() {
+		return usedNonceCount.get();
+	}
+
+	long currentEpochSeconds() {
+		return System.currentTimeMillis() / 1000L;
+	}
+
+	private void removeBucket(long bucket) {
+		Set<String> removed = usedNoncesByBucket.remove(bucket);
+		if (removed != null) {
+			usedNonceCount.accumulateAndGet(removed.size(), (count, nRemoved) -> Math.max(0, count - nRemoved));
+		}
+	}
+
+	private byte[] calcMac(byte[] nonceBytes) {
+		Mac mac = threadMac.get();
+		mac.update(nonceBytes, 0, TIME_LEN + RANDOM_LEN);
+		return Arrays.copyOf(mac.doFinal(), MAC_LEN);
+	}
+
+	private Mac createMac() {
+		try {
+			Mac mac = Mac.getInstance(HMAC_ALGO);
+			mac.init(macKey);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("unable to initialize " + HMAC_ALGO, e);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.CertificateAttribute;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+
+/**
+ * The certificates of the internal CA (root and intermediates created by {@link CaInternalConnector}) having a private
+ * key available, used to sign OCSP responses and CRLs.
+ *
+ * The list is reloaded every 'ca3s.internalCA.signer.recheck.seconds', issuers already known are kept.
+ */
+@Service
+public class InternalCaIssuers {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InternalCaIssuers.class);
+
+    private final CertificateRepository certificateRepository;
+    private final CertificateUtil certUtil;
+    private final long recheckMillis;
+
+    private volatile List<Issuer> issuerList;
+    private volatile long recheckAt = 0;
+
+    public InternalCaIssuers(CertificateRepository certificateRepository,
+                             CertificateUtil certUtil,
+                             @Value("${ca3s.internalCA.signer.recheck.seconds:300}") long recheckSeconds) {
+        this.certificateRepository = certificateRepository;
+        this.certUtil = certUtil;
+        this.recheckMillis = recheckSeconds * 1000L;
+    }
+
+    /**
+     * @return the issuers of the internal CA, never null
+     */
+    public List<Issuer> getIssuers() {
+
+        List<Issuer> issuers = issuerList;
+        if (issuers != null && System.currentTimeMillis() < recheckAt) {
+            return issuers;
+        }
+
+        synchronized (this) {
+            if (issuerList != null && System.currentTimeMillis() < recheckAt) {
+                return issuerList;
+            }
+
+            Map<Long, Issuer> knownMap = new HashMap<>();
+            if (issuerList != null) {
+                for (Issuer issuer : issuerList) {
+                    knownMap.put(issuer.certificateId, issuer);
+                }
+            }
+
+            List<Certificate> caList = new ArrayList<>(
+                certificateRepository.findByAttributeValue(CertificateAttribute.ATTRIBUTE_CA3S_ROOT, "true"));
+            caList.addAll(certificateRepository.findByAttributeValue(CertificateAttribute.ATTRIBUTE_CA3S_INTERMEDIATE, "true"));
+
+            issuers = new ArrayList<>(caList.size());
+            for (Certificate caCert : caList) {
+                Issuer issuer = knownMap.get(caCert.getId());
+                if (issuer == null) {
+                    issuer = loadIssuer(caCert);
+                }
+                if (issuer != null) {
+                    issuers.add(issuer);
+                }
+            }
+            issuerList = issuers;
+            recheckAt = System.currentTimeMillis() + recheckMillis;
+            LOG.debug("#{} internal CA certificates available for signing", issuers.size());
+        }
+        return issuers;
+    }
+
+    private Issuer loadIssuer(final Certificate caCert) {
+        try {
+            PrivateKey privateKey = certUtil.getPrivateKey(caCert);
+            if (privateKey == null) {
+                LOG.info("no private key for internal CA certificate {}, not used for signing", caCert.getId());
+                return null;
+            }
+            X509CertificateHolder holder = CertificateUtil.convertPemToCertificateHolder(caCert.getContent());
+            return new Issuer(caCert.getId(), caCert.getSubject(), holder, privateKey);
+        } catch (GeneralSecurityException e) {
+            LOG.warn("problem loading internal CA certificate " + caCert.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * an internal CA certificate and its private key
+     */
+    public static final class Issuer {
+        final long certificateId;
+        final String subject;
+        final X509CertificateHolder holder;
+        final PrivateKey privateKey;
+
+        Issuer(long certificateId, String subject, X509CertificateHolder holder, PrivateKey privateKey) {
+            this.certificateId = certificateId;
+            this.subject = subject;
+            this.holder = holder;
+            this.privateKey = privateKey;
+        }
+
+        public long getCertificateId() {
+            return certificateId;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        ContentSigner buildSigner() throws GeneralSecurityException {
+            String signatureAlgorithm = "EC".equals(privateKey.getAlgorithm()) ? "SHA256withECDSA" : "SHA256withRSA";
+            try {
+                return new JcaContentSignerBuilder(signatureAlgorithm).build(privateKey);
+            } catch (OperatorCreationException e) {
+                throw new GeneralSecurityException("problem creating signer", e);
+            }
+        }
+    }
+}
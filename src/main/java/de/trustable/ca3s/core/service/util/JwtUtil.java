@@ -156,62 +156,87 @@ public class JwtUtil {
 	public void validateSignature(JwtContext context, String publicKeyBase64, long accountId)
 			throws InvalidJwtException, JoseException, IOException {
 
-		try {
-		    JsonWebStructure webStruct = getJsonWebStructure(context);
+	    JsonWebStructure webStruct = getJsonWebStructure(context);
+		PublicKey publicKey = parsePublicKey(publicKeyBase64, webStruct.getAlgorithmHeaderValue());
+		validateSignature(context, publicKey, buildVerifier(publicKey), accountId);
+	}
 
-		    String algHeader = webStruct.getAlgorithmHeaderValue();
-		    String keyAlgo = "RSA";
-		    if( algHeader.toUpperCase().startsWith("E")) {
-		    	keyAlgo = "EC";
-		    }
-			LOG.debug("jws key algo {} selected by JWT algorithm header {}", keyAlgo, algHeader);
+	/**
+	 * decode the public key of an account as stored in the database
+	 *
+	 * @param publicKeyBase64 the base64 encoded SubjectPublicKeyInfo
+	 * @param algHeader the JWS algorithm header selecting the key algorithm
+	 * @return the decoded public key
+	 * @throws JoseException the key is not parseable
+	 */
+	public PublicKey parsePublicKey(String publicKeyBase64, String algHeader) throws JoseException {
+
+	    String keyAlgo = "RSA";
+	    if( algHeader != null && algHeader.toUpperCase().startsWith("E")) {
+	    	keyAlgo = "EC";
+	    }
+		LOG.debug("jws key algo {} selected by JWT algorithm header {}", keyAlgo, algHeader);
 
+		try {
 			KeyFactory kf = KeyFactory.getInstance(keyAlgo);
-			PublicKey publicKey = kf.generatePublic(new X509EncodedKeySpec(Base64.decodeBase64(publicKeyBase64)));
+			return kf.generatePublic(new X509EncodedKeySpec(Base64.decodeBase64(publicKeyBase64)));
+		} catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
+			throw new JoseException("problem reading public key from database", e);
+		}
+	}
 
-			try {
-				final JwtConsumer jwtConsumer = new JwtConsumerBuilder().setVerificationKey(publicKey).build();
-				jwtConsumer.processContext(context);
-				LOG.debug("JWT signature validation successful for account {}", accountId);
+	/**
+	 * the returned consumer holds no request specific state and may be reused for all requests of an account
+	 *
+	 * @param publicKey the verification key
+	 * @return a consumer verifying the signature with the given key
+	 */
+	public JwtConsumer buildVerifier(PublicKey publicKey) {
+		return new JwtConsumerBuilder().setVerificationKey(publicKey).build();
+	}
+
+	public void validateSignature(JwtContext context, PublicKey publicKey, JwtConsumer jwtConsumer, long accountId)
+			throws InvalidJwtException, JoseException {
+
+		try {
+			jwtConsumer.processContext(context);
+			LOG.debug("JWT signature validation successful for account {}", accountId);
 
-		    } catch (InvalidJwtSignatureException e) {
+	    } catch (InvalidJwtSignatureException e) {
 
-		    	// try to detect the certbot hack (inserting a dummy JSON payload '{}', base64 encoded 'e30').
-		    	// An empty string is not accepted as a valid JWT payload.
-		    	// if present, create an appropriate compact serialization of the JWT and verify it as a JWS.
-		    	String jwt = context.getJwt();
-				LOG.debug("JWT signature validation failed for content '" + jwt +"'");
-	      	    String[] signatureSerializationParts = jwt.split("\\.");
-	      	    if( signatureSerializationParts.length != 3) {
-	      	    	LOG.debug("Unexpected number of parts in compact signature {} != 3", signatureSerializationParts.length);
-	      	    }else {
+	    	// try to detect the certbot hack (inserting a dummy JSON payload '{}', base64 encoded 'e30').
+	    	// An empty string is not accepted as a valid JWT payload.
+	    	// if present, create an appropriate compact serialization of the JWT and verify it as a JWS.
+	    	String jwt = context.getJwt();
+			LOG.debug("JWT signature validation failed for content '" + jwt +"'");
+      	    String[] signatureSerializationParts = jwt.split("\\.");
+      	    if( signatureSerializationParts.length != 3) {
+      	    	LOG.debug("Unexpected number of parts in compact signature {} != 3", signatureSerializationParts.length);
+      	    }else {
 
-			      	if( EMPTY_PAYLOAD_REPLACEMENT_B64.equals(signatureSerializationParts[1])) {
+		      	if( EMPTY_PAYLOAD_REPLACEMENT_B64.equals(signatureSerializationParts[1])) {
 
-			      		// Create a new JsonWebSignature object
-			      	    JsonWebSignature jws = new JsonWebSignature();
+		      		// Create a new JsonWebSignature object
+		      	    JsonWebSignature jws = new JsonWebSignature();
 
-			      	    String compactSerialization = signatureSerializationParts[0] + ".." + signatureSerializationParts[2];
+		      	    String compactSerialization = signatureSerializationParts[0] + ".." + signatureSerializationParts[2];
 
-			      	    // Set the compact serialization on the JWS
-			      	    jws.setCompactSerialization(compactSerialization);
-			      	    jws.setKey(publicKey);
+		      	    // Set the compact serialization on the JWS
+		      	    jws.setCompactSerialization(compactSerialization);
+		      	    jws.setKey(publicKey);
 
-			      	    if( jws.verifySignature()){
-			      	    	LOG.debug("JWT signature validation successful after settin payload to 'blank' for account {}", accountId);
-			      	    	return;
-			      	    }
+		      	    if( jws.verifySignature()){
+		      	    	LOG.debug("JWT signature validation successful after settin payload to 'blank' for account {}", accountId);
+		      	    	return;
 		      	    }
-		      	}
-		      	throw e;
+	      	    }
+	      	}
+	      	throw e;
 
-		    } catch (InvalidJwtException e) {
-				LOG.error("Failed signature validation: " + e.getMessage());
-				throw e;
-		    }
-		} catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
-			throw new JoseException("problem reading public key from database", e);
-		}
+	    } catch (InvalidJwtException e) {
+			LOG.error("Failed signature validation: " + e.getMessage());
+			throw e;
+	    }
 	}
 
 	public void verifyJWT(JwtContext context, PublicKey publicKey) {
@@ -0,0 +1,401 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.UnknownStatus;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.util.CryptoUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * RFC 6960 OCSP responder for the certificates issued by the internal CA (root and intermediates created by
+ * {@link CaInternalConnector}). Responses are signed by the issuing CA itself.
+ *
+ * Responses are signed in advance and kept in a cache of 'ca3s.ocsp.cache.maxEntries' entries, valid for
+ * 'ca3s.ocsp.validity.seconds'. Entries are re-signed in the background 'ca3s.ocsp.refresh.seconds' before their
+ * 'nextUpdate' and dropped if not requested for a validity period. A revocation drops the entries of the certificate,
+ * once immediately and once again after the transaction completes. Revocations made on other instances are dropped
+ * when the {@link CrlPublisher} of this instance picks them up, within 'ca3s.crl.publish.check.millis'.
+ * Following RFC 5019 a request nonce is ignored, unless 'ca3s.ocsp.nonce.echo' is set. Requests containing a nonce
+ * are signed on the fly in this case.
+ */
+@Service
+public class OcspResponder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OcspResponder.class);
+
+    public static final String METRIC_RESPONSES = "ca3s.ocsp.responses";
+
+    private final CertificateRepository certificateRepository;
+    private final InternalCaIssuers internalCaIssuers;
+    private final CryptoUtil cryptoUtil;
+    private final long validityMillis;
+    private final long refreshMillis;
+    private final int maxEntries;
+    private final boolean echoNonce;
+
+    private final DigestCalculatorProvider digestCalculatorProvider;
+
+    private final Map<ResponseKey, CachedResponse> responseMap = new ConcurrentHashMap<>();
+
+    private final Counter cached;
+    private final Counter signed;
+    private final Counter unauthorized;
+    private final Counter malformed;
+
+    public OcspResponder(CertificateRepository certificateRepository,
+                         InternalCaIssuers internalCaIssuers,
+                         CryptoUtil cryptoUtil,
+                         @Value("${ca3s.ocsp.validity.seconds:86400}") long validitySeconds,
+                         @Value("${ca3s.ocsp.refresh.seconds:3600}") long refreshSeconds,
+                         @Value("${ca3s.ocsp.cache.maxEntries:100000}") int maxEntries,
+                         @Value("${ca3s.ocsp.nonce.echo:false}") boolean echoNonce,
+                         MeterRegistry meterRegistry) throws OperatorCreationException {
+
+        this.certificateRepository = certificateRepository;
+        this.internalCaIssuers = internalCaIssuers;
+        this.cryptoUtil = cryptoUtil;
+        this.validityMillis = validitySeconds * 1000L;
+        this.refreshMillis = Math.min(refreshSeconds * 1000L, validityMillis / 2);
+        this.maxEntries = maxEntries;
+        this.echoNonce = echoNonce;
+        this.digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().build();
+
+        cached = Counter.builder(METRIC_RESPONSES).tag("result", "cached")
+            .description("OCSP responses served from the cache").register(meterRegistry);
+        signed = Counter.builder(METRIC_RESPONSES).tag("result", "signed")
+            .description("OCSP responses signed on request").register(meterRegistry);
+        unauthorized = Counter.builder(METRIC_RESPONSES).tag("result", "unauthorized")
+            .description("OCSP requests for foreign issuers").register(meterRegistry);
+        malformed = Counter.builder(METRIC_RESPONSES).tag("result", "malformed")
+            .description("unparsable OCSP requests").register(meterRegistry);
+    }
+
+    /**
+     * answer an OCSP request
+     *
+     * @param encodedRequest the DER encoded OCSP request
+     * @return the response, never null
+     */
+    public OcspResponse respond(final byte[] encodedRequest) {
+
+        OCSPReq ocspReq;
+        Req[] reqArr;
+        try {
+            ocspReq = new OCSPReq(encodedRequest);
+            reqArr = ocspReq.getRequestList();
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("unparsable OCSP request", e);
+            malformed.increment();
+            return errorResponse(OCSPRespBuilder.MALFORMED_REQUEST);
+        }
+        if (reqArr.length == 0) {
+            malformed.increment();
+            return errorResponse(OCSPRespBuilder.MALFORMED_REQUEST);
+        }
+
+        try {
+            Extension nonce = echoNonce ? ocspReq.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce) : null;
+
+            if (reqArr.length == 1 && nonce == null) {
+                CertificateID certID = reqArr[0].getCertID();
+                InternalCaIssuers.Issuer issuer = findIssuer(certID);
+                if (issuer == null) {
+                    unauthorized.increment();
+                    return errorResponse(OCSPRespBuilder.UNAUTHORIZED);
+                }
+                return getCachedResponse(issuer, certID);
+            }
+
+            // several certificates or a nonce, sign on the fly
+            List<CertificateID> certIDList = new ArrayList<>(reqArr.length);
+            InternalCaIssuers.Issuer issuer = null;
+            for (Req req : reqArr) {
+                InternalCaIssuers.Issuer reqIssuer = findIssuer(req.getCertID());
+                if (reqIssuer == null || (issuer != null && reqIssuer != issuer)) {
+                    unauthorized.increment();
+                    return errorResponse(OCSPRespBuilder.UNAUTHORIZED);
+                }
+                issuer = reqIssuer;
+                certIDList.add(req.getCertID());
+            }
+            signed.increment();
+            return sign(issuer, certIDList, nonce == null ? null : new Extensions(nonce));
+
+        } catch (GeneralSecurityException | OCSPException | IOException e) {
+            LOG.warn("problem creating OCSP response", e);
+            return errorResponse(OCSPRespBuilder.INTERNAL_ERROR);
+        }
+    }
+
+    /**
+     * drop the cached responses of a certificate, e.g. on revocation
+     *
+     * @param cert the certificate
+     */
+    public void invalidate(final Certificate cert) {
+
+        if (cert.getSerial() == null) {
+            return;
+        }
+        final BigInteger serial = new BigInteger(cert.getSerial());
+        removeSerial(serial);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    removeSerial(serial);
+                }
+            });
+        }
+    }
+
+    /**
+     * drop the cached responses of certificates revoked by any instance
+     *
+     * @param issuerCertificateId the id of the internal CA certificate
+     * @param serials the serials of the revoked certificates
+     */
+    public void invalidate(final long issuerCertificateId, final Set<BigInteger> serials) {
+
+        if (!serials.isEmpty()) {
+            responseMap.keySet().removeIf(key -> key.issuerId == issuerCertificateId && serials.contains(key.serial));
+        }
+    }
+
+    /**
+     * re-sign the cached responses close to their 'nextUpdate', drop the ones not requested recently
+     */
+    public void refreshResponses() {
+
+        long now = System.currentTimeMillis();
+        int nRefreshed = 0;
+        int nDropped = 0;
+        for (Map.Entry<ResponseKey, CachedResponse> entry : responseMap.entrySet()) {
+            CachedResponse cachedResponse = entry.getValue();
+            if (cachedResponse.lastAccess < now - validityMillis) {
+                responseMap.remove(entry.getKey(), cachedResponse);
+                nDropped++;
+            } else if (cachedResponse.refreshAt <= now) {
+                try {
+                    OcspResponse response = sign(cachedResponse.issuer, Collections.singletonList(cachedResponse.certID), null);
+                    responseMap.replace(entry.getKey(), cachedResponse,
+                        new CachedResponse(cachedResponse.issuer, cachedResponse.certID, response, now + validityMillis - refreshMillis, cachedResponse.lastAccess));
+                    nRefreshed++;
+                } catch (GeneralSecurityException | OCSPException | IOException e) {
+                    LOG.warn("problem refreshing OCSP response, dropping it", e);
+                    responseMap.remove(entry.getKey(), cachedResponse);
+                }
+            }
+        }
+        if (nRefreshed > 0 || nDropped > 0) {
+            LOG.debug("#{} OCSP responses refreshed, #{} dropped, #{} cached", nRefreshed, nDropped, responseMap.size());
+        }
+    }
+
+    public int size() {
+        return responseMap.size();
+    }
+
+    private OcspResponse getCachedResponse(final InternalCaIssuers.Issuer issuer, final CertificateID certID)
+        throws GeneralSecurityException, OCSPException, IOException {
+
+        long now = System.currentTimeMillis();
+        ResponseKey key = new ResponseKey(issuer.certificateId, certID.getHashAlgOID(), certID.getSerialNumber());
+        CachedResponse cachedResponse = responseMap.get(key);
+        if (cachedResponse != null && cachedResponse.response.getNextUpdate().getTime() > now) {
+            cachedResponse.lastAccess = now;
+            cached.increment();
+            return cachedResponse.response;
+        }
+
+        OcspResponse response = sign(issuer, Collections.singletonList(certID), null);
+        signed.increment();
+
+        if (responseMap.size() >= maxEntries) {
+            refreshResponses();
+        }
+        if (responseMap.size() < maxEntries) {
+            responseMap.put(key, new CachedResponse(issuer, certID, response, now + validityMillis - refreshMillis, now));
+        }
+        return response;
+    }
+
+    private OcspResponse sign(final InternalCaIssuers.Issuer issuer, final List<CertificateID> certIDList, final Extensions responseExtensions)
+        throws GeneralSecurityException, OCSPException, IOException {
+
+        Date thisUpdate = new Date();
+        Date nextUpdate = new Date(thisUpdate.getTime() + validityMillis);
+
+        BasicOCSPRespBuilder respBuilder = new BasicOCSPRespBuilder(issuer.holder.getSubjectPublicKeyInfo(),
+            digestCalculatorProvider.get(CertificateID.HASH_SHA1));
+        for (CertificateID certID : certIDList) {
+            respBuilder.addResponse(certID, getStatus(issuer, certID.getSerialNumber()), thisUpdate, nextUpdate, null);
+        }
+        if (responseExtensions != null) {
+            respBuilder.setResponseExtensions(responseExtensions);
+        }
+
+        BasicOCSPResp basicResp = respBuilder.build(issuer.buildSigner(), new X509CertificateHolder[]{issuer.holder}, thisUpdate);
+        byte[] encoded = new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResp).getEncoded();
+        return new OcspResponse(encoded, thisUpdate, nextUpdate);
+    }
+
+    private CertificateStatus getStatus(final InternalCaIssuers.Issuer issuer, final BigInteger serial) {
+
+        List<Certificate> certList = certificateRepository.findByIssuerSerial(issuer.subject, serial.toString());
+        if (certList.isEmpty()) {
+            return new UnknownStatus();
+        }
+
+        Certificate cert = certList.get(0);
+        if (Boolean.TRUE.equals(cert.isRevoked())) {
+            Date revokedSince = Date.from(cert.getRevokedSince() == null ? Instant.now() : cert.getRevokedSince());
+            int reason = CRLReason.unspecified;
+            if (cert.getRevocationReason() != null) {
+                reason = cryptoUtil.crlReasonFromString(cert.getRevocationReason()).getValue().intValue();
+            }
+            return new RevokedStatus(revokedSince, reason);
+        }
+        return CertificateStatus.GOOD;
+    }
+
+    private InternalCaIssuers.Issuer findIssuer(final CertificateID certID) throws OCSPException {
+        for (InternalCaIssuers.Issuer issuer : internalCaIssuers.getIssuers()) {
+            if (certID.matchesIssuer(issuer.holder, digestCalculatorProvider)) {
+                return issuer;
+            }
+        }
+        return null;
+    }
+
+    private void removeSerial(final BigInteger serial) {
+        responseMap.keySet().removeIf(key -> key.serial.equals(serial));
+    }
+
+    private static OcspResponse errorResponse(final int status) {
+        try {
+            return new OcspResponse(new OCSPRespBuilder().build(status, null).getEncoded(), null, null);
+        } catch (OCSPException | IOException e) {
+            throw new IllegalStateException("problem encoding OCSP error response", e);
+        }
+    }
+
+    /**
+     * an encoded OCSP response
+     */
+    public static final class OcspResponse {
+
+        private final byte[] encoded;
+        private final Date thisUpdate;
+        private final Date nextUpdate;
+
+        OcspResponse(byte[] encoded, Date thisUpdate, Date nextUpdate) {
+            this.encoded = encoded;
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+        }
+
+        public byte[] getEncoded() {
+            return encoded;
+        }
+
+        /**
+         * @return the creation date of the response, null for error responses
+         */
+        public Date getThisUpdate() {
+            return thisUpdate;
+        }
+
+        /**
+         * @return the end of validity of the response, null for error responses
+         */
+        public Date getNextUpdate() {
+            return nextUpdate;
+        }
+    }
+
+    private static final class ResponseKey {
+        private final long issuerId;
+        private final ASN1ObjectIdentifier hashAlgorithm;
+        private final BigInteger serial;
+
+        ResponseKey(long issuerId, ASN1ObjectIdentifier hashAlgorithm, BigInteger serial) {
+            this.issuerId = issuerId;
+            this.hashAlgorithm = hashAlgorithm;
+            this.serial = serial;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResponseKey)) {
+                return false;
+            }
+            ResponseKey other = (ResponseKey) o;
+            return issuerId == other.issuerId && hashAlgorithm.equals(other.hashAlgorithm) && serial.equals(other.serial);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(issuerId, hashAlgorithm, serial);
+        }
+    }
+
+    private static final class CachedResponse {
+        private final InternalCaIssuers.Issuer issuer;
+        private final CertificateID certID;
+        private final OcspResponse response;
+        private final long refreshAt;
+        private volatile long lastAccess;
+
+        CachedResponse(InternalCaIssuers.Issuer issuer, CertificateID certID, OcspResponse response, long refreshAt, long lastAccess) {
+            this.issuer = issuer;
+            this.certID = certID;
+            this.response = response;
+            this.refreshAt = refreshAt;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package de.trustable.ca3s.core.service.util;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published whenever a pipeline or one of its attributes is created, modified or deleted.
+ */
+public class PipelineChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 7406512957014362711L;
+
+    private final Long pipelineId;
+
+    public PipelineChangedEvent(Object source, Long pipelineId) {
+        super(source);
+        this.pipelineId = pipelineId;
+    }
+
+    /**
+     * @return the id of the changed pipeline, null if unknown
+     */
+    public Long getPipelineId() {
+        return pipelineId;
+    }
+}
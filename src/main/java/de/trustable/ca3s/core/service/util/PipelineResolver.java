@@ -0,0 +1,154 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.Pipeline;
+import de.trustable.ca3s.core.domain.enumeration.PipelineType;
+import de.trustable.ca3s.core.repository.PipelineRepository;
+import de.trustable.ca3s.core.service.dto.PipelineView;
+
+/**
+ * Read-through cache resolving a request realm to the active pipelines of a given type.
+ *
+ * The cache is dropped on every {@link PipelineChangedEvent}, once immediately and once again after the
+ * surrounding transaction completes. Changes made by other instances are picked up when an entry expires
+ * ('ca3s.pipeline.cache.seconds'). Unknown realms are not cached.
+ */
+@Service
+public class PipelineResolver implements ApplicationListener<PipelineChangedEvent> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineResolver.class);
+
+    private final PipelineRepository pipelineRepository;
+    private final PipelineUtil pipelineUtil;
+    private final long validityMillis;
+
+    private final Map<String, CacheEntry> pipelineMap = new ConcurrentHashMap<>();
+
+    // incremented on every invalidation, loads started before an invalidation are not cached
+    private long generation = 0;
+
+    public PipelineResolver(PipelineRepository pipelineRepository,
+                            PipelineUtil pipelineUtil,
+                            @Value("${ca3s.pipeline.cache.seconds:60}") long validitySeconds) {
+        this.pipelineRepository = pipelineRepository;
+        this.pipelineUtil = pipelineUtil;
+        this.validityMillis = validitySeconds * 1000L;
+    }
+
+    /**
+     * get all active pipelines of a type handling the given realm
+     *
+     * @param pipelineType the pipeline type
+     * @param realm the realm, as used in the request url
+     * @return the (possibly empty) list of matching pipelines
+     */
+    public List<PipelineSnapshot> getActivePipelines(final PipelineType pipelineType, final String realm) {
+
+        final String key = pipelineType + "/" + realm;
+        long now = currentTimeMillis();
+
+        CacheEntry entry = pipelineMap.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.snapshots;
+        }
+
+        long startGeneration = getGeneration();
+
+        List<PipelineSnapshot> snapshots = new ArrayList<>();
+        for (Pipeline pipeline : pipelineRepository.findActiveByTypeUrl(pipelineType, realm)) {
+            snapshots.add(createSnapshot(pipeline));
+        }
+        snapshots = Collections.unmodifiableList(snapshots);
+
+        if (!snapshots.isEmpty()) {
+            synchronized (this) {
+                if (generation == startGeneration) {
+                    pipelineMap.put(key, new CacheEntry(snapshots, now + validityMillis));
+                    LOG.debug("pipelines for type '{}' and realm '{}' cached", pipelineType, realm);
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * get the active pipeline of a type handling the given realm
+     *
+     * @param pipelineType the pipeline type
+     * @param realm the realm, as used in the request url
+     * @return the first matching pipeline or null
+     */
+    public PipelineSnapshot getActivePipeline(final PipelineType pipelineType, final String realm) {
+        List<PipelineSnapshot> snapshots = getActivePipelines(pipelineType, realm);
+        if (snapshots.isEmpty()) {
+            LOG.info("no matching pipeline for type '{}' request realm {}", pipelineType, realm);
+            return null;
+        }
+        return snapshots.get(0);
+    }
+
+    public void invalidateAll() {
+        clear();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(PipelineChangedEvent event) {
+        LOG.debug("pipeline {} changed, dropping cached pipelines", event.getPipelineId());
+        invalidateAll();
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private PipelineSnapshot createSnapshot(final Pipeline pipeline) {
+        PipelineView pv = pipelineUtil.from(pipeline);
+
+        // the cleartext SCEP secret is not kept in the cache
+        if (pv.getScepConfigItems() != null) {
+            pv.getScepConfigItems().setScepSecret(null);
+        }
+        return new PipelineSnapshot(pipeline, pv);
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private synchronized void clear() {
+        generation++;
+        pipelineMap.clear();
+    }
+
+    private static final class CacheEntry {
+        private final List<PipelineSnapshot> snapshots;
+        private final long expiresAt;
+
+        CacheEntry(List<PipelineSnapshot> snapshots, long expiresAt) {
+            this.snapshots = snapshots;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
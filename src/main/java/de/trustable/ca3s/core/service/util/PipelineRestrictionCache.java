@@ -0,0 +1,124 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.trustable.ca3s.core.domain.Pipeline;
+import de.trustable.ca3s.core.service.dto.PipelineView;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Per pipeline cache of the compiled request restrictions.
+ *
+ * An entry is dropped on every {@link PipelineChangedEvent} of its pipeline, once immediately and once again after
+ * the surrounding transaction completes. Changes made by other instances are picked up when an entry expires
+ * ('ca3s.pipeline.cache.seconds'). Pipelines not yet persisted are compiled on every call.
+ */
+@Service
+public class PipelineRestrictionCache implements ApplicationListener<PipelineChangedEvent> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineRestrictionCache.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long validityMillis;
+
+    private final Map<Long, CacheEntry> evaluatorMap = new ConcurrentHashMap<>();
+
+    // incremented on every invalidation, evaluators compiled before an invalidation are not cached
+    private long generation = 0;
+
+    public PipelineRestrictionCache(@Value("${ca3s.pipeline.cache.seconds:60}") long validitySeconds,
+                                    MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.validityMillis = validitySeconds * 1000L;
+    }
+
+    /**
+     * get the compiled restrictions of a pipeline, compile them if not cached
+     *
+     * @param pipeline the pipeline
+     * @param restrictionViewBuilder builds the pipeline view holding the restrictions
+     * @return the evaluator of the pipeline's restrictions
+     */
+    public PipelineRestrictionEvaluator getEvaluator(final Pipeline pipeline,
+                                                     final Function<Pipeline, PipelineView> restrictionViewBuilder) {
+
+        if (pipeline.getId() == null) {
+            return compile(restrictionViewBuilder.apply(pipeline));
+        }
+
+        long now = System.currentTimeMillis();
+        CacheEntry entry = evaluatorMap.get(pipeline.getId());
+        if (entry != null && entry.expiresAt > now) {
+            return entry.evaluator;
+        }
+
+        long startGeneration = getGeneration();
+        PipelineRestrictionEvaluator evaluator = compile(restrictionViewBuilder.apply(pipeline));
+
+        synchronized (this) {
+            if (generation == startGeneration) {
+                evaluatorMap.put(pipeline.getId(), new CacheEntry(evaluator, now + validityMillis));
+                LOG.debug("restrictions of pipeline {} cached", pipeline.getId());
+            }
+        }
+        return evaluator;
+    }
+
+    /**
+     * compile restrictions without caching them
+     *
+     * @param pv the pipeline view holding the restrictions
+     * @return the evaluator of the restrictions
+     */
+    public PipelineRestrictionEvaluator compile(final PipelineView pv) {
+        return PipelineRestrictionEvaluator.compile(pv, meterRegistry);
+    }
+
+    public void invalidateAll() {
+        clear();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(PipelineChangedEvent event) {
+        LOG.debug("pipeline {} changed, dropping compiled restrictions", event.getPipelineId());
+        invalidateAll();
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private synchronized void clear() {
+        generation++;
+        evaluatorMap.clear();
+    }
+
+    private static final class CacheEntry {
+        private final PipelineRestrictionEvaluator evaluator;
+        private final long expiresAt;
+
+        CacheEntry(PipelineRestrictionEvaluator evaluator, long expiresAt) {
+            this.evaluator = evaluator;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.validator.routines.InetAddressValidator;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.trustable.ca3s.core.domain.enumeration.RDNCardinalityRestriction;
+import de.trustable.ca3s.core.service.dto.ARARestriction;
+import de.trustable.ca3s.core.service.dto.NamedValues;
+import de.trustable.ca3s.core.service.dto.PipelineView;
+import de.trustable.ca3s.core.service.dto.RDNRestriction;
+import de.trustable.ca3s.core.service.dto.TypedValue;
+import de.trustable.util.OidNameMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Immutable, compiled form of the request restrictions of a pipeline: the subject RDN and SAN restrictions, the
+ * IP address checks and the additional request attribute (ARA) restrictions.
+ *
+ * Regular expressions are compiled once, an invalid expression is reported when compiling and fails every value,
+ * as before. The messages added for failed restrictions are the same as with the interpreted checks.
+ *
+ * If created with a MeterRegistry, the evaluation time of each rule is recorded in 'ca3s.pipeline.restriction',
+ * tagged with the pipeline and the rule name.
+ */
+public final class PipelineRestrictionEvaluator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineRestrictionEvaluator.class);
+
+    public static final String METRIC_RESTRICTION = "ca3s.pipeline.restriction";
+
+    private final String pipelineName;
+    private final List<Rule> ruleList;
+    private final List<AraRule> araRuleList;
+    private final Timer araTimer;
+
+    private PipelineRestrictionEvaluator(String pipelineName, List<Rule> ruleList, List<AraRule> araRuleList, Timer araTimer) {
+        this.pipelineName = pipelineName;
+        this.ruleList = Collections.unmodifiableList(ruleList);
+        this.araRuleList = Collections.unmodifiableList(araRuleList);
+        this.araTimer = araTimer;
+    }
+
+    /**
+     * compile the restrictions of a pipeline
+     *
+     * @param pv the pipeline view, holding the RDN, SAN and ARA restrictions
+     * @param meterRegistry registry for the rule timings, may be null
+     * @return the evaluator
+     */
+    public static PipelineRestrictionEvaluator compile(final PipelineView pv, final MeterRegistry meterRegistry) {
+
+        String pipelineName = pv.getName() == null ? "" : pv.getName();
+        List<Rule> ruleList = new ArrayList<>();
+
+        addRdnRule(ruleList, "C", BCStyle.C, pv.getRestriction_C(), false);
+        addRdnRule(ruleList, "CN", BCStyle.CN, pv.getRestriction_CN(), true);
+        addRdnRule(ruleList, "O", BCStyle.O, pv.getRestriction_O(), false);
+        addRdnRule(ruleList, "OU", BCStyle.OU, pv.getRestriction_OU(), false);
+        addRdnRule(ruleList, "L", BCStyle.L, pv.getRestriction_L(), false);
+        addRdnRule(ruleList, "ST", BCStyle.ST, pv.getRestriction_S(), false);
+        addRdnRule(ruleList, "E", BCStyle.E, pv.getRestriction_E(), false);
+
+        if (pv.getRestriction_SAN() != null) {
+            ruleList.add(new SanRule(pv.getRestriction_SAN()));
+        }
+        if (!pv.isIpAsSubjectAllowed()) {
+            ruleList.add(new SubjectIPRule());
+        }
+        if (!pv.isIpAsSANAllowed()) {
+            ruleList.add(new SanIPRule());
+        }
+
+        List<AraRule> araRuleList = new ArrayList<>();
+        if (pv.getAraRestrictions() != null) {
+            for (ARARestriction araRestriction : pv.getAraRestrictions()) {
+                if (araRestriction != null) {
+                    araRuleList.add(new AraRule(araRestriction));
+                }
+            }
+        }
+
+        Timer araTimer = null;
+        if (meterRegistry != null) {
+            for (Rule rule : ruleList) {
+                rule.timer = buildTimer(meterRegistry, pipelineName, rule.name);
+            }
+            araTimer = buildTimer(meterRegistry, pipelineName, "ARA");
+        }
+
+        LOG.debug("{} rules and {} ARA rules compiled for pipeline '{}'", ruleList.size(), araRuleList.size(), pipelineName);
+        return new PipelineRestrictionEvaluator(pipelineName, ruleList, araRuleList, araTimer);
+    }
+
+    private static void addRdnRule(final List<Rule> ruleList, final String ruleName, final ASN1ObjectIdentifier restricted,
+                                   final RDNRestriction restriction, final boolean sanReplacesRdn) {
+        if (restriction != null) {
+            ruleList.add(new RdnRule(ruleName, restricted, restriction, sanReplacesRdn));
+        }
+    }
+
+    private static Timer buildTimer(final MeterRegistry meterRegistry, final String pipelineName, final String ruleName) {
+        return Timer.builder(METRIC_RESTRICTION)
+            .tag("pipeline", pipelineName)
+            .tag("rule", ruleName)
+            .description("evaluation time of a pipeline restriction")
+            .register(meterRegistry);
+    }
+
+    private static Pattern compilePattern(final String regEx) {
+        try {
+            return Pattern.compile(regEx);
+        } catch (PatternSyntaxException pse) {
+            LOG.warn("pattern '" + regEx + "' is not valid");
+            return null;
+        }
+    }
+
+    public String getPipelineName() {
+        return pipelineName;
+    }
+
+    /**
+     * check the subject and the SANs of a request
+     *
+     * @param rdnArr the subject RDNs
+     * @param gNameSet the SANs
+     * @param messageList receives a message for each failed restriction
+     * @return true, if all restrictions are met
+     */
+    public boolean isResolved(final RDN[] rdnArr, final Set<GeneralName> gNameSet, final List<String> messageList) {
+
+        boolean outcome = true;
+        for (Rule rule : ruleList) {
+            long start = System.nanoTime();
+            if (!rule.check(rdnArr, gNameSet, messageList)) {
+                outcome = false;
+            }
+            if (rule.timer != null) {
+                rule.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * check the additional request attributes
+     *
+     * @param nvARArr the additional request attributes
+     * @param messageList receives a message for each failed restriction
+     * @return true, if all restrictions are met
+     */
+    public boolean isAdditionalResolved(final NamedValues[] nvARArr, final List<String> messageList) {
+
+        long start = System.nanoTime();
+        boolean outcome = true;
+
+        for (NamedValues nvAR : nvARArr) {
+            for (AraRule araRule : araRuleList) {
+                if (araRule.name != null && araRule.name.equals(nvAR.getName())) {
+                    if (!araRule.check(nvAR, messageList)) {
+                        outcome = false;
+                    }
+                }
+            }
+        }
+        for (AraRule araRule : araRuleList) {
+            if (araRule.required && !isPresent(araRule.name, nvARArr)) {
+                String msg = "additional restriction mismatch: An value for '" + araRule.name + "' MUST be present!";
+                messageList.add(msg);
+                LOG.debug(msg);
+                outcome = false;
+            }
+        }
+
+        if (araTimer != null) {
+            araTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return outcome;
+    }
+
+    private static boolean isPresent(final String name, final NamedValues[] nvARArr) {
+        for (NamedValues nv : nvARArr) {
+            if (name != null && name.equals(nv.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * regular expression or expected value of a restriction
+     */
+    private static final class ValueMatcher {
+
+        private final String regEx;
+        private final boolean hasRegEx;
+        private final boolean regExMatch;
+        private final Pattern pattern;
+
+        ValueMatcher(final String regExValue, final boolean regExMatch) {
+            this.regEx = regExValue == null ? "" : regExValue.trim();
+            this.hasRegEx = !regEx.isEmpty();
+            this.regExMatch = regExMatch;
+            this.pattern = (hasRegEx && regExMatch) ? compilePattern(regEx) : null;
+        }
+
+        boolean matches(final String value) {
+            return pattern != null && pattern.matcher(value).matches();
+        }
+    }
+
+    private abstract static class Rule {
+
+        final String name;
+        Timer timer;
+
+        Rule(String name) {
+            this.name = name;
+        }
+
+        abstract boolean check(RDN[] rdnArr, Set<GeneralName> gNameSet, List<String> messageList);
+    }
+
+    private static final class RdnRule extends Rule {
+
+        private final ASN1ObjectIdentifier restricted;
+        private final String restrictedName;
+        private final RDNCardinalityRestriction cardinality;
+        private final ValueMatcher valueMatcher;
+        private final boolean sanReplacesRdn;
+
+        RdnRule(String ruleName, ASN1ObjectIdentifier restricted, RDNRestriction restriction, boolean sanReplacesRdn) {
+            super(ruleName);
+            this.restricted = restricted;
+            this.restrictedName = OidNameMapper.lookupOid(restricted.toString());
+            this.cardinality = restriction.getCardinalityRestriction();
+            this.valueMatcher = new ValueMatcher(restriction.getRegEx(), restriction.isRegExMatch());
+            this.sanReplacesRdn = sanReplacesRdn;
+        }
+
+        @Override
+        boolean check(RDN[] rdnArr, Set<GeneralName> gNameSet, List<String> messageList) {
+
+            LOG.debug("checking element '{}'", restrictedName);
+            boolean outcome = true;
+            int n = 0;
+
+            for (RDN rdn : rdnArr) {
+                AttributeTypeAndValue atv = rdn.getFirst();
+                if (restricted.equals(atv.getType())) {
+                    n++;
+                    String value = atv.getValue().toString().trim();
+                    if (valueMatcher.hasRegEx && valueMatcher.regExMatch && !valueMatcher.matches(value)) {
+                        String msg = "restriction mismatch: '" + value + "' does not match regular expression '" + valueMatcher.regEx + "' !";
+                        messageList.add(msg);
+                        LOG.debug(msg);
+                        outcome = false;
+                    }
+                }
+            }
+
+            boolean hasSAN = sanReplacesRdn && !gNameSet.isEmpty();
+
+            if (RDNCardinalityRestriction.NOT_ALLOWED.equals(cardinality)) {
+                if (n > 0) {
+                    outcome = fail("restricition mismatch: '" + restrictedName + "' MUST NOT occur!", messageList);
+                }
+            } else if (RDNCardinalityRestriction.ONE.equals(cardinality)) {
+                if (n == 0) {
+                    outcome = fail("restricition mismatch: '" + restrictedName + "' MUST occur once, missing here!", messageList);
+                }
+                if (n != 1) {
+                    outcome = fail("restricition mismatch: '" + restrictedName + "' MUST occur exactly once, found " + n + " times!", messageList);
+                }
+            } else if (RDNCardinalityRestriction.ONE_OR_SAN.equals(cardinality)) {
+                if (n == 0 && !hasSAN) {
+                    outcome = fail("restricition mismatch: '" + restrictedName + "' MUST occur once or a SAN entry MUST be present!!", messageList);
+                }
+                if (n != 1) {
+                    outcome = fail("restricition mismatch: '" + restrictedName + "' MUST occur exactly once, found " + n + " times!", messageList);
+                }
+            } else if (RDNCardinalityRestriction.ONE_OR_MANY.equals(cardinality)) {
+                if (n == 0) {
+                    outcome = fail("restricition mismatch: '" + restrictedName + "' MUST occur once or more, missing here!", messageList);
+                }
+            } else if (RDNCardinalityRestriction.ZERO_OR_ONE.equals(cardinality)) {
+                if (n > 1) {
+                    outcome = fail("restricition mismatch: '" + restrictedName + "' MUST occur zero or once, found " + n + " times!", messageList);
+                }
+            }
+            return outcome;
+        }
+    }
+
+    private static final class SanRule extends Rule {
+
+        private final RDNCardinalityRestriction cardinality;
+        private final ValueMatcher valueMatcher;
+
+        SanRule(RDNRestriction restriction) {
+            super("SAN");
+            this.cardinality = restriction.getCardinalityRestriction();
+            this.valueMatcher = new ValueMatcher(restriction.getRegEx(), restriction.isRegExMatch());
+        }
+
+        @Override
+        boolean check(RDN[] rdnArr, Set<GeneralName> gNameSet, List<String> messageList) {
+
+            LOG.debug("checking SANs");
+            boolean outcome = true;
+            int n = 0;
+
+            for (GeneralName gn : gNameSet) {
+                n++;
+                if (valueMatcher.hasRegEx) {
+                    String value = CertificateUtil.getTypedSAN(gn);
+                    if (valueMatcher.regExMatch) {
+                        if (!valueMatcher.matches(value)) {
+                            outcome = fail("restriction mismatch: SAN '" + value + "' does not match regular expression '" + valueMatcher.regEx + "' !", messageList);
+                        }
+                    } else if (!valueMatcher.regEx.equalsIgnoreCase(value)) {
+                        outcome = fail("restriction mismatch: SAN '" + value + "' does not match expected value '" + valueMatcher.regEx + "' !", messageList);
+                    }
+                }
+            }
+
+            if (RDNCardinalityRestriction.NOT_ALLOWED.equals(cardinality)) {
+                if (n > 0) {
+                    outcome = fail("restriction mismatch: A SAN MUST NOT occur!", messageList);
+                }
+            } else if (RDNCardinalityRestriction.ONE.equals(cardinality)) {
+                if (n == 0) {
+                    outcome = fail("restriction mismatch: SAN MUST occur once, missing here!", messageList);
+                }
+                if (n != 1) {
+                    outcome = fail("restriction mismatch: SAN MUST occur exactly once, found " + n + " times!", messageList);
+                }
+            } else if (RDNCardinalityRestriction.ONE_OR_MANY.equals(cardinality)) {
+                if (n == 0) {
+                    outcome = fail("restriction mismatch: SAns MUST occur once or more, missing here!", messageList);
+                }
+            } else if (RDNCardinalityRestriction.ZERO_OR_ONE.equals(cardinality)) {
+                if (n > 1) {
+                    outcome = fail("restriction mismatch: SANs MUST occur zero or once, found " + n + " times!", messageList);
+                }
+            }
+            return outcome;
+        }
+    }
+
+    private static final class SubjectIPRule extends Rule {
+
+        SubjectIPRule() {
+            super("IP_SUBJECT");
+        }
+
+        @Override
+        boolean check(RDN[] rdnArr, Set<GeneralName> gNameSet, List<String> messageList) {
+
+            InetAddressValidator inv = InetAddressValidator.getInstance();
+            for (RDN rdn : rdnArr) {
+                AttributeTypeAndValue atv = rdn.getFirst();
+                if (BCStyle.CN.equals(atv.getType())) {
+                    String value = atv.getValue().toString().trim();
+                    String ipMsg = null;
+                    if (inv.isValidInet4Address(value)) {
+                        ipMsg = "CommonName '" + value + "' is a valid IP4 address";
+                    } else if (inv.isValidInet6Address(value)) {
+                        ipMsg = "CommonName '" + value + "' is a valid IP6 address";
+                    }
+                    if (ipMsg != null) {
+                        messageList.add(ipMsg);
+                        String msg = "IP not allowed as subject";
+                        messageList.add(0, msg);
+                        LOG.info(msg);
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class SanIPRule extends Rule {
+
+        SanIPRule() {
+            super("IP_SAN");
+        }
+
+        @Override
+        boolean check(RDN[] rdnArr, Set<GeneralName> gNameSet, List<String> messageList) {
+
+            boolean hasIP = false;
+            for (GeneralName gn : gNameSet) {
+                if (GeneralName.iPAddress == gn.getTagNo()) {
+                    String sanValue = CertificateUtil.getTypedSAN(gn);
+                    messageList.add("SAN '" + sanValue + "' is an IP address, not allowed.");
+                    hasIP = true;
+                }
+            }
+            if (hasIP) {
+                String msg = "IP not allowed as SAN";
+                messageList.add(0, msg);
+                LOG.info(msg);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class AraRule {
+
+        private final String name;
+        private final boolean required;
+        private final ValueMatcher valueMatcher;
+
+        AraRule(ARARestriction araRestriction) {
+            this.name = araRestriction.getName();
+            this.required = araRestriction.isRequired();
+            this.valueMatcher = new ValueMatcher(araRestriction.getRegEx(), araRestriction.isRegExMatch());
+        }
+
+        boolean check(NamedValues nvAR, List<String> messageList) {
+
+            if (!required) {
+                return true;
+            }
+
+            LOG.debug("checking AdditionalRestrictions");
+            boolean outcome = true;
+            if (nvAR.getValues().length == 0) {
+                return fail("additional restriction mismatch: An value for '" + nvAR.getName() + "' MUST be present!", messageList);
+            }
+
+            for (TypedValue typedValue : nvAR.getValues()) {
+                String value = typedValue.getValue();
+                if (value.isEmpty()) {
+                    outcome = fail("additional restriction mismatch: An value for '" + nvAR.getName() + "' MUST be present!", messageList);
+                }
+                if (valueMatcher.hasRegEx) {
+                    if (valueMatcher.regExMatch) {
+                        if (!valueMatcher.matches(value)) {
+                            outcome = fail("restriction mismatch: '" + value + "' does not match regular expression '" + valueMatcher.regEx + "' !", messageList);
+                        }
+                    } else if (!valueMatcher.regEx.equalsIgnoreCase(value)) {
+                        outcome = fail("restriction mismatch: '" + value + "' does not match expected value '" + valueMatcher.regEx + "' !", messageList);
+                    }
+                }
+            }
+            return outcome;
+        }
+    }
+
+    private static boolean fail(final String msg, final List<String> messageList) {
+        messageList.add(msg);
+        LOG.debug(msg);
+        return false;
+    }
+}
@@ -0,0 +1,138 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.trustable.ca3s.core.domain.Pipeline;
+import de.trustable.ca3s.core.domain.PipelineAttribute;
+import de.trustable.ca3s.core.domain.enumeration.PipelineType;
+import de.trustable.ca3s.core.service.dto.PipelineView;
+
+/**
+ * Detached, read-only copy of a pipeline including its attributes and the restrictions derived from them.
+ * Instances are shared between threads by the {@link PipelineResolver}. The PipelineView is kept in serialized form,
+ * every caller gets a copy of its own.
+ */
+public final class PipelineSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineSnapshot.class);
+
+    private static final ObjectMapper VIEW_MAPPER = new ObjectMapper()
+        .findAndRegisterModules()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final long id;
+    private final String name;
+    private final PipelineType type;
+    private final String urlPart;
+    private final boolean active;
+    private final boolean approvalRequired;
+    private final String caConnectorName;
+    private final String processInfoName;
+    private final Map<String, List<String>> attributes;
+    private final byte[] pipelineViewJson;
+
+    PipelineSnapshot(Pipeline pipeline, PipelineView pipelineView) {
+        this.id = pipeline.getId();
+        this.name = pipeline.getName();
+        this.type = pipeline.getType();
+        this.urlPart = pipeline.getUrlPart();
+        this.active = Boolean.TRUE.equals(pipeline.isActive());
+        this.approvalRequired = Boolean.TRUE.equals(pipeline.isApprovalRequired());
+        this.caConnectorName = pipelineView.getCaConnectorName();
+        this.processInfoName = pipelineView.getProcessInfoName();
+
+        Map<String, List<String>> attMap = new HashMap<>();
+        for (PipelineAttribute plAtt : pipeline.getPipelineAttributes()) {
+            attMap.computeIfAbsent(plAtt.getName(), k -> new ArrayList<>()).add(plAtt.getValue());
+        }
+        attMap.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        this.attributes = Collections.unmodifiableMap(attMap);
+
+        try {
+            this.pipelineViewJson = VIEW_MAPPER.writeValueAsBytes(pipelineView);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("problem serializing the view of pipeline '" + name + "'", e);
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PipelineType getType() {
+        return type;
+    }
+
+    public String getUrlPart() {
+        return urlPart;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean isApprovalRequired() {
+        return approvalRequired;
+    }
+
+    public String getCaConnectorName() {
+        return caConnectorName;
+    }
+
+    public String getProcessInfoName() {
+        return processInfoName;
+    }
+
+    public Map<String, List<String>> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return a copy of the pipeline view, changes by the caller don't affect the snapshot
+     */
+    public PipelineView getPipelineView() {
+        try {
+            return VIEW_MAPPER.readValue(pipelineViewJson, PipelineView.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("problem reading the view of pipeline '" + name + "'", e);
+        }
+    }
+
+    public String getAttribute(String name, String defaultValue) {
+        List<String> values = attributes.get(name);
+        if (values == null || values.isEmpty()) {
+            return defaultValue;
+        }
+        return values.get(0);
+    }
+
+    public int getAttribute(String name, int defaultValue) {
+        List<String> values = attributes.get(name);
+        if (values != null) {
+            for (String value : values) {
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException nfe) {
+                    LOG.warn("unexpected value for attribute '" + name + "'", nfe);
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -9,17 +9,12 @@ import de.trustable.ca3s.core.service.AuditService;
 import de.trustable.ca3s.core.service.dto.*;
 import de.trustable.ca3s.core.exception.BadRequestAlertException;
 import de.trustable.util.CryptoUtil;
-import de.trustable.util.OidNameMapper;
 import de.trustable.util.Pkcs10RequestHolder;
-import org.apache.commons.validator.routines.InetAddressValidator;
-import org.bouncycastle.asn1.ASN1ObjectIdentifier;
-import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
-import org.bouncycastle.asn1.x500.RDN;
-import org.bouncycastle.asn1.x500.style.BCStyle;
 import org.bouncycastle.asn1.x509.GeneralName;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import javax.security.auth.x500.X500Principal;
@@ -32,7 +27,6 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 
 @Service
@@ -81,6 +75,7 @@ public class PipelineUtil {
 
 	public static final String RESTR_ARA_PREFIX = "RESTR_ARA_";
 	public static final String RESTR_ARA_PATTERN = RESTR_ARA_PREFIX + "(.*)_(.*)";
+    private static final Pattern ARA_PATTERN = Pattern.compile(RESTR_ARA_PATTERN);
 	public static final String RESTR_ARA_NAME = "NAME";
 //	public static final String RESTR_ARA_CARDINALITY = "CARDINALITY";
 	public static final String RESTR_ARA_TEMPLATE = "TEMPLATE";
@@ -114,6 +109,7 @@ public class PipelineUtil {
     public static final String ACME_PROCESS_CHALLENGE_VALIDATION = "ACME_PROCESS_CHALLENGE_VALIDATION";
 
     public static final String ACME_ORDER_VALIDITY_SECONDS = "ACME_ORDER_VALIDITY_SECONDS";
+    public static final String ACME_AUTHORIZATION_REUSE_SECONDS = "ACME_AUTHORIZATION_REUSE_SECONDS";
 
     public static final String SCEP_CAPABILITY_RENEWAL = "SCEP_CAPABILITY_RENEWAL";
     public static final String SCEP_CAPABILITY_POST = "SCEP_CAPABILITY_POST";
@@ -154,7 +150,11 @@ public class PipelineUtil {
 
     final private AuditTraceRepository auditTraceRepository;
 
-    public PipelineUtil(CertificateRepository certRepository, CSRRepository csrRepository, CAConnectorConfigRepository caConnRepository, PipelineRepository pipelineRepository, PipelineAttributeRepository pipelineAttRepository, BPMNProcessInfoRepository bpmnPIRepository, ProtectedContentRepository protectedContentRepository, ProtectedContentUtil protectedContentUtil, PreferenceUtil preferenceUtil, CertificateUtil certUtil, ConfigUtil configUtil, AuditService auditService, AuditTraceRepository auditTraceRepository) {
+    final private ApplicationEventPublisher applicationEventPublisher;
+
+    final private PipelineRestrictionCache restrictionCache;
+
+    public PipelineUtil(CertificateRepository certRepository, CSRRepository csrRepository, CAConnectorConfigRepository caConnRepository, PipelineRepository pipelineRepository, PipelineAttributeRepository pipelineAttRepository, BPMNProcessInfoRepository bpmnPIRepository, ProtectedContentRepository protectedContentRepository, ProtectedContentUtil protectedContentUtil, PreferenceUtil preferenceUtil, CertificateUtil certUtil, ConfigUtil configUtil, AuditService auditService, AuditTraceRepository auditTraceRepository, ApplicationEventPublisher applicationEventPublisher, PipelineRestrictionCache restrictionCache) {
         this.certRepository = certRepository;
         this.csrRepository = csrRepository;
         this.caConnRepository = caConnRepository;
@@ -168,6 +168,8 @@ public class PipelineUtil {
         this.configUtil = configUtil;
         this.auditService = auditService;
         this.auditTraceRepository = auditTraceRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.restrictionCache = restrictionCache;
     }
 
 
@@ -438,12 +440,10 @@ public class PipelineUtil {
         /*
          * determine the number of  ARA restrictions
          */
-        Pattern araPattern = Pattern.compile(RESTR_ARA_PATTERN);
-
         int nARA = 0;
         for( PipelineAttribute plAtt: pipeline.getPipelineAttributes()) {
             if( plAtt.getName().startsWith(RESTR_ARA_PREFIX)) {
-                Matcher m = araPattern.matcher(plAtt.getName());
+                Matcher m = ARA_PATTERN.matcher(plAtt.getName());
                 if (m.find( )) {
                     int araIdx = Integer.parseInt(m.group(1));
                     if( araIdx +1 > nARA) {
@@ -462,7 +462,7 @@ public class PipelineUtil {
         for( PipelineAttribute plAtt: pipeline.getPipelineAttributes()) {
             if( plAtt.getName().startsWith(RESTR_ARA_PREFIX)) {
                 LOG.debug("ARA itmes : {}", plAtt.getName());
-                Matcher m = araPattern.matcher(plAtt.getName());
+                Matcher m = ARA_PATTERN.matcher(plAtt.getName());
                 if (m.find( )) {
                     int araIdx = Integer.parseInt(m.group(1));
                     LOG.debug("araIdx: {}", araIdx);
@@ -786,6 +786,8 @@ public class PipelineUtil {
 		pipelineRepository.save(p);
         auditTraceRepository.saveAll(auditList);
 
+        applicationEventPublisher.publishEvent(new PipelineChangedEvent(this, p.getId()));
+
 		return p;
 	}
 
@@ -857,10 +859,11 @@ public class PipelineUtil {
             return true;
         }
 
-        if(!isPipelineAdditionalRestrictionsResolved(initAraRestrictions(p), nvARArr, messageList)){
+        PipelineRestrictionEvaluator evaluator = restrictionCache.getEvaluator(p, this::buildRestrictionView);
+        if(!evaluator.isAdditionalResolved(nvARArr, messageList)){
             return false;
         }
-        return isPipelineRestrictionsResolved(p, p10ReqHolder, messageList);
+        return isPipelineRestrictionsResolved(evaluator, p10ReqHolder, messageList);
     }
 
     public boolean isPipelineRestrictionsResolved(Pipeline p, Pkcs10RequestHolder p10ReqHolder, List<String> messageList) {
@@ -869,81 +872,49 @@ public class PipelineUtil {
 	        return true;
         }
 
-        PipelineView pv = new PipelineView();
-        initRdnRestrictions(pv, p);
-
-        return isPipelineRestrictionsResolved(pv, p10ReqHolder, messageList);
+        return isPipelineRestrictionsResolved(restrictionCache.getEvaluator(p, this::buildRestrictionView), p10ReqHolder, messageList);
     }
 
     public boolean isPipelineAdditionalRestrictionsResolved(ARARestriction[] araRestrictions, NamedValues[] nvARArr, List<String> messageList) {
 
-        boolean outcome = true;
-
-        for(NamedValues nvAR: nvARArr){
-            for(ARARestriction araRestriction:araRestrictions){
-                if( araRestriction.getName().equals(nvAR.getName())){
-                    if(!checkAdditionalRestrictions(araRestriction, nvAR, messageList)){
-                        outcome = false;
-                    }
-                }
-            }
-        }
-        for(ARARestriction araRestriction:araRestrictions){
-            if(araRestriction.isRequired()){
-                if(Arrays.stream(nvARArr).noneMatch(nv -> (araRestriction.getName().equals(nv.getName())))){
-                    String msg = "additional restriction mismatch: An value for '" + araRestriction.getName() + "' MUST be present!";
-                    messageList.add(msg);
-                    LOG.debug(msg);
-                    outcome = false;
-                }
-            }
-        }
-        return outcome;
+        PipelineView pv = new PipelineView();
+        pv.setAraRestrictions(araRestrictions);
+        return restrictionCache.compile(pv).isAdditionalResolved(nvARArr, messageList);
     }
 
     public boolean isPipelineRestrictionsResolved(PipelineView pv, Pkcs10RequestHolder p10ReqHolder, List<String> messageList) {
+        return isPipelineRestrictionsResolved(restrictionCache.compile(pv), p10ReqHolder, messageList);
+    }
 
-		boolean outcome = isAlgorithmRestrictionsResolved( pv,  p10ReqHolder, messageList);
+    private boolean isPipelineRestrictionsResolved(PipelineRestrictionEvaluator evaluator, Pkcs10RequestHolder p10ReqHolder, List<String> messageList) {
+
+		boolean outcome = isAlgorithmRestrictionsResolved(p10ReqHolder, messageList);
 
         Set<GeneralName> gNameSet = CSRUtil.getSANList(p10ReqHolder.getReqAttributes());
         LOG.debug("#" + gNameSet.size() + " SANs present");
 
-        RDN[] rdnArr = p10ReqHolder.getSubjectRDNs();
-
-	    if( !checkRestrictions(BCStyle.C, pv.getRestriction_C(), rdnArr, messageList)) { outcome = false;}
-	    if( !checkRestrictions(BCStyle.CN, pv.getRestriction_CN(), rdnArr, gNameSet, messageList)) { outcome = false;}
-	    if( !checkRestrictions(BCStyle.O, pv.getRestriction_O(), rdnArr, messageList)) { outcome = false;}
-	    if( !checkRestrictions(BCStyle.OU, pv.getRestriction_OU(), rdnArr, messageList)) { outcome = false;}
-	    if( !checkRestrictions(BCStyle.L, pv.getRestriction_L(), rdnArr, messageList)) { outcome = false;}
-        if( !checkRestrictions(BCStyle.ST, pv.getRestriction_S(), rdnArr, messageList)) { outcome = false;}
-        if( !checkRestrictions(BCStyle.E, pv.getRestriction_E(), rdnArr, messageList)) { outcome = false;}
-
-	    if( !checkRestrictions(pv.getRestriction_SAN(), gNameSet, messageList)) { outcome = false;}
-
-        LOG.debug("pv.isIpAsSubjectAllowed() is {} ", pv.isIpAsSubjectAllowed());
-	    if(!pv.isIpAsSubjectAllowed()) {
-	    	if( isSubjectIP(rdnArr, messageList)) {
-                String msg = "IP not allowed as subject";
-                messageList.add(0, msg);
-                LOG.info(msg);
-	    		outcome = false;
-	    	}
-	    }
-
-        LOG.debug("pv.isIpAsSANAllowed() is {} ", pv.isIpAsSANAllowed());
-	    if(!pv.isIpAsSANAllowed()) {
-	    	if( hasIPinSANList(gNameSet, messageList)) {
-                String msg = "IP not allowed as SAN";
-                messageList.add(0, msg);
-                LOG.info(msg);
-	    		outcome = false;
-	    	}
-	    }
+	    if( !evaluator.isResolved(p10ReqHolder.getSubjectRDNs(), gNameSet, messageList)) { outcome = false;}
 
 		return outcome;
 	}
 
+    /*
+     * the restrictions of a pipeline, as required by the PipelineRestrictionEvaluator
+     */
+    private PipelineView buildRestrictionView(Pipeline pipeline) {
+        PipelineView pv = new PipelineView();
+        pv.setId(pipeline.getId());
+        pv.setName(pipeline.getName());
+        initRdnRestrictions(pv, pipeline);
+        pv.setAraRestrictions(initAraRestrictions(pipeline));
+        return pv;
+    }
+
     public boolean isAlgorithmRestrictionsResolved(PipelineView pv, Pkcs10RequestHolder p10ReqHolder, List<String> messageList) {
+        return isAlgorithmRestrictionsResolved(p10ReqHolder, messageList);
+    }
+
+    private boolean isAlgorithmRestrictionsResolved(Pkcs10RequestHolder p10ReqHolder, List<String> messageList) {
         boolean outcome = true;
 
         Preferences preferences = preferenceUtil.getPrefs(PreferenceUtil.SYSTEM_PREFERENCE_ID);
@@ -989,319 +960,6 @@ public class PipelineUtil {
         return false;
     }
 
-    private boolean hasIPinSANList(Set<GeneralName> gNameSet, List<String> messageList) {
-
-		boolean outcome = false;
-
-    	for( GeneralName gn: gNameSet) {
-			if (GeneralName.iPAddress == gn.getTagNo()) {
-                String sanValue = CertificateUtil.getTypedSAN(gn);
-                messageList.add("SAN '"+sanValue+"' is an IP address, not allowed.");
-				outcome = true;
-			}
-    	}
-		return outcome;
-	}
-
-
-    private boolean checkRestrictions(RDNRestriction restriction, Set<GeneralName> gNameSet, List<String> messageList) {
-
-        if( restriction == null) {
-            return true; // no restrictions present!!
-        }
-
-        boolean outcome = true;
-
-        String regEx = "";
-        LOG.debug("checking SANs");
-
-        boolean hasRegEx = false;
-        if( restriction.getRegEx() != null) {
-            regEx = restriction.getRegEx().trim();
-            hasRegEx = !regEx.isEmpty();
-        }
-
-        int n = 0;
-
-        for( GeneralName gn: gNameSet) {
-            n++;
-            if( hasRegEx) {
-                String value = CertificateUtil.getTypedSAN(gn);
-
-                if( restriction.isRegExMatch()) {
-                    boolean evalResult = false;
-                    try {
-                        evalResult = value.matches(regEx);
-                    }catch(PatternSyntaxException pse) {
-                        LOG.warn("pattern '"+regEx+"' is not valid");
-                    }
-                    if( !evalResult ) {
-                        String msg = "restriction mismatch: SAN '"+value +"' does not match regular expression '"+regEx+"' !";
-                        messageList.add(msg);
-                        LOG.debug(msg);
-                        outcome = false;
-                    }
-                }else{
-                    if( !regEx.equalsIgnoreCase(value) ) {
-                        String msg = "restriction mismatch: SAN '"+value +"' does not match expected value '"+regEx+"' !";
-                        messageList.add(msg);
-                        LOG.debug(msg);
-                        outcome = false;
-                    }
-                }
-            }
-
-        }
-
-        RDNCardinalityRestriction cardinality = restriction.getCardinalityRestriction();
-        if( RDNCardinalityRestriction.NOT_ALLOWED.equals(cardinality)) {
-            if( n > 0) {
-                String msg = "restriction mismatch: A SAN MUST NOT occur!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-        } else if( RDNCardinalityRestriction.ONE.equals(cardinality)) {
-            if( n ==  0) {
-                String msg = "restriction mismatch: SAN MUST occur once, missing here!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-            if( n != 1) {
-                String msg = "restriction mismatch: SAN MUST occur exactly once, found "+n+" times!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-        } else if( RDNCardinalityRestriction.ONE_OR_MANY.equals(cardinality)) {
-            if( n == 0) {
-                String msg = "restriction mismatch: SAns MUST occur once or more, missing here!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-        } else if( RDNCardinalityRestriction.ZERO_OR_ONE.equals(cardinality)) {
-            if( n > 1) {
-                String msg = "restriction mismatch: SANs MUST occur zero or once, found "+n+" times!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-        }
-        return outcome;
-    }
-
-    private boolean checkAdditionalRestrictions(ARARestriction araRestriction, NamedValues nvAR, List<String> messageList) {
-
-        if( araRestriction == null) {
-            return true; // no restrictions present!!
-        }
-
-        boolean outcome = true;
-
-        LOG.debug("checking AdditionalRestrictions");
-        String regEx;
-        boolean hasRegEx = false;
-        if( araRestriction.getRegEx() != null) {
-            regEx = araRestriction.getRegEx().trim();
-            hasRegEx = !regEx.isEmpty();
-        }
-
-        if( araRestriction.isRequired() ){
-            if( nvAR.getValues().length == 0 ){
-                String msg = "additional restriction mismatch: An value for '"+nvAR.getName()+"' MUST be present!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }else{
-                for( TypedValue typedValue: nvAR.getValues()){
-                    if( typedValue.getValue().isEmpty()) {
-                        String msg = "additional restriction mismatch: An value for '" + nvAR.getName() + "' MUST be present!";
-                        messageList.add(msg);
-                        LOG.debug(msg);
-                        outcome = false;
-                    }
-                    if( hasRegEx ) {
-                        if (!checkRegEx(araRestriction, typedValue.getValue(), messageList)) {
-                            outcome = false;
-                        }
-                    }
-                }
-            }
-
-        }
-        return outcome;
-    }
-
-
-    private boolean checkRestrictions(ASN1ObjectIdentifier restricted, RDNRestriction restriction, RDN[] rdnArr, List<String> messageList) {
-        return checkRestrictions(restricted, restriction, rdnArr, new HashSet<>(), messageList);
-    }
-
-    private boolean checkRestrictions(ASN1ObjectIdentifier restricted, RDNRestriction restriction, RDN[] rdnArr, Set<GeneralName> gNameSet, List<String> messageList) {
-
-
-        if( restriction == null) {
-			return true; // no restrictions present!!
-		}
-
-		boolean outcome = true;
-
-		String template;
-		String restrictedName = OidNameMapper.lookupOid(restricted.toString());
-		LOG.debug("checking element '{}'", restrictedName);
-
-		boolean hasTemplate = false;
-		if( restriction.getContentTemplate() != null) {
-			template = restriction.getContentTemplate().trim();
-			hasTemplate = !template.isEmpty();
-		}
-
-        String regEx = "";
-        boolean hasRegEx = false;
-        if( restriction.getRegEx() != null) {
-            regEx = restriction.getRegEx().trim();
-            hasRegEx = !regEx.isEmpty();
-        }
-
-        int n = 0;
-
-		for( RDN rdn: rdnArr) {
-			AttributeTypeAndValue atv = rdn.getFirst();
-			if( restricted.equals(atv.getType())){
-				n++;
-                String value = atv.getValue().toString().trim();
-				if( hasRegEx && restriction.isRegExMatch()) {
-                    boolean evalResult = false;
-                    try {
-                        evalResult = value.matches(regEx);
-                    } catch (PatternSyntaxException pse) {
-                        LOG.warn("pattern '" + regEx + "' is not valid");
-                    }
-                    if (!evalResult) {
-                        String msg = "restriction mismatch: '" + value + "' does not match regular expression '" + regEx + "' !";
-                        messageList.add(msg);
-                        LOG.debug(msg);
-                        outcome = false;
-                    }
-                }
-/*
-                if( hasTemplate && !template.equalsIgnoreCase(value) ) {
-                    String msg = "restriction mismatch: '"+value +"' does not match expected value '"+template+"' !";
-                    messageList.add(msg);
-                    LOG.debug(msg);
-                    outcome = false;
-                }
-
- */
-			}
-		}
-
-		RDNCardinalityRestriction cardinality = restriction.getCardinalityRestriction();
-		if( RDNCardinalityRestriction.NOT_ALLOWED.equals(cardinality)) {
-			if( n > 0) {
-				String msg = "restricition mismatch: '"+restrictedName+"' MUST NOT occur!";
-				messageList.add(msg);
-				LOG.debug(msg);
-				outcome = false;
-			}
-		} else if( RDNCardinalityRestriction.ONE.equals(cardinality)) {
-			if( n ==  0) {
-				String msg = "restricition mismatch: '"+restrictedName+"' MUST occur once, missing here!";
-				messageList.add(msg);
-				LOG.debug(msg);
-				outcome = false;
-			}
-			if( n != 1) {
-				String msg = "restricition mismatch: '"+restrictedName+"' MUST occur exactly once, found "+n+" times!";
-				messageList.add(msg);
-				LOG.debug(msg);
-				outcome = false;
-			}
-        } else if( RDNCardinalityRestriction.ONE_OR_SAN.equals(cardinality)) {
-            if( n == 0 && gNameSet.isEmpty()) {
-                String msg = "restricition mismatch: '"+restrictedName+"' MUST occur once or a SAN entry MUST be present!!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-            if( n != 1) {
-                String msg = "restricition mismatch: '"+restrictedName+"' MUST occur exactly once, found "+n+" times!";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-		} else if( RDNCardinalityRestriction.ONE_OR_MANY.equals(cardinality)) {
-			if( n == 0) {
-				String msg = "restricition mismatch: '"+restrictedName+"' MUST occur once or more, missing here!";
-				messageList.add(msg);
-				LOG.debug(msg);
-				outcome = false;
-			}
-		} else if( RDNCardinalityRestriction.ZERO_OR_ONE.equals(cardinality)) {
-			if( n > 1) {
-				String msg = "restricition mismatch: '"+restrictedName+"' MUST occur zero or once, found "+n+" times!";
-				messageList.add(msg);
-				LOG.debug(msg);
-				outcome = false;
-			}
-		}
-		return outcome;
-	}
-
-	private boolean checkRegEx(ARARestriction araRestriction, String value, List<String> messageList){
-
-        boolean outcome = true;
-        String regEx = araRestriction.getRegEx().trim();
-
-        if( araRestriction.isRegExMatch()) {
-            boolean evalResult = false;
-            try {
-                evalResult = value.matches(regEx);
-            }catch(PatternSyntaxException pse) {
-                LOG.warn("pattern '"+regEx+"' is not valid");
-            }
-            if( !evalResult ) {
-                String msg = "restriction mismatch: '"+value +"' does not match regular expression '"+regEx+"' !";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-        }else{
-            if( !regEx.equalsIgnoreCase(value) ) {
-                String msg = "restriction mismatch: '"+value +"' does not match expected value '"+regEx+"' !";
-                messageList.add(msg);
-                LOG.debug(msg);
-                outcome = false;
-            }
-        }
-        return outcome;
-    }
-
-	private boolean isSubjectIP(RDN[] rdnArr, List<String> messageList) {
-
-
-		for( RDN rdn: rdnArr) {
-			AttributeTypeAndValue atv = rdn.getFirst();
-			if( BCStyle.CN.equals(atv.getType())){
-
-				String value = atv.getValue().toString().trim();
-				InetAddressValidator inv = InetAddressValidator.getInstance();
-				if( inv.isValidInet4Address(value)) {
-					messageList.add("CommonName '"+value+"' is a valid IP4 address");
-					return true;
-				}
-				if( inv.isValidInet6Address(value)) {
-					messageList.add("CommonName '"+value+"' is a valid IP6 address");
-					return true;
-				}
-			}
-
-		}
-		return false;
-	}
-
     public void setPipelineAttribute(Pipeline pipeline, String name, String value) {
 
         for (PipelineAttribute plAtt : pipeline.getPipelineAttributes()) {
@@ -1309,6 +967,7 @@ public class PipelineUtil {
                 if( !plAtt.getValue().equals(value) ){
                     plAtt.setValue(value);
                     pipelineAttRepository.save(plAtt);
+                    applicationEventPublisher.publishEvent(new PipelineChangedEvent(this, pipeline.getId()));
                 }
                 return;
             }
@@ -1321,6 +980,7 @@ public class PipelineUtil {
 
         pipelineAttRepository.save(pAtt);
         pipelineRepository.save(pipeline);
+        applicationEventPublisher.publishEvent(new PipelineChangedEvent(this, pipeline.getId()));
     }
 
     public String getPipelineAttribute(Pipeline pipeline, String name, String defaultValue) {
@@ -0,0 +1,253 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.math.BigInteger;
+import java.security.cert.CRLReason;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Compact, immutable index of the serials revoked by a CRL.
+ *
+ * The serials are kept as concatenated two's complement byte arrays in a single buffer, sorted by length and
+ * content, so a lookup is a binary search without any object allocation per entry. Revocation date and reason
+ * are held in parallel primitive arrays. The certificate issuer of the entries of an indirect CRL is kept as a
+ * reference into a table of the distinct issuer names.
+ */
+public final class RevokedSerialIndex {
+
+    public static final RevokedSerialIndex EMPTY = new RevokedSerialIndex(new byte[0], new int[]{0}, new long[0], new byte[0],
+        new String[0], null);
+
+    static final byte NO_REASON = -1;
+
+    static final int CRL_ISSUER = -1;
+
+    /**
+     * maximum length of the issuer stored with a certificate
+     */
+    private static final int MAX_ISSUER_LENGTH = 250;
+
+    private static final Comparator<byte[]> SERIAL_ORDER = (a, b) -> {
+        if (a.length != b.length) {
+            return Integer.compare(a.length, b.length);
+        }
+        for (int i = 0; i < a.length; i++) {
+            int cmp = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    };
+
+    private final byte[] serialData;
+    private final int[] offsets;
+    private final long[] revocationDates;
+    private final byte[] reasons;
+    private final String[] issuerNames;
+    private final int[] issuerRefs;
+
+    private RevokedSerialIndex(byte[] serialData, int[] offsets, long[] revocationDates, byte[] reasons,
+                               String[] issuerNames, int[] issuerRefs) {
+        this.serialData = serialData;
+        this.offsets = offsets;
+        this.revocationDates = revocationDates;
+        this.reasons = reasons;
+        this.issuerNames = issuerNames;
+        this.issuerRefs = issuerRefs;
+    }
+
+    public static RevokedSerialIndex of(X509CRL crl) {
+        Set<? extends X509CRLEntry> entrySet = crl.getRevokedCertificates();
+        if (entrySet == null || entrySet.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<Entry> entryList = new ArrayList<>(entrySet.size());
+        for (X509CRLEntry crlEntry : entrySet) {
+            long revocationDate = (crlEntry.getRevocationDate() == null) ? 0L : crlEntry.getRevocationDate().getTime();
+            // null for entries of the CRL issuer
+            X500Principal certificateIssuer = crlEntry.getCertificateIssuer();
+            entryList.add(new Entry(crlEntry.getSerialNumber(), revocationDate, crlEntry.getRevocationReason(),
+                (certificateIssuer == null) ? null : certificateIssuer.getName()));
+        }
+        return of(entryList);
+    }
+
+    static RevokedSerialIndex of(List<Entry> entryList) {
+
+        List<Entry> sortedList = new ArrayList<>(entryList);
+        Collections.sort(sortedList, (a, b) -> SERIAL_ORDER.compare(a.serialBytes, b.serialBytes));
+
+        int totalLength = 0;
+        for (Entry entry : sortedList) {
+            totalLength += entry.serialBytes.length;
+        }
+
+        byte[] serialData = new byte[totalLength];
+        int[] offsets = new int[sortedList.size() + 1];
+        long[] revocationDates = new long[sortedList.size()];
+        byte[] reasons = new byte[sortedList.size()];
+        Map<String, Integer> issuerMap = new LinkedHashMap<>();
+        int[] issuerRefs = new int[sortedList.size()];
+
+        int pos = 0;
+        for (int i = 0; i < sortedList.size(); i++) {
+            Entry entry = sortedList.get(i);
+            offsets[i] = pos;
+            System.arraycopy(entry.serialBytes, 0, serialData, pos, entry.serialBytes.length);
+            pos += entry.serialBytes.length;
+            revocationDates[i] = entry.revocationDate;
+            reasons[i] = (entry.reason == null) ? NO_REASON : (byte) entry.reason.ordinal();
+            issuerRefs[i] = (entry.certificateIssuer == null) ? CRL_ISSUER :
+                issuerMap.computeIfAbsent(entry.certificateIssuer, k -> issuerMap.size());
+        }
+        offsets[sortedList.size()] = pos;
+
+        return new RevokedSerialIndex(serialData, offsets, revocationDates, reasons,
+            issuerMap.keySet().toArray(new String[0]), issuerMap.isEmpty() ? null : issuerRefs);
+    }
+
+    public int size() {
+        return revocationDates.length;
+    }
+
+    /**
+     * @param serial the serial of a certificate
+     * @return the position of the serial in the index, -1 if not revoked
+     */
+    public int indexOf(BigInteger serial) {
+        byte[] serialBytes = serial.toByteArray();
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareAt(mid, serialBytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * find the entry of a certificate, an indirect CRL may contain the same serial for several issuers
+     *
+     * @param serial the serial of a certificate
+     * @param issuer the issuer of the certificate
+     * @param crlIssuer the issuer of the CRL, the certificate issuer of entries without a 'certificate issuer'
+     * @return the position of the entry in the index, -1 if not revoked
+     */
+    public int indexOf(BigInteger serial, String issuer, String crlIssuer) {
+        int idx = indexOf(serial);
+        if (idx < 0) {
+            return -1;
+        }
+
+        byte[] serialBytes = serial.toByteArray();
+        while (idx > 0 && compareAt(idx - 1, serialBytes) == 0) {
+            idx--;
+        }
+        for (; idx < size() && compareAt(idx, serialBytes) == 0; idx++) {
+            String certificateIssuer = getCertificateIssuer(idx);
+            if (isSameIssuer(issuer, (certificateIssuer == null) ? crlIssuer : certificateIssuer)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param idx position returned by indexOf
+     * @return the certificate issuer of an indirect CRL entry, null for an entry of the CRL issuer
+     */
+    public String getCertificateIssuer(int idx) {
+        return (issuerRefs == null || issuerRefs[idx] == CRL_ISSUER) ? null : issuerNames[issuerRefs[idx]];
+    }
+
+    /**
+     * @param certIssuer the issuer as stored with a certificate, possibly truncated
+     * @param entryIssuer the issuer of a CRL entry
+     * @return true, if both denote the same issuer
+     */
+    static boolean isSameIssuer(String certIssuer, String entryIssuer) {
+        if (certIssuer == null || entryIssuer == null) {
+            return false;
+        }
+        if (certIssuer.equals(entryIssuer)) {
+            return true;
+        }
+        if (certIssuer.length() >= MAX_ISSUER_LENGTH && entryIssuer.startsWith(certIssuer)) {
+            return true;
+        }
+        try {
+            // same name, different encoding
+            return new X500Principal(certIssuer).equals(new X500Principal(entryIssuer));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param idx position returned by indexOf
+     * @return the revocation date in epoch millis, 0 if not present in the CRL
+     */
+    public long getRevocationDate(int idx) {
+        return revocationDates[idx];
+    }
+
+    /**
+     * @param idx position returned by indexOf
+     * @return the revocation reason or null, if not present in the CRL
+     */
+    public CRLReason getRevocationReason(int idx) {
+        return (reasons[idx] == NO_REASON) ? null : CRLReason.values()[reasons[idx]];
+    }
+
+    private int compareAt(int idx, byte[] serialBytes) {
+        int start = offsets[idx];
+        int length = offsets[idx + 1] - start;
+        if (length != serialBytes.length) {
+            return Integer.compare(length, serialBytes.length);
+        }
+        for (int i = 0; i < length; i++) {
+            int cmp = Integer.compare(serialData[start + i] & 0xff, serialBytes[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    static final class Entry {
+        final byte[] serialBytes;
+        final long revocationDate;
+        final CRLReason reason;
+        final String certificateIssuer;
+
+        Entry(BigInteger serial, long revocationDate, CRLReason reason) {
+            this(serial, revocationDate, reason, null);
+        }
+
+        Entry(BigInteger serial, long revocationDate, CRLReason reason, String certificateIssuer) {
+            this.serialBytes = serial.toByteArray();
+            this.revocationDate = revocationDate;
+            this.reason = reason;
+            this.certificateIssuer = certificateIssuer;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.Pipeline;
+
+/**
+ * Per pipeline cache of the SCEP recipient material: the parsed recipient certificate, its decrypted private key
+ * and the certificate chain.
+ *
+ * A single SCEP PKIOperation asks for the recipient, the signer, their keys and the signer chain separately. Without
+ * this cache each of these calls looks up the current recipient certificate, decrypts the private key or walks the
+ * chain again.
+ *
+ * An entry expires with its recipient certificate, so a rollover to a new recipient is picked up on the next request.
+ * Entries are dropped when the pipeline changes and after 'ca3s.scep.recipient.cache.seconds', making a revocation
+ * of the recipient certificate effective.
+ */
+@Service
+public class ScepCryptoContextCache implements ApplicationListener<PipelineChangedEvent> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScepCryptoContextCache.class);
+
+    private final PipelineUtil pipelineUtil;
+    private final CertificateUtil certUtil;
+    private final long validityMillis;
+
+    private final Map<Long, ScepCryptoContext> contextMap = new ConcurrentHashMap<>();
+    private final Map<Long, Object> lockMap = new ConcurrentHashMap<>();
+
+    public ScepCryptoContextCache(PipelineUtil pipelineUtil,
+                                  CertificateUtil certUtil,
+                                  @Value("${ca3s.scep.recipient.cache.seconds:300}") long validitySeconds) {
+        this.pipelineUtil = pipelineUtil;
+        this.certUtil = certUtil;
+        this.validityMillis = validitySeconds * 1000L;
+    }
+
+    /**
+     * get the recipient material of a pipeline, build it if not cached.
+     * Concurrent requests for the same pipeline wait for a single build, so a burst of requests creates at most one
+     * recipient certificate.
+     *
+     * @param pipeline the SCEP pipeline
+     * @param cpUtil used to create a recipient certificate, if there is no valid one
+     * @return the recipient material or null, if there is no recipient certificate for the pipeline
+     */
+    public ScepCryptoContext getContext(final Pipeline pipeline, final CertificateProcessingUtil cpUtil) throws IOException, GeneralSecurityException {
+
+        if (pipeline == null) {
+            throw new GeneralSecurityException("pipeline argument == null!");
+        }
+
+        ScepCryptoContext context = getValidContext(pipeline.getId());
+        if (context != null) {
+            return context;
+        }
+
+        synchronized (lockMap.computeIfAbsent(pipeline.getId(), id -> new Object())) {
+            context = getValidContext(pipeline.getId());
+            if (context != null) {
+                return context;
+            }
+
+            Certificate recipientCert = pipelineUtil.getSCEPRecipientCertificate(pipeline, cpUtil);
+            if (recipientCert == null) {
+                return null;
+            }
+
+            context = buildContext(recipientCert);
+            if (context.getRecipientKey() == null) {
+                LOG.warn("no private key for scep recipient certificate {}, not caching", recipientCert.getId());
+            } else {
+                contextMap.put(pipeline.getId(), context);
+                LOG.debug("scep recipient certificate {} of pipeline {} added to cache", recipientCert.getId(), pipeline.getId());
+            }
+            return context;
+        }
+    }
+
+    public void invalidate(final long pipelineId) {
+        contextMap.remove(pipelineId);
+        LOG.debug("scep recipient of pipeline {} removed from cache", pipelineId);
+    }
+
+    public void invalidateAll() {
+        contextMap.clear();
+    }
+
+    @Override
+    public void onApplicationEvent(PipelineChangedEvent event) {
+        if (event.getPipelineId() == null) {
+            invalidateAll();
+        } else {
+            invalidate(event.getPipelineId());
+        }
+    }
+
+    private ScepCryptoContext getValidContext(final long pipelineId) {
+        ScepCryptoContext context = contextMap.get(pipelineId);
+        if (context != null && context.expiresAt > currentTimeMillis()) {
+            return context;
+        }
+        return null;
+    }
+
+    private ScepCryptoContext buildContext(final Certificate recipientCert) throws GeneralSecurityException {
+
+        X509Certificate recipient = CryptoService.convertPemToCertificate(recipientCert.getContent());
+        PrivateKey recipientKey = certUtil.getPrivateKey(recipientCert);
+
+        List<X509Certificate> chain;
+        try {
+            chain = certUtil.getX509CertificateChainAsList(recipientCert);
+        } catch (GeneralSecurityException e) {
+            LOG.warn("Failed to retrieve chain of scep recipient certificate " + recipientCert.getId(), e);
+            chain = Collections.singletonList(recipient);
+        }
+
+        long expiresAt = Math.min(currentTimeMillis() + validityMillis, recipientCert.getValidTo().toEpochMilli());
+        return new ScepCryptoContext(recipientCert.getId(), recipient, recipientKey, chain, expiresAt);
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * immutable snapshot of the recipient material of a pipeline
+     */
+    public static final class ScepCryptoContext {
+
+        private final long recipientCertId;
+        private final X509Certificate recipient;
+        private final PrivateKey recipientKey;
+        private final List<X509Certificate> certificateChain;
+        private final long expiresAt;
+
+        ScepCryptoContext(long recipientCertId, X509Certificate recipient, PrivateKey recipientKey,
+                          List<X509Certificate> certificateChain, long expiresAt) {
+            this.recipientCertId = recipientCertId;
+            this.recipient = recipient;
+            this.recipientKey = recipientKey;
+            this.certificateChain = Collections.unmodifiableList(new ArrayList<>(certificateChain));
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the id of the Certificate entity of the recipient
+         */
+        public long getRecipientCertId() {
+            return recipientCertId;
+        }
+
+        public X509Certificate getRecipient() {
+            return recipient;
+        }
+
+        public PrivateKey getRecipientKey() {
+            return recipientKey;
+        }
+
+        /**
+         * @return the recipient certificate followed by its issuers
+         */
+        public List<X509Certificate> getCertificateChain() {
+            return certificateChain;
+        }
+
+        /**
+         * @return the issuers of the recipient certificate, without the recipient itself
+         */
+        public X509Certificate[] getSignerCertificateChain() {
+            if (certificateChain.size() < 2) {
+                return new X509Certificate[0];
+            }
+            return certificateChain.subList(1, certificateChain.size()).toArray(new X509Certificate[0]);
+        }
+    }
+}
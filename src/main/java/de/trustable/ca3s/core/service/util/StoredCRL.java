@@ -0,0 +1,238 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.cert.CRLReason;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A CRL held by the {@link CRLStore}: the DER encoding stays in a memory mapped file, only the index of the
+ * revoked serials and some metadata are kept on the heap. Instances are immutable and shared between threads.
+ */
+public final class StoredCRL {
+
+    private final String url;
+    private final String eTag;
+    private final String lastModified;
+    private final String issuer;
+    private final long thisUpdate;
+    private final long nextUpdate;
+    private final long expiresAt;
+    private final BigInteger crlNumber;
+    private final BigInteger baseCrlNumber;
+    private final List<String> deltaUrlList;
+    private final RevokedSerialIndex index;
+    private final ByteBuffer encoded;
+    private final StoredCRL delta;
+
+    StoredCRL(String url, String eTag, String lastModified, String issuer,
+              long thisUpdate, long nextUpdate, long expiresAt,
+              BigInteger crlNumber, BigInteger baseCrlNumber, List<String> deltaUrlList,
+              RevokedSerialIndex index, ByteBuffer encoded, StoredCRL delta) {
+        this.url = url;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.issuer = issuer;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.expiresAt = expiresAt;
+        this.crlNumber = crlNumber;
+        this.baseCrlNumber = baseCrlNumber;
+        this.deltaUrlList = Collections.unmodifiableList(deltaUrlList);
+        this.index = index;
+        this.encoded = encoded.asReadOnlyBuffer();
+        this.delta = delta;
+    }
+
+    StoredCRL withExpiry(String eTag, String lastModified, long expiresAt) {
+        return new StoredCRL(url, eTag, lastModified, issuer, thisUpdate, nextUpdate, expiresAt,
+            crlNumber, baseCrlNumber, deltaUrlList, index, encoded, delta);
+    }
+
+    StoredCRL withDelta(StoredCRL delta) {
+        return new StoredCRL(url, eTag, lastModified, issuer, thisUpdate, nextUpdate, expiresAt,
+            crlNumber, baseCrlNumber, deltaUrlList, index, encoded, delta);
+    }
+
+    /**
+     * check the revocation status of a certificate issued by the CRL issuer, taking a delta CRL into account
+     *
+     * @param serial the serial of the certificate
+     * @return the revocation entry or null, if not revoked
+     */
+    public RevokedEntry findRevoked(BigInteger serial) {
+        return findRevoked(serial, issuer);
+    }
+
+    /**
+     * check the revocation status of a certificate, taking a delta CRL into account
+     *
+     * @param serial the serial of the certificate
+     * @param certIssuer the issuer of the certificate, matched against the CRL issuer or the certificate issuer of an indirect CRL entry
+     * @return the revocation entry or null, if not revoked
+     */
+    public RevokedEntry findRevoked(BigInteger serial, String certIssuer) {
+
+        if (delta != null) {
+            int idx = delta.index.indexOf(serial, certIssuer, delta.issuer);
+            if (idx >= 0) {
+                CRLReason reason = delta.index.getRevocationReason(idx);
+                if (reason == CRLReason.REMOVE_FROM_CRL) {
+                    return null;
+                }
+                return new RevokedEntry(delta.index.getRevocationDate(idx), reason);
+            }
+        }
+
+        int idx = index.indexOf(serial, certIssuer, issuer);
+        if (idx < 0) {
+            return null;
+        }
+        CRLReason reason = index.getRevocationReason(idx);
+        if (reason == CRLReason.REMOVE_FROM_CRL) {
+            return null;
+        }
+        return new RevokedEntry(index.getRevocationDate(idx), reason);
+    }
+
+    /**
+     * @return the expiry of this CRL or the attached delta CRL, whatever comes first
+     */
+    public long getEffectiveExpiresAt() {
+        if (delta == null) {
+            return expiresAt;
+        }
+        return Math.min(expiresAt, delta.expiresAt);
+    }
+
+    /**
+     * @return a stream reading the DER encoded CRL from the mapped file
+     */
+    public InputStream openStream() {
+        return new ByteBufferInputStream(encoded.duplicate());
+    }
+
+    public int getEncodedLength() {
+        return encoded.capacity();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public long getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /**
+     * @return 'next update' as stated in the CRL, 0 if not present
+     */
+    public long getNextUpdate() {
+        return nextUpdate;
+    }
+
+    /**
+     * @return 'next update' limited by the preference 'maxNextUpdatePeriodCRLSec'
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public BigInteger getCrlNumber() {
+        return crlNumber;
+    }
+
+    /**
+     * @return the base CRL number if this is a delta CRL, null otherwise
+     */
+    public BigInteger getBaseCrlNumber() {
+        return baseCrlNumber;
+    }
+
+    public boolean isDelta() {
+        return baseCrlNumber != null;
+    }
+
+    public List<String> getDeltaUrlList() {
+        return deltaUrlList;
+    }
+
+    public RevokedSerialIndex getIndex() {
+        return index;
+    }
+
+    public StoredCRL getDelta() {
+        return delta;
+    }
+
+    public static final class RevokedEntry {
+        private final long revocationDate;
+        private final CRLReason reason;
+
+        RevokedEntry(long revocationDate, CRLReason reason) {
+            this.revocationDate = revocationDate;
+            this.reason = reason;
+        }
+
+        /**
+         * @return the revocation date in epoch millis, 0 if not present in the CRL
+         */
+        public long getRevocationDate() {
+            return revocationDate;
+        }
+
+        /**
+         * @return the revocation reason or null, if not present in the CRL
+         */
+        public CRLReason getReason() {
+            return reason;
+        }
+    }
+
+    static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+    }
+}
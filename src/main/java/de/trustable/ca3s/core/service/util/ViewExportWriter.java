@@ -0,0 +1,116 @@
+package de.trustable.ca3s.core.service.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.opencsv.CSVWriter;
+import com.opencsv.bean.StatefulBeanToCsv;
+import com.opencsv.bean.StatefulBeanToCsvBuilder;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
+import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+
+/**
+ * Writes views row by row as CSV or as newline delimited JSON, optionally gzip compressed.
+ * Nothing but the current row is held in memory.
+ * IO problems are reported as {@link UncheckedIOException}, so the writer can be used as a consumer of a streamed
+ * selection.
+ */
+public final class ViewExportWriter<T> implements Closeable {
+
+    public enum Format {
+        CSV("csv", "text/csv"),
+        NDJSON("ndjson", "application/x-ndjson");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @param format the requested format, 'ndjson' or 'json' for JSON lines, anything else for CSV
+         */
+        public static Format fromParameter(final String format) {
+            if ("ndjson".equalsIgnoreCase(format) || "json".equalsIgnoreCase(format)) {
+                return NDJSON;
+            }
+            return CSV;
+        }
+    }
+
+    private final Format format;
+    private final GZIPOutputStream gzipOutputStream;
+    private final Writer writer;
+    private final StatefulBeanToCsv<T> beanToCsv;
+    private final ObjectWriter objectWriter;
+
+    private long nRows = 0;
+
+    public ViewExportWriter(final OutputStream os, final Format format, final boolean gzip, final ObjectMapper objectMapper) throws IOException {
+        this.format = format;
+        this.gzipOutputStream = gzip ? new GZIPOutputStream(os, 8192) : null;
+        this.writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOutputStream : os, StandardCharsets.UTF_8));
+
+        if (format == Format.CSV) {
+            this.beanToCsv = new StatefulBeanToCsvBuilder<T>(writer)
+                .withSeparator(';')
+                .withQuotechar(CSVWriter.DEFAULT_QUOTE_CHARACTER)
+                .build();
+            this.objectWriter = null;
+        } else {
+            this.beanToCsv = null;
+            this.objectWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+    }
+
+    public void write(final T view) {
+        try {
+            if (format == Format.CSV) {
+                beanToCsv.write(view);
+            } else {
+                objectWriter.writeValue(writer, view);
+                writer.write('\n');
+            }
+            nRows++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
+            throw new IllegalStateException("problem writing csv row " + nRows, e);
+        }
+    }
+
+    public long getRowCount() {
+        return nRows;
+    }
+
+    /**
+     * flush the pending output and complete the compression, the underlying stream is left open
+     */
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+        if (gzipOutputStream != null) {
+            gzipOutputStream.finish();
+        }
+    }
+}
@@ -1,22 +1,32 @@
 package de.trustable.ca3s.core.web.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import de.trustable.ca3s.core.repository.AuditTraceViewRepository;
 import de.trustable.ca3s.core.service.dto.AuditTraceView;
 import de.trustable.ca3s.core.service.dto.CSRView;
+import de.trustable.ca3s.core.service.util.ViewExportWriter;
 import tech.jhipster.web.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for managing {@link CSRView}.
@@ -28,9 +38,15 @@ public class AuditTraceListResource {
     private final Logger log = LoggerFactory.getLogger(AuditTraceListResource.class);
 
     final AuditTraceViewRepository auditTraceViewRepository;
+    final ObjectMapper objectMapper;
+    final long exportTimeoutMillis;
 
-    public AuditTraceListResource(AuditTraceViewRepository auditTraceViewRepository) {
+    public AuditTraceListResource(AuditTraceViewRepository auditTraceViewRepository,
+                                  ObjectMapper objectMapper,
+                                  @Value("${ca3s.ui.export.timeout.seconds:3600}") long exportTimeoutSeconds) {
         this.auditTraceViewRepository = auditTraceViewRepository;
+        this.objectMapper = objectMapper;
+        this.exportTimeoutMillis = exportTimeoutSeconds * 1000L;
     }
 
 
@@ -50,4 +66,35 @@ public class AuditTraceListResource {
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * {@code GET  /auditTraceListExport} : stream all audit traces of the selection, without a row limit.
+     * The columns are selected by the 'filter' parameter, offset and limit are ignored.
+     *
+     * @param format 'csv' (default) or 'ndjson'
+     * @param gzip compress the response
+     * @return the task streaming the selection into the response.
+     */
+    @GetMapping("/auditTraceListExport")
+    @PreAuthorize("isAuthenticated()")
+    public WebAsyncTask<Void> exportAuditTraces(@RequestParam(name = "format", defaultValue = "csv") String format,
+                                                @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+                                                HttpServletRequest request,
+                                                HttpServletResponse response) {
+        log.debug("REST request to export AuditTraceViews");
+
+        // the request is not available any more when the body gets written
+        Map<String, String[]> paramMap = new HashMap<>(request.getParameterMap());
+        ViewExportWriter.Format exportFormat = ViewExportWriter.Format.fromParameter(format);
+
+        StreamingResponseBody body = outputStream -> {
+            try (ViewExportWriter<AuditTraceView> exportWriter = new ViewExportWriter<>(outputStream, exportFormat, gzip, objectMapper)) {
+                auditTraceViewRepository.streamSelection(paramMap, exportWriter::write);
+                log.debug("exported {} audit traces", exportWriter.getRowCount());
+            }
+        };
+
+        return CertificateListExportResource.buildExportTask(exportTimeoutMillis, response,
+            CertificateListExportResource.buildExportHeaders("auditTraces", exportFormat, gzip), body);
+    }
+
 }
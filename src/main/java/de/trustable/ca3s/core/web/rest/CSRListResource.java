@@ -6,14 +6,17 @@ import com.opencsv.bean.StatefulBeanToCsv;
 import com.opencsv.bean.StatefulBeanToCsvBuilder;
 import com.opencsv.exceptions.CsvDataTypeMismatchException;
 import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import de.trustable.ca3s.core.domain.User;
 import de.trustable.ca3s.core.repository.CSRViewRepository;
 import de.trustable.ca3s.core.repository.PipelineAttributeRepository;
 import de.trustable.ca3s.core.repository.UserRepository;
 import de.trustable.ca3s.core.service.dto.CSRView;
 import de.trustable.ca3s.core.service.util.PipelineUtil;
+import de.trustable.ca3s.core.service.util.ViewExportWriter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.repository.query.Param;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import tech.jhipster.web.util.PaginationUtil;
@@ -22,13 +25,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.*;
@@ -45,17 +54,23 @@ public class CSRListResource {
     private final CSRViewRepository csrViewRepository;
     private final UserRepository userRepository;
     private final PipelineAttributeRepository pipelineAttributeRepository;
+    private final ObjectMapper objectMapper;
     final private int maxCSVRows;
+    final private long exportTimeoutMillis;
 
     public CSRListResource(CSRViewRepository csrViewRepository,
                            UserRepository userRepository,
                            PipelineAttributeRepository pipelineAttributeRepository,
-                           @Value("${ca3s.ui.rows.max:1000}") int maxCSVRows) {
+                           ObjectMapper objectMapper,
+                           @Value("${ca3s.ui.rows.max:1000}") int maxCSVRows,
+                           @Value("${ca3s.ui.export.timeout.seconds:3600}") long exportTimeoutSeconds) {
 
         this.csrViewRepository = csrViewRepository;
         this.userRepository = userRepository;
         this.pipelineAttributeRepository = pipelineAttributeRepository;
+        this.objectMapper = objectMapper;
         this.maxCSVRows = maxCSVRows;
+        this.exportTimeoutMillis = exportTimeoutSeconds * 1000L;
     }
 
 
@@ -159,4 +174,50 @@ public class CSRListResource {
         return ResponseEntity.ok().contentType(CertificateListResource.TEXT_CSV_TYPE).body(writer.toString());
     }
 
+    /**
+     * {@code GET  /csrListExport} : stream all CSRs of the selection, without a row limit.
+     * The columns are selected by the 'filter' parameter, offset and limit are ignored.
+     *
+     * @param format 'csv' (default) or 'ndjson'
+     * @param gzip compress the response
+     * @return the task streaming the selection into the response.
+     */
+    @GetMapping("/csrListExport")
+    @PreAuthorize("isAuthenticated()")
+    public WebAsyncTask<Void> exportCsrs(@RequestParam(name = "format", defaultValue = "csv") String format,
+                                         @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+                                         HttpServletRequest request,
+                                         HttpServletResponse response) {
+        log.debug("REST request to export CSRViews");
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String userName = auth.getName();
+        if( userName == null) {
+            log.warn("Current user == null!");
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        Optional<User> optCurrentUser = userRepository.findOneByLogin(userName);
+        if(!optCurrentUser.isPresent()) {
+            log.warn("Name of ra officer '{}' not found as user", userName);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        List<Long> pipelineIdList = pipelineAttributeRepository.findDistinctPipelineByNameAndValue(PipelineUtil.DOMAIN_RA_OFFICER, "" + optCurrentUser.get().getId());
+
+        // the request is not available any more when the body gets written
+        Map<String, String[]> paramMap = new HashMap<>(request.getParameterMap());
+        ViewExportWriter.Format exportFormat = ViewExportWriter.Format.fromParameter(format);
+
+        StreamingResponseBody body = outputStream -> {
+            try (ViewExportWriter<CSRView> exportWriter = new ViewExportWriter<>(outputStream, exportFormat, gzip, objectMapper)) {
+                csrViewRepository.streamSelection(paramMap, pipelineIdList, exportWriter::write);
+                log.debug("exported {} csrs", exportWriter.getRowCount());
+            }
+        };
+
+        return CertificateListExportResource.buildExportTask(exportTimeoutMillis, response,
+            CertificateListExportResource.buildExportHeaders("csrs", exportFormat, gzip), body);
+    }
+
 }
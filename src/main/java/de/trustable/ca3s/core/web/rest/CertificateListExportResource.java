@@ -0,0 +1,113 @@
+package de.trustable.ca3s.core.web.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.trustable.ca3s.core.repository.CertificateViewRepository;
+import de.trustable.ca3s.core.service.dto.CertificateView;
+import de.trustable.ca3s.core.service.util.ViewExportWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * REST controller for the export of {@link CertificateView} selections. In contrast to the lists of
+ * {@link CertificateListResource} the export is not limited in size, so it's available for authenticated users only.
+ */
+@RestController
+@RequestMapping("/api")
+public class CertificateListExportResource {
+
+    private final Logger log = LoggerFactory.getLogger(CertificateListExportResource.class);
+
+    final private CertificateViewRepository certificateViewRepository;
+    final private ObjectMapper objectMapper;
+    final private long exportTimeoutMillis;
+
+    public CertificateListExportResource(CertificateViewRepository certificateViewRepository,
+                                         ObjectMapper objectMapper,
+                                         @Value("${ca3s.ui.export.timeout.seconds:3600}") long exportTimeoutSeconds) {
+        this.certificateViewRepository = certificateViewRepository;
+        this.objectMapper = objectMapper;
+        this.exportTimeoutMillis = exportTimeoutSeconds * 1000L;
+    }
+
+    /**
+     * {@code GET  /certificateListExport} : stream all certificates of the selection, without a row limit.
+     * The columns are selected by the 'filter' parameter, offset and limit are ignored.
+     *
+     * @param format 'csv' (default) or 'ndjson'
+     * @param gzip compress the response
+     * @return the task streaming the selection into the response.
+     */
+    @GetMapping("/certificateListExport")
+    @PreAuthorize("isAuthenticated()")
+    public WebAsyncTask<Void> exportCertificates(@RequestParam(name = "format", defaultValue = "csv") String format,
+                                                 @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+                                                 HttpServletRequest request,
+                                                 HttpServletResponse response) {
+        log.debug("REST request to export CertificateViews");
+
+        // the request is not available any more when the body gets written
+        Map<String, String[]> paramMap = new HashMap<>(request.getParameterMap());
+        ViewExportWriter.Format exportFormat = ViewExportWriter.Format.fromParameter(format);
+
+        StreamingResponseBody body = outputStream -> {
+            try (ViewExportWriter<CertificateView> exportWriter = new ViewExportWriter<>(outputStream, exportFormat, gzip, objectMapper)) {
+                certificateViewRepository.streamSelection(paramMap, exportWriter::write);
+                log.debug("exported {} certificates", exportWriter.getRowCount());
+            }
+        };
+
+        return buildExportTask(exportTimeoutMillis, response, buildExportHeaders("certificates", exportFormat, gzip), body);
+    }
+
+    /**
+     * @param baseName the name of the download file, without extension
+     * @return content type and disposition of an export
+     */
+    static HttpHeaders buildExportHeaders(final String baseName, final ViewExportWriter.Format format, final boolean gzip) {
+        HttpHeaders headers = new HttpHeaders();
+        String filename = baseName + "." + format.getExtension();
+        if (gzip) {
+            headers.setContentType(new MediaType("application", "gzip"));
+            filename += ".gz";
+        } else {
+            headers.setContentType(MediaType.parseMediaType(format.getContentType()));
+        }
+        headers.setContentDisposition(ContentDisposition.attachment().filename(filename).build());
+        return headers;
+    }
+
+    /**
+     * The body of an export is written by an async task with its own timeout, so 'spring.mvc.async.request-timeout'
+     * stays in effect for all other async requests.
+     *
+     * @param timeoutMillis the maximum duration of the export
+     * @return the task writing the body into the response
+     */
+    static WebAsyncTask<Void> buildExportTask(final long timeoutMillis,
+                                              final HttpServletResponse response,
+                                              final HttpHeaders headers,
+                                              final StreamingResponseBody body) {
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        return new WebAsyncTask<>(timeoutMillis, () -> {
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+}
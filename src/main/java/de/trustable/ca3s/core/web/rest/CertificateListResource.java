@@ -117,14 +117,12 @@ public class CertificateListResource {
 
     @NotNull
     private List<CertificateView> getFullCertificateViews(Page<CertificateView> page) {
-        List<CertificateView> cvList = new ArrayList<>();
+        List<Long> idList = new ArrayList<>(page.getContent().size());
         for( CertificateView cv: page.getContent()){
-            Optional<CertificateView> optionalCertificateView = certificateViewRepository.findbyCertificateId(cv.getId());
-            if(optionalCertificateView.isPresent()){
-                cvList.add(optionalCertificateView.get());
-                log.debug("returning certificate #{}", cv.getId());
-            }
+            idList.add(cv.getId());
         }
+        List<CertificateView> cvList = certificateViewRepository.findByCertificateIds(idList);
+        log.debug("returning {} certificates", cvList.size());
         return cvList;
     }
 
@@ -2,15 +2,14 @@ package de.trustable.ca3s.core.web.rest.acme;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
-import java.io.IOException;
 import java.net.URI;
 import java.security.SecureRandom;
-import java.sql.Date;
-import java.util.Calendar;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import de.trustable.ca3s.core.service.util.PipelineResolver;
+import de.trustable.ca3s.core.service.util.PipelineSnapshot;
 import de.trustable.ca3s.core.service.util.PipelineUtil;
 import org.jose4j.jwt.consumer.InvalidJwtException;
 import org.jose4j.jwt.consumer.JwtContext;
@@ -30,19 +29,18 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import de.trustable.ca3s.core.domain.ACMEAccount;
 import de.trustable.ca3s.core.domain.AcmeContact;
-import de.trustable.ca3s.core.domain.AcmeNonce;
 import de.trustable.ca3s.core.domain.Pipeline;
 import de.trustable.ca3s.core.domain.enumeration.AccountStatus;
 import de.trustable.ca3s.core.domain.enumeration.PipelineType;
 import de.trustable.ca3s.core.repository.ACMEAccountRepository;
 import de.trustable.ca3s.core.repository.AcmeContactRepository;
-import de.trustable.ca3s.core.repository.AcmeNonceRepository;
 import de.trustable.ca3s.core.repository.PipelineRepository;
 import de.trustable.ca3s.core.service.dto.acme.AccountRequest;
 import de.trustable.ca3s.core.service.dto.acme.problem.AcmeProblemException;
 import de.trustable.ca3s.core.service.dto.acme.problem.ProblemDetail;
 import de.trustable.ca3s.core.service.util.ACMEUtil;
-import de.trustable.ca3s.core.service.util.DateUtil;
+import de.trustable.ca3s.core.service.util.AcmeAccountKeyCache;
+import de.trustable.ca3s.core.service.util.AcmeNonceStore;
 import de.trustable.ca3s.core.service.util.JwtUtil;
 import de.trustable.util.CryptoUtil;
 
@@ -75,7 +73,6 @@ public class ACMEController {
 	public static final MediaType APPLICATION_PEM_FILE = MediaType.parseMediaType(APPLICATION_PEM_FILE_VALUE);
 	public static final MediaType APPLICATION_PKCS12 = MediaType.parseMediaType(APPLICATION_PKCS12_VALUE);
 
-	public static int DEFAULT_NONCE_VALID_DAYS = 1;
 	public static final String REPLAY_NONCE_HEADER = "Replay-Nonce";
 
 	static final String GENERAL_URL_PREFIX = "/acme/{realm}";
@@ -118,7 +115,10 @@ public class ACMEController {
 	CryptoUtil cryptoUtil;
 
 	@Autowired
-	AcmeNonceRepository nonceRepository;
+	AcmeNonceStore nonceStore;
+
+	@Autowired
+	AcmeAccountKeyCache accountKeyCache;
 
 	@Autowired
 	ACMEAccountRepository acctRepository;
@@ -132,6 +132,9 @@ public class ACMEController {
     @Autowired
     private PipelineUtil pipelineUtil;
 
+	@Autowired
+	PipelineResolver pipelineResolver;
+
     public UriComponentsBuilder newAuthorizationResourceUriBuilderFrom(
 			final UriComponentsBuilder uriComponentsBuilder) {
 		return buildUrlFrom(uriComponentsBuilder, NEW_AUTHORIZATION_RESOURCE_MAPPING);
@@ -209,11 +212,21 @@ public class ACMEController {
 	 * get the pipeline for a given realm
 	 *
 	 * @param realm
-	 * @return
+	 * @return a lazy reference to the pipeline entity
 	 */
 	public Pipeline getPipelineForRealm(final String realm) {
+		return pipeRepo.getOne(getPipelineSnapshotForRealm(realm).getId());
+	}
 
-		List<Pipeline> pipelineList = pipeRepo.findActiveByTypeUrl(PipelineType.ACME, realm);
+	/**
+	 * get the cached pipeline snapshot for a given realm
+	 *
+	 * @param realm
+	 * @return
+	 */
+	public PipelineSnapshot getPipelineSnapshotForRealm(final String realm) {
+
+		List<PipelineSnapshot> pipelineList = pipelineResolver.getActivePipelines(PipelineType.ACME, realm);
 
 		if(pipelineList.isEmpty()) {
 			LOG.warn("realm {} is not known", realm);
@@ -307,30 +320,29 @@ public class ACMEController {
 				throw new AccountDoesNotExistException(accountId);
 			}
 
-			List<ACMEAccount> accListExisting = acctRepository.findByAccountId(accountId.longValue());
-			if (accListExisting.isEmpty()) {
+			AcmeAccountKeyCache.AccountKey accountKey = accountKeyCache.getAccountKey(accountId, webStruct.getAlgorithmHeaderValue());
+			if (accountKey == null) {
 				LOG.error("Missing required key ID");
 				throw new AccountDoesNotExistException(accountId);
 			}
 
-			ACMEAccount acctDao = accListExisting.get(0);
-			LOG.debug("request signature identifies account id {} ", acctDao.getAccountId());
+			LOG.debug("request signature identifies account id {} ", accountKey.getAccountId());
 
-			if ((realm != null) && !realm.equals(acctDao.getRealm())) {
-				LOG.warn("Account {} of {} does not match realm {}", acctDao.getAccountId(), acctDao.getRealm(), realm);
+			if ((realm != null) && !realm.equals(accountKey.getRealm())) {
+				LOG.warn("Account {} of {} does not match realm {}", accountKey.getAccountId(), accountKey.getRealm(), realm);
 				final ProblemDetail problem = new ProblemDetail(ACMEUtil.ACCOUNT_DOES_NOT_EXIST, "Account not found",
 						BAD_REQUEST, "", ACMEController.NO_INSTANCE);
 				throw new AcmeProblemException(problem);
 			}
 
-			if (AccountStatus.DEACTIVATED.equals(acctDao.getStatus())) {
-				LOG.warn("Account {} is deactivated", acctDao.getAccountId());
+			if (AccountStatus.DEACTIVATED.equals(accountKey.getStatus())) {
+				LOG.warn("Account {} is deactivated", accountKey.getAccountId());
 				final ProblemDetail problem = new ProblemDetail(ACMEUtil.ACCOUNT_DEACTIVATED, "Account deactivated",
 						BAD_REQUEST, "", ACMEController.NO_INSTANCE);
 				throw new AcmeProblemException(problem);
 			}
 
-            Pipeline pipeline = getPipelineForRealm(realm);
+            PipelineSnapshot pipeline = getPipelineSnapshotForRealm(realm);
 
             if(!pipeline.isActive()) {
                 String msg = "Deactivated pipeline '"+pipeline.getName()+"' found for request realm '"+realm+"'" ;
@@ -340,11 +352,12 @@ public class ACMEController {
                 throw new AcmeProblemException(problemDetail);
             }
 
-            jwtUtil.validateSignature(context, acctDao.getPublicKey(), acctDao.getAccountId());
+            jwtUtil.validateSignature(context, accountKey.getPublicKey(), accountKey.getVerifier(), accountKey.getAccountId());
 
-			return acctDao;
+			// lazy reference, the account is loaded only if the caller accesses it
+			return acctRepository.getOne(accountKey.getId());
 
-		} catch (IOException | JoseException | InvalidJwtException e) {
+		} catch (JoseException | InvalidJwtException e) {
 
 			LOG.debug("Problem processing JWT payload for Account ", e);
 			final ProblemDetail problem = new ProblemDetail(ACMEUtil.MALFORMED, "JWT validation problem", BAD_REQUEST,
@@ -361,22 +374,17 @@ public class ACMEController {
 	 */
 	protected void checkNonce(JsonWebStructure webStruct) throws JoseException, AcmeProblemException {
 		String reqNonce = jwtUtil.getNonce(webStruct);
-		List<AcmeNonce> nonceList = nonceRepository.findByNonceValue(reqNonce);
-		if (nonceList.isEmpty()) {
-			LOG.debug("Nonce {} not found in database", reqNonce);
+		if (!nonceStore.consumeNonce(reqNonce)) {
+			LOG.debug("Nonce {} not known", reqNonce);
 			final ProblemDetail problem = new ProblemDetail(ACMEUtil.BAD_NONCE, "Nonce not known.", BAD_REQUEST,
 					NO_DETAIL, NO_INSTANCE);
 			throw new AcmeProblemException(problem);
-		} else {
-			nonceRepository.deleteAll(nonceList);
-			LOG.debug("Nonce found ... and deleted");
 		}
 	}
 
 	protected HttpHeaders buildNonceHeader() {
 		final HttpHeaders additionalHeaders = new HttpHeaders();
-		AcmeNonce nonce = getNewNonce();
-		additionalHeaders.set(REPLAY_NONCE_HEADER, nonce.getNonceValue());
+		additionalHeaders.set(REPLAY_NONCE_HEADER, getNewNonce());
 		return additionalHeaders;
 	}
 
@@ -392,22 +400,8 @@ public class ACMEController {
 		return ResponseEntity.status(e.getProblem().getStatus()).headers(problemHeaders).body(e.getProblem());
 	}
 
-	protected AcmeNonce getNewNonce() {
-
-		AcmeNonce nonce = new AcmeNonce();
-
-		String nonceRaw = getBase64UrlEncodedRandom(16);
-		nonce.setNonceValue(nonceRaw.split("=")[0]);
-
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.DATE, DEFAULT_NONCE_VALID_DAYS); // minus number would decrement the days
-
-		nonce.setExpiresAt(DateUtil.asInstant(new Date(cal.getTimeInMillis())));
-		nonceRepository.save(nonce);
-
-		LOG.debug("New Nonce {} created", nonce.getNonceValue());
-
-		return nonce;
+	protected String getNewNonce() {
+		return nonceStore.createNonce();
 	}
 
 	protected String getRandomChallenge() {
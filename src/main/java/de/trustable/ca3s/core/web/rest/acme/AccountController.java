@@ -239,6 +239,7 @@ public class AccountController extends ACMEController {
 			accountDao.setPublicKeyHash(thumbPrint);
 
 			acctRepository.save(accountDao);
+			accountKeyCache.invalidate(accountDao.getAccountId());
 
 			LOG.debug("account {} has thumbprint {}", accountDao.getAccountId(), thumbPrint);
 
@@ -366,6 +367,7 @@ Link: <https://example.com/acme/acct/evOfKhNU60wg/orders?cursor=2>;rel="next"
             contactsFromRequest(acctDao, updateAccountReq);
 
             acctRepository.save(acctDao);
+            accountKeyCache.invalidate(acctDao.getAccountId());
 
             AccountResponse accResp = new AccountResponse(acctDao, fromCurrentRequestUri());
 
@@ -39,7 +39,10 @@ import de.trustable.ca3s.core.service.dto.acme.ChallengeResponse;
 import de.trustable.ca3s.core.service.dto.acme.problem.AcmeProblemException;
 import de.trustable.ca3s.core.service.dto.acme.problem.ProblemDetail;
 import de.trustable.ca3s.core.service.util.ACMEUtil;
+import de.trustable.ca3s.core.service.util.AcmeAuthorizationReuseIndex;
+import de.trustable.ca3s.core.service.util.AcmeChallengeValidationExecutor;
 import de.trustable.ca3s.core.service.util.PreferenceUtil;
+import de.trustable.ca3s.core.service.util.TransactionHandler;
 import org.bouncycastle.asn1.ASN1OctetString;
 import org.bouncycastle.asn1.x509.GeneralName;
 import org.jose4j.jwt.consumer.JwtContext;
@@ -110,18 +113,38 @@ public class ChallengeController extends ACMEController {
 
     private final AuditService auditService;
 
+    private final AcmeChallengeValidationExecutor validationExecutor;
+
+    private final TransactionHandler transactionHandler;
+
+    private final AcmeAuthorizationReuseIndex authorizationReuseIndex;
+
+    private final boolean asyncValidation;
+
+    private final int retryAfterSeconds;
+
     public ChallengeController(AcmeChallengeRepository challengeRepository,
                                AcmeOrderRepository orderRepository,
                                PreferenceUtil preferenceUtil,
                                @Value("${ca3s.dns.server:}") String resolverHost,
                                @Value("${ca3s.dns.port:53}") int resolverPort,
-                               AuditService auditService) throws UnknownHostException {
+                               AuditService auditService,
+                               AcmeChallengeValidationExecutor validationExecutor,
+                               TransactionHandler transactionHandler,
+                               AcmeAuthorizationReuseIndex authorizationReuseIndex,
+                               @Value("${ca3s.acme.challenge.validation.async:true}") boolean asyncValidation,
+                               @Value("${ca3s.acme.challenge.retryAfter:2}") int retryAfterSeconds) throws UnknownHostException {
         this.challengeRepository = challengeRepository;
         this.orderRepository = orderRepository;
         this.preferenceUtil = preferenceUtil;
 
         this.dnsResolver = new SimpleResolver(resolverHost);
         this.auditService = auditService;
+        this.validationExecutor = validationExecutor;
+        this.transactionHandler = transactionHandler;
+        this.authorizationReuseIndex = authorizationReuseIndex;
+        this.asyncValidation = asyncValidation;
+        this.retryAfterSeconds = retryAfterSeconds;
         this.dnsResolver.setPort(resolverPort);
         LOG.info("Applying default DNS resolver {}", this.dnsResolver.getAddress());
     }
@@ -186,14 +209,12 @@ public class ChallengeController extends ACMEController {
                     throw new AcmeProblemException(problem);
                 }
 
-                boolean solved = isChallengeSolved(challengeDao);
+                startValidation(challengeDao);
 
                 ChallengeResponse challenge = buildChallengeResponse(challengeDao);
 
-                if( solved) {
-                    LOG.debug("validation of challenge{} of type '{}' succeeded", challengeId, challengeDao.getType());
-                }else {
-                    LOG.warn("validation of challenge{} of type '{}' failed", challengeId, challengeDao.getType());
+                if( challengeDao.getStatus() == ChallengeStatus.PROCESSING) {
+                    additionalHeaders.set(HttpHeaders.RETRY_AFTER, Integer.toString(retryAfterSeconds));
                 }
 
                 URI authUri = locationUriOfAuthorization(challengeDao.getAcmeAuthorization().getAcmeAuthorizationId(), fromCurrentRequestUri());
@@ -206,51 +227,170 @@ public class ChallengeController extends ACMEController {
         }
     }
 
+    /**
+     * move a pending challenge to 'processing' and hand the validation over to the validation executor.
+     * The validation starts after the current transaction is committed, the client polls for the result.
+     * If asynchronous validation is disabled, the challenge is validated immediately.
+     *
+     * @param challengeDao the challenge to be validated
+     */
+    void startValidation(AcmeChallenge challengeDao) {
+
+        if( !asyncValidation) {
+            if( isChallengeSolved(challengeDao)) {
+                LOG.debug("validation of challenge {} of type '{}' succeeded", challengeDao.getId(), challengeDao.getType());
+            }else {
+                LOG.warn("validation of challenge {} of type '{}' failed", challengeDao.getId(), challengeDao.getType());
+            }
+            return;
+        }
+
+        ChallengeStatus status = challengeDao.getStatus();
+        if( status == ChallengeStatus.PROCESSING && validationExecutor.isInFlight(challengeDao.getId())) {
+            LOG.debug("validation of challenge {} already running", challengeDao.getId());
+            return;
+        }
+        if( status != ChallengeStatus.PENDING && status != ChallengeStatus.PROCESSING) {
+            LOG.debug("challenge {} in state '{}', no validation required", challengeDao.getId(), status);
+            return;
+        }
+
+        final long challengeId = challengeDao.getId();
+        AcmeChallengeValidationExecutor.SubmitResult submitResult = validationExecutor.submit(challengeId,
+            challengeDao.getType(),
+            getValidationHost(challengeDao),
+            () -> validateChallenge(challengeId));
+
+        if( submitResult == AcmeChallengeValidationExecutor.SubmitResult.HOST_LIMIT_EXCEEDED ||
+            submitResult == AcmeChallengeValidationExecutor.SubmitResult.QUEUE_FULL) {
+            final ProblemDetail problem = new ProblemDetail(ACMEUtil.RATE_LIMITED, "Too many challenge validations",
+                HttpStatus.TOO_MANY_REQUESTS, "retry later", ACMEController.NO_INSTANCE);
+            throw new AcmeProblemException(problem);
+        }
+
+        if( status != ChallengeStatus.PROCESSING) {
+            challengeDao.setStatus(ChallengeStatus.PROCESSING);
+            challengeRepository.save(challengeDao);
+        }
+        LOG.debug("validation of challenge {} of type '{}' started", challengeId, challengeDao.getType());
+    }
+
+    /**
+     * @param challengeDao the challenge to be validated
+     * @return the host contacted by the validation: the DNS resolver for DNS-01, the identifier's host otherwise
+     */
+    String getValidationHost(AcmeChallenge challengeDao) {
+        if( AcmeChallenge.CHALLENGE_TYPE_DNS_01.equals(challengeDao.getType())) {
+            return "dns:" + dnsResolver.getAddress();
+        }
+        return challengeDao.getAcmeAuthorization().getValue();
+    }
+
+    /**
+     * validate a challenge in the context of the validation executor. The database is accessed in short
+     * transactions before and after the network calls only.
+     *
+     * @param challengeId the id of the challenge to be validated
+     * @return the new state of the challenge
+     */
+    ChallengeStatus validateChallenge(final long challengeId) {
+
+        AcmeChallenge challengeDao = transactionHandler.runInNewTransaction(() -> {
+            Optional<AcmeChallenge> challengeOpt = challengeRepository.findById(challengeId);
+            if(!challengeOpt.isPresent()) {
+                return null;
+            }
+            AcmeChallenge chall = challengeOpt.get();
+            // initialize all references required for the validation
+            chall.getAcmeAuthorization().getOrder().getAccount().getPublicKeyHash();
+            return chall;
+        });
+
+        if( challengeDao == null) {
+            LOG.info("challenge {} disappeared before validation", challengeId);
+            return null;
+        }
+
+        ChallengeStatus checkedState;
+        try {
+            checkedState = checkChallenge(challengeDao);
+        } catch (RuntimeException re) {
+            LOG.warn("problem checking challenge {}: {}", challengeId, re.getMessage());
+            checkedState = null;
+        }
+        final ChallengeStatus newChallengeState = checkedState;
+
+        transactionHandler.runInNewTransaction(() -> {
+            challengeRepository.findById(challengeId).ifPresent(chall -> {
+                if( chall.getStatus() == ChallengeStatus.PROCESSING ) {
+                    applyChallengeState(chall, newChallengeState == null ? ChallengeStatus.PENDING : newChallengeState);
+                }
+                alignOrderState(chall.getAcmeAuthorization().getOrder());
+            });
+            return null;
+        });
+
+        if( newChallengeState == ChallengeStatus.VALID) {
+            LOG.debug("validation of challenge {} of type '{}' succeeded", challengeId, challengeDao.getType());
+        }else {
+            LOG.warn("validation of challenge {} of type '{}' failed", challengeId, challengeDao.getType());
+        }
+        return newChallengeState;
+    }
+
     public boolean isChallengeSolved(AcmeChallenge challengeDao) {
 
+        if( challengeDao.getStatus() == ChallengeStatus.PROCESSING) {
+            LOG.debug( "challenge {} currently processed, no additional check", challengeDao.getId());
+            return false;
+        }
+
+        ChallengeStatus newChallengeState = checkChallenge(challengeDao);
+
+        if( newChallengeState != null) {
+            applyChallengeState(challengeDao, newChallengeState);
+        }
+
+        alignOrderState(challengeDao.getAcmeAuthorization().getOrder());
+
+        return newChallengeState == ChallengeStatus.VALID;
+    }
+
+    /**
+     * check the challenge by the type specific means
+     *
+     * @param challengeDao the challenge to be checked
+     * @return VALID if solved, PENDING if not (yet) solved, null for unknown challenge types
+     */
+    ChallengeStatus checkChallenge(AcmeChallenge challengeDao) {
+
         LOG.debug( "checking challenge {}", challengeDao.getId());
 
-        boolean solved = false;
-        ChallengeStatus newChallengeState = null;
         if( AcmeChallenge.CHALLENGE_TYPE_HTTP_01.equals(challengeDao.getType())) {
-            if (checkChallengeHttp(challengeDao)) {
-                newChallengeState = ChallengeStatus.VALID;
-                solved = true;
-            } else {
-                newChallengeState = ChallengeStatus.PENDING;
-            }
+            return checkChallengeHttp(challengeDao) ? ChallengeStatus.VALID : ChallengeStatus.PENDING;
         }else if( AcmeChallenge.CHALLENGE_TYPE_DNS_01.equals(challengeDao.getType())){
-            if (checkChallengeDNS(challengeDao)) {
-                newChallengeState = ChallengeStatus.VALID;
-                solved = true;
-            } else {
-                newChallengeState = ChallengeStatus.PENDING;
-            }
+            return checkChallengeDNS(challengeDao) ? ChallengeStatus.VALID : ChallengeStatus.PENDING;
         }else if( AcmeChallenge.CHALLENGE_TYPE_ALPN_01.equals(challengeDao.getType())){
-            if (checkChallengeALPN(challengeDao)) {
-                newChallengeState = ChallengeStatus.VALID;
-                solved = true;
-            } else {
-                newChallengeState = ChallengeStatus.PENDING;
-            }
-        }else{
-            LOG.warn("Unexpected type '{}' of challenge{}", challengeDao.getType(), challengeDao.getId());
+            return checkChallengeALPN(challengeDao) ? ChallengeStatus.VALID : ChallengeStatus.PENDING;
         }
 
-        if( newChallengeState != null) {
-            ChallengeStatus oldChallengeState = challengeDao.getStatus();
-            if(!oldChallengeState.equals(newChallengeState)) {
-                challengeDao.setStatus(newChallengeState);
-                challengeDao.setValidated(Instant.now());
-                challengeRepository.save(challengeDao);
+        LOG.warn("Unexpected type '{}' of challenge{}", challengeDao.getType(), challengeDao.getId());
+        return null;
+    }
 
-                LOG.debug("{} challengeDao set to '{}' at {}", challengeDao.getType(), challengeDao.getStatus().toString(), challengeDao.getValidated());
-            }
-        }
+    private void applyChallengeState(AcmeChallenge challengeDao, ChallengeStatus newChallengeState) {
+        ChallengeStatus oldChallengeState = challengeDao.getStatus();
+        if(!oldChallengeState.equals(newChallengeState)) {
+            challengeDao.setStatus(newChallengeState);
+            challengeDao.setValidated(Instant.now());
+            challengeRepository.save(challengeDao);
 
-        alignOrderState(challengeDao.getAcmeAuthorization().getOrder());
+            if( newChallengeState == ChallengeStatus.VALID) {
+                authorizationReuseIndex.register(challengeDao);
+            }
 
-        return solved;
+            LOG.debug("{} challengeDao set to '{}' at {}", challengeDao.getType(), challengeDao.getStatus().toString(), challengeDao.getValidated());
+        }
     }
 
     void alignOrderState(AcmeOrder orderDao){
@@ -138,7 +138,7 @@ public class DirectoryController extends ACMEController {
 	public @ResponseBody DirectoryResponse getDirectory(@PathVariable final String realm) {
 
 		// check for existence of a pipeline for the realm
-		getPipelineForRealm(realm);
+		getPipelineSnapshotForRealm(realm);
 
 		DirectoryResponse resp = new DirectoryResponse();
 
@@ -31,25 +31,17 @@ import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static org.springframework.web.bind.annotation.RequestMethod.HEAD;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 
-import java.util.List;
-
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
 
-import de.trustable.ca3s.core.domain.AcmeNonce;
-
 
 @Controller
 @RequestMapping("/acme/{realm}/newNonce")
 /**
- * Produces <a href="https://de.wikipedia.org/wiki/Nonce">Nonces</a> containing
- * 16 random bytes followed by 8 bytes from epoch seconds.
+ * Produces <a href="https://de.wikipedia.org/wiki/Nonce">Nonces</a> provided by the configured AcmeNonceStore.
  */
 public class NewNonceController extends ACMEController {
 
@@ -61,29 +53,8 @@ public class NewNonceController extends ACMEController {
 	public ResponseEntity<String> viaGet() {
 		LOG.info("New NONCE requested");
 
-		AcmeNonce nonce = getNewNonce();
-
-		return ResponseEntity.noContent().header(REPLAY_NONCE_HEADER, nonce.getNonceValue())
+		return ResponseEntity.noContent().header(REPLAY_NONCE_HEADER, getNewNonce())
 				.cacheControl(noStore()).build();
 	}
 
-	
-	@Transactional(propagation = Propagation.REQUIRES_NEW)
-	public void cleanupNonces() {
-		long startTime = System.currentTimeMillis();
-		List<AcmeNonce> expiredNonceList = nonceRepository.findByNonceExpiryDate(new java.util.Date());
-		if(expiredNonceList.isEmpty()) {
-			return;
-		}
-		
-		LOG.debug("CleanupScheduler.cleanupNonce called ...");
-		for (AcmeNonce nonce : expiredNonceList) {
-			LOG.debug("cleanupNonce {} deleting", nonce.getNonceValue());
-			
-			nonceRepository.delete(nonce);
-		}
-		
-		LOG.debug("CleanupScheduler.cleanupNonce finishes in {} ms", System.currentTimeMillis() - startTime);
-	}
-
 }
@@ -26,6 +26,7 @@
 
 package de.trustable.ca3s.core.web.rest.acme;
 
+import static de.trustable.ca3s.core.service.util.PipelineUtil.ACME_AUTHORIZATION_REUSE_SECONDS;
 import static de.trustable.ca3s.core.service.util.PipelineUtil.ACME_ORDER_VALIDITY_SECONDS;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
@@ -41,10 +42,13 @@ import java.util.Set;
 
 import de.trustable.ca3s.core.domain.*;
 import de.trustable.ca3s.core.repository.*;
+import de.trustable.ca3s.core.service.AuditService;
 import de.trustable.ca3s.core.service.dto.ACMEConfigItems;
 import de.trustable.ca3s.core.service.dto.PipelineView;
 import de.trustable.ca3s.core.service.dto.acme.problem.ProblemDetail;
 import de.trustable.ca3s.core.service.util.ACMEUtil;
+import de.trustable.ca3s.core.service.util.AcmeAuthorizationReuseIndex;
+import de.trustable.ca3s.core.service.util.PipelineSnapshot;
 import de.trustable.ca3s.core.service.util.PipelineUtil;
 import org.jose4j.jwt.consumer.JwtContext;
 import org.slf4j.Logger;
@@ -293,13 +297,19 @@ public class NewOrderController extends ACMEController {
 
     private final String resolverHost;
 
+    private final AcmeAuthorizationReuseIndex authorizationReuseIndex;
+
+    private final AuditService auditService;
+
 
     public NewOrderController(AcmeOrderRepository orderRepository,
                               AcmeOrderAttributeRepository orderAttributeRepository, AcmeAuthorizationRepository authorizationRepository,
                               AcmeChallengeRepository challengeRepository,
                               AcmeIdentifierRepository identRepository,
                               PipelineUtil pipelineUtil,
-                              @Value("${ca3s.dns.server:}") String resolverHost) {
+                              @Value("${ca3s.dns.server:}") String resolverHost,
+                              AcmeAuthorizationReuseIndex authorizationReuseIndex,
+                              AuditService auditService) {
 
         this.orderRepository = orderRepository;
         this.orderAttributeRepository = orderAttributeRepository;
@@ -308,6 +318,8 @@ public class NewOrderController extends ACMEController {
         this.identRepository = identRepository;
         this.pipelineUtil = pipelineUtil;
         this.resolverHost = resolverHost;
+        this.authorizationReuseIndex = authorizationReuseIndex;
+        this.auditService = auditService;
     }
 
 
@@ -332,8 +344,9 @@ public class NewOrderController extends ACMEController {
 	    IdentifiersResponse newIdentifiers = jwtUtil.getIdentifiers(context.getJwtClaims());
 	    LOG.debug("New Order reads Identifiers: " + newIdentifiers);
 
-        Pipeline pipeline = getPipelineForRealm(realm);
-        LOG.debug("ACME pipeline '{}' found for request realm '{}'", pipeline.getName(), realm);
+        PipelineSnapshot pipelineSnapshot = getPipelineSnapshotForRealm(realm);
+        LOG.debug("ACME pipeline '{}' found for request realm '{}'", pipelineSnapshot.getName(), realm);
+        Pipeline pipeline = pipeRepo.getOne(pipelineSnapshot.getId());
 
         ACMEAccount acctDao = checkJWTSignatureForAccount(context, realm);
 
@@ -347,9 +360,7 @@ public class NewOrderController extends ACMEController {
 
 		Instant now = Instant.now();
 
-        int orderValiditySeconds = pipelineUtil.getPipelineAttribute(pipeline,
-            ACME_ORDER_VALIDITY_SECONDS,
-            600);
+        int orderValiditySeconds = pipelineSnapshot.getAttribute(ACME_ORDER_VALIDITY_SECONDS, 600);
 
         orderDao.setExpires(now.plus(orderValiditySeconds, ChronoUnit.SECONDS));
 		orderDao.setNotBefore(now);
@@ -374,12 +385,16 @@ public class NewOrderController extends ACMEController {
 		Set<AcmeAuthorization> authorizations = new HashSet<>();
 		Set<String> authorizationsResp = new HashSet<>();
 
-        PipelineView pipelineView = pipelineUtil.from(pipeline);
+        PipelineView pipelineView = pipelineSnapshot.getPipelineView();
         ACMEConfigItems acmeConfigItems = pipelineView.getAcmeConfigItems();
 
         Set<AcmeOrderAttribute> acmeOrderAttributeSet = new HashSet<>();
         Set<String> challengeTypeSet = new HashSet<>();
 
+        // authorizations of recently validated identifiers are attached as 'valid', if enabled for the pipeline
+        int authorizationReuseSeconds = pipelineSnapshot.getAttribute(ACME_AUTHORIZATION_REUSE_SECONDS, 0);
+        boolean allAuthorizationsReused = !identifiers.isEmpty();
+
         boolean hasWildcardRequest = false;
 		for( AcmeIdentifier identDao: identifiers) {
 			AcmeAuthorization authorizationDao = new AcmeAuthorization();
@@ -389,7 +404,7 @@ public class NewOrderController extends ACMEController {
             boolean isWildcardRequest = isWildcardRequest(identDao.getValue());
             hasWildcardRequest |= isWildcardRequest;
             if( isWildcardRequest && !acmeConfigItems.isAllowWildcards() ) {
-                LOG.info("Wildcard requested, but no allowed for pipeline '{}'!", pipeline.getName());
+                LOG.info("Wildcard requested, but no allowed for pipeline '{}'!", pipelineSnapshot.getName());
                 final ProblemDetail problemDetail = new ProblemDetail(ACMEUtil.MALFORMED, "Wildcard request not supported",
                     BAD_REQUEST, "Wildcard requested, but no allowed.", ACMEController.NO_INSTANCE);
                 throw new AcmeProblemException(problemDetail);
@@ -402,7 +417,24 @@ public class NewOrderController extends ACMEController {
 
 			Set<AcmeChallenge> challenges = new HashSet<>();
 
-            if( isWildcardRequest ){
+            AcmeAuthorizationReuseIndex.ValidatedAuthorization reusableAuthorization = null;
+            if( authorizationReuseSeconds > 0 ) {
+                reusableAuthorization = authorizationReuseIndex.findReusable(acctDao, pipelineSnapshot.getId(),
+                    identDao.getType(), identDao.getValue(), authorizationReuseSeconds);
+                if( reusableAuthorization != null &&
+                    !isChallengeTypeOffered(reusableAuthorization.getChallengeType(), isWildcardRequest, acmeConfigItems)) {
+                    LOG.debug("challenge type '{}' of previous validation no longer offered, validation of '{}' required",
+                        reusableAuthorization.getChallengeType(), identDao.getValue());
+                    reusableAuthorization = null;
+                }
+            }
+
+            if( reusableAuthorization != null ){
+                LOG.debug("Reusing '{}' validation of '{}' from {}", reusableAuthorization.getChallengeType(),
+                    identDao.getValue(), reusableAuthorization.getValidated());
+                challenges.add(createReusedChallenge(reusableAuthorization, identDao.getValue(), authorizationDao));
+                challengeTypeSet.add(reusableAuthorization.getChallengeType());
+            }else if( isWildcardRequest ){
                 LOG.debug("Wildcard requested, HTTP-01 and ALPN disabled!");
             }else {
                 if( acmeConfigItems.isAllowChallengeHTTP01() ) {
@@ -419,7 +451,9 @@ public class NewOrderController extends ACMEController {
 
             }
 
-            if( resolverHost != null && !resolverHost.isEmpty()) {
+            if( reusableAuthorization != null ){
+                LOG.debug("Authorization of '{}' already valid, no further challenge offered", identDao.getValue());
+            }else if( resolverHost != null && !resolverHost.isEmpty()) {
                 if( acmeConfigItems.isAllowChallengeDNS() ) {
                     LOG.debug("Offering DNS-01 challenge");
                     challenges.add(createChallenge(AcmeChallenge.CHALLENGE_TYPE_DNS_01, identDao.getValue(), authorizationDao));
@@ -436,12 +470,14 @@ public class NewOrderController extends ACMEController {
             }
 
             if( challenges.isEmpty()){
-                LOG.info("No challenge available for the given configuration of pipeline '{}'", pipeline.getName());
+                LOG.info("No challenge available for the given configuration of pipeline '{}'", pipelineSnapshot.getName());
                 final ProblemDetail problemDetail = new ProblemDetail(ACMEUtil.MALFORMED, "No challenge available",
                     BAD_REQUEST, "No challenge available for the given configuration.", ACMEController.NO_INSTANCE);
                 throw new AcmeProblemException(problemDetail);
             }
 
+            allAuthorizationsReused &= reusableAuthorization != null;
+
             authorizationDao.setChallenges(challenges);
 			authorizationRepository.save(authorizationDao);
 
@@ -462,6 +498,12 @@ public class NewOrderController extends ACMEController {
         orderAttributeRepository.saveAll(acmeOrderAttributeSet);
 
 		orderDao.setAcmeAuthorizations(authorizations);
+        if( allAuthorizationsReused ){
+            LOG.debug("all authorizations reused, order status set to READY" );
+            orderDao.setStatus(AcmeOrderStatus.READY);
+            auditService.saveAuditTrace(
+                auditService.createAuditTraceACMEOrderSucceeded(orderDao.getAccount(), orderDao));
+        }
 		orderRepository.save(orderDao);
 
         String finalizeUrl = locationUriOfOrderFinalize(orderDao.getOrderId(), fromCurrentRequestUri()).toString();
@@ -514,6 +556,35 @@ public class NewOrderController extends ACMEController {
         return isWildcardRequest;
     }
 
+    private boolean isChallengeTypeOffered(String type, boolean isWildcardRequest, ACMEConfigItems acmeConfigItems) {
+        if( AcmeChallenge.CHALLENGE_TYPE_DNS_01.equals(type)) {
+            return resolverHost != null && !resolverHost.isEmpty() && acmeConfigItems.isAllowChallengeDNS();
+        }
+        if( AcmeChallenge.CHALLENGE_TYPE_HTTP_01.equals(type) || AcmeChallenge.CHALLENGE_TYPE_ALPN_01.equals(type)) {
+            return !isWildcardRequest && acmeConfigItems.isAllowChallengeHTTP01();
+        }
+        return false;
+    }
+
+    /*
+     * the challenge of a reused authorization is already valid, it keeps the time of the original validation
+     */
+    private AcmeChallenge createReusedChallenge(AcmeAuthorizationReuseIndex.ValidatedAuthorization reusableAuthorization,
+                                                String value, AcmeAuthorization authorizationDao) {
+        AcmeChallenge challengeDao = new AcmeChallenge();
+        challengeDao.setChallengeId(generateId());
+        challengeDao.setAcmeAuthorization(authorizationDao);
+
+        challengeDao.setType( reusableAuthorization.getChallengeType() );
+        challengeDao.setValue(value);
+        challengeDao.setToken( getRandomChallenge());
+        challengeDao.setStatus(ChallengeStatus.VALID);
+        challengeDao.setValidated(reusableAuthorization.getValidated());
+        challengeRepository.save(challengeDao);
+
+        return challengeDao;
+    }
+
     private AcmeChallenge createChallenge(String type, String value, AcmeAuthorization authorizationDao) {
         AcmeChallenge challengeDao = new AcmeChallenge();
         challengeDao.setChallengeId(generateId());
@@ -54,6 +54,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
@@ -68,6 +69,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
@@ -102,6 +104,14 @@ public class OrderController extends ACMEController {
 
     final private boolean iterateAuthenticationsOnGet;
 
+    final private AcmeOrderIssuanceExecutor issuanceExecutor;
+
+    final private TransactionHandler transactionHandler;
+
+    final private boolean asyncIssuance;
+
+    final private int retryAfterSeconds;
+
     public OrderController(AcmeOrderRepository orderRepository,
                            JwtUtil jwtUtil,
                            CryptoUtil cryptoUtil,
@@ -109,8 +119,12 @@ public class OrderController extends ACMEController {
                            CertificateProcessingUtil cpUtil,
                            PipelineUtil pipelineUtil,
                            AuditService auditService,
+                           AcmeOrderIssuanceExecutor issuanceExecutor,
+                           TransactionHandler transactionHandler,
                            @Value("${ca3s.acme.backward.finalize.location:true}") boolean finalizeLocationBackwardCompat,
-                           @Value("${ca3s.acme.iterate.authentications:true}")boolean iterateAuthenticationsOnGet) {
+                           @Value("${ca3s.acme.iterate.authentications:true}")boolean iterateAuthenticationsOnGet,
+                           @Value("${ca3s.acme.order.issuance.async:true}") boolean asyncIssuance,
+                           @Value("${ca3s.acme.order.retryAfter:2}") int retryAfterSeconds) {
         this.orderRepository = orderRepository;
         this.jwtUtil = jwtUtil;
         this.cryptoUtil = cryptoUtil;
@@ -118,9 +132,13 @@ public class OrderController extends ACMEController {
         this.cpUtil = cpUtil;
         this.pipelineUtil = pipelineUtil;
         this.auditService = auditService;
+        this.issuanceExecutor = issuanceExecutor;
+        this.transactionHandler = transactionHandler;
         this.finalizeLocationBackwardCompat = finalizeLocationBackwardCompat;
 
         this.iterateAuthenticationsOnGet = iterateAuthenticationsOnGet;
+        this.asyncIssuance = asyncIssuance;
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 
 
@@ -151,6 +169,10 @@ public class OrderController extends ACMEController {
                     updateAcmeOrderState(orderDao);
                 }
 
+                if(orderDao.getStatus() == AcmeOrderStatus.PROCESSING){
+                    additionalHeaders.set(HttpHeaders.RETRY_AFTER, Integer.toString(retryAfterSeconds));
+                }
+
       			UriComponentsBuilder baseUriBuilder = fromCurrentRequestUri().path("../../..");
                 LOG.debug("postAsGetOrder: baseUriBuilder : " + baseUriBuilder.toUriString());
 
@@ -301,18 +323,23 @@ public class OrderController extends ACMEController {
                     throw new AcmeProblemException(problem);
                 }
 
-                LOG.debug("order status {} changes to 'processing' for order {}", orderDao.getStatus(), orderDao.getOrderId());
-                orderDao.setStatus(AcmeOrderStatus.PROCESSING);
-                orderRepository.save(orderDao);
+                if( asyncIssuance) {
+                    submitCertificateCreation(orderDao, pipeline, "ACME_ACCOUNT_" + acctDao.getAccountId(), CryptoUtil.pkcs10RequestToPem( p10Holder.getP10Req()));
+                    additionalHeaders.set(HttpHeaders.RETRY_AFTER, Integer.toString(retryAfterSeconds));
+                } else {
+                    LOG.debug("order status {} changes to 'processing' for order {}", orderDao.getStatus(), orderDao.getOrderId());
+                    orderDao.setStatus(AcmeOrderStatus.PROCESSING);
+                    orderRepository.save(orderDao);
 
 
-                LOG.debug("order {} status 'valid', producing certificate", orderDao.getOrderId());
-                startCertificateCreationProcess(orderDao, pipeline, "ACME_ACCOUNT_" + acctDao.getAccountId(), CryptoUtil.pkcs10RequestToPem( p10Holder.getP10Req()));
+                    LOG.debug("order {} status 'valid', producing certificate", orderDao.getOrderId());
+                    startCertificateCreationProcess(orderDao, pipeline, "ACME_ACCOUNT_" + acctDao.getAccountId(), CryptoUtil.pkcs10RequestToPem( p10Holder.getP10Req()));
 
-                LOG.debug("order status {} changes to valid for order {}", orderDao.getStatus(), orderDao.getOrderId());
-                orderDao.setStatus(AcmeOrderStatus.VALID);
+                    LOG.debug("order status {} changes to valid for order {}", orderDao.getStatus(), orderDao.getOrderId());
+                    orderDao.setStatus(AcmeOrderStatus.VALID);
 
-                orderRepository.save(orderDao);
+                    orderRepository.save(orderDao);
+                }
 			}else {
                 String msg = "unexpected finalize call at order status "+orderDao.getStatus()+" for order "+ orderDao.getOrderId();
                 LOG.debug(msg);
@@ -434,8 +461,83 @@ public class OrderController extends ACMEController {
 	}
 
 
+    /**
+     * put the order into state 'processing' and submit the certificate creation to the issuance executor.
+     * The CSR is stored within the request, the issuance starts after the commit.
+     */
+    private void submitCertificateCreation(AcmeOrder orderDao, Pipeline pipeline, final String requestorName, final String csrAsPem) {
+
+        final long orderId = orderDao.getOrderId();
+        final long pipelineId = pipeline.getId();
+
+        AcmeOrderIssuanceExecutor.SubmitResult submitResult = issuanceExecutor.submit(orderId,
+            () -> issueCertificate(orderId, pipelineId, requestorName));
+
+        if( submitResult == AcmeOrderIssuanceExecutor.SubmitResult.QUEUE_FULL) {
+            final ProblemDetail problem = new ProblemDetail(ACMEUtil.RATE_LIMITED, "Too many orders in processing",
+                HttpStatus.TOO_MANY_REQUESTS, "retry later", ACMEController.NO_INSTANCE);
+            throw new AcmeProblemException(problem);
+        }
+        if( submitResult == AcmeOrderIssuanceExecutor.SubmitResult.ALREADY_RUNNING) {
+            throw new AcmeProblemException(new ProblemDetail(ACMEUtil.ORDER_NOT_READY, "order " + orderId + " already in processing",
+                BAD_REQUEST, NO_DETAIL, NO_INSTANCE));
+        }
+
+        orderDao.setCsr(buildCSR(pipeline, requestorName, csrAsPem));
+
+        LOG.debug("order status {} changes to 'processing' for order {}", orderDao.getStatus(), orderId);
+        orderDao.setStatus(AcmeOrderStatus.PROCESSING);
+        orderRepository.save(orderDao);
+    }
+
+    /**
+     * create the certificate of an order in the context of the issuance executor
+     *
+     * @return the new state of the order
+     */
+    AcmeOrderStatus issueCertificate(final long orderId, final long pipelineId, final String requestorName) {
+
+        try {
+            return transactionHandler.runInNewTransaction(() -> {
+                List<AcmeOrder> orderList = orderRepository.findByOrderId(orderId);
+                if (orderList.isEmpty()) {
+                    LOG.info("order {} disappeared before issuance", orderId);
+                    return null;
+                }
+                AcmeOrder orderDao = orderList.get(0);
+                if (orderDao.getStatus() != AcmeOrderStatus.PROCESSING || orderDao.getCsr() == null) {
+                    LOG.debug("order {} in state '{}', no issuance required", orderId, orderDao.getStatus());
+                    return orderDao.getStatus();
+                }
+
+                Optional<Pipeline> optPipeline = pipeRepo.findById(pipelineId);
+                if (!optPipeline.isPresent()) {
+                    LOG.warn("pipeline {} of order {} disappeared before issuance", pipelineId, orderId);
+                    auditService.saveAuditTrace(
+                        auditService.createAuditTraceACMEOrderInvalid(orderDao.getAccount(), orderDao, "pipeline not found"));
+                    orderDao.setStatus(AcmeOrderStatus.INVALID);
+                } else {
+                    createCertificate(orderDao, optPipeline.get(), requestorName, orderDao.getCsr());
+                }
+                orderRepository.save(orderDao);
+                return orderDao.getStatus();
+            });
+        } catch (RuntimeException re) {
+            LOG.warn("issuance of order " + orderId + " failed", re);
+            issuanceExecutor.invalidateOrder(orderId, "certificate creation failed");
+            return AcmeOrderStatus.INVALID;
+        }
+    }
+
 	private Certificate startCertificateCreationProcess(AcmeOrder orderDao, Pipeline pipeline, final String requestorName, final String csrAsPem)  {
 
+        CSR csr = buildCSR(pipeline, requestorName, csrAsPem);
+        orderDao.setCsr(csr);
+        return createCertificate(orderDao, pipeline, requestorName, csr);
+    }
+
+	private CSR buildCSR(Pipeline pipeline, final String requestorName, final String csrAsPem)  {
+
 	    List<String> messageList = new ArrayList<>();
         NamedValues[] nvArr = new NamedValues[0];
 		CSR csr = cpUtil.buildCSR(csrAsPem, requestorName, AuditService.AUDIT_ACME_CERTIFICATE_REQUESTED, "", pipeline, nvArr, messageList );
@@ -450,8 +552,10 @@ public class OrderController extends ACMEController {
 					BAD_REQUEST, "", ACMEController.NO_INSTANCE);
 			throw new AcmeProblemException(problem);
 		}
+        return csr;
+    }
 
-        orderDao.setCsr(csr);
+	private Certificate createCertificate(AcmeOrder orderDao, Pipeline pipeline, final String requestorName, final CSR csr)  {
 
 		Certificate cert = cpUtil.processCertificateRequest(csr, requestorName, AuditService.AUDIT_ACME_CERTIFICATE_CREATED, pipeline );
 
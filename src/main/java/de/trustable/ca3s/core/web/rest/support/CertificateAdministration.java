@@ -10,7 +10,7 @@ import de.trustable.ca3s.core.service.AuditService;
 import de.trustable.ca3s.core.service.NotificationService;
 import de.trustable.ca3s.core.service.dto.CRLUpdateInfo;
 import de.trustable.ca3s.core.service.util.BPMNUtil;
-import de.trustable.ca3s.core.service.util.CRLUtil;
+import de.trustable.ca3s.core.service.util.CRLStore;
 import de.trustable.ca3s.core.service.util.CertificateUtil;
 import de.trustable.ca3s.core.web.rest.data.AdministrationType;
 import de.trustable.ca3s.core.web.rest.data.CertificateAdministrationData;
@@ -58,7 +58,7 @@ public class CertificateAdministration {
 
     final private CertificateUtil certUtil;
 
-    private final CRLUtil crlUtil;
+    private final CRLStore crlStore;
 
     final private UserRepository userRepository;
 
@@ -73,7 +73,7 @@ public class CertificateAdministration {
                                      CertificateAttributeRepository certificateAttributeRepository,
                                      BPMNUtil bpmnUtil, CryptoUtil cryptoUtil,
                                      CertificateUtil certUtil,
-                                     CRLUtil crlUtil, UserRepository userRepository,
+                                     CRLStore crlStore, UserRepository userRepository,
                                      CertExpiryScheduler certExpiryScheduler,
                                      NotificationService notificationService,
                                      AuditService auditService) {
@@ -83,7 +83,7 @@ public class CertificateAdministration {
         this.bpmnUtil = bpmnUtil;
         this.cryptoUtil = cryptoUtil;
         this.certUtil = certUtil;
-        this.crlUtil = crlUtil;
+        this.crlStore = crlStore;
         this.userRepository = userRepository;
         this.certExpiryScheduler = certExpiryScheduler;
         this.notificationService = notificationService;
@@ -134,8 +134,7 @@ public class CertificateAdministration {
                 } else if(AdministrationType.UPDATE_CRL.equals(adminData.getAdministrationType())){
 
                     CRLUpdateInfo crlInfo = certUtil.checkAllCRLsForCertificate( cert,
-                        CertificateUtil.convertPemToCertificate(cert.getContent()),
-                        crlUtil,
+                        crlStore,
                         new HashSet<>());
 
                     if( !crlInfo.isbCRLDownloadSuccess() ) {
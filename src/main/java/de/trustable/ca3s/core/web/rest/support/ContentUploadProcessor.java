@@ -228,9 +228,16 @@ public class ContentUploadProcessor {
                     BadKeysResult badKeysResult = badKeysService.checkCSR(content);
                     if( !badKeysResult.isValid()){
 
-                        LOG.debug("badKeysResult '{}'", badKeysResult.getResponse().getResults().getResultType());
-                        String [] messages = ArrayUtils.add( p10ReqData.getWarnings(),
-                            badKeysResult.getResponse().getResults().getResultType());
+                        // no response if the key could not be checked at all
+                        String badKeysMessage = badKeysResult.getMesssage();
+                        if( badKeysResult.getResponse() != null &&
+                            badKeysResult.getResponse().getResults() != null &&
+                            badKeysResult.getResponse().getResults().getResultType() != null ) {
+                            badKeysMessage = badKeysResult.getResponse().getResults().getResultType();
+                        }
+
+                        LOG.debug("badKeysResult '{}'", badKeysMessage);
+                        String [] messages = ArrayUtils.add( p10ReqData.getWarnings(), badKeysMessage);
                         p10ReqData.setWarnings(messages);
                     }else{
                         LOG.debug("BadKeys not installed");
@@ -0,0 +1,72 @@
+package de.trustable.ca3s.core.web.rest.support;
+
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import de.trustable.ca3s.core.service.util.CrlPublisher;
+
+/**
+ * CRLs of the internal CA, addressed by the id of the issuing CA certificate
+ */
+@Controller
+@RequestMapping("/publicapi")
+public class CrlController {
+
+    static final MediaType CRL_TYPE = MediaType.parseMediaType("application/pkix-crl");
+
+    private final CrlPublisher crlPublisher;
+
+    public CrlController(CrlPublisher crlPublisher) {
+        this.crlPublisher = crlPublisher;
+    }
+
+    /**
+     * the full CRL
+     *
+     * @param issuerId the id of the CA certificate
+     * @return the DER encoded CRL
+     */
+    @RequestMapping(value = "/crl/{issuerId}/full.crl", method = GET)
+    public ResponseEntity<byte[]> getFullCrl(@PathVariable final long issuerId) {
+        return buildResponse(crlPublisher.getFullCrl(issuerId));
+    }
+
+    /**
+     * the delta CRL referring to the current full CRL
+     *
+     * @param issuerId the id of the CA certificate
+     * @return the DER encoded delta CRL
+     */
+    @RequestMapping(value = "/crl/{issuerId}/delta.crl", method = GET)
+    public ResponseEntity<byte[]> getDeltaCrl(@PathVariable final long issuerId) {
+        return buildResponse(crlPublisher.getDeltaCrl(issuerId));
+    }
+
+    /**
+     * conditional requests ('If-None-Match', 'If-Modified-Since') are answered with '304 Not Modified' by Spring,
+     * based on the ETag and Last-Modified headers of the response
+     */
+    private ResponseEntity<byte[]> buildResponse(final CrlPublisher.PublishedCrl crl) {
+
+        if (crl == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        long maxAgeSeconds = Math.max(0L, (crl.getNextUpdate().getTime() - System.currentTimeMillis()) / 1000L);
+        return ResponseEntity.ok()
+            .contentType(CRL_TYPE)
+            .eTag(crl.getETag())
+            .lastModified(crl.getThisUpdate().getTime())
+            .cacheControl(CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().mustRevalidate())
+            .headers(headers -> headers.setExpires(crl.getNextUpdate().getTime()))
+            .body(crl.getEncoded());
+    }
+}
@@ -0,0 +1,98 @@
+package de.trustable.ca3s.core.web.rest.support;
+
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import de.trustable.ca3s.core.service.util.OcspResponder;
+
+/**
+ * OCSP endpoint (RFC 6960, appendix A) for the certificates of the internal CA
+ */
+@Controller
+@RequestMapping("/publicapi")
+public class OcspController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OcspController.class);
+
+    static final String OCSP_PATH = "/publicapi/ocsp/";
+
+    static final MediaType OCSP_RESPONSE_TYPE = MediaType.parseMediaType("application/ocsp-response");
+
+    private final OcspResponder ocspResponder;
+
+    public OcspController(OcspResponder ocspResponder) {
+        this.ocspResponder = ocspResponder;
+    }
+
+    /**
+     * OCSP request as body
+     *
+     * @param requestBytes the DER encoded OCSP request
+     * @return the OCSP response
+     */
+    @RequestMapping(value = "/ocsp", method = POST)
+    public ResponseEntity<byte[]> postOcspRequest(@RequestBody final byte[] requestBytes) {
+
+        OcspResponder.OcspResponse response = ocspResponder.respond(requestBytes);
+        return ResponseEntity.ok()
+            .contentType(OCSP_RESPONSE_TYPE)
+            .body(response.getEncoded());
+    }
+
+    /**
+     * OCSP request as url encoded base64 string in the path, the response may be cached
+     *
+     * @param request the http request
+     * @return the OCSP response
+     */
+    @RequestMapping(value = "/ocsp/**", method = GET)
+    public ResponseEntity<byte[]> getOcspRequest(final HttpServletRequest request) {
+
+        String uri = request.getRequestURI();
+        int idx = uri.indexOf(OCSP_PATH);
+        if (idx < 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        byte[] requestBytes;
+        try {
+            // a '+' of the base64 alphabet may arrive unencoded
+            String encodedRequest = uri.substring(idx + OCSP_PATH.length()).replace("+", "%2B");
+            String base64Request = URLDecoder.decode(encodedRequest, StandardCharsets.UTF_8.name());
+            requestBytes = Base64.getDecoder().decode(base64Request);
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            LOG.debug("unparsable OCSP GET request '{}'", uri);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        OcspResponder.OcspResponse response = ocspResponder.respond(requestBytes);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(OCSP_RESPONSE_TYPE);
+        if (response.getNextUpdate() != null) {
+            // caching as recommended in RFC 5019, section 6
+            long maxAgeSeconds = Math.max(0L, (response.getNextUpdate().getTime() - System.currentTimeMillis()) / 1000L);
+            builder.cacheControl(CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().noTransform().mustRevalidate())
+                .lastModified(response.getThisUpdate().getTime())
+                .headers(headers -> headers.setExpires(response.getNextUpdate().getTime()));
+        }
+        return builder.body(response.getEncoded());
+    }
+}
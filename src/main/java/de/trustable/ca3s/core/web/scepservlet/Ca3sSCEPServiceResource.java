@@ -7,7 +7,8 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import de.trustable.ca3s.core.service.util.PipelineUtil;
+import de.trustable.ca3s.core.service.util.PipelineResolver;
+import de.trustable.ca3s.core.service.util.PipelineSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,14 +28,16 @@ import de.trustable.ca3s.core.repository.PipelineRepository;
 public class Ca3sSCEPServiceResource {
 
 	private final ScepServletImpl scepServlet;
-    private final PipelineUtil pipeUtil;
+    private final PipelineResolver pipelineResolver;
+    private final PipelineRepository pipelineRepository;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Ca3sSCEPServiceResource.class);
 
     @Autowired
-	public Ca3sSCEPServiceResource(ScepServletImpl scepServlet, PipelineUtil pipeUtil) {
+	public Ca3sSCEPServiceResource(ScepServletImpl scepServlet, PipelineResolver pipelineResolver, PipelineRepository pipelineRepository) {
         this.scepServlet = scepServlet;
-        this.pipeUtil = pipeUtil;
+        this.pipelineResolver = pipelineResolver;
+        this.pipelineRepository = pipelineRepository;
         LOGGER.info("in Ca3sSCEPServiceResource()");
 	}
 
@@ -45,15 +48,18 @@ public class Ca3sSCEPServiceResource {
 
 		long startTime = System.currentTimeMillis();
 
-        Pipeline pipeline = pipeUtil.getPipelineByRealm(PipelineType.SCEP, realm);
-        if( pipeline == null ) {
+        Pipeline pipeline = null;
+        PipelineSnapshot pipelineSnapshot = pipelineResolver.getActivePipeline(PipelineType.SCEP, realm);
+        if( pipelineSnapshot == null ) {
             LOGGER.info("no matching pipeline for scep request realm {}", realm);
 //            throw new ServletException("Request URL not found");
 
-        }else if( !pipeline.isActive() ) {
-            LOGGER.info("Deactivated pipeline '{}' found for scep request realm '{}'", pipeline.getName(), realm);
+        }else if( !pipelineSnapshot.isActive() ) {
+            LOGGER.info("Deactivated pipeline '{}' found for scep request realm '{}'", pipelineSnapshot.getName(), realm);
 //          throw new ServletException("Request URL not found");
-            pipeline = null;
+        }else {
+            // lazy reference, loaded by primary key when the SCEP message requires the pipeline
+            pipeline = pipelineRepository.getOne(pipelineSnapshot.getId());
         }
 
         // transfer additional information thru the given servlet implementation into the callbacks
@@ -10,6 +10,7 @@ import de.trustable.ca3s.core.repository.ProtectedContentRepository;
 import de.trustable.ca3s.core.repository.ScepOrderRepository;
 import de.trustable.ca3s.core.service.AuditService;
 import de.trustable.ca3s.core.service.util.*;
+import de.trustable.ca3s.core.service.util.ScepCryptoContextCache.ScepCryptoContext;
 import de.trustable.util.CryptoUtil;
 import de.trustable.util.Pkcs10RequestHolder;
 import org.bouncycastle.asn1.pkcs.Attribute;
@@ -88,6 +89,9 @@ public class ScepServletImpl extends ScepServlet {
     @Autowired
     private ProtectedContentUtil protectedContentUtil;
 
+    @Autowired
+    private ScepCryptoContextCache scepCryptoContextCache;
+
 
     final private PipelineUtil pipelineUtil;
 
@@ -103,10 +107,10 @@ public class ScepServletImpl extends ScepServlet {
 
     /**
      *
-     * @return
+     * @return the cached recipient material of the current pipeline
      * @throws ServletException
      */
-    Certificate getCurrentRecepientCert() throws ServletException, OperationFailureException {
+    ScepCryptoContext getCryptoContext() throws ServletException, OperationFailureException {
 
         Pipeline pipeline = threadLocalPipeline.get();
         if( pipeline == null ) {
@@ -114,13 +118,17 @@ public class ScepServletImpl extends ScepServlet {
             throw new OperationFailureException(FailInfo.badRequest);
         }
 
+        ScepCryptoContext cryptoContext;
         try {
-            return pipelineUtil.getSCEPRecipientCertificate(pipeline, cpUtil);
-
+            cryptoContext = scepCryptoContextCache.getContext(pipeline, cpUtil);
         } catch (GeneralSecurityException | IOException e) {
             throw new ServletException(e);
         }
 
+        if( cryptoContext == null ) {
+            throw new ServletException("no scep recipient certificate available for pipeline " + pipeline.getId());
+        }
+        return cryptoContext;
     }
 /*
     private Certificate createCertificate(final String csrAsPem) {
@@ -315,9 +323,8 @@ public class ScepServletImpl extends ScepServlet {
 
         List<X509Certificate> caList = new ArrayList<>();
         try {
-			Certificate recepCert = getCurrentRecepientCert();
-			caList = certUtil.getX509CertificateChainAsList(recepCert);
-		} catch (GeneralSecurityException | ServletException e) {
+			caList = getCryptoContext().getCertificateChain();
+		} catch (ServletException e) {
 			LOGGER.warn("Failed to retrieve CA certificates", e);
 		}
 
@@ -436,7 +443,7 @@ public class ScepServletImpl extends ScepServlet {
     protected PrivateKey getRecipientKey() {
 
         try {
-			return certUtil.getPrivateKey(getCurrentRecepientCert());
+			return getCryptoContext().getRecipientKey();
 		} catch (ServletException | OperationFailureException e) {
 			LOGGER.warn("problem retrieving recipient's private key", e);
 			return null;
@@ -447,10 +454,10 @@ public class ScepServletImpl extends ScepServlet {
     protected X509Certificate getRecipient() {
 
         try {
-        	X509Certificate ca = CryptoUtil.convertPemToCertificate(getCurrentRecepientCert().getContent());
+        	X509Certificate ca = getCryptoContext().getRecipient();
 	        LOGGER.debug("getRecipient() returns " + ca.toString());
 	        return ca;
-		} catch (GeneralSecurityException | ServletException | OperationFailureException e) {
+		} catch (ServletException | OperationFailureException e) {
 			LOGGER.warn("problem retrieving recipient certificate", e);
 		}
         return null;
@@ -475,20 +482,8 @@ public class ScepServletImpl extends ScepServlet {
         X509Certificate[] signerChainArr = new X509Certificate[0];
 
         try {
-			Certificate recepCert = getCurrentRecepientCert();
-
-			List<Certificate> certList = certUtil.getCertificateChain(recepCert);
-			int chainLength = certList.size();
-			if( chainLength > 1) {
-				signerChainArr = new X509Certificate[chainLength-1];
-
-				int j = 0;
-				for( int i = 1; i < chainLength; i++) {
-					signerChainArr[j++] = CryptoService.convertPemToCertificate(certList.get(i).getContent());
-				}
-
-			}
-		} catch (GeneralSecurityException | ServletException | OperationFailureException e) {
+			signerChainArr = getCryptoContext().getSignerCertificateChain();
+		} catch (ServletException | OperationFailureException e) {
 			LOGGER.warn("Failed to retrieve CA certificates", e);
 		}
 
@@ -2,6 +2,7 @@ import { IAcmeAuthorization } from '@/shared/model/acme-authorization.model';
 
 export const enum ChallengeStatus {
   PENDING = 'PENDING',
+  PROCESSING = 'PROCESSING',
   VALID = 'VALID',
   INVALID = 'INVALID',
   DEACTIVATED = 'DEACTIVATED',
@@ -2,8 +2,16 @@ export interface IImportedURL {
   id?: number;
   name?: string;
   importDate?: Date;
+  fileSize?: number;
+  contentHash?: string;
 }
 
 export class ImportedURL implements IImportedURL {
-  constructor(public id?: number, public name?: string, public importDate?: Date) {}
+  constructor(
+    public id?: number,
+    public name?: string,
+    public importDate?: Date,
+    public fileSize?: number,
+    public contentHash?: string
+  ) {}
 }
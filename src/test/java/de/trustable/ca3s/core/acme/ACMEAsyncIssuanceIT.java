@@ -0,0 +1,233 @@
+package de.trustable.ca3s.core.acme;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.security.KeyPair;
+import java.security.Security;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import de.trustable.ca3s.core.PreferenceTestConfiguration;
+import de.trustable.ca3s.core.domain.AcmeOrder;
+import de.trustable.ca3s.core.domain.enumeration.AcmeOrderStatus;
+import de.trustable.ca3s.core.repository.AcmeOrderRepository;
+import de.trustable.ca3s.core.service.util.AcmeChallengeValidationExecutor;
+import de.trustable.ca3s.core.service.util.AcmeOrderIssuanceExecutor;
+import de.trustable.ca3s.core.service.util.TransactionHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shredzone.acme4j.Account;
+import org.shredzone.acme4j.AccountBuilder;
+import org.shredzone.acme4j.Authorization;
+import org.shredzone.acme4j.Order;
+import org.shredzone.acme4j.Session;
+import org.shredzone.acme4j.Status;
+import org.shredzone.acme4j.challenge.Challenge;
+import org.shredzone.acme4j.challenge.Http01Challenge;
+import org.shredzone.acme4j.exception.AcmeException;
+import org.shredzone.acme4j.exception.AcmeRetryAfterException;
+import org.shredzone.acme4j.util.CSRBuilder;
+import org.shredzone.acme4j.util.KeyPairUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import de.trustable.ca3s.cert.bundle.TimedRenewalCertMap;
+import de.trustable.ca3s.core.Ca3SApp;
+import de.trustable.ca3s.core.PipelineTestConfiguration;
+import de.trustable.ca3s.core.security.provider.Ca3sFallbackBundleFactory;
+import de.trustable.ca3s.core.security.provider.Ca3sKeyManagerProvider;
+import de.trustable.ca3s.core.security.provider.Ca3sKeyStoreProvider;
+import de.trustable.ca3s.core.security.provider.TimedRenewalCertMapHolder;
+import de.trustable.util.JCAManager;
+
+/**
+ * the ACME order flow with the challenge validated by the {@link AcmeChallengeValidationExecutor} and
+ * the certificate issued by the {@link AcmeOrderIssuanceExecutor}
+ */
+@SpringBootTest(classes = Ca3SApp.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {"ca3s.acme.challenge.validation.async=true", "ca3s.acme.order.issuance.async=true"})
+@ActiveProfiles("dev")
+public class ACMEAsyncIssuanceIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ACMEAsyncIssuanceIT.class);
+
+    private static final int MAX_POLL = 50;
+
+	@LocalServerPort
+	int serverPort; // random port chosen by spring test
+
+	final String ACME_PATH_PART = "/acme/" + PipelineTestConfiguration.ACME_REALM + "/directory";
+	String dirUrl;
+
+    HttpChallengeHelper httpChallengeHelper;
+
+    @Autowired
+	PipelineTestConfiguration ptc;
+
+    @Autowired
+    PreferenceTestConfiguration prefTC;
+
+    @Autowired
+    AcmeOrderRepository acmeOrderRepository;
+
+    @Autowired
+    AcmeOrderIssuanceExecutor issuanceExecutor;
+
+    @Autowired
+    TransactionHandler transactionHandler;
+
+	@BeforeEach
+	void init() {
+		dirUrl = "http://localhost:" + serverPort + ACME_PATH_PART;
+		ptc.getInternalACMETestPipelineLaxRestrictions();
+
+        prefTC.getTestUserPreference();
+
+        int port = prefTC.getFreePort();
+        LOG.info("http challenge on port {}", port);
+        httpChallengeHelper = new HttpChallengeHelper(port);
+	}
+
+	@BeforeAll
+	public static void setUpBeforeClass() {
+
+		JCAManager.getInstance();
+
+		TimedRenewalCertMap certMap = new TimedRenewalCertMap(null, new Ca3sFallbackBundleFactory("O=test trustable solutions, C=DE"));
+		Security.addProvider(new Ca3sKeyStoreProvider(certMap, "ca3s"));
+    	Security.addProvider(new Ca3sKeyManagerProvider(certMap));
+    	new TimedRenewalCertMapHolder().setCertMap(certMap);
+	}
+
+	@Test
+	public void testAsyncIssuance() throws AcmeException, IOException, InterruptedException {
+
+		Session session = new Session(dirUrl);
+
+		Account account = new AccountBuilder()
+		        .addContact("mailto:acmeAsyncTest@ca3s.org")
+		        .agreeToTermsOfService()
+		        .useKeyPair(KeyPairUtils.createKeyPair(2048))
+		        .create(session);
+
+		Order order = account.newOrder()
+		        .domains("localhost")
+		        .notAfter(Instant.now().plus(Duration.ofDays(20L)))
+		        .create();
+
+		for (Authorization auth : order.getAuthorizations()) {
+			if (auth.getStatus() == Status.PENDING) {
+				Http01Challenge challenge = auth.findChallenge(Http01Challenge.TYPE);
+				assertNotNull("http01 challenge expected", challenge);
+
+                Thread webThread = provideAuthEndpoint(challenge);
+                challenge.trigger();
+                // the endpoint needs to be available until the validation is done
+                pollUntilFinal(challenge);
+                if( webThread != null){webThread.stop();}
+
+                assertEquals("Expecting the async validation to succeed", Status.VALID, challenge.getStatus());
+			}
+		}
+
+		KeyPair domainKeyPair = KeyPairUtils.createKeyPair(2048);
+
+		CSRBuilder csrb = new CSRBuilder();
+		csrb.addDomain("localhost");
+		csrb.setOrganization("The Example Organization");
+		csrb.sign(domainKeyPair);
+
+		order.execute(csrb.getEncoded());
+		pollUntilFinal(order);
+
+		assertEquals("Expecting the async issuance to succeed", Status.VALID, order.getStatus());
+		assertNotNull("Expected to receive a certificate", order.getCertificate());
+
+		/*
+		 * an order left in 'processing' by a stopped instance gets invalidated
+		 */
+		String orderPath = order.getLocation().getPath();
+		long orderId = Long.parseLong(orderPath.substring(orderPath.lastIndexOf('/') + 1));
+
+		transactionHandler.runInNewTransaction(() -> {
+			AcmeOrder orderDao = acmeOrderRepository.findByOrderId(orderId).get(0);
+			orderDao.setCertificate(null);
+			orderDao.setStatus(AcmeOrderStatus.PROCESSING);
+			return acmeOrderRepository.save(orderDao);
+		});
+
+		// not older than the stale period, yet
+		assertEquals(0, issuanceExecutor.invalidateStaleOrders());
+		assertTrue(issuanceExecutor.invalidateStaleOrders(Instant.now()) >= 1);
+
+		List<AcmeOrder> orderList = acmeOrderRepository.findByOrderId(orderId);
+		assertEquals(AcmeOrderStatus.INVALID, orderList.get(0).getStatus());
+		assertNotNull("error of the invalid order expected", orderList.get(0).getError());
+
+		order.update();
+		assertEquals(Status.INVALID, order.getStatus());
+		assertNull("no certificate expected for an invalid order", order.getCertificate());
+	}
+
+	void pollUntilFinal(final Challenge challenge) throws AcmeException, InterruptedException {
+
+		for( int i = 0; i < MAX_POLL; i++) {
+			if( challenge.getStatus() == Status.VALID || challenge.getStatus() == Status.INVALID) {
+				return;
+			}
+			Thread.sleep(200L);
+			try {
+				challenge.update();
+			} catch (AcmeRetryAfterException rae) {
+				// the state of the challenge is updated nevertheless
+				LOG.debug("challenge in state '{}', retry after {}", challenge.getStatus(), rae.getRetryAfter());
+			}
+		}
+	}
+
+	void pollUntilFinal(final Order order) throws AcmeException, InterruptedException {
+
+		for( int i = 0; i < MAX_POLL; i++) {
+			if( order.getStatus() == Status.VALID || order.getStatus() == Status.INVALID) {
+				return;
+			}
+			Thread.sleep(200L);
+			try {
+				order.update();
+			} catch (AcmeRetryAfterException rae) {
+				// the state of the order is updated nevertheless
+				LOG.debug("order in state '{}', retry after {}", order.getStatus(), rae.getRetryAfter());
+			}
+		}
+	}
+
+    Thread provideAuthEndpoint(final Http01Challenge challenge) throws IOException, InterruptedException {
+        Thread webThread = null;
+        int MAX_TRIAL = 10;
+		for( int retry = 0; retry < MAX_TRIAL; retry++) {
+			try {
+                webThread = httpChallengeHelper.provideAuthEndpoint(challenge.getToken(), challenge.getAuthorization(), true);
+				break;
+			} catch( BindException be) {
+				if( retry == MAX_TRIAL -1) {
+					LOG.warn("callback port not available");
+				} else {
+					LOG.warn("bind exception, waiting for port to become available");
+					Thread.sleep(1000L);
+				}
+			}
+		}
+		return webThread;
+	}
+}
@@ -3,6 +3,7 @@ package de.trustable.ca3s.core.acme;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.shredzone.acme4j.Identifier.TYPE_IP;
 
@@ -145,6 +146,11 @@ public class ACMEHappyPathIT {
 
 		assertNotNull("account contacts MUST NOT be null", account.getContacts());
 
+		// the cached key of the account is replaced, requests signed with the old key fail
+		Account oldKeyAccount = session.login(accountLocationUrl, accountKeyPair).getAccount();
+		assertThrows(AcmeException.class, () -> oldKeyAccount.newOrder().domains("localhost").create(),
+			"request signed with the replaced key expected to be rejected");
+
 		KeyPair accountECKeyPair = KeyPairUtils.createECKeyPair("secp256r1");
 		account.changeKey(accountECKeyPair);
 
@@ -157,6 +163,9 @@ public class ACMEHappyPathIT {
 		account.deactivate();
 
 		assertEquals("account status 'deactivated' expected", AccountStatus.DEACTIVATED.toString().toLowerCase(), account.getStatus().toString().toLowerCase() );
+
+		assertThrows(AcmeException.class, () -> account.newOrder().domains("localhost").create(),
+			"request of a deactivated account expected to be rejected");
 	}
 
 	@Test
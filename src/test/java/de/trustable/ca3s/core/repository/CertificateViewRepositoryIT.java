@@ -0,0 +1,159 @@
+package de.trustable.ca3s.core.repository;
+
+import de.trustable.ca3s.core.Ca3SApp;
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.service.dto.CertificateView;
+import de.trustable.ca3s.core.service.util.CertificateSelectionUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration tests for {@link CertificateViewRepository#findByCertificateIds}, with more ids than fit into a single query.
+ */
+@SpringBootTest(classes = Ca3SApp.class)
+@Transactional
+public class CertificateViewRepositoryIT {
+
+    private static final int N_LEAVES = CertificateViewRepository.MAX_IDS_PER_QUERY + 20;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private CertificateRepository certificateRepository;
+
+    @Autowired
+    private CertificateSelectionUtil certificateSelectionUtil;
+
+    private Certificate root;
+    private Certificate intermediate;
+    private Certificate orphanIntermediate;
+    private List<Long> leafIdList;
+    private Long brokenLeafId;
+    private Long noIssuerLeafId;
+
+    private int count = 0;
+
+    @BeforeEach
+    public void setup() {
+        root = persist("CN=View Root", null, true, false);
+        intermediate = persist("CN=View Intermediate", root, false, false);
+
+        // the root of this intermediate is not in the database
+        orphanIntermediate = persist("CN=View Orphan Intermediate", null, false, false);
+
+        leafIdList = new ArrayList<>();
+        for (int i = 0; i < N_LEAVES; i++) {
+            leafIdList.add(persist("CN=leaf-" + i, intermediate, false, true).getId());
+        }
+        brokenLeafId = persist("CN=broken leaf", orphanIntermediate, false, true).getId();
+        noIssuerLeafId = persist("CN=no issuer leaf", null, false, true).getId();
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void findByCertificateIdsInChunks() {
+
+        CertificateRepository repositorySpy = mock(CertificateRepository.class, delegatesTo(certificateRepository));
+        CertificateViewRepository certificateViewRepository =
+            new CertificateViewRepository(em, certificateSelectionUtil, repositorySpy, 300);
+
+        List<Long> idList = new ArrayList<>();
+        idList.add(brokenLeafId);
+        idList.addAll(leafIdList);
+        idList.add(Long.MAX_VALUE);
+        idList.add(noIssuerLeafId);
+
+        List<CertificateView> cvList = certificateViewRepository.findByCertificateIds(idList);
+
+        ArgumentCaptor<Collection<Long>> chunkCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(repositorySpy, times(2)).findByIdsWithDetails(chunkCaptor.capture());
+        assertThat(chunkCaptor.getAllValues().get(0)).hasSize(CertificateViewRepository.MAX_IDS_PER_QUERY);
+        assertThat(chunkCaptor.getAllValues().get(1)).hasSize(idList.size() - CertificateViewRepository.MAX_IDS_PER_QUERY);
+
+        // in the order of the ids, the unknown id is skipped
+        assertThat(cvList).hasSize(N_LEAVES + 2);
+        assertThat(cvList.get(0).getId()).isEqualTo(brokenLeafId);
+        assertThat(cvList.get(0).getFullChainAvailable()).isFalse();
+        for (int i = 0; i < N_LEAVES; i++) {
+            assertThat(cvList.get(i + 1).getId()).isEqualTo(leafIdList.get(i));
+            assertThat(cvList.get(i + 1).getFullChainAvailable()).isTrue();
+        }
+        assertThat(cvList.get(N_LEAVES + 1).getId()).isEqualTo(noIssuerLeafId);
+        assertThat(cvList.get(N_LEAVES + 1).getFullChainAvailable()).isFalse();
+
+        assertThat(certificateViewRepository.findByCertificateIds(new ArrayList<>())).isEmpty();
+    }
+
+    @Test
+    public void chainComplete() {
+
+        assertThat(CertificateView.isChainComplete(em.find(Certificate.class, root.getId()))).isTrue();
+        assertThat(CertificateView.isChainComplete(em.find(Certificate.class, intermediate.getId()))).isTrue();
+        assertThat(CertificateView.isChainComplete(em.find(Certificate.class, orphanIntermediate.getId()))).isFalse();
+
+        // issuers referring to each other, the walk along the chain is limited
+        Certificate first = new Certificate();
+        Certificate second = new Certificate();
+        first.setSelfsigned(false);
+        first.setIssuingCertificate(second);
+        second.setSelfsigned(false);
+        second.setIssuingCertificate(first);
+        assertThat(CertificateView.isChainComplete(first)).isFalse();
+
+        // chains longer than the limit are considered broken
+        Certificate issuer = new Certificate();
+        issuer.setSelfsigned(true);
+        for (int i = 0; i < 10; i++) {
+            Certificate cert = new Certificate();
+            cert.setSelfsigned(false);
+            cert.setIssuingCertificate(issuer);
+            issuer = cert;
+        }
+        assertThat(CertificateView.isChainComplete(issuer)).isFalse();
+        assertThat(CertificateView.isChainComplete(issuer.getIssuingCertificate())).isTrue();
+    }
+
+    private Certificate persist(final String subject, final Certificate issuingCertificate,
+                                final boolean selfsigned, final boolean endEntity) {
+
+        String id = System.nanoTime() + "-" + (count++);
+        Instant now = Instant.now();
+
+        Certificate cert = new Certificate();
+        cert.setTbsDigest("view-" + id);
+        cert.setSubject(subject);
+        cert.setIssuer(issuingCertificate == null ? subject : issuingCertificate.getSubject());
+        cert.setType("X509");
+        cert.setSerial(id);
+        cert.setValidFrom(now.minus(1, ChronoUnit.DAYS));
+        cert.setValidTo(now.plus(1, ChronoUnit.DAYS));
+        cert.setContent("n/a");
+        cert.setKeyAlgorithm("rsa");
+        cert.setKeyLength(2048);
+        cert.setSelfsigned(selfsigned);
+        cert.setEndEntity(endEntity);
+        cert.setRevoked(false);
+        cert.setActive(true);
+        cert.setIssuingCertificate(issuingCertificate);
+        em.persist(cert);
+        return cert;
+    }
+}
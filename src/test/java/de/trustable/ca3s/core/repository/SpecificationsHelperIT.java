@@ -0,0 +1,101 @@
+package de.trustable.ca3s.core.repository;
+
+import de.trustable.ca3s.core.Ca3SApp;
+import de.trustable.ca3s.core.domain.AcmeNonce;
+import de.trustable.ca3s.core.domain.AcmeNonce_;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the keyset paging of {@link SpecificationsHelper}, with null values of the sort column.
+ */
+@SpringBootTest(classes = Ca3SApp.class)
+@Transactional
+public class SpecificationsHelperIT {
+
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private EntityManager em;
+
+    private List<Long> idList;
+
+    @BeforeEach
+    public void setup() {
+        idList = new ArrayList<>();
+        for (String value : Arrays.asList(null, "b", null, "a", "c", null, "b")) {
+            AcmeNonce nonce = new AcmeNonce();
+            nonce.setNonceValue(value);
+            em.persist(nonce);
+            idList.add(nonce.getId());
+        }
+        em.flush();
+    }
+
+    @Test
+    public void keysetPagesWithNullValuesAscending() {
+
+        List<AcmeNonce> rowList = readAllPages(true);
+
+        assertThat(rowList).extracting(AcmeNonce::getId).containsExactlyInAnyOrderElementsOf(idList);
+        assertThat(rowList).extracting(AcmeNonce::getNonceValue)
+            .containsExactly(null, null, null, "a", "b", "b", "c");
+    }
+
+    @Test
+    public void keysetPagesWithNullValuesDescending() {
+
+        List<AcmeNonce> rowList = readAllPages(false);
+
+        assertThat(rowList).extracting(AcmeNonce::getId).containsExactlyInAnyOrderElementsOf(idList);
+        assertThat(rowList).extracting(AcmeNonce::getNonceValue)
+            .containsExactly("c", "b", "b", "a", null, null, null);
+    }
+
+    private List<AcmeNonce> readAllPages(final boolean ascending) {
+
+        List<AcmeNonce> rowList = new ArrayList<>();
+        List<AcmeNonce> page = readPage(null, ascending);
+        while (!page.isEmpty()) {
+            rowList.addAll(page);
+            page = readPage(page.get(page.size() - 1), ascending);
+        }
+        return rowList;
+    }
+
+    private List<AcmeNonce> readPage(final AcmeNonce lastRow, final boolean ascending) {
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<AcmeNonce> query = cb.createQuery(AcmeNonce.class);
+        Root<AcmeNonce> root = query.from(AcmeNonce.class);
+
+        Expression<Long> idExpression = root.get(AcmeNonce_.id);
+        Expression<String> sortExpression = root.get(AcmeNonce_.nonceValue);
+
+        Predicate pred = idExpression.in(idList);
+        if (lastRow != null) {
+            String afterValue = (lastRow.getNonceValue() == null) ? "" : lastRow.getNonceValue();
+            pred = cb.and(pred, SpecificationsHelper.buildKeysetPredicate(cb, sortExpression, idExpression,
+                afterValue, lastRow.getId(), ascending));
+        }
+
+        query.where(pred);
+        query.orderBy(SpecificationsHelper.buildOrderList(cb, sortExpression, idExpression, ascending));
+        return em.createQuery(query).setMaxResults(PAGE_SIZE).getResultList();
+    }
+}
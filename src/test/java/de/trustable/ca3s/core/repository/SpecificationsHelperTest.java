@@ -0,0 +1,69 @@
+package de.trustable.ca3s.core.repository;
+
+import de.trustable.ca3s.core.domain.enumeration.PipelineType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpecificationsHelperTest {
+
+    @Test
+    void parseSortValue() {
+        assertNull(SpecificationsHelper.parseSortValue(Long.class, ""));
+        assertEquals(42L, SpecificationsHelper.parseSortValue(Long.class, " 42"));
+        assertEquals(7, SpecificationsHelper.parseSortValue(Integer.class, "7"));
+        assertEquals(Boolean.TRUE, SpecificationsHelper.parseSortValue(Boolean.class, "true"));
+        assertEquals(Instant.ofEpochMilli(1600000000000L), SpecificationsHelper.parseSortValue(Instant.class, "1600000000000"));
+        assertEquals(Instant.parse("2020-09-13T12:26:40Z"), SpecificationsHelper.parseSortValue(Instant.class, "2020-09-13T12:26:40Z"));
+        assertEquals(PipelineType.ACME, SpecificationsHelper.parseSortValue(PipelineType.class, "ACME"));
+        assertEquals("CN=Foo ", SpecificationsHelper.parseSortValue(String.class, "CN=Foo "));
+
+        assertThrows(NumberFormatException.class, () -> SpecificationsHelper.parseSortValue(Long.class, "abc"));
+    }
+
+    @Test
+    void countCacheKeyIgnoresPaging() {
+        Map<String, String[]> parameterMap = new HashMap<>();
+        parameterMap.put("filter", new String[]{"id,subject"});
+        parameterMap.put("attributeName_1", new String[]{"subject"});
+        parameterMap.put("offset", new String[]{"0"});
+        parameterMap.put("count", new String[]{"cached"});
+
+        Map<String, String[]> nextPageMap = new HashMap<>(parameterMap);
+        nextPageMap.put("offset", new String[]{"20"});
+        nextPageMap.put("afterId", new String[]{"4711"});
+        nextPageMap.put("after", new String[]{"CN=Foo"});
+
+        String key = SpecificationsHelper.buildCountCacheKey("Certificate", parameterMap);
+        assertEquals(key, SpecificationsHelper.buildCountCacheKey("Certificate", nextPageMap));
+        assertNotEquals(key, SpecificationsHelper.buildCountCacheKey("CSR", parameterMap));
+
+        nextPageMap.put("attributeName_1", new String[]{"issuer"});
+        assertNotEquals(key, SpecificationsHelper.buildCountCacheKey("Certificate", nextPageMap));
+    }
+
+    @Test
+    void cachedCountIsReused() {
+        AtomicInteger nCounts = new AtomicInteger();
+        String key = "cachedCountIsReused";
+
+        assertEquals(17L, SpecificationsHelper.getCachedCount(key, () -> { nCounts.incrementAndGet(); return 17L; }));
+        assertEquals(17L, SpecificationsHelper.getCachedCount(key, () -> { nCounts.incrementAndGet(); return 18L; }));
+        assertEquals(1, nCounts.get());
+    }
+
+    @Test
+    void countMode() {
+        Map<String, String[]> parameterMap = new HashMap<>();
+        assertEquals(SpecificationsHelper.COUNT_EXACT, SpecificationsHelper.getCountMode(parameterMap));
+        parameterMap.put("count", new String[]{"None"});
+        assertEquals(SpecificationsHelper.COUNT_NONE, SpecificationsHelper.getCountMode(parameterMap));
+        parameterMap.put("count", new String[]{"unknown"});
+        assertEquals(SpecificationsHelper.COUNT_EXACT, SpecificationsHelper.getCountMode(parameterMap));
+    }
+}
@@ -0,0 +1,119 @@
+package de.trustable.ca3s.core.schedule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link LaneTaskScheduler}.
+ */
+public class LaneTaskSchedulerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LaneTaskScheduler laneTaskScheduler;
+    private TestJobs testJobs;
+
+    @BeforeEach
+    public void setup() {
+        ThreadPoolTaskScheduler triggerScheduler = new ThreadPoolTaskScheduler();
+        triggerScheduler.setPoolSize(1);
+        triggerScheduler.initialize();
+
+        meterRegistry = new SimpleMeterRegistry();
+        laneTaskScheduler = new LaneTaskScheduler(triggerScheduler, new MockEnvironment(), meterRegistry);
+        testJobs = new TestJobs();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        testJobs.importLatch.countDown();
+        laneTaskScheduler.destroy();
+    }
+
+    @Test
+    public void lanesResolvedFromAnnotations() throws Exception {
+
+        assertThat(laneTaskScheduler.laneJob(methodRunnable("importCertificates")).getLane())
+            .isEqualTo(SchedulingLane.IMPORT);
+        assertThat(laneTaskScheduler.laneJob(methodRunnable("cleanup")).getLane())
+            .isEqualTo(SchedulingLane.HOUSEKEEPING);
+        assertThat(laneTaskScheduler.laneJob(methodRunnable("cleanup")).getJobName())
+            .isEqualTo("TestJobs.cleanup");
+        assertThat(laneTaskScheduler.laneJob(() -> {}).getLane())
+            .isEqualTo(SchedulingLane.DEFAULT);
+    }
+
+    @Test
+    public void blockedLaneDoesNotDelayOtherLanes() throws Exception {
+
+        laneTaskScheduler.scheduleAtFixedRate(methodRunnable("importCertificates"), 10);
+        laneTaskScheduler.scheduleWithFixedDelay(methodRunnable("cleanup"), 10);
+
+        // the import hangs, the housekeeping keeps its cadence
+        assertThat(testJobs.cleanupLatch.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // no second import run while the first one is still running
+        assertThat(testJobs.importRuns.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("ca3s.scheduler.job.skipped")
+            .tag("job", "TestJobs.importCertificates")
+            .tag("reason", "running")
+            .counter().count()).isPositive();
+
+        testJobs.importLatch.countDown();
+        assertThat(meterRegistry.get("ca3s.scheduler.job.duration")
+            .tag("lane", SchedulingLane.HOUSEKEEPING)
+            .tag("outcome", "success")
+            .timer().count()).isGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    public void failingJobIsRunAgain() throws Exception {
+
+        laneTaskScheduler.scheduleWithFixedDelay(methodRunnable("failing"), 10);
+
+        assertThat(testJobs.failingLatch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("ca3s.scheduler.job.duration")
+            .tag("job", "TestJobs.failing")
+            .tag("outcome", "failure")
+            .timer().count()).isGreaterThanOrEqualTo(2);
+    }
+
+    private ScheduledMethodRunnable methodRunnable(final String methodName) throws NoSuchMethodException {
+        return new ScheduledMethodRunnable(testJobs, TestJobs.class.getMethod(methodName));
+    }
+
+    @SchedulingLane(SchedulingLane.HOUSEKEEPING)
+    public static class TestJobs {
+
+        final CountDownLatch importLatch = new CountDownLatch(1);
+        final CountDownLatch cleanupLatch = new CountDownLatch(5);
+        final CountDownLatch failingLatch = new CountDownLatch(3);
+        final AtomicInteger importRuns = new AtomicInteger();
+
+        @SchedulingLane(SchedulingLane.IMPORT)
+        public void importCertificates() throws InterruptedException {
+            importRuns.incrementAndGet();
+            importLatch.await(10, TimeUnit.SECONDS);
+        }
+
+        public void cleanup() {
+            cleanupLatch.countDown();
+        }
+
+        @SchedulingLane(SchedulingLane.MAINTENANCE)
+        public void failing() {
+            failingLatch.countDown();
+            throw new IllegalStateException("job failed");
+        }
+    }
+}
@@ -1,9 +1,20 @@
 package de.trustable.ca3s.core.schedule.spider;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CrawlerTest {
 
@@ -16,4 +27,74 @@ public class CrawlerTest {
 
         Assertions.assertTrue(linkList.size() > 100, "ensure some certs are found");
     }
+
+    @Test
+    void searchRevisitsUnchangedPagesConditionally() throws IOException {
+
+        Map<String, String> pageMap = new HashMap<>();
+        pageMap.put("/", "<a href='/a.html'>a</a><a href='/a.html#top'>a</a><a href='/b.html'>b</a><a href='/certs/ca.crt'>ca</a>");
+        pageMap.put("/a.html", "<a href='/'>home</a><a href='/certs/server.pem'>server</a><a href='mailto:pki@example.com'>mail</a>");
+        pageMap.put("/b.html", "<a href='/certs/ca.crt'>ca</a>");
+
+        AtomicInteger nFetched = new AtomicInteger();
+        AtomicInteger nNotModified = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String page = pageMap.get(path);
+            if (page == null) {
+                respond(exchange, 404, "");
+            } else if (("\"" + path + "\"").equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                nNotModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                nFetched.incrementAndGet();
+                exchange.getResponseHeaders().add("ETag", "\"" + path + "\"");
+                exchange.getResponseHeaders().add("Content-Type", "text/html");
+                respond(exchange, 200, "<html><body>" + page + "</body></html>");
+            }
+        });
+        server.start();
+
+        try {
+            Crawler crawler = new Crawler(4, 2, 100, 5, 5000, 100);
+            String startUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+
+            List<String> certList = new ArrayList<>();
+            Assertions.assertEquals(3, crawler.search(startUrl, ".*\\.(crt|pem)", certList::add));
+            Assertions.assertEquals(2, certList.size());
+            Assertions.assertEquals(3, nFetched.get());
+
+            // unchanged pages are not fetched again, their links are reported from the cache
+            certList.clear();
+            Assertions.assertEquals(3, crawler.search(startUrl, ".*\\.(crt|pem)", certList::add));
+            Assertions.assertEquals(2, certList.size());
+            Assertions.assertEquals(3, nFetched.get());
+            Assertions.assertEquals(3, nNotModified.get());
+
+            // a search with a different pattern gets its links from the cached pages, too
+            certList.clear();
+            Assertions.assertEquals(3, crawler.search(startUrl, ".*\\.pem", certList::add));
+            Assertions.assertEquals(1, certList.size());
+            Assertions.assertEquals(3, nFetched.get());
+            Assertions.assertEquals(6, nNotModified.get());
+
+            crawler.shutdown();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, content.length == 0 ? -1 : content.length);
+        if (content.length > 0) {
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(content);
+            }
+        }
+        exchange.close();
+    }
 }
@@ -0,0 +1,105 @@
+package de.trustable.ca3s.core.service.badkeys;
+
+import org.bouncycastle.asn1.pkcs.RSAPublicKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyWeaknessCheckerTest {
+
+    KeyWeaknessChecker subject = new KeyWeaknessChecker(null);
+
+    @Test
+    void checkValidCertificate() {
+        BadKeysResult badKeysResult = subject.check(BadKeysServiceTest.validCertificate);
+        assertTrue(badKeysResult.isInstallationValid());
+        assertTrue(badKeysResult.isValid());
+        assertEquals("rsa", badKeysResult.getResponse().getType());
+    }
+
+    @Test
+    void checkROCAKey() {
+        assertResultType("roca", BadKeysServiceTest.rocaKey);
+    }
+
+    @Test
+    void checkRSA_E1() {
+        assertResultType("rsainvalid", BadKeysServiceTest.rsa_e1);
+    }
+
+    @Test
+    void checkRSA_Fermat() {
+        BadKeysResult badKeysResult = assertResultType("fermat", BadKeysServiceTest.rsa_fermat);
+        Fermat fermat = badKeysResult.getResponse().getResults().getFermat();
+        assertEquals(badKeysResult.getResponse().getN(), fermat.getP().multiply(fermat.getQ()));
+    }
+
+    @Test
+    void checkRSA_Prime_N() {
+        assertResultType("rsainvalid", BadKeysServiceTest.rsa_prime_n);
+    }
+
+    @Test
+    void checkRSA_Pattern() {
+        assertResultType("pattern", BadKeysServiceTest.rsa_pattern);
+    }
+
+    @Test
+    void checkSmallFactors() {
+        BigInteger n = BigInteger.valueOf(7919).multiply(BigInteger.probablePrime(1024, new java.util.Random(1)));
+        Response response = subject.checkRSA(n, BigInteger.valueOf(65537), new com.google.gson.JsonObject());
+        assertEquals("smallfactors", response.getResults().getResultType());
+    }
+
+    @Test
+    void checkBlocklist() throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(
+            RSAPublicKey.getInstance(KeyWeaknessChecker.parsePublicKey(BadKeysServiceTest.debianweak).parsePublicKey()).getModulus().toString().getBytes(StandardCharsets.US_ASCII));
+
+        byte[] other = hash.clone();
+        other[0] ^= (byte) 0x80;
+
+        byte[][] records = {Arrays.copyOf(hash, BadKeysBlocklist.RECORD_LENGTH), Arrays.copyOf(other, BadKeysBlocklist.RECORD_LENGTH)};
+        records[0][BadKeysBlocklist.HASH_LENGTH] = 1;
+        records[1][BadKeysBlocklist.HASH_LENGTH] = 2;
+        Arrays.sort(records, (a, b) -> Integer.compare(a[0] & 0xff, b[0] & 0xff));
+
+        File blocklistFile = File.createTempFile("blocklist", ".dat");
+        blocklistFile.deleteOnExit();
+        try (FileOutputStream fos = new FileOutputStream(blocklistFile)) {
+            for (byte[] record : records) {
+                fos.write(record);
+            }
+        }
+
+        KeyWeaknessChecker checker = new KeyWeaknessChecker(BadKeysBlocklist.load(blocklistFile));
+        BadKeysResult badKeysResult = checker.check(BadKeysServiceTest.debianweak);
+        assertFalse(badKeysResult.isValid());
+        assertEquals("blocklist", badKeysResult.getResponse().getResults().getResultType());
+        assertEquals(1, badKeysResult.getResponse().getResults().getBlocklist().getBlid());
+
+        assertTrue(checker.check(BadKeysServiceTest.validCertificate).isValid());
+    }
+
+    @Test
+    void checkUnparsableInput() {
+        BadKeysResult badKeysResult = subject.check("no PEM at all");
+        assertFalse(badKeysResult.isValid());
+        assertNull(badKeysResult.getResponse());
+    }
+
+    private BadKeysResult assertResultType(String expectedType, String pem) {
+        BadKeysResult badKeysResult = subject.check(pem);
+        assertTrue(badKeysResult.isInstallationValid());
+        assertFalse(badKeysResult.isValid());
+        assertEquals(expectedType, badKeysResult.getResponse().getResults().getResultType());
+        return badKeysResult;
+    }
+}
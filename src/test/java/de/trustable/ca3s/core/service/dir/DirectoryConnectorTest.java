@@ -0,0 +1,249 @@
+package de.trustable.ca3s.core.service.dir;
+
+import de.trustable.ca3s.core.domain.CAConnectorConfig;
+import de.trustable.ca3s.core.domain.ImportedURL;
+import de.trustable.ca3s.core.repository.ImportedURLRepository;
+import de.trustable.ca3s.core.schedule.ImportInfo;
+import de.trustable.ca3s.core.service.AuditService;
+import de.trustable.ca3s.core.service.dto.CertificateImportResult;
+import de.trustable.ca3s.core.service.util.CertificateBatchImporter;
+import de.trustable.ca3s.core.service.util.CertificateUtil;
+import de.trustable.ca3s.core.service.util.TransactionHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DirectoryConnectorTest {
+
+    private static final String REGEX = ".*\\.(cer|cert|crt|pem|der)";
+    private static final Instant FILE_DATE = Instant.ofEpochSecond(1600000000L);
+
+    @TempDir
+    Path dir;
+
+    private final List<ImportedURL> importedUrlList = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final long[] clock = {1000000L};
+
+    private ImportedURLRepository importedURLRepository;
+    private CertificateBatchImporter certificateBatchImporter;
+    private DirectoryWatcher directoryWatcher;
+    private DirectoryConnector directoryConnector;
+    private CAConnectorConfig caConfig;
+
+    @BeforeEach
+    void setUp() {
+        importedURLRepository = mock(ImportedURLRepository.class);
+        when(importedURLRepository.findEntityByUrlPrefix(anyString())).thenAnswer(invocation -> {
+            String pattern = invocation.getArgument(0);
+            String prefix = pattern.substring(0, pattern.length() - 1);
+            return importedUrlList.stream().filter(impUrl -> impUrl.getName().startsWith(prefix)).collect(Collectors.toList());
+        });
+        when(importedURLRepository.findEntityByUrl(anyString())).thenAnswer(invocation ->
+            importedUrlList.stream().filter(impUrl -> impUrl.getName().equals(invocation.getArgument(0))).collect(Collectors.toList()));
+
+        TransactionHandler transactionHandler = mock(TransactionHandler.class);
+        when(transactionHandler.runInNewTransaction(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+
+        certificateBatchImporter = mock(CertificateBatchImporter.class);
+        when(certificateBatchImporter.importCertificates(anyMap(), anyString())).thenAnswer(invocation -> {
+            Map<String, byte[]> contentMap = invocation.getArgument(0);
+            return new CertificateImportResult(contentMap.size(), contentMap.size(), 0, 0, 0L);
+        });
+
+        // full scan, unless stubbed otherwise
+        directoryWatcher = mock(DirectoryWatcher.class);
+        when(directoryWatcher.pollChanges(any())).thenReturn(null);
+
+        directoryConnector = new DirectoryConnector() {
+            @Override
+            long currentTimeMillis() {
+                return clock[0];
+            }
+        };
+        directoryConnector.certUtil = mock(CertificateUtil.class);
+        ReflectionTestUtils.setField(directoryConnector, "importedURLRepository", importedURLRepository);
+        ReflectionTestUtils.setField(directoryConnector, "transactionHandler", transactionHandler);
+        ReflectionTestUtils.setField(directoryConnector, "auditService", mock(AuditService.class));
+        ReflectionTestUtils.setField(directoryConnector, "certificateBatchImporter", certificateBatchImporter);
+        ReflectionTestUtils.setField(directoryConnector, "directoryWatcher", directoryWatcher);
+        ReflectionTestUtils.setField(directoryConnector, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(directoryConnector, "filesPerChunk", 200);
+
+        caConfig = new CAConnectorConfig();
+        caConfig.setName("dir");
+        caConfig.setTrustSelfsignedCertificates(false);
+    }
+
+    @Test
+    void newFileImported() throws IOException {
+        Path file = writeFile("server.pem", "content");
+        writeFile("readme.txt", "not selected");
+
+        assertEquals(1, directoryConnector.retrieveChangedCertificates(caConfig, dir, REGEX));
+
+        Map<String, byte[]> contentMap = captureImportedContent(1).get(0);
+        assertEquals(1, contentMap.size());
+        assertArrayEquals("content".getBytes(), contentMap.get(file.toString()));
+
+        ImportedURL impUrl = captureCheckpoints(1).get(0).get(0);
+        assertEquals(file.toFile().toURI().toString(), impUrl.getName());
+        assertEquals(FILE_DATE, impUrl.getImportDate());
+        assertEquals(Long.valueOf(7L), impUrl.getFileSize());
+        assertEquals(DigestUtils.sha256Hex("content"), impUrl.getContentHash());
+    }
+
+    @Test
+    void unchangedSizeAndDateSkipped() throws IOException {
+        Path file = writeFile("server.pem", "content");
+        importedUrlList.add(buildImportedURL(file, FILE_DATE, 7L, "not read at all"));
+
+        assertEquals(0, directoryConnector.retrieveChangedCertificates(caConfig, dir, REGEX));
+
+        verify(certificateBatchImporter, never()).importCertificates(anyMap(), anyString());
+        verify(importedURLRepository, never()).saveAll(any());
+        assertEquals(1.0, meterRegistry.get(DirectoryConnector.METRIC_DIRECTORY_FILES).tag("result", "unchanged").counter().count());
+    }
+
+    @Test
+    void touchedFileNotImportedAgain() throws IOException {
+        Path file = writeFile("server.pem", "content");
+        importedUrlList.add(buildImportedURL(file, FILE_DATE.minusSeconds(3600), 7L, DigestUtils.sha256Hex("content")));
+
+        assertEquals(0, directoryConnector.retrieveChangedCertificates(caConfig, dir, REGEX));
+
+        verify(certificateBatchImporter, never()).importCertificates(anyMap(), anyString());
+
+        // the checkpoint moves to the new date
+        ImportedURL impUrl = captureCheckpoints(1).get(0).get(0);
+        assertSame(importedUrlList.get(0), impUrl);
+        assertEquals(FILE_DATE, impUrl.getImportDate());
+    }
+
+    @Test
+    void modifiedFileImported() throws IOException {
+        Path file = writeFile("server.pem", "new content");
+        importedUrlList.add(buildImportedURL(file, FILE_DATE.minusSeconds(3600), 7L, DigestUtils.sha256Hex("content")));
+
+        assertEquals(1, directoryConnector.retrieveChangedCertificates(caConfig, dir, REGEX));
+
+        assertTrue(captureImportedContent(1).get(0).containsKey(file.toString()));
+        ImportedURL impUrl = captureCheckpoints(1).get(0).get(0);
+        assertSame(importedUrlList.get(0), impUrl);
+        assertEquals(Long.valueOf(11L), impUrl.getFileSize());
+        assertEquals(DigestUtils.sha256Hex("new content"), impUrl.getContentHash());
+    }
+
+    @Test
+    void fileRecordedByPerFileImportNotImportedAgain() throws IOException {
+        Path file = writeFile("server.pem", "content");
+
+        // a checkpoint written by the import of single files, without size and hash
+        directoryConnector.importCertifiateFromFile(file.toString(), new ImportInfo(), caConfig);
+        ArgumentCaptor<ImportedURL> importedUrlCaptor = ArgumentCaptor.forClass(ImportedURL.class);
+        verify(importedURLRepository).save(importedUrlCaptor.capture());
+        ImportedURL legacyUrl = importedUrlCaptor.getValue();
+        assertNull(legacyUrl.getFileSize());
+        assertNull(legacyUrl.getContentHash());
+        importedUrlList.add(legacyUrl);
+
+        assertEquals(0, directoryConnector.retrieveChangedCertificates(caConfig, dir, REGEX));
+
+        verify(certificateBatchImporter, never()).importCertificates(anyMap(), anyString());
+        ImportedURL impUrl = captureCheckpoints(1).get(0).get(0);
+        assertSame(legacyUrl, impUrl);
+        assertEquals(Long.valueOf(7L), impUrl.getFileSize());
+        assertEquals(DigestUtils.sha256Hex("content"), impUrl.getContentHash());
+    }
+
+    @Test
+    void watchedChangesOnly() throws IOException {
+        Path file = writeFile("server.pem", "content");
+        Path otherFile = writeFile("other.pem", "other content");
+        Path ignoredFile = writeFile("readme.txt", "not selected");
+        when(directoryWatcher.pollChanges(dir)).thenReturn(
+            new HashSet<>(Arrays.asList(file, ignoredFile, dir.resolve("deleted.pem"))));
+
+        assertEquals(1, directoryConnector.retrieveChangedCertificates(caConfig, dir, REGEX));
+
+        Map<String, byte[]> contentMap = captureImportedContent(1).get(0);
+        assertEquals(1, contentMap.size());
+        assertTrue(contentMap.containsKey(file.toString()));
+        assertFalse(contentMap.containsKey(otherFile.toString()));
+    }
+
+    @Test
+    void remainingFilesRequeuedAtTimeLimit() throws IOException {
+        ReflectionTestUtils.setField(directoryConnector, "filesPerChunk", 1);
+        Path firstFile = writeFile("a.pem", "first");
+        Path secondFile = writeFile("b.pem", "second");
+        Path thirdFile = writeFile("c.pem", "third");
+
+        when(certificateBatchImporter.importCertificates(anyMap(), anyString())).thenAnswer(invocation -> {
+            clock[0] += 300001L;
+            return new CertificateImportResult(1, 1, 0, 0, 300001L);
+        });
+
+        assertEquals(1, directoryConnector.retrieveChangedCertificates(caConfig, dir, REGEX));
+
+        assertTrue(captureImportedContent(1).get(0).containsKey(firstFile.toString()));
+        assertEquals(firstFile.toFile().toURI().toString(), captureCheckpoints(1).get(0).get(0).getName());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Path>> requeueCaptor = ArgumentCaptor.forClass(List.class);
+        verify(directoryWatcher).requeue(eq(dir), requeueCaptor.capture());
+        assertEquals(Arrays.asList(secondFile, thirdFile), new ArrayList<>(requeueCaptor.getValue()));
+        assertEquals(2.0, meterRegistry.get(DirectoryConnector.METRIC_DIRECTORY_PENDING).tag("connector", "dir").gauge().value());
+    }
+
+    private Path writeFile(final String name, final String content) throws IOException {
+        Path file = Files.write(dir.resolve(name), content.getBytes());
+        Files.setLastModifiedTime(file, FileTime.from(FILE_DATE));
+        return file;
+    }
+
+    private static ImportedURL buildImportedURL(final Path file, final Instant importDate, final Long fileSize,
+                                                final String contentHash) {
+        ImportedURL impUrl = new ImportedURL();
+        impUrl.setName(file.toFile().toURI().toString());
+        impUrl.setImportDate(importDate);
+        impUrl.setFileSize(fileSize);
+        impUrl.setContentHash(contentHash);
+        return impUrl;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, byte[]>> captureImportedContent(final int times) {
+        ArgumentCaptor<Map<String, byte[]>> contentCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(certificateBatchImporter, times(times)).importCertificates(contentCaptor.capture(), eq(dir.toString()));
+        return contentCaptor.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<ImportedURL>> captureCheckpoints(final int times) {
+        ArgumentCaptor<List<ImportedURL>> checkpointCaptor = ArgumentCaptor.forClass(List.class);
+        verify(importedURLRepository, times(times)).saveAll(checkpointCaptor.capture());
+        return checkpointCaptor.getAllValues();
+    }
+}
@@ -0,0 +1,102 @@
+package de.trustable.ca3s.core.service.dir;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DirectoryWatcherTest {
+
+    private final DirectoryWatcher directoryWatcher = new DirectoryWatcher(3600);
+
+    @AfterEach
+    void tearDown() {
+        directoryWatcher.shutdown();
+    }
+
+    @Test
+    void firstPollRequestsFullScan(@TempDir Path dir) {
+        assertNull(directoryWatcher.pollChanges(dir));
+    }
+
+    @Test
+    void changedFilesAreReported(@TempDir Path dir) throws IOException, InterruptedException {
+        Files.createDirectories(dir.resolve("sub"));
+        startWatching(dir);
+
+        Path file = Files.write(dir.resolve("sub").resolve("server.pem"), new byte[]{0x30});
+
+        Set<Path> changedSet = waitForChanges(dir);
+        assertNotNull(changedSet, "no full scan expected");
+        assertTrue(changedSet.contains(file));
+        assertTrue(directoryWatcher.pollChanges(dir).isEmpty());
+    }
+
+    @Test
+    void modifiedDirectoryDoesNotRequestFullScan(@TempDir Path dir) throws IOException, InterruptedException {
+        Path subDir = Files.createDirectories(dir.resolve("sub"));
+        startWatching(dir);
+
+        // reported as a modification of 'sub' by the key of the parent directory
+        Files.setLastModifiedTime(subDir, FileTime.fromMillis(System.currentTimeMillis() - 60000L));
+        Path file = Files.write(subDir.resolve("server.pem"), new byte[]{0x30});
+
+        Set<Path> changedSet = waitForChanges(dir);
+        assertNotNull(changedSet, "no full scan expected");
+        assertEquals(Collections.singleton(file), changedSet);
+    }
+
+    @Test
+    void newDirectoryIsWatched(@TempDir Path dir) throws IOException, InterruptedException {
+        startWatching(dir);
+
+        // files created before the directory got registered are found by a full scan
+        Path subDir = Files.createDirectories(dir.resolve("new"));
+        assertNull(waitForChanges(dir));
+
+        Path file = Files.write(subDir.resolve("server.pem"), new byte[]{0x30});
+        Set<Path> changedSet = waitForChanges(dir);
+        assertNotNull(changedSet, "no full scan expected");
+        assertTrue(changedSet.contains(file));
+    }
+
+    @Test
+    void requeuedFilesAreReportedAgain(@TempDir Path dir) {
+        startWatching(dir);
+
+        Path file = dir.resolve("delayed.pem");
+        directoryWatcher.requeue(dir, Collections.singletonList(file));
+
+        assertEquals(Collections.singleton(file), directoryWatcher.pollChanges(dir));
+        assertTrue(directoryWatcher.pollChanges(dir).isEmpty());
+    }
+
+    /**
+     * the first poll requests a full scan, the tests are skipped if the file system can't be watched
+     */
+    private void startWatching(Path dir) {
+        assertNull(directoryWatcher.pollChanges(dir));
+        assumeTrue(directoryWatcher.pollChanges(dir) != null, "watching not supported");
+    }
+
+    private Set<Path> waitForChanges(Path dir) throws InterruptedException {
+        Set<Path> changedSet = null;
+        for (int i = 0; i < 150; i++) {
+            changedSet = directoryWatcher.pollChanges(dir);
+            if (changedSet == null || !changedSet.isEmpty()) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        return changedSet;
+    }
+}
@@ -0,0 +1,147 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.ACMEAccount;
+import de.trustable.ca3s.core.domain.enumeration.AccountStatus;
+import de.trustable.ca3s.core.repository.ACMEAccountRepository;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.lang.JoseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AcmeAccountKeyCacheTest {
+
+    private static final long ACCOUNT_ID = 4711L;
+
+    private ACMEAccountRepository acctRepository;
+    private JwtUtil jwtUtil;
+    private AcmeAccountKeyCache accountKeyCache;
+
+    private final long[] clock = {1000000L};
+
+    @BeforeEach
+    void setUp() throws JoseException {
+        acctRepository = mock(ACMEAccountRepository.class);
+        jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.parsePublicKey(anyString(), any())).thenAnswer(invocation -> mock(PublicKey.class));
+        when(jwtUtil.buildVerifier(any())).thenAnswer(invocation -> mock(JwtConsumer.class));
+
+        accountKeyCache = new AcmeAccountKeyCache(acctRepository, jwtUtil, 10, 300) {
+            @Override
+            long currentTimeMillis() {
+                return clock[0];
+            }
+        };
+    }
+
+    @Test
+    void cachedKeyReused() throws JoseException {
+        storeAccount(ACCOUNT_ID, "key-1", AccountStatus.VALID);
+
+        AcmeAccountKeyCache.AccountKey accountKey = accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256");
+        assertNotNull(accountKey);
+        assertEquals(ACCOUNT_ID, accountKey.getAccountId());
+        assertEquals("acme", accountKey.getRealm());
+        assertEquals(AccountStatus.VALID, accountKey.getStatus());
+
+        assertSame(accountKey, accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256"));
+        verify(acctRepository, times(1)).findByAccountId(ACCOUNT_ID);
+        verify(jwtUtil, times(1)).parsePublicKey("key-1", "RS256");
+    }
+
+    @Test
+    void unknownAccountNotCached() throws JoseException {
+        when(acctRepository.findByAccountId(ACCOUNT_ID)).thenReturn(Collections.emptyList());
+
+        assertNull(accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256"));
+        assertNull(accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256"));
+        verify(acctRepository, times(2)).findByAccountId(ACCOUNT_ID);
+        assertEquals(0, accountKeyCache.size());
+    }
+
+    @Test
+    void keyRolloverInvalidates() throws JoseException {
+        storeAccount(ACCOUNT_ID, "key-1", AccountStatus.VALID);
+        AcmeAccountKeyCache.AccountKey oldKey = accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256");
+
+        storeAccount(ACCOUNT_ID, "key-2", AccountStatus.VALID);
+        accountKeyCache.invalidate(ACCOUNT_ID);
+
+        AcmeAccountKeyCache.AccountKey newKey = accountKeyCache.getAccountKey(ACCOUNT_ID, "ES256");
+        assertNotSame(oldKey.getPublicKey(), newKey.getPublicKey());
+        assertNotSame(oldKey.getVerifier(), newKey.getVerifier());
+        verify(jwtUtil).parsePublicKey("key-2", "ES256");
+    }
+
+    @Test
+    void deactivationDroppedAfterCommit() throws JoseException {
+        storeAccount(ACCOUNT_ID, "key-1", AccountStatus.VALID);
+        accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256");
+
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            accountKeyCache.invalidate(ACCOUNT_ID);
+
+            // another request loads the account before the deactivation is committed
+            assertEquals(AccountStatus.VALID, accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256").getStatus());
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        storeAccount(ACCOUNT_ID, "key-1", AccountStatus.DEACTIVATED);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertEquals(AccountStatus.DEACTIVATED, accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256").getStatus());
+    }
+
+    @Test
+    void expiredEntryReloaded() throws JoseException {
+        storeAccount(ACCOUNT_ID, "key-1", AccountStatus.VALID);
+        AcmeAccountKeyCache.AccountKey accountKey = accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256");
+
+        // changed by another instance, without invalidation
+        storeAccount(ACCOUNT_ID, "key-1", AccountStatus.DEACTIVATED);
+
+        clock[0] += 299999L;
+        assertSame(accountKey, accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256"));
+
+        clock[0] += 1L;
+        assertEquals(AccountStatus.DEACTIVATED, accountKeyCache.getAccountKey(ACCOUNT_ID, "RS256").getStatus());
+        verify(acctRepository, times(2)).findByAccountId(ACCOUNT_ID);
+    }
+
+    @Test
+    void sizeBounded() throws JoseException {
+        for (long id = 1; id <= 25; id++) {
+            storeAccount(id, "key-" + id, AccountStatus.VALID);
+            assertNotNull(accountKeyCache.getAccountKey(id, "RS256"));
+            assertTrue(accountKeyCache.size() <= 10, "cache size expected to be limited");
+        }
+
+        // the latest entry is always kept
+        accountKeyCache.getAccountKey(25L, "RS256");
+        verify(acctRepository, times(1)).findByAccountId(25L);
+    }
+
+    private void storeAccount(final long accountId, final String publicKey, final AccountStatus status) {
+        ACMEAccount account = new ACMEAccount();
+        account.setId(accountId + 1000L);
+        account.setAccountId(accountId);
+        account.setRealm("acme");
+        account.setStatus(status);
+        account.setPublicKey(publicKey);
+        when(acctRepository.findByAccountId(accountId)).thenReturn(Collections.singletonList(account));
+    }
+}
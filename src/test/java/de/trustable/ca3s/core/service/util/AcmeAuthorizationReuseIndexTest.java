@@ -0,0 +1,123 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.ACMEAccount;
+import de.trustable.ca3s.core.domain.AcmeAuthorization;
+import de.trustable.ca3s.core.domain.AcmeChallenge;
+import de.trustable.ca3s.core.domain.AcmeOrder;
+import de.trustable.ca3s.core.domain.Pipeline;
+import de.trustable.ca3s.core.domain.enumeration.ChallengeStatus;
+import de.trustable.ca3s.core.repository.AcmeChallengeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AcmeAuthorizationReuseIndexTest {
+
+    @Test
+    void reuseFromIndexWithinPeriod() {
+        AcmeChallengeRepository challengeRepository = mock(AcmeChallengeRepository.class);
+        when(challengeRepository.findValidatedByAccountAndIdentifier(any(), any(), any(), any(), any(), any(), any()))
+            .thenReturn(Collections.emptyList());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AcmeAuthorizationReuseIndex index = new AcmeAuthorizationReuseIndex(challengeRepository, 86400, 100, meterRegistry);
+
+        ACMEAccount account = new ACMEAccount();
+        account.setId(42L);
+
+        index.put(AcmeAuthorizationReuseIndex.buildKey(42L, 7L, "dns", "www.example.com"),
+            new AcmeAuthorizationReuseIndex.ValidatedAuthorization(AcmeChallenge.CHALLENGE_TYPE_HTTP_01, Instant.now().minusSeconds(600)));
+
+        AcmeAuthorizationReuseIndex.ValidatedAuthorization validated = index.findReusable(account, 7L, "dns", "www.example.com", 3600);
+        assertNotNull(validated);
+        assertEquals(AcmeChallenge.CHALLENGE_TYPE_HTTP_01, validated.getChallengeType());
+
+        // validation too old for the pipeline
+        assertNull(index.findReusable(account, 7L, "dns", "www.example.com", 300));
+        // other identifier
+        assertNull(index.findReusable(account, 7L, "dns", "example.com", 3600));
+        // other pipeline
+        assertNull(index.findReusable(account, 8L, "dns", "www.example.com", 3600));
+
+        assertEquals(1.0, meterRegistry.get(AcmeAuthorizationReuseIndex.METRIC_REUSE).tag("result", "index").counter().count());
+        assertEquals(3.0, meterRegistry.get(AcmeAuthorizationReuseIndex.METRIC_REUSE).tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void reuseFromDatabase() {
+        AcmeChallenge challengeDao = new AcmeChallenge();
+        challengeDao.setType(AcmeChallenge.CHALLENGE_TYPE_DNS_01);
+        challengeDao.setValidated(Instant.now().minusSeconds(60));
+
+        AcmeChallengeRepository challengeRepository = mock(AcmeChallengeRepository.class);
+        when(challengeRepository.findValidatedByAccountAndIdentifier(any(), any(), any(), any(), any(), any(), any()))
+            .thenReturn(Collections.singletonList(challengeDao));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AcmeAuthorizationReuseIndex index = new AcmeAuthorizationReuseIndex(challengeRepository, 86400, 100, meterRegistry);
+
+        ACMEAccount account = new ACMEAccount();
+        account.setId(42L);
+
+        assertEquals(AcmeChallenge.CHALLENGE_TYPE_DNS_01,
+            index.findReusable(account, 7L, "dns", "*.example.com", 3600).getChallengeType());
+        assertEquals(1, index.size());
+        verify(challengeRepository).findValidatedByAccountAndIdentifier(eq(account), eq(7L), eq("dns"), eq("*.example.com"),
+            eq(ChallengeStatus.VALID), any(), any());
+
+        // second lookup served from the index
+        assertNotNull(index.findReusable(account, 7L, "dns", "*.example.com", 3600));
+        verify(challengeRepository, times(1)).findValidatedByAccountAndIdentifier(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void registeredForPipelineOfOrder() {
+        AcmeChallengeRepository challengeRepository = mock(AcmeChallengeRepository.class);
+        when(challengeRepository.findValidatedByAccountAndIdentifier(any(), any(), any(), any(), any(), any(), any()))
+            .thenReturn(Collections.emptyList());
+        AcmeAuthorizationReuseIndex index = new AcmeAuthorizationReuseIndex(challengeRepository, 86400, 100, new SimpleMeterRegistry());
+
+        ACMEAccount account = new ACMEAccount();
+        account.setId(42L);
+        Pipeline pipeline = new Pipeline();
+        pipeline.setId(7L);
+
+        AcmeOrder orderDao = new AcmeOrder();
+        orderDao.setAccount(account);
+        orderDao.setPipeline(pipeline);
+
+        AcmeAuthorization authDao = new AcmeAuthorization();
+        authDao.setOrder(orderDao);
+        authDao.setType("dns");
+        authDao.setValue("www.example.com");
+
+        AcmeChallenge challengeDao = new AcmeChallenge();
+        challengeDao.setAcmeAuthorization(authDao);
+        challengeDao.setType(AcmeChallenge.CHALLENGE_TYPE_HTTP_01);
+        challengeDao.setStatus(ChallengeStatus.VALID);
+        challengeDao.setValidated(Instant.now().minusSeconds(60));
+
+        index.register(challengeDao);
+
+        assertNotNull(index.findReusable(account, 7L, "dns", "www.example.com", 3600));
+        assertNull(index.findReusable(account, 8L, "dns", "www.example.com", 3600));
+        verify(challengeRepository, times(1)).findValidatedByAccountAndIdentifier(any(), eq(8L), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void expiredEntriesArePurged() {
+        AcmeAuthorizationReuseIndex index = new AcmeAuthorizationReuseIndex(mock(AcmeChallengeRepository.class),
+            3600, 2, new SimpleMeterRegistry());
+
+        index.put("1|7|dns|a", new AcmeAuthorizationReuseIndex.ValidatedAuthorization("http-01", Instant.now().minusSeconds(7200)));
+        index.put("1|7|dns|b", new AcmeAuthorizationReuseIndex.ValidatedAuthorization("http-01", Instant.now()));
+        index.put("1|7|dns|c", new AcmeAuthorizationReuseIndex.ValidatedAuthorization("http-01", Instant.now()));
+
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,134 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.AcmeChallenge;
+import de.trustable.ca3s.core.domain.enumeration.ChallengeStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AcmeChallengeValidationExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch releaseValidation = new CountDownLatch(1);
+
+    private AcmeChallengeValidationExecutor validationExecutor;
+
+    @AfterEach
+    void tearDown() {
+        releaseValidation.countDown();
+        if (validationExecutor != null) {
+            validationExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void queueFullRejected() throws InterruptedException {
+
+        // one worker, one queue slot
+        validationExecutor = new AcmeChallengeValidationExecutor(1, 1, 2, 2, meterRegistry);
+        occupyWorker(1L, "host-a");
+
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.SUBMITTED,
+            validationExecutor.submit(2L, AcmeChallenge.CHALLENGE_TYPE_HTTP_01, "host-b", () -> ChallengeStatus.VALID));
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.QUEUE_FULL,
+            validationExecutor.submit(3L, AcmeChallenge.CHALLENGE_TYPE_HTTP_01, "host-c", () -> ChallengeStatus.VALID));
+
+        assertFalse(validationExecutor.isInFlight(3L));
+        assertEquals(0, validationExecutor.getValidationCount("host-c"));
+        assertEquals(1.0, meterRegistry.get(AcmeChallengeValidationExecutor.METRIC_REJECTED)
+            .tag("reason", "queue").counter().count());
+    }
+
+    @Test
+    void hostLimitRejected() throws InterruptedException {
+
+        validationExecutor = new AcmeChallengeValidationExecutor(1, 10, 1, 2, meterRegistry);
+        occupyWorker(1L, "host-a");
+
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.HOST_LIMIT_EXCEEDED,
+            validationExecutor.submit(2L, AcmeChallenge.CHALLENGE_TYPE_HTTP_01, "host-a", () -> ChallengeStatus.VALID));
+        assertFalse(validationExecutor.isInFlight(2L));
+        assertEquals(1, validationExecutor.getValidationCount("host-a"));
+
+        // other hosts are not affected
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.SUBMITTED,
+            validationExecutor.submit(3L, AcmeChallenge.CHALLENGE_TYPE_ALPN_01, "host-b", () -> ChallengeStatus.VALID));
+
+        // DNS lookups share the resolver, with a limit of their own
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.SUBMITTED,
+            validationExecutor.submit(4L, AcmeChallenge.CHALLENGE_TYPE_DNS_01, "dns:resolver", () -> ChallengeStatus.VALID));
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.SUBMITTED,
+            validationExecutor.submit(5L, AcmeChallenge.CHALLENGE_TYPE_DNS_01, "dns:resolver", () -> ChallengeStatus.VALID));
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.HOST_LIMIT_EXCEEDED,
+            validationExecutor.submit(6L, AcmeChallenge.CHALLENGE_TYPE_DNS_01, "dns:resolver", () -> ChallengeStatus.VALID));
+
+        assertEquals(2.0, meterRegistry.get(AcmeChallengeValidationExecutor.METRIC_REJECTED)
+            .tag("reason", "host").counter().count());
+    }
+
+    @Test
+    void completionReleasesChallengeAndHost() throws InterruptedException {
+
+        validationExecutor = new AcmeChallengeValidationExecutor(1, 10, 2, 2, meterRegistry);
+        occupyWorker(1L, "host-a");
+
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.ALREADY_RUNNING,
+            validationExecutor.submit(1L, AcmeChallenge.CHALLENGE_TYPE_HTTP_01, "host-a", () -> ChallengeStatus.VALID));
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.SUBMITTED,
+            validationExecutor.submit(2L, AcmeChallenge.CHALLENGE_TYPE_HTTP_01, "host-a", () -> {
+                throw new IllegalStateException("validation failed");
+            }));
+        assertEquals(2, validationExecutor.getValidationCount("host-a"));
+
+        releaseValidation.countDown();
+        waitUntilDone(1L);
+        waitUntilDone(2L);
+
+        assertEquals(0, validationExecutor.getValidationCount("host-a"));
+        assertEquals(1L, meterRegistry.get(AcmeChallengeValidationExecutor.METRIC_VALIDATION)
+            .tag("outcome", "valid").timer().count());
+        assertEquals(1L, meterRegistry.get(AcmeChallengeValidationExecutor.METRIC_VALIDATION)
+            .tag("outcome", "error").timer().count());
+
+        // a challenge may be validated again, once the previous validation is finished
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.SUBMITTED,
+            validationExecutor.submit(1L, AcmeChallenge.CHALLENGE_TYPE_HTTP_01, "host-a", () -> ChallengeStatus.PENDING));
+        waitUntilDone(1L);
+        assertEquals(1L, meterRegistry.get(AcmeChallengeValidationExecutor.METRIC_VALIDATION)
+            .tag("outcome", "pending").timer().count());
+    }
+
+    /**
+     * keep the only worker busy until the test releases it
+     */
+    private void occupyWorker(final long challengeId, final String host) throws InterruptedException {
+
+        CountDownLatch validationRunning = new CountDownLatch(1);
+        Supplier<ChallengeStatus> validation = () -> {
+            validationRunning.countDown();
+            try {
+                releaseValidation.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ChallengeStatus.VALID;
+        };
+
+        assertEquals(AcmeChallengeValidationExecutor.SubmitResult.SUBMITTED,
+            validationExecutor.submit(challengeId, AcmeChallenge.CHALLENGE_TYPE_HTTP_01, host, validation));
+        assertTrue(validationRunning.await(5, TimeUnit.SECONDS));
+    }
+
+    private void waitUntilDone(final long challengeId) throws InterruptedException {
+        for (int i = 0; i < 100 && validationExecutor.isInFlight(challengeId); i++) {
+            Thread.sleep(50L);
+        }
+        assertFalse(validationExecutor.isInFlight(challengeId), "validation expected to be finished");
+    }
+}
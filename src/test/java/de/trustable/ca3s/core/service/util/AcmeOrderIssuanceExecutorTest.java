@@ -0,0 +1,117 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.AcmeOrder;
+import de.trustable.ca3s.core.domain.enumeration.AcmeOrderStatus;
+import de.trustable.ca3s.core.repository.AcmeOrderRepository;
+import de.trustable.ca3s.core.service.AuditService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AcmeOrderIssuanceExecutorTest {
+
+    private AcmeOrderRepository orderRepository;
+    private AcmeOrderIssuanceExecutor issuanceExecutor;
+
+    private final CountDownLatch issuanceRunning = new CountDownLatch(1);
+    private final CountDownLatch releaseIssuance = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        orderRepository = mock(AcmeOrderRepository.class);
+        TransactionHandler transactionHandler = mock(TransactionHandler.class);
+        when(transactionHandler.runInNewTransaction(any())).thenAnswer(invocation ->
+            ((Supplier<?>) invocation.getArgument(0)).get());
+
+        // one worker, one queue slot
+        issuanceExecutor = new AcmeOrderIssuanceExecutor(1, 1, 30,
+            orderRepository, mock(AuditService.class), transactionHandler, new SimpleMeterRegistry());
+
+        // keep the only worker busy
+        issuanceExecutor.submit(1L, () -> {
+            issuanceRunning.countDown();
+            try {
+                releaseIssuance.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return AcmeOrderStatus.VALID;
+        });
+        assertTrue(issuanceRunning.await(5, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseIssuance.countDown();
+        issuanceExecutor.shutdown();
+    }
+
+    @Test
+    void rejectedAfterCommitInvalidatesOrder() {
+
+        AcmeOrder queuedOrder = processingOrder(2L);
+        AcmeOrder rejectedOrder = processingOrder(3L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            // both fit at submission time, the queue is filled when the first one gets dispatched
+            assertEquals(AcmeOrderIssuanceExecutor.SubmitResult.SUBMITTED, issuanceExecutor.submit(2L, () -> AcmeOrderStatus.VALID));
+            assertEquals(AcmeOrderIssuanceExecutor.SubmitResult.SUBMITTED, issuanceExecutor.submit(3L, () -> AcmeOrderStatus.VALID));
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertEquals(AcmeOrderStatus.INVALID, rejectedOrder.getStatus());
+        assertEquals(AcmeOrderIssuanceExecutor.ERROR_REJECTED, rejectedOrder.getError());
+        assertFalse(issuanceExecutor.isInFlight(3L));
+        verify(orderRepository).save(rejectedOrder);
+
+        // the queued order gets dropped by the shutdown
+        assertEquals(AcmeOrderStatus.PROCESSING, queuedOrder.getStatus());
+        issuanceExecutor.shutdown();
+        assertEquals(AcmeOrderStatus.INVALID, queuedOrder.getStatus());
+        assertEquals(AcmeOrderIssuanceExecutor.ERROR_SHUTDOWN, queuedOrder.getError());
+    }
+
+    @Test
+    void staleOrdersInvalidated() {
+
+        AcmeOrder runningOrder = processingOrder(1L);
+        AcmeOrder staleOrder = processingOrder(4L);
+        Instant processingBefore = Instant.now();
+        when(orderRepository.findProcessingWithoutCertificateBefore(processingBefore))
+            .thenReturn(Arrays.asList(runningOrder, staleOrder));
+
+        assertEquals(1, issuanceExecutor.invalidateStaleOrders(processingBefore));
+
+        assertEquals(AcmeOrderStatus.PROCESSING, runningOrder.getStatus());
+        assertEquals(AcmeOrderStatus.INVALID, staleOrder.getStatus());
+        assertEquals(AcmeOrderIssuanceExecutor.ERROR_INCOMPLETE, staleOrder.getError());
+    }
+
+    private AcmeOrder processingOrder(final long orderId) {
+        AcmeOrder order = new AcmeOrder();
+        order.setOrderId(orderId);
+        order.setStatus(AcmeOrderStatus.PROCESSING);
+        when(orderRepository.findByOrderId(orderId)).thenReturn(Collections.singletonList(order));
+        return order;
+    }
+}
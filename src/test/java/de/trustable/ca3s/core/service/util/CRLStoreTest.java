@@ -0,0 +1,225 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.CertificateAttribute;
+import de.trustable.ca3s.core.repository.CertificateAttributeRepository;
+import de.trustable.ca3s.core.repository.CertificateCommentRepository;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.ca3s.core.repository.ProtectedContentRepository;
+import de.trustable.ca3s.core.service.AuditService;
+import de.trustable.ca3s.core.service.dto.CRLDownload;
+import de.trustable.ca3s.core.service.dto.CRLUpdateInfo;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509CRL;
+import java.util.Date;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CRLStoreTest {
+
+    static final String CRL_URL = "http://crl.example.org/ca.crl";
+    static final String DELTA_URL = "http://crl.example.org/ca-delta.crl";
+
+    static KeyPair keyPair;
+
+    @TempDir
+    File storeDir;
+
+    CRLUtil crlUtil = mock(CRLUtil.class);
+
+    PreferenceUtil preferenceUtil = mock(PreferenceUtil.class);
+
+    @BeforeAll
+    static void createKeyPair() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        keyPair = kpg.generateKeyPair();
+    }
+
+    @BeforeEach
+    void verifyAllCRLs() {
+        when(crlUtil.verifyCRL(any(), anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void storedCRLSurvivesRestart() throws Exception {
+        when(preferenceUtil.getMaxNextUpdatePeriodCRLSec()).thenReturn(3600L);
+        when(crlUtil.downloadCRLIfModified(CRL_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(false, 2L, false), false, "\"etag-1\"", null));
+
+        CRLStore store = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+        StoredCRL storedCRL = store.get(CRL_URL);
+        assertNotNull(storedCRL.findRevoked(BigInteger.valueOf(4711)));
+        assertNull(storedCRL.findRevoked(BigInteger.valueOf(4712)));
+        assertNotNull(storedCRL.findRevoked(BigInteger.valueOf(4711), "CN=CRLStoreTest"));
+        assertNull(storedCRL.findRevoked(BigInteger.valueOf(4711), "CN=Other CA"));
+        assertFalse(store.isRefreshDue(CRL_URL));
+
+        CRLStore restartedStore = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+        StoredCRL reloadedCRL = restartedStore.getCached(CRL_URL);
+        assertNotNull(reloadedCRL);
+        assertEquals("\"etag-1\"", reloadedCRL.getETag());
+        assertNotNull(reloadedCRL.findRevoked(BigInteger.valueOf(4711)));
+        assertEquals(storedCRL.getEncodedLength(), reloadedCRL.getEncodedLength());
+
+        verify(crlUtil, times(1)).downloadCRLIfModified(anyString(), any(), any());
+    }
+
+    @Test
+    void unverifiableStoredCRLDropped() throws Exception {
+        when(preferenceUtil.getMaxNextUpdatePeriodCRLSec()).thenReturn(3600L);
+        when(crlUtil.downloadCRLIfModified(CRL_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(false, 2L, false), false, "\"etag-1\"", null));
+
+        CRLStore store = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+        assertNotNull(store.get(CRL_URL));
+        assertEquals(2, storeDir.listFiles().length);
+
+        // e.g. the file was tampered with
+        when(crlUtil.verifyCRL(any(), anyString())).thenReturn(null);
+
+        CRLStore restartedStore = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+        assertNull(restartedStore.getCached(CRL_URL));
+        assertTrue(restartedStore.isRefreshDue(CRL_URL));
+        assertEquals(0, storeDir.listFiles().length);
+    }
+
+    @Test
+    void notModifiedKeepsIndex() throws Exception {
+        // no validity period forces a refresh on every access
+        when(preferenceUtil.getMaxNextUpdatePeriodCRLSec()).thenReturn(0L);
+        when(crlUtil.downloadCRLIfModified(CRL_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(false, 2L, false), false, "\"etag-1\"", null));
+        when(crlUtil.downloadCRLIfModified(CRL_URL, "\"etag-1\"", null))
+            .thenReturn(CRLDownload.notModified("\"etag-1\"", null));
+
+        CRLStore store = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+        store.get(CRL_URL);
+        StoredCRL storedCRL = store.get(CRL_URL);
+
+        assertNotNull(storedCRL.findRevoked(BigInteger.valueOf(4711)));
+        verify(crlUtil, times(1)).downloadCRLIfModified(CRL_URL, "\"etag-1\"", null);
+    }
+
+    @Test
+    void deltaCRLApplied() throws Exception {
+        when(preferenceUtil.getMaxNextUpdatePeriodCRLSec()).thenReturn(3600L);
+        when(crlUtil.downloadCRLIfModified(CRL_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(false, 2L, true), false, null, null));
+        when(crlUtil.downloadCRLIfModified(DELTA_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(true, 2L, false), false, null, null));
+
+        CRLStore store = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+        StoredCRL storedCRL = store.get(CRL_URL);
+
+        assertNotNull(storedCRL.getDelta());
+        // revoked in the base CRL, removed by the delta CRL
+        assertNull(storedCRL.findRevoked(BigInteger.valueOf(4711)));
+        // revoked by the delta CRL only
+        StoredCRL.RevokedEntry revokedEntry = storedCRL.findRevoked(BigInteger.valueOf(4712));
+        assertNotNull(revokedEntry);
+        assertEquals(java.security.cert.CRLReason.KEY_COMPROMISE, revokedEntry.getReason());
+    }
+
+    @Test
+    void deltaCRLForNewerBaseIgnored() throws Exception {
+        when(preferenceUtil.getMaxNextUpdatePeriodCRLSec()).thenReturn(3600L);
+        when(crlUtil.downloadCRLIfModified(CRL_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(false, 2L, true), false, null, null));
+        when(crlUtil.downloadCRLIfModified(DELTA_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(true, 3L, false), false, null, null));
+
+        CRLStore store = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+        StoredCRL storedCRL = store.get(CRL_URL);
+
+        assertNull(storedCRL.getDelta());
+        assertNotNull(storedCRL.findRevoked(BigInteger.valueOf(4711)));
+    }
+
+    @Test
+    void crlCheckMatchesCertificateIssuer() throws Exception {
+        when(preferenceUtil.getMaxNextUpdatePeriodCRLSec()).thenReturn(3600L);
+        when(crlUtil.downloadCRLIfModified(CRL_URL, null, null))
+            .thenReturn(new CRLDownload(buildCRL(false, 2L, false), false, null, null));
+        CRLStore store = new CRLStore(crlUtil, preferenceUtil, storeDir.getAbsolutePath(), 10);
+
+        CertificateUtil certUtil = new CertificateUtil(mock(CertificateRepository.class),
+            mock(CertificateAttributeRepository.class), mock(CertificateCommentRepository.class),
+            mock(ProtectedContentRepository.class), mock(ProtectedContentUtil.class), preferenceUtil,
+            mock(CryptoService.class), mock(AuditService.class), mock(CaCertificateIndex.class));
+
+        // same serial, same CRL URL, different issuers
+        Certificate revokedCert = buildCertificate("CN=CRLStoreTest");
+        Certificate otherIssuerCert = buildCertificate("CN=Other CA");
+
+        CRLUpdateInfo info = certUtil.checkAllCRLsForCertificate(revokedCert, store, new HashSet<>());
+        assertTrue(info.isbCRLDownloadSuccess());
+        assertTrue(revokedCert.isRevoked());
+        assertNotNull(revokedCert.getRevokedSince());
+
+        info = certUtil.checkAllCRLsForCertificate(otherIssuerCert, store, new HashSet<>());
+        assertTrue(info.isbCRLDownloadSuccess());
+        assertNotEquals(Boolean.TRUE, otherIssuerCert.isRevoked(), "certificate of another issuer must not be revoked");
+    }
+
+    static Certificate buildCertificate(final String issuer) {
+        Certificate cert = new Certificate();
+        cert.setSerial("4711");
+        cert.setIssuer(issuer);
+        cert.setRevoked(false);
+
+        CertificateAttribute crlUrlAtt = new CertificateAttribute();
+        crlUrlAtt.setCertificate(cert);
+        crlUrlAtt.setName(CertificateAttribute.ATTRIBUTE_CRL_URL);
+        crlUrlAtt.setValue(CRL_URL);
+        cert.getCertificateAttributes().add(crlUrlAtt);
+        return cert;
+    }
+
+    static X509CRL buildCRL(boolean delta, long baseCrlNumber, boolean announceDelta) throws Exception {
+
+        Date now = new Date();
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(new X500Name("CN=CRLStoreTest"), now);
+        builder.setNextUpdate(new Date(now.getTime() + 3600000L));
+
+        if (delta) {
+            builder.addCRLEntry(BigInteger.valueOf(4711), now, CRLReason.removeFromCRL);
+            builder.addCRLEntry(BigInteger.valueOf(4712), now, CRLReason.keyCompromise);
+            builder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(baseCrlNumber + 1)));
+            builder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.valueOf(baseCrlNumber)));
+        } else {
+            builder.addCRLEntry(BigInteger.valueOf(4711), now, CRLReason.superseded);
+            builder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(baseCrlNumber)));
+        }
+        if (announceDelta) {
+            GeneralNames deltaNames = new GeneralNames(new GeneralName(GeneralName.uniformResourceIdentifier, DELTA_URL));
+            builder.addExtension(Extension.freshestCRL, false, new CRLDistPoint(new DistributionPoint[]{
+                new DistributionPoint(new DistributionPointName(deltaNames), null, null)}));
+        }
+
+        return new JcaX509CRLConverter().getCRL(
+            builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+    }
+}
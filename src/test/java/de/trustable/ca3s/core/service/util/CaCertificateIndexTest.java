@@ -0,0 +1,73 @@
+package de.trustable.ca3s.core.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaCertificateIndexTest {
+
+    static X509Certificate load(String resource) throws Exception {
+        try (InputStream is = CaCertificateIndexTest.class.getClassLoader().getResourceAsStream(resource)) {
+            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(is);
+        }
+    }
+
+    @Test
+    void findIssuerVerifiesSignature() throws Exception {
+        X509Certificate root = load("certificates/trust_root.pem");
+        X509Certificate rootRekeyed = load("certificates/trust_root_rekeyed.pem");
+        X509Certificate intermediate = load("certificates/trust_intermediate.pem");
+        X509Certificate server = load("certificates/trust_server.pem");
+
+        CaCertificateIndex.CaEntry rootEntry = new CaCertificateIndex.CaEntry(1L, root, false, true);
+        CaCertificateIndex.CaEntry rootRekeyedEntry = new CaCertificateIndex.CaEntry(2L, rootRekeyed, false, false);
+        CaCertificateIndex.CaEntry intermediateEntry = new CaCertificateIndex.CaEntry(3L, intermediate, false, false);
+        assertTrue(rootEntry.isSelfSigned());
+        assertFalse(intermediateEntry.isSelfSigned());
+
+        CaCertificateIndex.Snapshot snapshot = new CaCertificateIndex.Snapshot(0L, System.currentTimeMillis(),
+            Arrays.asList(rootRekeyedEntry, intermediateEntry, rootEntry));
+
+        Date now = new Date();
+        assertSame(intermediateEntry, snapshot.findIssuer(server, now));
+        // both roots share the subject, only one of them signed the intermediate
+        assertSame(rootEntry, snapshot.findIssuer(intermediate, now));
+        assertSame(rootEntry, snapshot.findIssuer(root, now));
+        assertEquals(3, snapshot.getAcceptedIssuers().length);
+    }
+
+    @Test
+    void unknownIssuer() throws Exception {
+        X509Certificate root = load("certificates/trust_root.pem");
+        X509Certificate server = load("certificates/trust_server.pem");
+
+        CaCertificateIndex.Snapshot snapshot = new CaCertificateIndex.Snapshot(0L, System.currentTimeMillis(),
+            Arrays.asList(new CaCertificateIndex.CaEntry(1L, root, false, true)));
+
+        assertNull(snapshot.findIssuer(server, new Date()));
+        assertFalse(CaCertificateIndex.isIssuedBy(server, root));
+    }
+
+    @Test
+    void snapshotWithReplacesEntry() throws Exception {
+        X509Certificate root = load("certificates/trust_root.pem");
+        X509Certificate intermediate = load("certificates/trust_intermediate.pem");
+        X509Certificate server = load("certificates/trust_server.pem");
+
+        CaCertificateIndex.Snapshot snapshot = new CaCertificateIndex.Snapshot(0L, System.currentTimeMillis(),
+            Arrays.asList(new CaCertificateIndex.CaEntry(1L, root, false, true)));
+        CaCertificateIndex.Snapshot extended = snapshot
+            .with(new CaCertificateIndex.CaEntry(3L, intermediate, false, false))
+            .with(new CaCertificateIndex.CaEntry(3L, intermediate, true, false));
+
+        assertNull(snapshot.findIssuer(server, new Date()));
+        assertEquals(2, extended.size());
+        assertTrue(extended.findIssuer(server, new Date()).isRevoked());
+    }
+}
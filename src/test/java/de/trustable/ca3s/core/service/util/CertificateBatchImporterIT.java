@@ -0,0 +1,225 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.Ca3SApp;
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.CertificateAttribute;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.ca3s.core.service.dto.CertificateImportResult;
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link CertificateBatchImporter}, writing to the H2 test database.
+ */
+@SpringBootTest(classes = Ca3SApp.class)
+public class CertificateBatchImporterIT {
+
+    private static final AtomicLong SERIAL = new AtomicLong(System.currentTimeMillis());
+
+    @Autowired
+    private CertificateBatchImporter certificateBatchImporter;
+
+    @Autowired
+    private CertificateRepository certificateRepository;
+
+    @Autowired
+    private CertificateUtil certUtil;
+
+    @Autowired
+    private TransactionHandler transactionHandler;
+
+    private KeyPair rootKeyPair;
+    private KeyPair intermediateKeyPair;
+    private X509CertificateHolder rootHolder;
+    private X509CertificateHolder intermediateHolder;
+
+    private String suffix;
+
+    @BeforeEach
+    public void setup() throws Exception {
+
+        // the test database is shared, use distinct names
+        suffix = Long.toString(SERIAL.incrementAndGet());
+
+        rootKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        intermediateKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+        rootHolder = buildCertificate("CN=Batch Root " + suffix + ",O=ca3s", rootKeyPair,
+            "CN=Batch Root " + suffix + ",O=ca3s", rootKeyPair, true, true);
+        intermediateHolder = buildCertificate("CN=Batch Intermediate " + suffix + ",O=ca3s", intermediateKeyPair,
+            rootHolder.getSubject().toString(), rootKeyPair, true, true);
+    }
+
+    @Test
+    public void importChainWithDuplicate() throws Exception {
+
+        X509CertificateHolder serverHolder = buildEndEntity("server-" + suffix + ".ca3s.test", true);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(rootHolder.getEncoded());
+        baos.write(CertificateStreamReaderTest.toPEM("CERTIFICATE", intermediateHolder.getEncoded()).getBytes(StandardCharsets.US_ASCII));
+        baos.write(serverHolder.getEncoded());
+        baos.write(serverHolder.getEncoded());
+        baos.write(CertificateStreamReaderTest.SHORT_DER);
+        byte[] content = baos.toByteArray();
+
+        String importUrl = "test:batch-import-" + suffix;
+        CertificateImportResult result = certificateBatchImporter.importCertificates(new ByteArrayInputStream(content), importUrl);
+
+        assertThat(result.getRead()).isEqualTo(5);
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getExisting()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getBatches()).isEqualTo(1);
+
+        transactionHandler.runInNewTransaction(() -> {
+            Certificate rootCert = findSingle(rootHolder);
+            Certificate intermediateCert = findSingle(intermediateHolder);
+            Certificate serverCert = findSingle(serverHolder);
+
+            assertThat(rootCert.isSelfsigned()).isTrue();
+            assertThat(rootCert.isEndEntity()).isFalse();
+            assertThat(intermediateCert.isEndEntity()).isFalse();
+            assertThat(serverCert.isEndEntity()).isTrue();
+
+            assertThat(intermediateCert.getIssuingCertificate().getId()).isEqualTo(rootCert.getId());
+            assertThat(intermediateCert.getRootCertificate().getId()).isEqualTo(rootCert.getId());
+            assertThat(serverCert.getIssuingCertificate().getId()).isEqualTo(intermediateCert.getId());
+            assertThat(serverCert.getRootCertificate().getId()).isEqualTo(rootCert.getId());
+            assertThat(serverCert.getRoot()).isEqualTo(rootCert.getSubject());
+
+            for (Certificate cert : new Certificate[]{rootCert, intermediateCert, serverCert}) {
+                assertThat(certUtil.getCertAttribute(cert, CertificateAttribute.ATTRIBUTE_SOURCE)).isEqualTo(importUrl);
+                assertThat(certUtil.getCertAttributes(cert, CertificateAttribute.ATTRIBUTE_SKI)).isNotEmpty();
+            }
+            return null;
+        });
+
+        // a second import finds all certificates in the database
+        result = certificateBatchImporter.importCertificates(new ByteArrayInputStream(content), importUrl);
+        assertThat(result.getRead()).isEqualTo(5);
+        assertThat(result.getImported()).isEqualTo(0);
+        assertThat(result.getExisting()).isEqualTo(4);
+        assertThat(result.getFailed()).isEqualTo(1);
+
+        transactionHandler.runInNewTransaction(() -> {
+            findSingle(rootHolder);
+            findSingle(intermediateHolder);
+            findSingle(serverHolder);
+            return null;
+        });
+    }
+
+    @Test
+    public void issuerFoundInDatabase() throws Exception {
+
+        CertificateImportResult result = certificateBatchImporter.importCertificates(
+            new ByteArrayInputStream(concat(rootHolder, intermediateHolder)), "test:batch-import-ca-" + suffix);
+        assertThat(result.getImported()).isEqualTo(2);
+
+        // the issuer of the first one is found by SKI, the issuer of the second one by its subject
+        X509CertificateHolder akiHolder = buildEndEntity("aki-" + suffix + ".ca3s.test", true);
+        X509CertificateHolder subjectHolder = buildEndEntity("subject-" + suffix + ".ca3s.test", false);
+
+        Map<String, byte[]> contentMap = new LinkedHashMap<>();
+        contentMap.put("file:/import/aki-" + suffix + ".crt", akiHolder.getEncoded());
+        contentMap.put("file:/import/subject-" + suffix + ".pem",
+            CertificateStreamReaderTest.toPEM("CERTIFICATE", subjectHolder.getEncoded()).getBytes(StandardCharsets.US_ASCII));
+
+        result = certificateBatchImporter.importCertificates(contentMap, "test:batch-import-ee-" + suffix);
+        assertThat(result.getRead()).isEqualTo(2);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getExisting()).isEqualTo(0);
+        assertThat(result.getFailed()).isEqualTo(0);
+
+        transactionHandler.runInNewTransaction(() -> {
+            Certificate rootCert = findSingle(rootHolder);
+            Certificate intermediateCert = findSingle(intermediateHolder);
+            Certificate akiCert = findSingle(akiHolder);
+            Certificate subjectCert = findSingle(subjectHolder);
+
+            for (Certificate cert : new Certificate[]{akiCert, subjectCert}) {
+                assertThat(cert.getIssuingCertificate().getId()).isEqualTo(intermediateCert.getId());
+                assertThat(cert.getRootCertificate().getId()).isEqualTo(rootCert.getId());
+            }
+
+            assertThat(certUtil.getCertAttribute(akiCert, CertificateAttribute.ATTRIBUTE_SOURCE))
+                .isEqualTo("file:/import/aki-" + suffix + ".crt");
+            assertThat(certUtil.getCertAttribute(subjectCert, CertificateAttribute.ATTRIBUTE_SOURCE))
+                .isEqualTo("file:/import/subject-" + suffix + ".pem");
+            return null;
+        });
+    }
+
+    private Certificate findSingle(final X509CertificateHolder holder) {
+        List<Certificate> certList = certificateRepository.findByTBSDigest(getTbsDigest(holder));
+        assertThat(certList).hasSize(1);
+        return certList.get(0);
+    }
+
+    private X509CertificateHolder buildEndEntity(final String cn, final boolean withAKI) throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        return buildCertificate("CN=" + cn, keyPair, intermediateHolder.getSubject().toString(), intermediateKeyPair, false, withAKI);
+    }
+
+    private static X509CertificateHolder buildCertificate(final String subject, final KeyPair keyPair,
+                                                          final String issuer, final KeyPair issuerKeyPair,
+                                                          final boolean ca, final boolean withAKI) throws Exception {
+
+        Date now = new Date();
+        JcaX509ExtensionUtils extUtils = new JcaX509ExtensionUtils();
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(new X500Name(issuer),
+            BigInteger.valueOf(SERIAL.incrementAndGet()),
+            new Date(now.getTime() - 60000L), new Date(now.getTime() + 3600000L),
+            new X500Name(subject), keyPair.getPublic());
+
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+        builder.addExtension(Extension.subjectKeyIdentifier, false, extUtils.createSubjectKeyIdentifier(keyPair.getPublic()));
+        if (withAKI) {
+            builder.addExtension(Extension.authorityKeyIdentifier, false, extUtils.createAuthorityKeyIdentifier(issuerKeyPair.getPublic()));
+        }
+        return builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(issuerKeyPair.getPrivate()));
+    }
+
+    private static byte[] concat(final X509CertificateHolder... holders) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (X509CertificateHolder holder : holders) {
+            baos.write(holder.getEncoded());
+        }
+        return baos.toByteArray();
+    }
+
+    private static String getTbsDigest(final X509CertificateHolder holder) {
+        try {
+            byte[] tbs = holder.toASN1Structure().getTBSCertificate().getEncoded();
+            return Base64.encodeBase64String(MessageDigest.getInstance("SHA-256").digest(tbs)).toLowerCase();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
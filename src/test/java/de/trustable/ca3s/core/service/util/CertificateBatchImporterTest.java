@@ -0,0 +1,84 @@
+package de.trustable.ca3s.core.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static de.trustable.ca3s.core.service.util.CertificateStreamReaderTest.SHORT_DER;
+import static de.trustable.ca3s.core.service.util.CertificateStreamReaderTest.longDER;
+import static de.trustable.ca3s.core.service.util.CertificateStreamReaderTest.toPEM;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CertificateBatchImporterTest {
+
+    @Test
+    void sourceContentInOrder() throws Exception {
+        ByteArrayOutputStream derContent = new ByteArrayOutputStream();
+        derContent.write(SHORT_DER);
+        derContent.write(longDER());
+
+        Map<String, byte[]> contentMap = new LinkedHashMap<>();
+        contentMap.put("empty.pem", new byte[0]);
+        contentMap.put("chain.der", derContent.toByteArray());
+        contentMap.put("readme.txt", "no certificate in here\n".getBytes(StandardCharsets.US_ASCII));
+        contentMap.put("server.pem", toPEM("CERTIFICATE", longDER()).getBytes(StandardCharsets.US_ASCII));
+
+        CertificateBatchImporter.SourceContentIterator iterator = new CertificateBatchImporter.SourceContentIterator(contentMap);
+        assertNull(iterator.getCurrentSource());
+
+        assertTrue(iterator.hasNext());
+        assertArrayEquals(SHORT_DER, iterator.next());
+        assertEquals("chain.der", iterator.getCurrentSource());
+
+        assertArrayEquals(longDER(), iterator.next());
+        assertEquals("chain.der", iterator.getCurrentSource());
+
+        // looking ahead does not change the source of the current certificate
+        assertTrue(iterator.hasNext());
+        assertEquals("chain.der", iterator.getCurrentSource());
+
+        assertArrayEquals(longDER(), iterator.next());
+        assertEquals("server.pem", iterator.getCurrentSource());
+
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    void unreadableSourceSkipped() throws Exception {
+        byte[] truncated = new byte[100];
+        System.arraycopy(longDER(), 0, truncated, 0, truncated.length);
+
+        ByteArrayOutputStream brokenContent = new ByteArrayOutputStream();
+        brokenContent.write(SHORT_DER);
+        brokenContent.write(truncated);
+        brokenContent.write(SHORT_DER);
+
+        Map<String, byte[]> contentMap = new LinkedHashMap<>();
+        contentMap.put("broken.der", brokenContent.toByteArray());
+        contentMap.put("truncated.der", truncated);
+        contentMap.put("server.der", SHORT_DER);
+
+        CertificateBatchImporter.SourceContentIterator iterator = new CertificateBatchImporter.SourceContentIterator(contentMap);
+
+        // the certificates in front of the problem are kept
+        assertArrayEquals(SHORT_DER, iterator.next());
+        assertEquals("broken.der", iterator.getCurrentSource());
+
+        assertArrayEquals(SHORT_DER, iterator.next());
+        assertEquals("server.der", iterator.getCurrentSource());
+
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void noSources() {
+        CertificateBatchImporter.SourceContentIterator iterator = new CertificateBatchImporter.SourceContentIterator(new LinkedHashMap<>());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+}
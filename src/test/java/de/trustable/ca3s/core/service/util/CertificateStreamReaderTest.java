@@ -0,0 +1,95 @@
+package de.trustable.ca3s.core.service.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CertificateStreamReaderTest {
+
+    // the reader does not parse the certificates, any DER sequence will do
+    static final byte[] SHORT_DER = {0x30, 0x03, 0x02, 0x01, 0x05};
+
+    static byte[] longDER() {
+        byte[] der = new byte[4 + 300];
+        der[0] = 0x30;
+        der[1] = (byte) 0x82;
+        der[2] = 0x01;
+        der[3] = 0x2c;
+        for (int i = 4; i < der.length; i++) {
+            der[i] = (byte) i;
+        }
+        return der;
+    }
+
+    static String toPEM(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\r\n" +
+            Base64.encodeBase64String(der).replaceAll("(.{64})", "$1\n") +
+            "\n-----END " + type + "-----\n";
+    }
+
+    static List<byte[]> readAll(byte[] content) throws Exception {
+        List<byte[]> encodedList = new ArrayList<>();
+        try (CertificateStreamReader reader = new CertificateStreamReader(new ByteArrayInputStream(content))) {
+            while (reader.hasNext()) {
+                encodedList.add(reader.next());
+            }
+        }
+        return encodedList;
+    }
+
+    @Test
+    void concatenatedDER() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(SHORT_DER);
+        baos.write(longDER());
+        baos.write(SHORT_DER);
+
+        List<byte[]> encodedList = readAll(baos.toByteArray());
+        assertEquals(3, encodedList.size());
+        assertArrayEquals(SHORT_DER, encodedList.get(0));
+        assertArrayEquals(longDER(), encodedList.get(1));
+        assertArrayEquals(SHORT_DER, encodedList.get(2));
+    }
+
+    @Test
+    void pemWithOtherObjectsAndText() throws Exception {
+        String content = "subject=CN=Foo\n0 is a number starting a line\n" +
+            toPEM("CERTIFICATE", longDER()) +
+            toPEM("PRIVATE KEY", SHORT_DER) +
+            toPEM("CERTIFICATE REQUEST", SHORT_DER) +
+            "  \n" + toPEM("X509 CERTIFICATE", SHORT_DER);
+
+        List<byte[]> encodedList = readAll(content.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(2, encodedList.size());
+        assertArrayEquals(longDER(), encodedList.get(0));
+        assertArrayEquals(SHORT_DER, encodedList.get(1));
+    }
+
+    @Test
+    void derFollowedByPEM() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(longDER());
+        baos.write(toPEM("CERTIFICATE", SHORT_DER).getBytes(StandardCharsets.US_ASCII));
+
+        List<byte[]> encodedList = readAll(baos.toByteArray());
+        assertEquals(2, encodedList.size());
+        assertArrayEquals(longDER(), encodedList.get(0));
+        assertArrayEquals(SHORT_DER, encodedList.get(1));
+    }
+
+    @Test
+    void truncatedDERFails() {
+        byte[] truncated = new byte[100];
+        System.arraycopy(longDER(), 0, truncated, 0, truncated.length);
+
+        assertThrows(UncheckedIOException.class, () -> readAll(truncated));
+    }
+}
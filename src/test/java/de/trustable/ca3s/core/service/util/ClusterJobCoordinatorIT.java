@@ -0,0 +1,167 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.Ca3SApp;
+import de.trustable.ca3s.core.domain.SchedulerLease;
+import de.trustable.ca3s.core.repository.SchedulerLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link ClusterJobCoordinator}, several coordinators sharing the H2 test database.
+ */
+@SpringBootTest(classes = Ca3SApp.class)
+public class ClusterJobCoordinatorIT {
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    @Autowired
+    private TransactionHandler transactionHandler;
+
+    private List<ClusterJobCoordinator> nodeList;
+
+    @BeforeEach
+    public void setup() {
+        leaseRepository.deleteAll();
+        nodeList = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            nodeList.add(new ClusterJobCoordinator(leaseRepository, transactionHandler, true, 60, 15000, "node-" + i));
+        }
+    }
+
+    @Test
+    public void oneLeaderPerJob() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(nodeList.size());
+        try {
+            List<Callable<Boolean>> callList = new ArrayList<>();
+            for (ClusterJobCoordinator node : nodeList) {
+                callList.add(() -> node.isLeader("testJob"));
+            }
+
+            int nLeaders = 0;
+            for (Future<Boolean> future : executor.invokeAll(callList)) {
+                if (future.get()) {
+                    nLeaders++;
+                }
+            }
+            assertThat(nLeaders).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ClusterJobCoordinator leader = null;
+        for (ClusterJobCoordinator node : nodeList) {
+            if (node.isLeader("testJob")) {
+                assertThat(leader).isNull();
+                leader = node;
+            }
+        }
+        assertThat(leader).isNotNull();
+
+        // the leader keeps the job, until it shuts down
+        leader.heartbeat();
+        assertThat(leader.isLeader("testJob")).isTrue();
+        leader.release();
+
+        int nNewLeaders = 0;
+        for (ClusterJobCoordinator node : nodeList) {
+            if (node != leader && node.isLeader("testJob")) {
+                nNewLeaders++;
+            }
+        }
+        assertThat(nNewLeaders).isEqualTo(1);
+    }
+
+    @Test
+    public void shardsCoverAllIds() {
+
+        for (ClusterJobCoordinator node : nodeList) {
+            node.heartbeat();
+        }
+
+        Set<Integer> indexSet = new HashSet<>();
+        List<ClusterJobCoordinator.Shard> shardList = new ArrayList<>();
+        for (ClusterJobCoordinator node : nodeList) {
+            ClusterJobCoordinator.Shard shard = node.getShard();
+            assertThat(shard.getCount()).isEqualTo(nodeList.size());
+            indexSet.add(shard.getIndex());
+            shardList.add(shard);
+        }
+        assertThat(indexSet).hasSize(nodeList.size());
+
+        for (long id = 1; id < 100; id++) {
+            int nOwners = 0;
+            for (ClusterJobCoordinator.Shard shard : shardList) {
+                if (shard.owns(id)) {
+                    nOwners++;
+                }
+            }
+            assertThat(nOwners).isEqualTo(1);
+        }
+
+        // a stopped node hands over its share
+        nodeList.get(0).release();
+        assertThat(nodeList.get(1).getShard().getCount()).isEqualTo(nodeList.size() - 1);
+    }
+
+    @Test
+    public void heartbeatThreadKeepsLeases() throws InterruptedException {
+
+        // a lease period of one second, renewed every 100 milliseconds
+        ClusterJobCoordinator leader = new ClusterJobCoordinator(leaseRepository, transactionHandler, true, 1, 100, "leader");
+        ClusterJobCoordinator follower = new ClusterJobCoordinator(leaseRepository, transactionHandler, true, 1, 100, "follower");
+        try {
+            leader.startHeartbeat();
+            assertThat(leader.isLeader("testJob")).isTrue();
+
+            Thread.sleep(2000L);
+            assertThat(follower.isLeader("testJob")).isFalse();
+        } finally {
+            leader.release();
+        }
+        assertThat(follower.isLeader("testJob")).isTrue();
+    }
+
+    @Test
+    public void goneNodesRemoved() {
+
+        Instant now = Instant.now();
+        leaseRepository.saveAndFlush(new SchedulerLease().jobName(ClusterJobCoordinator.NODE_PREFIX + "gone")
+            .owner("gone").leaseUntil(now.minusSeconds(120)));
+        leaseRepository.saveAndFlush(new SchedulerLease().jobName(ClusterJobCoordinator.NODE_PREFIX + "paused")
+            .owner("paused").leaseUntil(now.minusSeconds(30)));
+        leaseRepository.saveAndFlush(new SchedulerLease().jobName("goneJob")
+            .owner("gone").leaseUntil(now.minusSeconds(120)));
+
+        nodeList.get(0).heartbeat();
+
+        assertThat(leaseRepository.findByJobName(ClusterJobCoordinator.NODE_PREFIX + "gone")).isEmpty();
+        assertThat(leaseRepository.findByJobName(ClusterJobCoordinator.NODE_PREFIX + "paused")).hasSize(1);
+        assertThat(leaseRepository.findByJobName("goneJob")).hasSize(1);
+        assertThat(leaseRepository.findByJobName(ClusterJobCoordinator.NODE_PREFIX + "node-0")).hasSize(1);
+    }
+
+    @Test
+    public void disabledCoordinatorRunsEverything() {
+
+        ClusterJobCoordinator single = new ClusterJobCoordinator(leaseRepository, transactionHandler, false, 60, 15000, "single");
+        assertThat(single.isLeader("testJob")).isTrue();
+        assertThat(single.getShard()).isSameAs(ClusterJobCoordinator.Shard.ALL);
+        assertThat(leaseRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,76 @@
+package de.trustable.ca3s.core.service.util;
+
+import com.sun.net.httpserver.HttpServer;
+import de.trustable.ca3s.core.security.provider.Ca3sTrustManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ConnectorHttpTransportTest {
+
+    private HttpServer server;
+    private final Set<InetSocketAddress> clientAddressSet = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/cmp/", exchange -> {
+            clientAddressSet.add(exchange.getRemoteAddress());
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            if (exchange.getRequestURI().getPath().endsWith("/fail")) {
+                exchange.sendResponseHeaders(500, -1);
+            } else {
+                exchange.sendResponseHeaders(200, request.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(request);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void postReusesConnection() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConnectorHttpTransport transport = new ConnectorHttpTransport(mock(Ca3sTrustManager.class), meterRegistry, 5000, 5000);
+
+        String url = "http://localhost:" + server.getAddress().getPort() + "/cmp/test";
+        for (int i = 0; i < 5; i++) {
+            byte[] request = new byte[]{0x30, (byte) i};
+            assertArrayEquals(request, transport.post("testConnector", url, "application/octet-stream", request));
+        }
+
+        // all requests sent over one kept alive connection
+        assertEquals(1, clientAddressSet.size());
+        assertEquals(5, meterRegistry.get(ConnectorHttpTransport.METRIC_REQUEST)
+            .tag("connector", "testConnector").tag("status", "200").timer().count());
+    }
+
+    @Test
+    void postFailsOnErrorStatus() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConnectorHttpTransport transport = new ConnectorHttpTransport(mock(Ca3sTrustManager.class), meterRegistry, 5000, 5000);
+
+        String url = "http://localhost:" + server.getAddress().getPort() + "/cmp/fail";
+        assertThrows(IOException.class, () -> transport.post("testConnector", url, "application/octet-stream", new byte[]{0x30}));
+        assertEquals(1, meterRegistry.get(ConnectorHttpTransport.METRIC_REQUEST)
+            .tag("status", "500").timer().count());
+    }
+}
@@ -0,0 +1,121 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CRLEntryHolder;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CrlPublisherTest {
+
+    private static final String CA_SUBJECT = "CN=CRL Test CA,O=trustable solutions,C=DE";
+
+    private X509CertificateHolder caHolder;
+    private CertificateRepository certificateRepository;
+    private OcspResponder ocspResponder;
+    private CrlPublisher crlPublisher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InternalCaTestFixture fixture = new InternalCaTestFixture(CA_SUBJECT);
+        caHolder = fixture.caHolder;
+
+        certificateRepository = fixture.certificateRepository;
+        when(certificateRepository.findRevokedByIssuerSince(anyString(), any(Instant.class))).thenReturn(Collections.emptyList());
+        when(certificateRepository.findRevokedByIssuerSince(CA_SUBJECT, Instant.EPOCH))
+            .thenReturn(Collections.singletonList(revokedCertificate("5", "keyCompromise")));
+
+        ocspResponder = mock(OcspResponder.class);
+        crlPublisher = new CrlPublisher(certificateRepository, fixture.internalCaIssuers,
+            ocspResponder, fixture.cryptoUtil, 86400, 3600, 300, 300, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void fullCrlHoldsExistingRevocations() throws Exception {
+
+        assertNull(crlPublisher.getFullCrl(1L));
+        crlPublisher.publish();
+
+        X509CRLHolder fullCrl = new X509CRLHolder(crlPublisher.getFullCrl(1L).getEncoded());
+        assertTrue(fullCrl.isSignatureValid(new JcaContentVerifierProviderBuilder().build(caHolder)));
+        assertEquals(caHolder.getSubject(), fullCrl.getIssuer());
+        assertNull(fullCrl.getExtension(Extension.deltaCRLIndicator));
+        assertNotNull(fullCrl.getExtension(Extension.authorityKeyIdentifier));
+
+        X509CRLEntryHolder entry = fullCrl.getRevokedCertificate(BigInteger.valueOf(5));
+        assertNotNull(entry);
+        assertEquals(CRLReason.lookup(CRLReason.keyCompromise), CRLReason.getInstance(entry.getExtensions().getExtensionParsedValue(Extension.reasonCode)));
+
+        X509CRLHolder deltaCrl = new X509CRLHolder(crlPublisher.getDeltaCrl(1L).getEncoded());
+        assertTrue(deltaCrl.getRevokedCertificates().isEmpty());
+        assertEquals(crlNumber(fullCrl), baseCrlNumber(deltaCrl));
+        assertTrue(crlNumber(deltaCrl).compareTo(crlNumber(fullCrl)) > 0);
+
+        assertNull(crlPublisher.getFullCrl(2L));
+    }
+
+    @Test
+    void newRevocationsGoToDeltaCrl() throws Exception {
+
+        crlPublisher.publish();
+        CrlPublisher.PublishedCrl fullCrl = crlPublisher.getFullCrl(1L);
+        CrlPublisher.PublishedCrl firstDelta = crlPublisher.getDeltaCrl(1L);
+
+        when(certificateRepository.findRevokedByIssuerSince(anyString(), any(Instant.class)))
+            .thenReturn(Collections.singletonList(revokedCertificate("6", "superseded")));
+        crlPublisher.publish();
+
+        assertSame(fullCrl, crlPublisher.getFullCrl(1L));
+        X509CRLHolder deltaCrl = new X509CRLHolder(crlPublisher.getDeltaCrl(1L).getEncoded());
+        assertEquals(1, deltaCrl.getRevokedCertificates().size());
+        assertNotNull(deltaCrl.getRevokedCertificate(BigInteger.valueOf(6)));
+        assertEquals(fullCrl.getCrlNumber(), baseCrlNumber(deltaCrl));
+        assertTrue(crlNumber(deltaCrl).compareTo(firstDelta.getCrlNumber()) > 0);
+
+        // cached OCSP responses of new revocations are dropped, also for revocations made by other instances
+        verify(ocspResponder).invalidate(1L, Collections.singleton(BigInteger.valueOf(6)));
+
+        // the overlapping query returns the same revocation again, nothing to publish
+        CrlPublisher.PublishedCrl secondDelta = crlPublisher.getDeltaCrl(1L);
+        crlPublisher.publish();
+        assertSame(secondDelta, crlPublisher.getDeltaCrl(1L));
+
+        // only the first run reads all revocations
+        verify(certificateRepository, times(1)).findRevokedByIssuerSince(CA_SUBJECT, Instant.EPOCH);
+        verify(certificateRepository, times(3)).findRevokedByIssuerSince(eq(CA_SUBJECT), any(Instant.class));
+    }
+
+    private static Certificate revokedCertificate(String serial, String reason) {
+        Certificate cert = new Certificate();
+        cert.setSerial(serial);
+        cert.setRevoked(true);
+        cert.setRevokedSince(Instant.now());
+        cert.setRevocationReason(reason);
+        return cert;
+    }
+
+    private static BigInteger crlNumber(X509CRLHolder crl) {
+        return CRLNumber.getInstance(crl.getExtension(Extension.cRLNumber).getParsedValue()).getCRLNumber();
+    }
+
+    private static BigInteger baseCrlNumber(X509CRLHolder crl) {
+        return CRLNumber.getInstance(crl.getExtension(Extension.deltaCRLIndicator).getParsedValue()).getCRLNumber();
+    }
+}
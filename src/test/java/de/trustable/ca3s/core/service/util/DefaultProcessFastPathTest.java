@@ -0,0 +1,66 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.bpmn.task.CaBackendTask;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the recognition of the default process by {@link DefaultProcessFastPath}.
+ */
+public class DefaultProcessFastPathTest {
+
+    @Test
+    public void bundledProcessIsDefaultModel() throws Exception {
+
+        try (InputStream is = getClass().getResourceAsStream("/bpmn/CAInvocationProcess.bpmn")) {
+            BpmnModelInstance modelInstance = Bpmn.readModelFromStream(is);
+            assertThat(DefaultProcessFastPath.isDefaultModel(modelInstance)).isTrue();
+        }
+    }
+
+    @Test
+    public void modifiedProcessIsNotDefaultModel() {
+
+        BpmnModelInstance withUserTask = Bpmn.createExecutableProcess(BPMNUtil.CAINVOCATION_PROCESS)
+            .startEvent()
+            .userTask("approval")
+            .serviceTask("CAInvocationTask").camundaClass(CaBackendTask.class.getName())
+            .endEvent()
+            .done();
+        assertThat(DefaultProcessFastPath.isDefaultModel(withUserTask)).isFalse();
+
+        BpmnModelInstance asyncTask = Bpmn.createExecutableProcess(BPMNUtil.CAINVOCATION_PROCESS)
+            .startEvent()
+            .serviceTask("CAInvocationTask").camundaClass(CaBackendTask.class.getName()).camundaAsyncBefore()
+            .endEvent()
+            .done();
+        assertThat(DefaultProcessFastPath.isDefaultModel(asyncTask)).isFalse();
+
+        BpmnModelInstance otherTask = Bpmn.createExecutableProcess(BPMNUtil.CAINVOCATION_PROCESS)
+            .startEvent()
+            .serviceTask("CAInvocationTask").camundaClass("org.example.OtherTask")
+            .endEvent()
+            .done();
+        assertThat(DefaultProcessFastPath.isDefaultModel(otherTask)).isFalse();
+
+        BpmnModelInstance withListener = Bpmn.createExecutableProcess(BPMNUtil.CAINVOCATION_PROCESS)
+            .startEvent()
+            .serviceTask("CAInvocationTask").camundaClass(CaBackendTask.class.getName())
+            .camundaExecutionListenerClass("end", "org.example.AuditListener")
+            .endEvent()
+            .done();
+        assertThat(DefaultProcessFastPath.isDefaultModel(withListener)).isFalse();
+
+        BpmnModelInstance sameShape = Bpmn.createExecutableProcess(BPMNUtil.CAINVOCATION_PROCESS)
+            .startEvent()
+            .serviceTask("CAInvocationTask").camundaClass(CaBackendTask.class.getName())
+            .endEvent()
+            .done();
+        assertThat(DefaultProcessFastPath.isDefaultModel(sameShape)).isTrue();
+    }
+}
@@ -0,0 +1,93 @@
+package de.trustable.ca3s.core.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryAcmeNonceStoreTest {
+
+    @Test
+    void nonceUsableOnce() {
+        InMemoryAcmeNonceStore store = new InMemoryAcmeNonceStore(3600, 60, 1000);
+
+        String nonce = store.createNonce();
+        assertTrue(store.consumeNonce(nonce), "fresh nonce expected to be accepted");
+        assertFalse(store.consumeNonce(nonce), "replayed nonce expected to be rejected");
+    }
+
+    @Test
+    void foreignOrBrokenNonceRejected() {
+        InMemoryAcmeNonceStore store = new InMemoryAcmeNonceStore(3600, 60, 1000);
+        InMemoryAcmeNonceStore otherStore = new InMemoryAcmeNonceStore(3600, 60, 1000);
+
+        assertFalse(store.consumeNonce(otherStore.createNonce()), "nonce of other instance expected to be rejected");
+        assertFalse(store.consumeNonce(null));
+        assertFalse(store.consumeNonce(""));
+        assertFalse(store.consumeNonce("not+base64url!"));
+
+        String nonce = store.createNonce();
+        String tampered = (nonce.charAt(0) == 'A' ? 'B' : 'A') + nonce.substring(1);
+        assertFalse(store.consumeNonce(tampered), "tampered nonce expected to be rejected");
+    }
+
+    @Test
+    void expiredNonceRejected() {
+        InMemoryAcmeNonceStore store = new InMemoryAcmeNonceStore(3600, 60, 1000);
+        long now = store.currentEpochSeconds();
+
+        assertFalse(store.consumeNonce(store.createNonce(now - 3601)), "expired nonce expected to be rejected");
+        assertFalse(store.consumeNonce(store.createNonce(now + 60)), "nonce from the future expected to be rejected");
+        assertTrue(store.consumeNonce(store.createNonce(now - 3500)));
+    }
+
+    @Test
+    void usedNoncesBounded() {
+        InMemoryAcmeNonceStore store = new InMemoryAcmeNonceStore(3600, 60, 10);
+        long now = store.currentEpochSeconds();
+
+        String oldNonce = store.createNonce(now - 600);
+        assertTrue(store.consumeNonce(oldNonce));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(store.consumeNonce(store.createNonce(now - 300)));
+        }
+        assertEquals(10, store.getUsedNonceCount(), "number of used nonces expected to be limited");
+
+        // the bucket of the old nonce was evicted, nonces of this bucket must not be accepted again
+        assertFalse(store.consumeNonce(oldNonce), "replay after eviction expected to be rejected");
+        assertFalse(store.consumeNonce(store.createNonce(now - 600)), "nonce of evicted bucket expected to be rejected");
+    }
+
+    @Test
+    void cleanupDropsExpiredBuckets() {
+        long[] clock = {6020L};
+        InMemoryAcmeNonceStore store = new InMemoryAcmeNonceStore(120, 60, 1000) {
+            @Override
+            long currentEpochSeconds() {
+                return clock[0];
+            }
+        };
+
+        // bucket 100
+        assertTrue(store.consumeNonce(store.createNonce(6000L)));
+        assertTrue(store.consumeNonce(store.createNonce(6010L)));
+        assertTrue(store.consumeNonce(store.createNonce(6020L)));
+
+        // bucket 103
+        clock[0] = 6200L;
+        assertTrue(store.consumeNonce(store.createNonce(6185L)));
+        assertTrue(store.consumeNonce(store.createNonce(6200L)));
+        assertEquals(5, store.getUsedNonceCount());
+
+        // buckets before 101 are expired
+        store.cleanupExpired();
+        assertEquals(2, store.getUsedNonceCount(), "the three nonces of bucket 100 expected to be evicted");
+
+        store.cleanupExpired();
+        assertEquals(2, store.getUsedNonceCount());
+
+        clock[0] = 6400L;
+        store.cleanupExpired();
+        assertEquals(0, store.getUsedNonceCount());
+    }
+}
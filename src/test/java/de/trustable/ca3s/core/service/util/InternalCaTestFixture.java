@@ -0,0 +1,74 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.CertificateAttribute;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import de.trustable.util.CryptoUtil;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A self-signed root as the only issuer of the internal CA, with mocked repository and crypto utilities.
+ * Tests add the stubs for the certificates they need to {@link #certificateRepository}.
+ */
+final class InternalCaTestFixture {
+
+    static final long CA_CERTIFICATE_ID = 1L;
+
+    final X509CertificateHolder caHolder;
+    final CertificateRepository certificateRepository;
+    final CryptoUtil cryptoUtil;
+    final InternalCaIssuers internalCaIssuers;
+
+    InternalCaTestFixture(final String caSubject) throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+
+        KeyPair caKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        Date now = new Date();
+        caHolder = new JcaX509v3CertificateBuilder(new X500Name(caSubject), BigInteger.ONE,
+            new Date(now.getTime() - 60000L), new Date(now.getTime() + 3600000L), new X500Name(caSubject), caKeyPair.getPublic())
+            .build(new JcaContentSignerBuilder("SHA256withRSA").build(caKeyPair.getPrivate()));
+
+        StringWriter pemWriter = new StringWriter();
+        try (JcaPEMWriter writer = new JcaPEMWriter(pemWriter)) {
+            writer.writeObject(caHolder);
+        }
+
+        Certificate caCert = new Certificate();
+        caCert.setId(CA_CERTIFICATE_ID);
+        caCert.setSubject(caSubject);
+        caCert.setContent(pemWriter.toString());
+
+        certificateRepository = mock(CertificateRepository.class);
+        when(certificateRepository.findByAttributeValue(CertificateAttribute.ATTRIBUTE_CA3S_ROOT, "true"))
+            .thenReturn(Collections.singletonList(caCert));
+        when(certificateRepository.findByAttributeValue(CertificateAttribute.ATTRIBUTE_CA3S_INTERMEDIATE, "true"))
+            .thenReturn(Collections.emptyList());
+
+        CertificateUtil certUtil = mock(CertificateUtil.class);
+        when(certUtil.getPrivateKey(any(Certificate.class))).thenReturn(caKeyPair.getPrivate());
+
+        cryptoUtil = mock(CryptoUtil.class);
+        when(cryptoUtil.crlReasonFromString("keyCompromise")).thenReturn(CRLReason.lookup(CRLReason.keyCompromise));
+        when(cryptoUtil.crlReasonFromString("superseded")).thenReturn(CRLReason.lookup(CRLReason.superseded));
+
+        internalCaIssuers = new InternalCaIssuers(certificateRepository, certUtil, 300);
+    }
+}
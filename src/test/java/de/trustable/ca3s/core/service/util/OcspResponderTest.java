@@ -0,0 +1,156 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.repository.CertificateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.UnknownStatus;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OcspResponderTest {
+
+    private static final String CA_SUBJECT = "CN=OCSP Test CA,O=trustable solutions,C=DE";
+
+    private X509CertificateHolder caHolder;
+    private CertificateRepository certificateRepository;
+    private OcspResponder ocspResponder;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InternalCaTestFixture fixture = new InternalCaTestFixture(CA_SUBJECT);
+        caHolder = fixture.caHolder;
+
+        certificateRepository = fixture.certificateRepository;
+        when(certificateRepository.findByIssuerSerial(anyString(), anyString())).thenReturn(Collections.emptyList());
+
+        ocspResponder = new OcspResponder(certificateRepository, fixture.internalCaIssuers,
+            fixture.cryptoUtil, 86400, 3600, 100, false, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void goodStatusIsCached() throws Exception {
+        Certificate eeCert = new Certificate();
+        eeCert.setSerial("42");
+        eeCert.setRevoked(false);
+        when(certificateRepository.findByIssuerSerial(CA_SUBJECT, "42")).thenReturn(Collections.singletonList(eeCert));
+
+        byte[] request = buildRequest(BigInteger.valueOf(42));
+        BasicOCSPResp basicResp = parse(ocspResponder.respond(request).getEncoded());
+        assertTrue(basicResp.isSignatureValid(new JcaContentVerifierProviderBuilder().build(caHolder)));
+        assertNull(basicResp.getResponses()[0].getCertStatus());
+        assertEquals(BigInteger.valueOf(42), basicResp.getResponses()[0].getCertID().getSerialNumber());
+
+        assertSame(ocspResponder.respond(request).getEncoded(), ocspResponder.respond(request).getEncoded());
+        verify(certificateRepository, times(1)).findByIssuerSerial(CA_SUBJECT, "42");
+        assertEquals(1, ocspResponder.size());
+    }
+
+    @Test
+    void revocationDropsCachedResponse() throws Exception {
+        Certificate eeCert = new Certificate();
+        eeCert.setSerial("43");
+        eeCert.setRevoked(false);
+        when(certificateRepository.findByIssuerSerial(CA_SUBJECT, "43")).thenReturn(Collections.singletonList(eeCert));
+
+        byte[] request = buildRequest(BigInteger.valueOf(43));
+        assertNull(parse(ocspResponder.respond(request).getEncoded()).getResponses()[0].getCertStatus());
+
+        eeCert.setRevoked(true);
+        eeCert.setRevokedSince(Instant.now());
+        eeCert.setRevocationReason("keyCompromise");
+        ocspResponder.invalidate(eeCert);
+        assertEquals(0, ocspResponder.size());
+
+        Object status = parse(ocspResponder.respond(request).getEncoded()).getResponses()[0].getCertStatus();
+        assertTrue(status instanceof RevokedStatus);
+        assertEquals(CRLReason.keyCompromise, ((RevokedStatus) status).getRevocationReason());
+    }
+
+    @Test
+    void revocationByOtherInstanceDropsCachedResponse() throws Exception {
+        Certificate eeCert = new Certificate();
+        eeCert.setSerial("44");
+        eeCert.setRevoked(false);
+        when(certificateRepository.findByIssuerSerial(CA_SUBJECT, "44")).thenReturn(Collections.singletonList(eeCert));
+
+        byte[] request = buildRequest(BigInteger.valueOf(44));
+        assertNull(parse(ocspResponder.respond(request).getEncoded()).getResponses()[0].getCertStatus());
+
+        // other issuer, other serial
+        ocspResponder.invalidate(2L, Collections.singleton(BigInteger.valueOf(44)));
+        ocspResponder.invalidate(1L, Collections.singleton(BigInteger.valueOf(45)));
+        assertEquals(1, ocspResponder.size());
+
+        eeCert.setRevoked(true);
+        eeCert.setRevokedSince(Instant.now());
+        eeCert.setRevocationReason("keyCompromise");
+        ocspResponder.invalidate(1L, Collections.singleton(BigInteger.valueOf(44)));
+        assertEquals(0, ocspResponder.size());
+
+        Object status = parse(ocspResponder.respond(request).getEncoded()).getResponses()[0].getCertStatus();
+        assertTrue(status instanceof RevokedStatus);
+    }
+
+    @Test
+    void unknownSerial() throws Exception {
+        Object status = parse(ocspResponder.respond(buildRequest(BigInteger.TEN)).getEncoded()).getResponses()[0].getCertStatus();
+        assertTrue(status instanceof UnknownStatus);
+    }
+
+    @Test
+    void foreignIssuerAndMalformedRequest() throws Exception {
+        KeyPair otherKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        X509CertificateHolder otherHolder = new JcaX509v3CertificateBuilder(new X500Name("CN=Other CA"), BigInteger.ONE,
+            new Date(), new Date(System.currentTimeMillis() + 3600000L), new X500Name("CN=Other CA"), otherKeyPair.getPublic())
+            .build(new JcaContentSignerBuilder("SHA256withRSA").build(otherKeyPair.getPrivate()));
+
+        byte[] request = new OCSPReqBuilder()
+            .addRequest(new CertificateID(new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+                otherHolder, BigInteger.TEN))
+            .build().getEncoded();
+        assertEquals(OCSPRespBuilder.UNAUTHORIZED, new OCSPResp(ocspResponder.respond(request).getEncoded()).getStatus());
+
+        assertEquals(OCSPRespBuilder.MALFORMED_REQUEST,
+            new OCSPResp(ocspResponder.respond(new byte[]{0x30, 0x03, 0x01}).getEncoded()).getStatus());
+        verify(certificateRepository, never()).findByIssuerSerial(eq(CA_SUBJECT), anyString());
+    }
+
+    private byte[] buildRequest(BigInteger serial) throws Exception {
+        return new OCSPReqBuilder()
+            .addRequest(new CertificateID(new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+                caHolder, serial))
+            .build().getEncoded();
+    }
+
+    private static BasicOCSPResp parse(byte[] encoded) throws Exception {
+        OCSPResp ocspResp = new OCSPResp(encoded);
+        assertEquals(OCSPRespBuilder.SUCCESSFUL, ocspResp.getStatus());
+        return (BasicOCSPResp) ocspResp.getResponseObject();
+    }
+}
@@ -0,0 +1,168 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Pipeline;
+import de.trustable.ca3s.core.domain.PipelineAttribute;
+import de.trustable.ca3s.core.domain.enumeration.PipelineType;
+import de.trustable.ca3s.core.repository.PipelineRepository;
+import de.trustable.ca3s.core.service.dto.ACMEConfigItems;
+import de.trustable.ca3s.core.service.dto.PipelineView;
+import de.trustable.ca3s.core.service.dto.SCEPConfigItems;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PipelineResolverTest {
+
+    private PipelineRepository pipelineRepository;
+    private PipelineResolver pipelineResolver;
+
+    private final long[] clock = {1000000L};
+
+    @BeforeEach
+    void setUp() {
+        pipelineRepository = mock(PipelineRepository.class);
+
+        PipelineUtil pipelineUtil = mock(PipelineUtil.class);
+        when(pipelineUtil.from(any(Pipeline.class))).thenAnswer(invocation -> buildView(invocation.getArgument(0)));
+
+        pipelineResolver = new PipelineResolver(pipelineRepository, pipelineUtil, 60) {
+            @Override
+            long currentTimeMillis() {
+                return clock[0];
+            }
+        };
+
+        when(pipelineRepository.findActiveByTypeUrl(PipelineType.ACME, "acme"))
+            .thenReturn(Collections.singletonList(buildPipeline(1L, "acme")));
+    }
+
+    @Test
+    void snapshotCached() {
+
+        PipelineSnapshot snapshot = pipelineResolver.getActivePipeline(PipelineType.ACME, "acme");
+        assertNotNull(snapshot);
+        assertEquals(1L, snapshot.getId());
+        assertEquals("acme", snapshot.getUrlPart());
+        assertTrue(snapshot.isActive());
+        assertEquals("ca", snapshot.getCaConnectorName());
+        assertEquals(42, snapshot.getAttribute("ACME_AUTHORIZATION_REUSE_SECONDS", 0));
+        assertEquals("n/a", snapshot.getAttribute("UNKNOWN", "n/a"));
+
+        assertSame(snapshot, pipelineResolver.getActivePipeline(PipelineType.ACME, "acme"));
+        verify(pipelineRepository, times(1)).findActiveByTypeUrl(PipelineType.ACME, "acme");
+    }
+
+    @Test
+    void unknownRealmNotCached() {
+
+        assertNull(pipelineResolver.getActivePipeline(PipelineType.ACME, "unknown"));
+        assertNull(pipelineResolver.getActivePipeline(PipelineType.ACME, "unknown"));
+        verify(pipelineRepository, times(2)).findActiveByTypeUrl(PipelineType.ACME, "unknown");
+
+        // same realm, other type
+        assertNull(pipelineResolver.getActivePipeline(PipelineType.SCEP, "acme"));
+    }
+
+    @Test
+    void changeEventDropsCache() {
+
+        PipelineSnapshot snapshot = pipelineResolver.getActivePipeline(PipelineType.ACME, "acme");
+
+        pipelineResolver.onApplicationEvent(new PipelineChangedEvent(this, 1L));
+
+        assertNotSame(snapshot, pipelineResolver.getActivePipeline(PipelineType.ACME, "acme"));
+        verify(pipelineRepository, times(2)).findActiveByTypeUrl(PipelineType.ACME, "acme");
+    }
+
+    @Test
+    void changeEventDropsCacheAgainAfterCommit() {
+
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            pipelineResolver.onApplicationEvent(new PipelineChangedEvent(this, 1L));
+
+            // loaded by a concurrent request before the change is committed
+            pipelineResolver.getActivePipeline(PipelineType.ACME, "acme");
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        pipelineResolver.getActivePipeline(PipelineType.ACME, "acme");
+        verify(pipelineRepository, times(2)).findActiveByTypeUrl(PipelineType.ACME, "acme");
+    }
+
+    @Test
+    void expiredEntryReloaded() {
+
+        PipelineSnapshot snapshot = pipelineResolver.getActivePipeline(PipelineType.ACME, "acme");
+
+        clock[0] += 59999L;
+        assertSame(snapshot, pipelineResolver.getActivePipeline(PipelineType.ACME, "acme"));
+
+        clock[0] += 1L;
+        assertNotSame(snapshot, pipelineResolver.getActivePipeline(PipelineType.ACME, "acme"));
+        verify(pipelineRepository, times(2)).findActiveByTypeUrl(PipelineType.ACME, "acme");
+    }
+
+    @Test
+    void pipelineViewNotShared() {
+
+        PipelineSnapshot snapshot = pipelineResolver.getActivePipeline(PipelineType.ACME, "acme");
+
+        PipelineView pipelineView = snapshot.getPipelineView();
+        assertEquals("acme", pipelineView.getName());
+        assertTrue(pipelineView.getAcmeConfigItems().isAllowWildcards());
+        assertEquals("test-subject", pipelineView.getScepConfigItems().getRecepientCertSubject());
+        assertNull(pipelineView.getScepConfigItems().getScepSecret(), "SCEP secret must not be cached");
+
+        pipelineView.setName("modified");
+        pipelineView.getAcmeConfigItems().setAllowWildcards(false);
+
+        PipelineView otherView = snapshot.getPipelineView();
+        assertNotSame(pipelineView, otherView);
+        assertEquals("acme", otherView.getName());
+        assertTrue(otherView.getAcmeConfigItems().isAllowWildcards());
+    }
+
+    private static Pipeline buildPipeline(final long id, final String urlPart) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setId(id);
+        pipeline.setName(urlPart);
+        pipeline.setType(PipelineType.ACME);
+        pipeline.setUrlPart(urlPart);
+        pipeline.setActive(true);
+
+        PipelineAttribute plAtt = new PipelineAttribute();
+        plAtt.setName("ACME_AUTHORIZATION_REUSE_SECONDS");
+        plAtt.setValue("42");
+        pipeline.getPipelineAttributes().add(plAtt);
+        return pipeline;
+    }
+
+    private static PipelineView buildView(final Pipeline pipeline) {
+        PipelineView pv = new PipelineView();
+        pv.setName(pipeline.getName());
+        pv.setCaConnectorName("ca");
+
+        ACMEConfigItems acmeConfigItems = new ACMEConfigItems();
+        acmeConfigItems.setAllowWildcards(true);
+        pv.setAcmeConfigItems(acmeConfigItems);
+
+        SCEPConfigItems scepConfigItems = new SCEPConfigItems();
+        scepConfigItems.setScepSecret("secret");
+        scepConfigItems.setRecepientCertSubject("test-subject");
+        pv.setScepConfigItems(scepConfigItems);
+        return pv;
+    }
+}
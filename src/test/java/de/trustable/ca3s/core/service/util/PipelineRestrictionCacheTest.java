@@ -0,0 +1,74 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Pipeline;
+import de.trustable.ca3s.core.domain.enumeration.RDNCardinalityRestriction;
+import de.trustable.ca3s.core.service.dto.PipelineView;
+import de.trustable.ca3s.core.service.dto.RDNRestriction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineRestrictionCacheTest {
+
+    static PipelineView buildView(Pipeline pipeline) {
+        RDNRestriction restriction = new RDNRestriction();
+        restriction.setCardinalityRestriction(RDNCardinalityRestriction.ONE);
+        restriction.setRegEx("^.*\\.trustable\\.eu$");
+        restriction.setRegExMatch(true);
+
+        PipelineView pv = new PipelineView();
+        pv.setName(pipeline.getName());
+        pv.setRestriction_CN(restriction);
+        return pv;
+    }
+
+    @Test
+    void evaluatorIsCompiledOncePerPipeline() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PipelineRestrictionCache cache = new PipelineRestrictionCache(60, meterRegistry);
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.setId(1L);
+        pipeline.setName("web");
+
+        AtomicInteger nCompiled = new AtomicInteger();
+        Function<Pipeline, PipelineView> viewBuilder = p -> { nCompiled.incrementAndGet(); return buildView(p); };
+
+        PipelineRestrictionEvaluator evaluator = cache.getEvaluator(pipeline, viewBuilder);
+        assertSame(evaluator, cache.getEvaluator(pipeline, viewBuilder));
+        assertEquals(1, nCompiled.get());
+
+        cache.onApplicationEvent(new PipelineChangedEvent(this, 1L));
+        assertNotSame(evaluator, cache.getEvaluator(pipeline, viewBuilder));
+        assertEquals(2, nCompiled.get());
+
+        List<String> messageList = new ArrayList<>();
+        assertTrue(evaluator.isResolved(new X500Name("CN=www.trustable.eu").getRDNs(), new HashSet<>(), messageList));
+        assertFalse(evaluator.isResolved(new X500Name("CN=www.example.com").getRDNs(), new HashSet<>(), messageList));
+        assertEquals(1, messageList.size());
+
+        assertEquals(2, meterRegistry.get(PipelineRestrictionEvaluator.METRIC_RESTRICTION)
+            .tag("pipeline", "web").tag("rule", "CN").timer().count());
+    }
+
+    @Test
+    void unsavedPipelineIsNotCached() {
+        PipelineRestrictionCache cache = new PipelineRestrictionCache(60, new SimpleMeterRegistry());
+
+        AtomicInteger nCompiled = new AtomicInteger();
+        Function<Pipeline, PipelineView> viewBuilder = p -> { nCompiled.incrementAndGet(); return buildView(p); };
+
+        Pipeline pipeline = new Pipeline();
+        cache.getEvaluator(pipeline, viewBuilder);
+        cache.getEvaluator(pipeline, viewBuilder);
+        assertEquals(2, nCompiled.get());
+    }
+}
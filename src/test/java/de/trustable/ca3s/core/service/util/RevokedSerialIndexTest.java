@@ -0,0 +1,94 @@
+package de.trustable.ca3s.core.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.cert.CRLReason;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevokedSerialIndexTest {
+
+    @Test
+    void revokedSerialsFound() {
+        List<RevokedSerialIndex.Entry> entryList = new ArrayList<>();
+        Random random = new Random(42L);
+        List<BigInteger> serialList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            BigInteger serial = new BigInteger(32 + random.nextInt(128), random);
+            serialList.add(serial);
+            entryList.add(new RevokedSerialIndex.Entry(serial, i, (i % 2 == 0) ? CRLReason.KEY_COMPROMISE : null));
+        }
+
+        RevokedSerialIndex index = RevokedSerialIndex.of(entryList);
+        assertEquals(1000, index.size());
+
+        for (int i = 0; i < serialList.size(); i++) {
+            int idx = index.indexOf(serialList.get(i));
+            assertTrue(idx >= 0, "serial " + serialList.get(i) + " expected to be found");
+            assertEquals(serialList.get(i), serialList.get((int) index.getRevocationDate(idx)));
+        }
+    }
+
+    @Test
+    void reasonAndDateKept() {
+        List<RevokedSerialIndex.Entry> entryList = new ArrayList<>();
+        entryList.add(new RevokedSerialIndex.Entry(BigInteger.valueOf(255), 1000L, CRLReason.SUPERSEDED));
+        entryList.add(new RevokedSerialIndex.Entry(BigInteger.valueOf(1), 2000L, null));
+
+        RevokedSerialIndex index = RevokedSerialIndex.of(entryList);
+
+        int idx = index.indexOf(BigInteger.valueOf(255));
+        assertEquals(1000L, index.getRevocationDate(idx));
+        assertEquals(CRLReason.SUPERSEDED, index.getRevocationReason(idx));
+
+        idx = index.indexOf(BigInteger.ONE);
+        assertEquals(2000L, index.getRevocationDate(idx));
+        assertNull(index.getRevocationReason(idx));
+    }
+
+    @Test
+    void issuerMatched() {
+        List<RevokedSerialIndex.Entry> entryList = new ArrayList<>();
+        entryList.add(new RevokedSerialIndex.Entry(BigInteger.valueOf(4711), 1000L, null));
+        entryList.add(new RevokedSerialIndex.Entry(BigInteger.valueOf(4712), 2000L, null, "CN=Other CA,O=Example"));
+        entryList.add(new RevokedSerialIndex.Entry(BigInteger.valueOf(4711), 3000L, null, "CN=Indirect CA,O=Example"));
+
+        RevokedSerialIndex index = RevokedSerialIndex.of(entryList);
+
+        // entry of the CRL issuer
+        int idx = index.indexOf(BigInteger.valueOf(4711), "CN=CRL Issuer", "CN=CRL Issuer");
+        assertEquals(1000L, index.getRevocationDate(idx));
+        assertNull(index.getCertificateIssuer(idx));
+
+        // same serial, indirect entry
+        idx = index.indexOf(BigInteger.valueOf(4711), "CN=Indirect CA,O=Example", "CN=CRL Issuer");
+        assertEquals(3000L, index.getRevocationDate(idx));
+        assertEquals("CN=Indirect CA,O=Example", index.getCertificateIssuer(idx));
+
+        // differently encoded name of the same issuer
+        assertTrue(index.indexOf(BigInteger.valueOf(4712), "cn=other ca, o=example", "CN=CRL Issuer") >= 0);
+
+        // serial collision with a certificate of an unrelated issuer
+        assertEquals(-1, index.indexOf(BigInteger.valueOf(4711), "CN=Unrelated CA", "CN=CRL Issuer"));
+        assertEquals(-1, index.indexOf(BigInteger.valueOf(4712), "CN=CRL Issuer", "CN=CRL Issuer"));
+        assertEquals(-1, index.indexOf(BigInteger.valueOf(4711), null, "CN=CRL Issuer"));
+    }
+
+    @Test
+    void unknownSerialsNotFound() {
+        List<RevokedSerialIndex.Entry> entryList = new ArrayList<>();
+        entryList.add(new RevokedSerialIndex.Entry(BigInteger.valueOf(127), 0L, null));
+        entryList.add(new RevokedSerialIndex.Entry(new BigInteger("123456789012345678901234567890"), 0L, null));
+
+        RevokedSerialIndex index = RevokedSerialIndex.of(entryList);
+
+        assertEquals(-1, index.indexOf(BigInteger.valueOf(128)));
+        assertEquals(-1, index.indexOf(BigInteger.ZERO));
+        assertEquals(-1, index.indexOf(new BigInteger("123456789012345678901234567891")));
+        assertEquals(-1, RevokedSerialIndex.EMPTY.indexOf(BigInteger.ONE));
+    }
+}
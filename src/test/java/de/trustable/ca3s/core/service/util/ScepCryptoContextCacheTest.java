@@ -0,0 +1,187 @@
+package de.trustable.ca3s.core.service.util;
+
+import de.trustable.ca3s.core.domain.Certificate;
+import de.trustable.ca3s.core.domain.Pipeline;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ScepCryptoContextCacheTest {
+
+    private static String recipientPem;
+
+    private PipelineUtil pipelineUtil;
+    private CertificateUtil certUtil;
+    private CertificateProcessingUtil cpUtil;
+    private ScepCryptoContextCache contextCache;
+
+    private final long[] clock = {1000000L};
+
+    @BeforeAll
+    static void buildRecipient() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+
+        KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        Date now = new Date();
+        X509CertificateHolder holder = new JcaX509v3CertificateBuilder(new X500Name("CN=SCEP Recipient"), BigInteger.ONE,
+            new Date(now.getTime() - 60000L), new Date(now.getTime() + 3600000L), new X500Name("CN=SCEP Recipient"), keyPair.getPublic())
+            .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate()));
+
+        StringWriter pemWriter = new StringWriter();
+        try (JcaPEMWriter writer = new JcaPEMWriter(pemWriter)) {
+            writer.writeObject(holder);
+        }
+        recipientPem = pemWriter.toString();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pipelineUtil = mock(PipelineUtil.class);
+        certUtil = mock(CertificateUtil.class);
+        cpUtil = mock(CertificateProcessingUtil.class);
+
+        when(certUtil.getPrivateKey(any(Certificate.class))).thenAnswer(invocation -> mock(PrivateKey.class));
+        when(certUtil.getX509CertificateChainAsList(any(Certificate.class))).thenAnswer(invocation -> {
+            X509Certificate recipient = CryptoService.convertPemToCertificate(recipientPem);
+            return Arrays.asList(recipient, recipient);
+        });
+
+        contextCache = new ScepCryptoContextCache(pipelineUtil, certUtil, 300) {
+            @Override
+            long currentTimeMillis() {
+                return clock[0];
+            }
+        };
+    }
+
+    @Test
+    void contextCachedUntilTimeout() throws Exception {
+        Pipeline pipeline = buildPipeline(1L);
+        storeRecipient(pipeline, 11L, clock[0] + 3600000L);
+
+        ScepCryptoContextCache.ScepCryptoContext context = contextCache.getContext(pipeline, cpUtil);
+        assertNotNull(context);
+        assertEquals(11L, context.getRecipientCertId());
+        assertNotNull(context.getRecipientKey());
+        assertEquals(2, context.getCertificateChain().size());
+        assertEquals(1, context.getSignerCertificateChain().length);
+
+        clock[0] += 299999L;
+        assertSame(context, contextCache.getContext(pipeline, cpUtil));
+        verify(pipelineUtil, times(1)).getSCEPRecipientCertificate(pipeline, cpUtil);
+        verify(certUtil, times(1)).getPrivateKey(any(Certificate.class));
+
+        clock[0] += 1L;
+        assertNotSame(context, contextCache.getContext(pipeline, cpUtil));
+        verify(pipelineUtil, times(2)).getSCEPRecipientCertificate(pipeline, cpUtil);
+    }
+
+    @Test
+    void contextExpiresWithRecipient() throws Exception {
+        Pipeline pipeline = buildPipeline(1L);
+        storeRecipient(pipeline, 11L, clock[0] + 10000L);
+
+        ScepCryptoContextCache.ScepCryptoContext context = contextCache.getContext(pipeline, cpUtil);
+
+        clock[0] += 9999L;
+        assertSame(context, contextCache.getContext(pipeline, cpUtil));
+
+        // the recipient expires before the cache timeout, the successor is picked up
+        storeRecipient(pipeline, 12L, clock[0] + 3600000L);
+        clock[0] += 1L;
+        assertEquals(12L, contextCache.getContext(pipeline, cpUtil).getRecipientCertId());
+        verify(pipelineUtil, times(2)).getSCEPRecipientCertificate(pipeline, cpUtil);
+    }
+
+    @Test
+    void pipelineChangeInvalidates() throws Exception {
+        Pipeline pipeline = buildPipeline(1L);
+        Pipeline otherPipeline = buildPipeline(2L);
+        storeRecipient(pipeline, 11L, clock[0] + 3600000L);
+        storeRecipient(otherPipeline, 21L, clock[0] + 3600000L);
+
+        ScepCryptoContextCache.ScepCryptoContext context = contextCache.getContext(pipeline, cpUtil);
+        ScepCryptoContextCache.ScepCryptoContext otherContext = contextCache.getContext(otherPipeline, cpUtil);
+
+        contextCache.onApplicationEvent(new PipelineChangedEvent(this, 1L));
+        assertNotSame(context, contextCache.getContext(pipeline, cpUtil));
+        assertSame(otherContext, contextCache.getContext(otherPipeline, cpUtil));
+
+        // unknown pipeline, all entries dropped
+        contextCache.onApplicationEvent(new PipelineChangedEvent(this, null));
+        assertNotSame(otherContext, contextCache.getContext(otherPipeline, cpUtil));
+
+        verify(pipelineUtil, times(3)).getSCEPRecipientCertificate(pipeline, cpUtil);
+        verify(pipelineUtil, times(2)).getSCEPRecipientCertificate(otherPipeline, cpUtil);
+    }
+
+    @Test
+    void contextWithoutKeyNotCached() throws Exception {
+        Pipeline pipeline = buildPipeline(1L);
+        storeRecipient(pipeline, 11L, clock[0] + 3600000L);
+        when(certUtil.getPrivateKey(any(Certificate.class))).thenReturn(null);
+
+        assertNull(contextCache.getContext(pipeline, cpUtil).getRecipientKey());
+        contextCache.getContext(pipeline, cpUtil);
+        verify(pipelineUtil, times(2)).getSCEPRecipientCertificate(pipeline, cpUtil);
+    }
+
+    @Test
+    void missingChainFallsBackToRecipient() throws Exception {
+        Pipeline pipeline = buildPipeline(1L);
+        storeRecipient(pipeline, 11L, clock[0] + 3600000L);
+        when(certUtil.getX509CertificateChainAsList(any(Certificate.class))).thenThrow(new GeneralSecurityException("no chain"));
+
+        ScepCryptoContextCache.ScepCryptoContext context = contextCache.getContext(pipeline, cpUtil);
+        assertEquals(1, context.getCertificateChain().size());
+        assertEquals(0, context.getSignerCertificateChain().length);
+    }
+
+    @Test
+    void noRecipient() throws Exception {
+        Pipeline pipeline = buildPipeline(1L);
+
+        assertNull(contextCache.getContext(pipeline, cpUtil));
+        assertNull(contextCache.getContext(pipeline, cpUtil));
+        verify(pipelineUtil, times(2)).getSCEPRecipientCertificate(pipeline, cpUtil);
+
+        assertThrows(GeneralSecurityException.class, () -> contextCache.getContext(null, cpUtil));
+    }
+
+    private void storeRecipient(final Pipeline pipeline, final long certId, final long validTo) throws Exception {
+        Certificate recipientCert = new Certificate();
+        recipientCert.setId(certId);
+        recipientCert.setContent(recipientPem);
+        recipientCert.setValidTo(Instant.ofEpochMilli(validTo));
+        when(pipelineUtil.getSCEPRecipientCertificate(pipeline, cpUtil)).thenReturn(recipientCert);
+    }
+
+    private static Pipeline buildPipeline(final long id) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setId(id);
+        pipeline.setName("scep-" + id);
+        return pipeline;
+    }
+}
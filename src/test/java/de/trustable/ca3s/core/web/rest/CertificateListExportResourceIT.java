@@ -0,0 +1,294 @@
+package de.trustable.ca3s.core.web.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.trustable.ca3s.core.Ca3SApp;
+import de.trustable.ca3s.core.repository.AuditTraceViewRepository;
+import de.trustable.ca3s.core.repository.CSRViewRepository;
+import de.trustable.ca3s.core.repository.CertificateViewRepository;
+import de.trustable.ca3s.core.repository.PipelineAttributeRepository;
+import de.trustable.ca3s.core.repository.UserRepository;
+import de.trustable.ca3s.core.service.dto.AuditTraceView;
+import de.trustable.ca3s.core.service.dto.CSRView;
+import de.trustable.ca3s.core.service.dto.CertificateView;
+import de.trustable.ca3s.core.web.rest.errors.ExceptionTranslator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.security.test.context.support.WithAnonymousUser;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the streamed exports of {@link CertificateListExportResource}, {@link CSRListResource}
+ * and {@link AuditTraceListResource}.
+ */
+@SpringBootTest(classes = Ca3SApp.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("dev")
+public class CertificateListExportResourceIT {
+
+    private static final long EXPORT_TIMEOUT_SECONDS = 2L;
+
+    @Autowired
+    private MockMvc restMockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PipelineAttributeRepository pipelineAttributeRepository;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private CertificateViewRepository certificateViewRepository;
+    private CSRViewRepository csrViewRepository;
+    private AuditTraceViewRepository auditTraceViewRepository;
+
+    private MockMvc restExportMockMvc;
+
+    @BeforeEach
+    public void setup() {
+        certificateViewRepository = mock(CertificateViewRepository.class);
+        csrViewRepository = mock(CSRViewRepository.class);
+        auditTraceViewRepository = mock(AuditTraceViewRepository.class);
+
+        CertificateListExportResource certificateListExportResource =
+            new CertificateListExportResource(certificateViewRepository, objectMapper, EXPORT_TIMEOUT_SECONDS);
+        CSRListResource csrListResource = new CSRListResource(csrViewRepository, userRepository,
+            pipelineAttributeRepository, objectMapper, 1000, EXPORT_TIMEOUT_SECONDS);
+        AuditTraceListResource auditTraceListResource =
+            new AuditTraceListResource(auditTraceViewRepository, objectMapper, EXPORT_TIMEOUT_SECONDS);
+
+        this.restExportMockMvc = MockMvcBuilders.standaloneSetup(certificateListExportResource, csrListResource, auditTraceListResource)
+            .setControllerAdvice(exceptionTranslator)
+            .build();
+    }
+
+    @Test
+    @WithMockUser
+    public void exportCertificatesAsNdjson() throws Exception {
+
+        List<Map<String, String[]>> paramMapList = new ArrayList<>();
+        when(certificateViewRepository.streamSelection(anyMap(), any())).thenAnswer(invocation -> {
+            paramMapList.add(invocation.getArgument(0));
+            Consumer<CertificateView> consumer = invocation.getArgument(1);
+            for (long id = 1; id <= 3; id++) {
+                consumer.accept(buildCertificateView(id));
+            }
+            return 3L;
+        });
+
+        MvcResult mvcResult = restExportMockMvc.perform(get("/api/certificateListExport")
+                .param("format", "ndjson")
+                .param("filter", "subject"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        restExportMockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"certificates.ndjson\""));
+
+        List<String> lineList = readLines(mvcResult.getResponse().getContentAsByteArray(), false);
+        assertThat(lineList).hasSize(3);
+        for (int i = 0; i < lineList.size(); i++) {
+            JsonNode node = objectMapper.readTree(lineList.get(i));
+            assertThat(node.get("id").asLong()).isEqualTo(i + 1);
+            assertThat(node.get("subject").asText()).isEqualTo("CN=export-" + (i + 1));
+        }
+
+        // the parameters are copied before the request is finished
+        assertThat(paramMapList).hasSize(1);
+        assertThat(paramMapList.get(0).get("filter")).containsExactly("subject");
+    }
+
+    @Test
+    @WithMockUser
+    public void exportCertificatesCompressed() throws Exception {
+
+        when(certificateViewRepository.streamSelection(anyMap(), any())).thenAnswer(invocation -> {
+            Consumer<CertificateView> consumer = invocation.getArgument(1);
+            for (long id = 1; id <= 1000; id++) {
+                consumer.accept(buildCertificateView(id));
+            }
+            return 1000L;
+        });
+
+        MvcResult mvcResult = restExportMockMvc.perform(get("/api/certificateListExport")
+                .param("format", "ndjson")
+                .param("gzip", "true"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        restExportMockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/gzip"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"certificates.ndjson.gz\""));
+
+        List<String> lineList = readLines(mvcResult.getResponse().getContentAsByteArray(), true);
+        assertThat(lineList).hasSize(1000);
+        assertThat(objectMapper.readTree(lineList.get(999)).get("id").asLong()).isEqualTo(1000L);
+    }
+
+    @Test
+    @WithMockUser
+    public void exportTimeout() throws Exception {
+
+        CountDownLatch exportRunning = new CountDownLatch(1);
+        CountDownLatch releaseExport = new CountDownLatch(1);
+        when(certificateViewRepository.streamSelection(anyMap(), any())).thenAnswer(invocation -> {
+            exportRunning.countDown();
+            releaseExport.await(10, TimeUnit.SECONDS);
+            return 0L;
+        });
+
+        try {
+            MvcResult mvcResult = restExportMockMvc.perform(get("/api/certificateListExport"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+            // 'ca3s.ui.export.timeout.seconds' replaces the default timeout of async requests
+            assertThat(mvcResult.getRequest().getAsyncContext().getTimeout()).isEqualTo(EXPORT_TIMEOUT_SECONDS * 1000L);
+            assertThat(exportRunning.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // the servlet container reports the timeout
+            MockAsyncContext asyncContext = (MockAsyncContext) mvcResult.getRequest().getAsyncContext();
+            for (AsyncListener listener : asyncContext.getListeners()) {
+                listener.onTimeout(new AsyncEvent(asyncContext));
+            }
+            assertThat(mvcResult.getAsyncResult()).isInstanceOf(AsyncRequestTimeoutException.class);
+        } finally {
+            releaseExport.countDown();
+        }
+    }
+
+    @Test
+    @WithMockUser
+    public void exportAuditTracesAsCsv() throws Exception {
+
+        when(auditTraceViewRepository.streamSelection(anyMap(), any())).thenAnswer(invocation -> {
+            Consumer<AuditTraceView> consumer = invocation.getArgument(1);
+            for (long id = 1; id <= 2; id++) {
+                AuditTraceView auditTraceView = new AuditTraceView();
+                auditTraceView.setId(id);
+                auditTraceView.setActorName("actor-" + id);
+                auditTraceView.setPlainContent("content " + id);
+                consumer.accept(auditTraceView);
+            }
+            return 2L;
+        });
+
+        MvcResult mvcResult = restExportMockMvc.perform(get("/api/auditTraceListExport"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        restExportMockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("text/csv"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"auditTraces.csv\""));
+
+        List<String> lineList = readLines(mvcResult.getResponse().getContentAsByteArray(), false);
+        assertThat(lineList).hasSize(3);
+        assertThat(lineList.get(0)).contains("ACTORNAME");
+        assertThat(lineList.get(1)).contains("actor-1");
+        assertThat(lineList.get(2)).contains("actor-2");
+    }
+
+    @Test
+    @WithMockUser("admin")
+    public void exportCsrs() throws Exception {
+
+        when(csrViewRepository.streamSelection(anyMap(), anyList(), any())).thenAnswer(invocation -> {
+            Consumer<CSRView> consumer = invocation.getArgument(2);
+            CSRView csrView = new CSRView();
+            csrView.setId(4711L);
+            csrView.setSubject("CN=export-csr");
+            consumer.accept(csrView);
+            return 1L;
+        });
+
+        MvcResult mvcResult = restExportMockMvc.perform(get("/api/csrListExport").param("format", "json"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        restExportMockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"csrs.ndjson\""));
+
+        List<String> lineList = readLines(mvcResult.getResponse().getContentAsByteArray(), false);
+        assertThat(lineList).hasSize(1);
+        assertThat(objectMapper.readTree(lineList.get(0)).get("id").asLong()).isEqualTo(4711L);
+        verify(csrViewRepository).streamSelection(anyMap(), anyList(), any());
+    }
+
+    @Test
+    @WithMockUser("unknown-export-user")
+    public void exportCsrsUnknownUser() throws Exception {
+
+        restExportMockMvc.perform(get("/api/csrListExport"))
+            .andExpect(status().isNotFound());
+        verify(csrViewRepository, never()).streamSelection(anyMap(), anyList(), any());
+    }
+
+    @Test
+    @WithAnonymousUser
+    public void exportRequiresAuthentication() throws Exception {
+
+        for (String url : new String[]{"/api/certificateListExport", "/api/csrListExport", "/api/auditTraceListExport"}) {
+            restMockMvc.perform(get(url))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isForbidden());
+        }
+    }
+
+    private static CertificateView buildCertificateView(final long id) {
+        CertificateView certificateView = new CertificateView();
+        certificateView.setId(id);
+        certificateView.setSubject("CN=export-" + id);
+        return certificateView;
+    }
+
+    private static List<String> readLines(final byte[] content, final boolean gzip) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            gzip ? new GZIPInputStream(new ByteArrayInputStream(content)) : new ByteArrayInputStream(content),
+            StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+}